@@ -0,0 +1,47 @@
+#!/usr/bin/env bash
+#
+# Compares the blocking and reactive read paths of mnotes under concurrent readers.
+#
+# Requires hey (https://github.com/rakyll/hey) and an mnotes instance started with the "reactive" profile.
+# The same load is applied to GET /notes/{patId} (Spring MVC, blocking MongoRepository) and to
+# GET /notes/{patId}/stream (Spring MVC handler returning a Flux, ReactiveMongoRepository), one after the other.
+# The report of each run, followed by the Tomcat and MongoDB pool metrics read at its end,
+# is written to the results directory.
+#
+# Usage: ./load-test.sh [base-url] [patId]
+# Environment: CONCURRENCY (default 1000), DURATION (default 60s), RESULTS_DIR (default load-test-results),
+#              CREDENTIALS (HTTP Basic user:password of the notes endpoints, default username:user)
+
+set -euo pipefail
+
+BASE_URL="${1:-http://localhost:9002}"
+PAT_ID="${2:-1}"
+CONCURRENCY="${CONCURRENCY:-1000}"
+DURATION="${DURATION:-60s}"
+RESULTS_DIR="${RESULTS_DIR:-load-test-results}"
+CREDENTIALS="${CREDENTIALS:-username:user}"
+
+command -v hey >/dev/null || { echo "hey is required: https://github.com/rakyll/hey" >&2; exit 1; }
+mkdir -p "$RESULTS_DIR"
+
+metrics() {
+    for metric in tomcat.threads.busy tomcat.threads.current mongodb.driver.pool.size mongodb.driver.pool.waitqueuesize; do
+        echo "$metric: $(curl -s "$BASE_URL/actuator/metrics/$metric" || echo unavailable)"
+    done
+}
+
+run() {
+    local name="$1"; shift
+    local report="$RESULTS_DIR/$name-c$CONCURRENCY.txt"
+    echo "== $name: $CONCURRENCY concurrent readers for $DURATION"
+    # A short warm-up, so that both paths are measured with warm JIT and connection pools
+    hey -z 10s -c 50 -a "$CREDENTIALS" "$@" > /dev/null
+    hey -z "$DURATION" -c "$CONCURRENCY" -a "$CREDENTIALS" "$@" > "$report"
+    metrics >> "$report"
+    grep -E "Requests/sec|Average|99%|Status code|\[[0-9]+\]" "$report" || true
+}
+
+run blocking "$BASE_URL/notes/$PAT_ID"
+run reactive -H "Accept: application/x-ndjson" "$BASE_URL/notes/$PAT_ID/stream"
+
+echo "Reports written to $RESULTS_DIR"
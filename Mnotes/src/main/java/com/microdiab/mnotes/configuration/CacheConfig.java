@@ -0,0 +1,63 @@
+package com.microdiab.mnotes.configuration;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.cache.CacheManagerCustomizer;
+import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.cache.caffeine.CaffeineCacheManager;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+
+/**
+ * Configuration class enabling the Spring cache abstraction in the mnotes microservice.
+ *
+ * The cache provider is Caffeine, an in-process bounded cache. Its size and time-to-live
+ * are set through the {@code spring.cache.caffeine.spec} property, and statistics recording
+ * is enabled so that Spring Boot Actuator publishes hit/miss metrics ({@code cache.gets})
+ * for each cache declared in {@code spring.cache.cache-names}.
+ *
+ * The {@link #SECONDARY_NOTES_CACHE} cache has a time-to-live of its own ({@code mnotes.read-routing.cache-ttl}).
+ *
+ * @see EnableCaching
+ */
+@Configuration
+@EnableCaching
+public class CacheConfig {
+
+    /** Name of the cache holding the notes of a patient, keyed by {@code patId}. */
+    public static final String NOTES_CACHE = "notesByPatId";
+
+    /**
+     * Name of the cache holding the notes of a patient read from the secondaries, keyed by {@code patId}.
+     * Kept apart from {@link #NOTES_CACHE}, whose reads must see their own writes.
+     *
+     * It is evicted when a note is saved, but a read from a secondary that has not replicated the note yet
+     * can fill it again with the previous notes. Such an entry expires after the time-to-live of the cache,
+     * so the notes served from it are at most the maximum staleness of the secondaries
+     * ({@code mnotes.read-routing.max-staleness}) plus this time-to-live behind the primary.
+     */
+    public static final String SECONDARY_NOTES_CACHE = "secondaryNotesByPatId";
+
+
+    /**
+     * Registers the {@link #SECONDARY_NOTES_CACHE} cache with its own time-to-live.
+     *
+     * @param maximumSize The maximum number of patients whose notes are cached.
+     * @param ttl         The time after which the notes read from the secondaries expire.
+     * @return The customizer registering the cache on the Caffeine cache manager.
+     */
+    @Bean
+    public CacheManagerCustomizer<CaffeineCacheManager> secondaryNotesCacheCustomizer(
+            @Value("${mnotes.read-routing.cache-max-size:10000}") long maximumSize,
+            @Value("${mnotes.read-routing.cache-ttl:30s}") Duration ttl) {
+        return cacheManager -> cacheManager.registerCustomCache(SECONDARY_NOTES_CACHE, Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build());
+    }
+
+}
@@ -3,6 +3,7 @@ package com.microdiab.mnotes.configuration;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.microdiab.mnotes.model.Note;
 import com.microdiab.mnotes.repository.NoteRepository;
+import com.microdiab.mnotes.service.NoteService;
 import org.springframework.boot.CommandLineRunner;
 import org.springframework.context.annotation.Profile;
 import org.springframework.core.io.ClassPathResource;
@@ -32,6 +33,9 @@ public class JsonDataInitializer implements CommandLineRunner {
     /** Repository for accessing and managing {@link Note} entities in the database. */
     private final NoteRepository noteRepository;
 
+    /** Service used to mark the notes of the patients concerned as changed after the bulk insert. */
+    private final NoteService noteService;
+
     /** Jackson {@link ObjectMapper} for JSON serialization and deserialization. */
     private final ObjectMapper objectMapper;
 
@@ -40,10 +44,12 @@ public class JsonDataInitializer implements CommandLineRunner {
      * Constructs a new {@code JsonDataInitializer} with the specified dependencies.
      *
      * @param noteRepository The repository used to interact with the database.
+     * @param noteService    The service used to mark the notes of the patients concerned as changed.
      * @param objectMapper   The Jackson {@link ObjectMapper} used to parse JSON data.
      */
-    public JsonDataInitializer(NoteRepository noteRepository, ObjectMapper objectMapper) {
+    public JsonDataInitializer(NoteRepository noteRepository, NoteService noteService, ObjectMapper objectMapper) {
         this.noteRepository = noteRepository;
+        this.noteService = noteService;
         this.objectMapper = objectMapper;
     }
 
@@ -60,6 +66,7 @@ public class JsonDataInitializer implements CommandLineRunner {
      *   <li>Retrieves all existing notes from the database.</li>
      *   <li>Filters out notes that already exist in the database to avoid duplicates.</li>
      *   <li>Saves the new notes to the database and logs the result.</li>
+     *   <li>Marks the notes of the patients concerned as changed, so that their version (ETag) is incremented.</li>
      * </ol>
      *
      * @param args Command-line arguments (not used in this implementation).
@@ -92,6 +99,10 @@ public class JsonDataInitializer implements CommandLineRunner {
         // Saves only new notes
         if (!newNotes.isEmpty()) {
             noteRepository.saveAll(newNotes);
+            newNotes.stream()
+                    .map(Note::getPatId)
+                    .distinct()
+                    .forEach(noteService::markNotesChanged);
             System.out.println("New JSON data inserted into MongoDB : " + newNotes.size() + " added notes.");
         } else {
             System.out.println("No new notes to add.");
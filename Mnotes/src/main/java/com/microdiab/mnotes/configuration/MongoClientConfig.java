@@ -0,0 +1,55 @@
+package com.microdiab.mnotes.configuration;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.mongo.MongoClientSettingsBuilderCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Configuration class tuning the MongoDB clients (blocking and reactive) of the mnotes microservice.
+ *
+ * The connection pool is sized through the {@code mnotes.mongodb.pool.*} properties, so it can be
+ * adjusted under load without changing the connection string. The defaults are those of the driver.
+ *
+ * Command latencies ({@code mongodb.driver.commands}, tagged by command and collection) and the
+ * pool gauges ({@code mongodb.driver.pool.size}, {@code .checkedout}, {@code .waitqueuesize})
+ * are published by Spring Boot Actuator; this configuration adds the time spent waiting for a
+ * pooled connection (see {@link MongoConnectionCheckoutListener}).
+ */
+@Configuration
+public class MongoClientConfig {
+
+    /**
+     * Applies the pool sizing properties and registers the checkout wait time listener.
+     *
+     * @param meterRegistry         The registry of the checkout wait time metric.
+     * @param maxSize               The maximum number of connections per server.
+     * @param minSize               The minimum number of connections kept per server.
+     * @param maxConnecting         The maximum number of connections being established concurrently per server.
+     * @param maxWaitTime           The maximum time to wait for a connection before failing.
+     * @param maxConnectionIdleTime The maximum idle time of a pooled connection before it is closed (0 for no limit).
+     * @return The customizer applied to the settings of the MongoDB clients.
+     */
+    @Bean
+    public MongoClientSettingsBuilderCustomizer mongoConnectionPoolCustomizer(
+            MeterRegistry meterRegistry,
+            @Value("${mnotes.mongodb.pool.max-size:100}") int maxSize,
+            @Value("${mnotes.mongodb.pool.min-size:0}") int minSize,
+            @Value("${mnotes.mongodb.pool.max-connecting:2}") int maxConnecting,
+            @Value("${mnotes.mongodb.pool.max-wait-time:2m}") Duration maxWaitTime,
+            @Value("${mnotes.mongodb.pool.max-connection-idle-time:0s}") Duration maxConnectionIdleTime) {
+        MongoConnectionCheckoutListener checkoutListener = new MongoConnectionCheckoutListener(meterRegistry);
+        return builder -> builder.applyToConnectionPoolSettings(pool -> pool
+                .maxSize(maxSize)
+                .minSize(minSize)
+                .maxConnecting(maxConnecting)
+                .maxWaitTime(maxWaitTime.toMillis(), TimeUnit.MILLISECONDS)
+                .maxConnectionIdleTime(maxConnectionIdleTime.toMillis(), TimeUnit.MILLISECONDS)
+                .addConnectionPoolListener(checkoutListener));
+    }
+}
@@ -0,0 +1,71 @@
+package com.microdiab.mnotes.configuration;
+
+import com.mongodb.event.ConnectionCheckOutFailedEvent;
+import com.mongodb.event.ConnectionCheckedOutEvent;
+import com.mongodb.event.ConnectionPoolListener;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Connection pool listener recording the time spent by the MongoDB driver waiting for a
+ * connection of the pool, as the {@code mongodb.driver.pool.checkout} timer.
+ *
+ * The timer is tagged with the server address and the outcome of the checkout
+ * ({@code success}, or the reason of the failure, e.g. {@code timeout}). It complements the
+ * pool size, checked-out and wait queue gauges published by Spring Boot Actuator.
+ */
+public class MongoConnectionCheckoutListener implements ConnectionPoolListener {
+
+    static final String CHECKOUT_TIMER = "mongodb.driver.pool.checkout";
+
+    private final MeterRegistry meterRegistry;
+
+
+    /**
+     * Constructs a new {@code MongoConnectionCheckoutListener}.
+     *
+     * @param meterRegistry The registry of the checkout timer.
+     */
+    public MongoConnectionCheckoutListener(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+
+    /**
+     * Records the wait time of a successful checkout.
+     *
+     * @param event The checkout event.
+     */
+    @Override
+    public void connectionCheckedOut(ConnectionCheckedOutEvent event) {
+        record(event.getConnectionId().getServerId().getAddress().toString(), "success",
+                event.getElapsedTime(TimeUnit.NANOSECONDS));
+    }
+
+
+    /**
+     * Records the wait time of a failed checkout.
+     *
+     * @param event The checkout failure event.
+     */
+    @Override
+    public void connectionCheckOutFailed(ConnectionCheckOutFailedEvent event) {
+        record(event.getServerId().getAddress().toString(), event.getReason().name().toLowerCase(Locale.ROOT),
+                event.getElapsedTime(TimeUnit.NANOSECONDS));
+    }
+
+
+    private void record(String serverAddress, String status, long elapsedNanos) {
+        Timer.builder(CHECKOUT_TIMER)
+                .description("Time spent waiting for a connection of the MongoDB pool")
+                .tags(Tags.of("server.address", serverAddress, "status", status))
+                .publishPercentileHistogram()
+                .register(meterRegistry)
+                .record(elapsedNanos, TimeUnit.NANOSECONDS);
+    }
+}
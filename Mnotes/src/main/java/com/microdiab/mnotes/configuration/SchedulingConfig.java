@@ -0,0 +1,18 @@
+package com.microdiab.mnotes.configuration;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+
+/**
+ * Configuration class enabling the execution of scheduled background jobs
+ * in the mnotes microservice, such as the trigger term annotation backfill
+ * and the heartbeats of the notes change events.
+ *
+ * @see EnableScheduling
+ */
+@Configuration
+@EnableScheduling
+public class SchedulingConfig {
+
+}
@@ -1,6 +1,17 @@
 package com.microdiab.mnotes.controller;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.microdiab.mnotes.exception.MalformedImportException;
 import com.microdiab.mnotes.model.Note;
+import com.microdiab.mnotes.model.NoteChangeEvent;
+import com.microdiab.mnotes.model.NoteImportResult;
+import com.microdiab.mnotes.model.NoteSearchHit;
+import com.microdiab.mnotes.model.NoteSummary;
+import com.microdiab.mnotes.model.NoteVersion;
+import com.microdiab.mnotes.service.NoteChangePublisher;
+import com.microdiab.mnotes.service.NoteImporter;
+import com.microdiab.mnotes.service.NoteReadRoute;
 import com.microdiab.mnotes.service.NoteService;
 import com.microdiab.mnotes.tracing.TracingHelper;
 import io.micrometer.tracing.annotation.NewSpan;
@@ -12,11 +23,20 @@ import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.util.DigestUtils;
 import org.springframework.validation.BindingResult;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.List;
+import java.util.Objects;
+import java.util.TreeSet;
 
 
 /**
@@ -27,12 +47,24 @@ import java.util.List;
 @Tag(name = "mnotes API", description = "API for managing patient notes")
 public class NoteController {
 
+    /** Maximum number of results per page of a full-text search. */
+    private static final int MAX_SEARCH_PAGE_SIZE = 100;
+
     @Autowired
     private NoteService noteService;
 
+    @Autowired
+    private NoteChangePublisher noteChangePublisher;
+
+    @Autowired
+    private NoteImporter noteImporter;
+
     @Autowired
     private TracingHelper tracing;
 
+    @Autowired
+    private ObjectMapper objectMapper;
+
 
     /**
      * Creates a new note for a patient.
@@ -70,31 +102,286 @@ public class NoteController {
     }
 
 
+    /**
+     * Imports notes from a JSON array or a newline-delimited JSON stream, e.g. an export of another instance.
+     *
+     * <p>The request body is read as a stream and written in bulk batches (see {@link NoteImporter}),
+     * so files of any size can be imported. Records that are not valid notes are skipped and reported
+     * in the result.</p>
+     *
+     * @param body The request body, a JSON array of notes or one JSON note per line.
+     * @return A ResponseEntity containing the number of imported and rejected records,
+     *         or a 400 Bad Request response if the body is not well-formed JSON.
+     * @throws IOException If the request body cannot be read.
+     */
+    @Operation(
+        summary = "Import notes",
+        description = "Streams a JSON array or an NDJSON file of notes and writes them in bulk batches. " +
+                      "Invalid records are skipped; a record with an id replaces the note with this id."
+    )
+    @ApiResponse(responseCode = "200", description = "Import completed",
+                 content = @Content(mediaType = "application/json",
+                                    schema = @Schema(implementation = NoteImportResult.class)))
+    @ApiResponse(responseCode = "400", description = "Malformed JSON (the notes read before it are imported)")
+    @PostMapping(value = "/notes/import",
+                 consumes = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE})
+    @NewSpan("mnotes-import-notes")
+    public ResponseEntity<?> importNotes(InputStream body) throws IOException {
+
+        tracing.tag("endpoint", "/notes/import");
+        tracing.event("Importing notes");
+
+        try {
+            NoteImportResult importResult = noteImporter.importNotes(body);
+            tracing.tag("note.imported", importResult.getImported());
+            tracing.tag("note.rejected", importResult.getRejected());
+            return ResponseEntity.ok(importResult);
+        } catch (MalformedImportException e) {
+            tracing.error("MalformedJson", e.getMessage());
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
+
+
     /**
      * Retrieves all notes for a specific patient identified by their ID.
      *
-     * @param patId The ID of the patient whose notes are to be retrieved.
-     * @return A ResponseEntity containing a list of notes for the specified patient.
+     * <p>The response carries the version of the patient's notes as an ETag, {@code "<epoch>-<version>"},
+     * the epoch being the creation time of the version counter (see {@link NoteVersion}).
+     * If the request's {@code If-None-Match} header matches it, a 304 Not Modified
+     * is returned without reading the notes.</p>
+     *
+     * <p>The optional {@code fields} parameter restricts the fields of the notes that are read
+     * from MongoDB and returned, e.g. {@code ?fields=id,patId,createdAt} for a listing without
+     * the content of the notes. The ETag then also depends on the requested fields.</p>
+     *
+     * <p>With the {@code X-Read-Routing: secondary} header, e.g. sent by the risk assessment, all the notes
+     * are read from a secondary of the replica set within the configured maximum staleness, through a cache
+     * of their own. Such a response may miss the latest notes, so its ETag is computed from its content
+     * rather than from the version of the notes: a version read from the primary could label notes that do
+     * not contain it yet, and later revalidate them. A conditional request on this route therefore costs the
+     * serialization and digest of the notes, served from the cache, or read from a secondary once the cached
+     * notes have expired; it never reads from the primary. When secondary reads are not enabled, the header
+     * is ignored and the notes are read like without it. With the {@code fields} parameter, the requested fields
+     * are read from a secondary, without the cache, e.g. {@code ?fields=triggerTermCounts} for the risk assessment,
+     * and the ETag is computed from their content as well.</p>
+     *
+     * @param patId       The ID of the patient whose notes are to be retrieved.
+     * @param fields      The fields of the notes to return, or null for all of them.
+     * @param readRouting The route of the read, {@code primary} (default) or {@code secondary}.
+     * @param request     The current request, used to evaluate the {@code If-None-Match} header.
+     * @return A ResponseEntity containing a list of notes for the specified patient,
+     *         an empty 304 response if the notes have not changed,
+     *         or a 400 Bad Request response if the requested fields or the read route are invalid.
+     * @throws JsonProcessingException If the notes read on the secondary route cannot be serialized for their ETag.
      */
     @Operation(
         summary = "Retrieve all notes for a patient",
-        description = "Returns all notes associated with the specified patient ID."
+        description = "Returns all notes associated with the specified patient ID. " +
+                      "Supports conditional requests through the ETag / If-None-Match headers. " +
+                      "The 'fields' parameter restricts the returned fields, among " +
+                      "id, patId, patient, note, triggerTermCounts and createdAt. " +
+                      "The 'X-Read-Routing: secondary' header reads all the notes from a secondary " +
+                      "within the maximum staleness, or only the requested fields, " +
+                      "with an ETag computed from their content."
     )
     @ApiResponse(responseCode = "200", description = "List of notes for the patient",
                  content = @Content(mediaType = "application/json",
                                     array = @ArraySchema(schema = @Schema(implementation = Note.class))))
+    @ApiResponse(responseCode = "304", description = "Notes not modified since the given ETag")
+    @ApiResponse(responseCode = "400", description = "Empty or unknown fields, or unknown read route")
     @GetMapping("/notes/{patId}")
     @NewSpan("mnotes-get-notes")
-    public ResponseEntity<List<Note>> getNotesByPatId(@PathVariable Long patId) {
+    public ResponseEntity<List<Note>> getNotesByPatId(@PathVariable Long patId,
+                                                      @RequestParam(required = false) List<String> fields,
+                                                      @RequestHeader(value = NoteReadRoute.HEADER, required = false)
+                                                      String readRouting,
+                                                      WebRequest request) throws JsonProcessingException {
 
         tracing.tag("endpoint", "/notes/{patId}");
         tracing.tag("patient.id", patId);
         tracing.event("Fetching notes for patient");
 
-        List<Note> notes = noteService.getNotesByPatId(patId);
+        if (fields != null && (fields.isEmpty() || !NoteService.PROJECTABLE_FIELDS.containsAll(fields))) {
+            tracing.error("ValidationError", "Invalid fields: " + fields);
+            return ResponseEntity.badRequest().build();
+        }
+
+        NoteReadRoute route = NoteReadRoute.fromHeader(readRouting);
+        if (route == null) {
+            tracing.error("ValidationError", "Invalid read routing: " + readRouting);
+            return ResponseEntity.badRequest().build();
+        }
+        if (route == NoteReadRoute.SECONDARY && !noteService.readsFromPrimary(route)) {
+            List<Note> notes = fields == null
+                    ? noteService.readNotesByPatId(patId, route)
+                    : noteService.getNotesByPatId(patId, fields, route);
+            String etag = "\"" + DigestUtils.md5DigestAsHex(objectMapper.writeValueAsBytes(notes)) + "\"";
+            if (request.checkNotModified(etag)) {
+                tracing.event("Notes not modified");
+                return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).build();
+            }
+            tracing.tag("note.count", notes.size());
+            return ResponseEntity.ok().eTag(etag).body(notes);
+        }
+
+        String version = noteService.getNotesVersion(patId).toETagValue();
+        String etag = fields == null
+                ? "\"" + version + "\""
+                : "\"" + version + ";" + String.join(",", new TreeSet<>(fields)) + "\"";
+        if (request.checkNotModified(etag)) {
+            tracing.event("Notes not modified");
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).build();
+        }
+
+        List<Note> notes = fields == null
+                ? noteService.getNotesByPatId(patId)
+                : noteService.getNotesByPatId(patId, fields);
 
         tracing.tag("note.count", notes.size());
 
-        return ResponseEntity.ok(notes);
+        return ResponseEntity.ok().eTag(etag).body(notes);
+    }
+
+
+    /**
+     * Retrieves the summary of the notes of a patient: number of notes, date of the last note
+     * and trigger term totals. The content of the notes is not returned.
+     *
+     * @param patId The ID of the patient whose notes are summarized.
+     * @return A ResponseEntity containing the summary of the patient's notes.
+     */
+    @Operation(
+        summary = "Retrieve the summary of the notes of a patient",
+        description = "Returns the number of notes, the date of the last note and the trigger term totals " +
+                      "for the specified patient ID, without the content of the notes."
+    )
+    @ApiResponse(responseCode = "200", description = "Summary of the notes of the patient",
+                 content = @Content(mediaType = "application/json",
+                                    schema = @Schema(implementation = NoteSummary.class)))
+    @GetMapping("/notes/{patId}/summary")
+    @NewSpan("mnotes-get-note-summary")
+    public ResponseEntity<NoteSummary> getNoteSummary(@PathVariable Long patId) {
+
+        tracing.tag("endpoint", "/notes/{patId}/summary");
+        tracing.tag("patient.id", patId);
+        tracing.event("Summarizing notes for patient");
+
+        NoteSummary summary = noteService.getNoteSummary(patId);
+
+        tracing.tag("note.count", summary.getNoteCount());
+
+        return ResponseEntity.ok(summary);
+    }
+
+
+    /**
+     * Retrieves the summaries of the notes of several patients in a single call.
+     *
+     * @param patIds The IDs of the patients whose notes are summarized.
+     * @return A ResponseEntity containing one summary per requested patient, in the requested order,
+     *         or a 400 Bad Request if no patient ID is given.
+     */
+    @Operation(
+        summary = "Retrieve the summaries of the notes of several patients",
+        description = "Returns one summary per requested patient ID, in the requested order. " +
+                      "Patients without notes get a summary with zero values."
+    )
+    @ApiResponse(responseCode = "200", description = "Summaries of the notes of the patients",
+                 content = @Content(mediaType = "application/json",
+                                    array = @ArraySchema(schema = @Schema(implementation = NoteSummary.class))))
+    @ApiResponse(responseCode = "400", description = "No patient ID given")
+    @GetMapping("/notes/summary")
+    @NewSpan("mnotes-get-note-summaries")
+    public ResponseEntity<List<NoteSummary>> getNoteSummaries(@RequestParam List<Long> patIds) {
+
+        tracing.tag("endpoint", "/notes/summary");
+        tracing.tag("patient.count", patIds.size());
+        tracing.event("Summarizing notes for patients");
+
+        if (patIds.isEmpty() || patIds.stream().anyMatch(Objects::isNull)) {
+            tracing.error("ValidationError", "patIds cannot be null or empty");
+            return ResponseEntity.badRequest().build();
+        }
+
+        return ResponseEntity.ok(noteService.getNoteSummaries(patIds));
+    }
+
+
+    /**
+     * Searches the notes mentioning the given terms, using the French text index of the note content.
+     * Results are sorted by relevance and paginated; they only contain the identifiers
+     * of the notes and patients, not the content of the notes.
+     *
+     * @param q    The terms to search for.
+     * @param page The zero-based index of the page to return.
+     * @param size The maximum number of results per page, between 1 and 100.
+     * @return A ResponseEntity containing the matching notes of the requested page,
+     *         a 400 Bad Request if the parameters are invalid,
+     *         or a 409 Conflict if the full-text search is disabled ({@code mnotes.search.enabled=false}).
+     */
+    @Operation(
+        summary = "Search notes by term",
+        description = "Full-text search over the content of the notes (French language analyzer). " +
+                      "Returns the matching notes sorted by relevance, without their content. " +
+                      "A page with fewer results than the requested size is the last one."
+    )
+    @ApiResponse(responseCode = "200", description = "Matching notes of the requested page",
+                 content = @Content(mediaType = "application/json",
+                                    array = @ArraySchema(schema = @Schema(implementation = NoteSearchHit.class))))
+    @ApiResponse(responseCode = "400", description = "Blank search terms or invalid pagination")
+    @ApiResponse(responseCode = "409", description = "Full-text search disabled (e.g. with the bucket storage layout)")
+    @GetMapping("/notes/search")
+    @NewSpan("mnotes-search-notes")
+    public ResponseEntity<List<NoteSearchHit>> searchNotes(@RequestParam String q,
+                                                           @RequestParam(defaultValue = "0") int page,
+                                                           @RequestParam(defaultValue = "20") int size) {
+
+        tracing.tag("endpoint", "/notes/search");
+        tracing.event("Searching notes");
+
+        if (q.isBlank() || page < 0 || size < 1 || size > MAX_SEARCH_PAGE_SIZE) {
+            tracing.error("ValidationError", "Invalid search parameters");
+            return ResponseEntity.badRequest().build();
+        }
+
+        List<NoteSearchHit> hits;
+        try {
+            hits = noteService.searchNotes(q, page, size);
+        } catch (IllegalStateException e) {
+            tracing.error("SearchDisabled", e.getMessage());
+            return ResponseEntity.status(HttpStatus.CONFLICT).build();
+        }
+
+        tracing.tag("note.count", hits.size());
+
+        return ResponseEntity.ok(hits);
+    }
+
+
+    /**
+     * Subscribes to the changes of the notes, as Server-Sent Events.
+     *
+     * <p>Each change of the notes read from the MongoDB change stream is sent as a {@code notes-changed}
+     * event carrying the patient identifier, so that subscribers can cache the notes and invalidate
+     * them only when they change. Events are only produced when the change stream is enabled.</p>
+     *
+     * @return The emitter sending the events to the subscriber.
+     */
+    @Operation(
+        summary = "Subscribe to notes changes",
+        description = "Server-Sent Events stream of 'notes-changed' events {patId, operation, changedAt}, " +
+                      "published when the notes of a patient change (requires the MongoDB change stream)."
+    )
+    @ApiResponse(responseCode = "200", description = "Stream of notes change events",
+                 content = @Content(mediaType = MediaType.TEXT_EVENT_STREAM_VALUE,
+                                    schema = @Schema(implementation = NoteChangeEvent.class)))
+    @GetMapping(value = "/notes/changes", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter subscribeToNoteChanges() {
+
+        tracing.tag("endpoint", "/notes/changes");
+        tracing.event("Subscribing to notes changes");
+
+        return noteChangePublisher.subscribe();
     }
 }
@@ -0,0 +1,62 @@
+package com.microdiab.mnotes.controller;
+
+import com.microdiab.mnotes.model.Note;
+import com.microdiab.mnotes.service.ReactiveNoteService;
+import com.microdiab.mnotes.tracing.TracingHelper;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.Schema;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RestController;
+import reactor.core.publisher.Flux;
+
+
+/**
+ * REST Controller streaming the notes of a patient, active with the {@code reactive} profile.
+ *
+ * The endpoint returns a {@link Flux} handled asynchronously by Spring MVC: the request thread
+ * is released while MongoDB is queried, and each note is written as a line of newline-delimited
+ * JSON as soon as the reactive driver yields it.
+ */
+@Profile("reactive")
+@RestController
+@Tag(name = "mnotes API", description = "API for managing patient notes")
+public class ReactiveNoteController {
+
+    @Autowired
+    private ReactiveNoteService reactiveNoteService;
+
+    @Autowired
+    private TracingHelper tracing;
+
+
+    /**
+     * Streams all notes for a specific patient identified by their ID.
+     *
+     * @param patId The ID of the patient whose notes are to be streamed.
+     * @return A {@link Flux} emitting the notes of the patient, one JSON document per line.
+     */
+    @Operation(
+        summary = "Stream all notes for a patient",
+        description = "Streams the notes associated with the specified patient ID as newline-delimited JSON, " +
+                      "using the reactive MongoDB driver. Available with the 'reactive' profile only."
+    )
+    @ApiResponse(responseCode = "200", description = "Stream of notes for the patient",
+                 content = @Content(mediaType = MediaType.APPLICATION_NDJSON_VALUE,
+                                    schema = @Schema(implementation = Note.class)))
+    @GetMapping(value = "/notes/{patId}/stream", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public Flux<Note> streamNotesByPatId(@PathVariable Long patId) {
+
+        tracing.tag("endpoint", "/notes/{patId}/stream");
+        tracing.tag("patient.id", patId);
+        tracing.event("Streaming notes for patient");
+
+        return reactiveNoteService.getNotesByPatId(patId);
+    }
+}
@@ -0,0 +1,19 @@
+package com.microdiab.mnotes.exception;
+
+
+/**
+ * Exception thrown when the body of a notes import is not well-formed JSON.
+ * The notes of the records read before the malformed part have been imported.
+ */
+public class MalformedImportException extends RuntimeException {
+
+    /**
+     * Constructs a new {@code MalformedImportException} with the specified detail message and cause.
+     *
+     * @param message The detail message, including the location of the malformed part.
+     * @param cause   The parsing error.
+     */
+    public MalformedImportException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
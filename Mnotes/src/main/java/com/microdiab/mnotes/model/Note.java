@@ -1,11 +1,20 @@
 package com.microdiab.mnotes.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
 import org.springframework.data.mongodb.core.mapping.Document;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.NotNull;
 import jakarta.validation.constraints.Positive;
 
+import org.bson.types.ObjectId;
+
+import java.time.Instant;
+import java.util.Map;
+
 
 /**
  * Represents a patient note stored in the MongoDB database.
@@ -16,9 +25,22 @@ import jakarta.validation.constraints.Positive;
  * that corresponds to the patient's record in the SQL database.
  * The note includes the patient's name and the note content itself.
  *
+ * At write time, the note is also annotated with the number of occurrences of each trigger term,
+ * so that the risk calculation can read precomputed counts instead of scanning the note content.
+ *
+ * The content of the note is covered by a text index using the French language analyzer, which allows
+ * notes to be searched by term. Notes larger than a configurable threshold are stored compressed
+ * (see {@link #getCompressedNote()}) and decompressed lazily, the first time their content is read.
+ * A compressed note keeps only its distinct search terms uncompressed ({@link #getSearchTerms()}),
+ * which the text index covers as well.
+ *
+ * Fields that are null, e.g. not requested in a projection ({@code GET /notes/{patId}?fields=}),
+ * are omitted from the JSON representation.
+ *
  * @see org.springframework.data.mongodb.core.mapping.Document
  */
-@Document(collection = "collection_notes")
+@Document(collection = "collection_notes", language = "french")
+@JsonInclude(JsonInclude.Include.NON_NULL)
 public class Note {
 
     /**
@@ -31,7 +53,9 @@ public class Note {
     /**
      * Patient identifier that corresponds to the patient's record in the SQL database.
      * Must be a positive number and cannot be null.
+     * Indexed, as all the reads of the notes are done per patient.
      */
+    @Indexed
     @NotNull(message = "patId cannot be null")
     @Positive(message = "patId must be a positive number")
     private Long patId;
@@ -50,6 +74,28 @@ public class Note {
     @NotBlank(message = "note is mandatory")
     private String note;
 
+    /**
+     * Distinct terms of the content of a compressed note, in lower case and separated by spaces.
+     * Set only for compressed notes, this field is internal and not exposed by the API.
+     * Covered by the text index (French language) used for full-text search, together with {@link #note}.
+     */
+    @JsonIgnore
+    private String searchTerms;
+
+    /**
+     * Content of the note compressed with Deflate, set instead of {@link #note} for large notes.
+     * This field is internal and not exposed by the API.
+     */
+    @JsonIgnore
+    private byte[] compressedNote;
+
+    /**
+     * Number of occurrences of each trigger term in the note, including terms that do not occur.
+     * Computed at write time, this field is read-only for API clients.
+     */
+    @JsonProperty(access = JsonProperty.Access.READ_ONLY)
+    private Map<String, Integer> triggerTermCounts;
+
     /**
      * Default constructor for the Note class.
      */
@@ -127,10 +173,14 @@ public class Note {
 
     /**
      * Gets the content of the note.
+     * If the note is stored compressed, its content is decompressed on the first call and kept.
      *
      * @return The content of the note.
      */
     public String getNote() {
+        if (note == null && compressedNote != null) {
+            note = NoteTextCodec.inflate(compressedNote);
+        }
         return note;
     }
 
@@ -143,9 +193,75 @@ public class Note {
         this.note = note;
     }
 
+    /**
+     * Gets the distinct search terms of a compressed note.
+     *
+     * @return The search terms, or null if the note is not stored compressed.
+     */
+    public String getSearchTerms() {
+        return searchTerms;
+    }
+
+    /**
+     * Sets the distinct search terms of a compressed note.
+     *
+     * @param searchTerms The search terms to set.
+     */
+    public void setSearchTerms(String searchTerms) {
+        this.searchTerms = searchTerms;
+    }
+
+    /**
+     * Gets the number of occurrences of each trigger term in the note.
+     *
+     * @return The trigger term counts, or null if the note has not been annotated yet.
+     */
+    public Map<String, Integer> getTriggerTermCounts() {
+        return triggerTermCounts;
+    }
+
+    /**
+     * Sets the number of occurrences of each trigger term in the note.
+     *
+     * @param triggerTermCounts The trigger term counts to set.
+     */
+    public void setTriggerTermCounts(Map<String, Integer> triggerTermCounts) {
+        this.triggerTermCounts = triggerTermCounts;
+    }
+
+    /**
+     * Gets the creation date of the note, taken from the timestamp of its ObjectId.
+     * This value is not stored, it is computed for API clients.
+     *
+     * @return The creation date, or null if the identifier is not an ObjectId.
+     */
+    @JsonProperty(access = JsonProperty.Access.READ_ONLY)
+    public Instant getCreatedAt() {
+        return id != null && ObjectId.isValid(id) ? new ObjectId(id).getDate().toInstant() : null;
+    }
+
+    /**
+     * Gets the compressed content of the note.
+     *
+     * @return The compressed content, or null if the note is not stored compressed.
+     */
+    public byte[] getCompressedNote() {
+        return compressedNote;
+    }
+
+    /**
+     * Sets the compressed content of the note.
+     *
+     * @param compressedNote The compressed content to set.
+     */
+    public void setCompressedNote(byte[] compressedNote) {
+        this.compressedNote = compressedNote;
+    }
+
     /**
      * Returns a string representation of the note.
-     * The string includes the patient identifier, patient name, and note content.
+     * The string includes the patient identifier, patient name, and note content,
+     * or the size of the compressed content if it has not been decompressed yet.
      *
      * @return A string representation of the note.
      */
@@ -154,7 +270,9 @@ public class Note {
         return "Note{" +
                 "patId=" + patId +
                 ", patient='" + patient + '\'' +
-                ", note='" + note + '\'' +
+                (note == null && compressedNote != null
+                        ? ", compressedNote=" + compressedNote.length + " bytes"
+                        : ", note='" + note + '\'') +
                 '}';
     }
 }
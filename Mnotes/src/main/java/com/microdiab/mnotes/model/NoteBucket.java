@@ -0,0 +1,162 @@
+package com.microdiab.mnotes.model;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.util.ArrayList;
+import java.util.List;
+
+
+/**
+ * Represents a bucket of notes of a patient, stored in the MongoDB database.
+ * This class is mapped to the "collection_note_buckets" collection in MongoDB
+ * and is only used with the {@code bucket} storage layout ({@code mnotes.storage.layout=bucket}).
+ *
+ * A bucket holds the notes of one patient created during one month ({@code period}),
+ * up to a bounded number of notes; further notes of the same month go to a new bucket.
+ * Reading the notes of a patient with a long history then touches a few bucket documents
+ * and index entries instead of one per note.
+ *
+ * @see com.microdiab.mnotes.service.NoteBucketStore
+ */
+@Document(collection = "collection_note_buckets")
+@CompoundIndex(name = "patId_period_count", def = "{'patId': 1, 'period': 1, 'count': 1}")
+public class NoteBucket {
+
+    /**
+     * Unique identifier for the bucket, generated by MongoDB.
+     */
+    @Id
+    private String id;
+
+    /**
+     * Patient identifier that corresponds to the patient's record in the SQL database.
+     */
+    private Long patId;
+
+    /**
+     * Month during which the notes of the bucket were created, formatted as {@code yyyy-MM} (UTC).
+     */
+    private String period;
+
+    /**
+     * Number of notes in the bucket.
+     */
+    private int count;
+
+    /**
+     * Notes of the bucket, in creation order.
+     */
+    private List<Note> notes = new ArrayList<>();
+
+    /**
+     * Default constructor for the NoteBucket class.
+     */
+    public NoteBucket() {
+    }
+
+    /**
+     * Parameterized constructor for the NoteBucket class.
+     *
+     * @param patId  The patient identifier corresponding to the SQL database.
+     * @param period The month during which the notes were created ({@code yyyy-MM}).
+     * @param notes  The notes of the bucket.
+     */
+    public NoteBucket(Long patId, String period, List<Note> notes) {
+        this.patId = patId;
+        this.period = period;
+        this.notes = notes;
+        this.count = notes.size();
+    }
+
+    /**
+     * Gets the unique identifier of the bucket.
+     *
+     * @return The unique identifier.
+     */
+    public String getId() {
+        return id;
+    }
+
+    /**
+     * Sets the unique identifier of the bucket.
+     *
+     * @param id The unique identifier to set.
+     */
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    /**
+     * Gets the patient identifier corresponding to the SQL database.
+     *
+     * @return The patient identifier.
+     */
+    public Long getPatId() {
+        return patId;
+    }
+
+    /**
+     * Sets the patient identifier corresponding to the SQL database.
+     *
+     * @param patId The patient identifier to set.
+     */
+    public void setPatId(Long patId) {
+        this.patId = patId;
+    }
+
+    /**
+     * Gets the month during which the notes of the bucket were created.
+     *
+     * @return The period, formatted as {@code yyyy-MM}.
+     */
+    public String getPeriod() {
+        return period;
+    }
+
+    /**
+     * Sets the month during which the notes of the bucket were created.
+     *
+     * @param period The period to set, formatted as {@code yyyy-MM}.
+     */
+    public void setPeriod(String period) {
+        this.period = period;
+    }
+
+    /**
+     * Gets the number of notes in the bucket.
+     *
+     * @return The number of notes.
+     */
+    public int getCount() {
+        return count;
+    }
+
+    /**
+     * Sets the number of notes in the bucket.
+     *
+     * @param count The number of notes to set.
+     */
+    public void setCount(int count) {
+        this.count = count;
+    }
+
+    /**
+     * Gets the notes of the bucket.
+     *
+     * @return The notes, in creation order.
+     */
+    public List<Note> getNotes() {
+        return notes;
+    }
+
+    /**
+     * Sets the notes of the bucket.
+     *
+     * @param notes The notes to set.
+     */
+    public void setNotes(List<Note> notes) {
+        this.notes = notes;
+    }
+}
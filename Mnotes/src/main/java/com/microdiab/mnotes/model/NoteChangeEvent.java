@@ -0,0 +1,103 @@
+package com.microdiab.mnotes.model;
+
+import java.time.Instant;
+
+
+/**
+ * Represents a compact "notes of a patient changed" event, published to the subscribers of
+ * {@code GET /notes/changes} when a change of the notes is read from the MongoDB change stream.
+ *
+ * The event carries no note content: subscribers are expected to invalidate what they cached
+ * for the patient and read the notes again when needed. A null {@code patId} means the patient
+ * could not be determined (e.g. a deleted note), and all the cached notes should be invalidated.
+ */
+public class NoteChangeEvent {
+
+    /**
+     * Patient identifier whose notes changed, or null if unknown.
+     */
+    private Long patId;
+
+    /**
+     * Type of the change, as reported by MongoDB ({@code insert}, {@code update}, {@code replace}, {@code delete}).
+     */
+    private String operation;
+
+    /**
+     * Date at which the change was read from the change stream.
+     */
+    private Instant changedAt;
+
+    /**
+     * Default constructor for the NoteChangeEvent class.
+     */
+    public NoteChangeEvent() {
+    }
+
+    /**
+     * Parameterized constructor for the NoteChangeEvent class.
+     *
+     * @param patId     The patient identifier whose notes changed, or null if unknown.
+     * @param operation The type of the change.
+     * @param changedAt The date of the change.
+     */
+    public NoteChangeEvent(Long patId, String operation, Instant changedAt) {
+        this.patId = patId;
+        this.operation = operation;
+        this.changedAt = changedAt;
+    }
+
+    /**
+     * Gets the patient identifier whose notes changed.
+     *
+     * @return The patient identifier, or null if unknown.
+     */
+    public Long getPatId() {
+        return patId;
+    }
+
+    /**
+     * Sets the patient identifier whose notes changed.
+     *
+     * @param patId The patient identifier to set.
+     */
+    public void setPatId(Long patId) {
+        this.patId = patId;
+    }
+
+    /**
+     * Gets the type of the change.
+     *
+     * @return The type of the change.
+     */
+    public String getOperation() {
+        return operation;
+    }
+
+    /**
+     * Sets the type of the change.
+     *
+     * @param operation The type of the change to set.
+     */
+    public void setOperation(String operation) {
+        this.operation = operation;
+    }
+
+    /**
+     * Gets the date of the change.
+     *
+     * @return The date of the change.
+     */
+    public Instant getChangedAt() {
+        return changedAt;
+    }
+
+    /**
+     * Sets the date of the change.
+     *
+     * @param changedAt The date of the change to set.
+     */
+    public void setChangedAt(Instant changedAt) {
+        this.changedAt = changedAt;
+    }
+}
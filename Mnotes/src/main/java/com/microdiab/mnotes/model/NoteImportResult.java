@@ -0,0 +1,102 @@
+package com.microdiab.mnotes.model;
+
+import java.util.ArrayList;
+import java.util.List;
+
+
+/**
+ * Represents the outcome of an import of notes, as returned by {@code POST /notes/import}.
+ *
+ * The number of imported and rejected records is always complete, while the error messages
+ * only describe the first rejected records, so that the result stays small for large imports.
+ */
+public class NoteImportResult {
+
+    /**
+     * Number of notes written to MongoDB.
+     */
+    private long imported;
+
+    /**
+     * Number of records rejected because they are not valid notes.
+     */
+    private long rejected;
+
+    /**
+     * Error messages of the first rejected records, prefixed with their position in the file (from 1).
+     */
+    private List<String> errors = new ArrayList<>();
+
+    /**
+     * Default constructor for the NoteImportResult class.
+     */
+    public NoteImportResult() {
+    }
+
+    /**
+     * Parameterized constructor for the NoteImportResult class.
+     *
+     * @param imported The number of notes written to MongoDB.
+     * @param rejected The number of records rejected.
+     * @param errors   The error messages of the first rejected records.
+     */
+    public NoteImportResult(long imported, long rejected, List<String> errors) {
+        this.imported = imported;
+        this.rejected = rejected;
+        this.errors = errors;
+    }
+
+    /**
+     * Gets the number of notes written to MongoDB.
+     *
+     * @return The number of imported notes.
+     */
+    public long getImported() {
+        return imported;
+    }
+
+    /**
+     * Sets the number of notes written to MongoDB.
+     *
+     * @param imported The number of imported notes.
+     */
+    public void setImported(long imported) {
+        this.imported = imported;
+    }
+
+    /**
+     * Gets the number of records rejected because they are not valid notes.
+     *
+     * @return The number of rejected records.
+     */
+    public long getRejected() {
+        return rejected;
+    }
+
+    /**
+     * Sets the number of records rejected because they are not valid notes.
+     *
+     * @param rejected The number of rejected records.
+     */
+    public void setRejected(long rejected) {
+        this.rejected = rejected;
+    }
+
+    /**
+     * Gets the error messages of the first rejected records.
+     *
+     * @return The error messages, prefixed with the position of the record.
+     */
+    public List<String> getErrors() {
+        return errors;
+    }
+
+    /**
+     * Sets the error messages of the first rejected records.
+     *
+     * @param errors The error messages, prefixed with the position of the record.
+     */
+    public void setErrors(List<String> errors) {
+        this.errors = errors;
+    }
+}
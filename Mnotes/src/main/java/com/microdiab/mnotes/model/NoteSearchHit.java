@@ -0,0 +1,128 @@
+package com.microdiab.mnotes.model;
+
+import org.springframework.data.mongodb.core.mapping.TextScore;
+
+
+/**
+ * Represents a note matching a full-text search, as returned by {@code GET /notes/search}.
+ *
+ * Only the identifiers of the note and of the patient are read from MongoDB (projection),
+ * together with the relevance score computed by the text index. The content of the note
+ * is not returned; it can be read afterwards with {@code GET /notes/{patId}}.
+ */
+public class NoteSearchHit {
+
+    /**
+     * Unique identifier of the matching note.
+     */
+    private String id;
+
+    /**
+     * Patient identifier that corresponds to the patient's record in the SQL database.
+     */
+    private Long patId;
+
+    /**
+     * Name of the patient associated with the note.
+     */
+    private String patient;
+
+    /**
+     * Relevance score of the note for the searched terms, computed by the text index.
+     */
+    @TextScore
+    private Float score;
+
+    /**
+     * Default constructor for the NoteSearchHit class.
+     */
+    public NoteSearchHit() {
+    }
+
+    /**
+     * Parameterized constructor for the NoteSearchHit class.
+     *
+     * @param id      The unique identifier of the note.
+     * @param patId   The patient identifier corresponding to the SQL database.
+     * @param patient The name of the patient.
+     * @param score   The relevance score of the note.
+     */
+    public NoteSearchHit(String id, Long patId, String patient, Float score) {
+        this.id = id;
+        this.patId = patId;
+        this.patient = patient;
+        this.score = score;
+    }
+
+    /**
+     * Gets the unique identifier of the note.
+     *
+     * @return The unique identifier.
+     */
+    public String getId() {
+        return id;
+    }
+
+    /**
+     * Sets the unique identifier of the note.
+     *
+     * @param id The unique identifier to set.
+     */
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    /**
+     * Gets the patient identifier corresponding to the SQL database.
+     *
+     * @return The patient identifier.
+     */
+    public Long getPatId() {
+        return patId;
+    }
+
+    /**
+     * Sets the patient identifier corresponding to the SQL database.
+     *
+     * @param patId The patient identifier to set.
+     */
+    public void setPatId(Long patId) {
+        this.patId = patId;
+    }
+
+    /**
+     * Gets the name of the patient.
+     *
+     * @return The name of the patient.
+     */
+    public String getPatient() {
+        return patient;
+    }
+
+    /**
+     * Sets the name of the patient.
+     *
+     * @param patient The name of the patient to set.
+     */
+    public void setPatient(String patient) {
+        this.patient = patient;
+    }
+
+    /**
+     * Gets the relevance score of the note.
+     *
+     * @return The relevance score.
+     */
+    public Float getScore() {
+        return score;
+    }
+
+    /**
+     * Sets the relevance score of the note.
+     *
+     * @param score The relevance score to set.
+     */
+    public void setScore(Float score) {
+        this.score = score;
+    }
+}
@@ -0,0 +1,167 @@
+package com.microdiab.mnotes.model;
+
+import java.time.Instant;
+
+
+/**
+ * Represents the summary of the notes of a patient, computed by a MongoDB aggregation
+ * over the "collection_notes" collection.
+ *
+ * A summary carries only a few numbers per patient and never the content of the notes,
+ * which is enough for callers that do not display the notes themselves.
+ *
+ * The trigger term totals only take into account the notes already annotated with
+ * their trigger term counts (see {@link Note#getTriggerTermCounts()}).
+ */
+public class NoteSummary {
+
+    /**
+     * Patient identifier that corresponds to the patient's record in the SQL database.
+     */
+    private Long patId;
+
+    /**
+     * Number of notes of the patient.
+     */
+    private long noteCount;
+
+    /**
+     * Creation date of the most recent note of the patient, taken from its ObjectId.
+     * Null if the patient has no note.
+     */
+    private Instant lastNoteDate;
+
+    /**
+     * Total number of occurrences of trigger terms in the notes of the patient.
+     */
+    private long triggerTermOccurrences;
+
+    /**
+     * Sum, over the notes of the patient, of the number of distinct trigger terms present in each note.
+     * This is the count used by the *mrisk* microservice to determine the risk level.
+     */
+    private long triggerTermMatches;
+
+    /**
+     * Default constructor for the NoteSummary class.
+     */
+    public NoteSummary() {
+    }
+
+    /**
+     * Parameterized constructor for the NoteSummary class.
+     *
+     * @param patId                  The patient identifier corresponding to the SQL database.
+     * @param noteCount              The number of notes of the patient.
+     * @param lastNoteDate           The creation date of the most recent note.
+     * @param triggerTermOccurrences The total number of occurrences of trigger terms.
+     * @param triggerTermMatches     The sum of the number of distinct trigger terms present in each note.
+     */
+    public NoteSummary(Long patId, long noteCount, Instant lastNoteDate, long triggerTermOccurrences, long triggerTermMatches) {
+        this.patId = patId;
+        this.noteCount = noteCount;
+        this.lastNoteDate = lastNoteDate;
+        this.triggerTermOccurrences = triggerTermOccurrences;
+        this.triggerTermMatches = triggerTermMatches;
+    }
+
+    /**
+     * Creates the summary of a patient without any note.
+     *
+     * @param patId The patient identifier corresponding to the SQL database.
+     * @return A summary with no note and no trigger term.
+     */
+    public static NoteSummary empty(Long patId) {
+        return new NoteSummary(patId, 0, null, 0, 0);
+    }
+
+    /**
+     * Gets the patient identifier corresponding to the SQL database.
+     *
+     * @return The patient identifier.
+     */
+    public Long getPatId() {
+        return patId;
+    }
+
+    /**
+     * Sets the patient identifier corresponding to the SQL database.
+     *
+     * @param patId The patient identifier to set.
+     */
+    public void setPatId(Long patId) {
+        this.patId = patId;
+    }
+
+    /**
+     * Gets the number of notes of the patient.
+     *
+     * @return The number of notes.
+     */
+    public long getNoteCount() {
+        return noteCount;
+    }
+
+    /**
+     * Sets the number of notes of the patient.
+     *
+     * @param noteCount The number of notes to set.
+     */
+    public void setNoteCount(long noteCount) {
+        this.noteCount = noteCount;
+    }
+
+    /**
+     * Gets the creation date of the most recent note of the patient.
+     *
+     * @return The creation date, or null if the patient has no note.
+     */
+    public Instant getLastNoteDate() {
+        return lastNoteDate;
+    }
+
+    /**
+     * Sets the creation date of the most recent note of the patient.
+     *
+     * @param lastNoteDate The creation date to set.
+     */
+    public void setLastNoteDate(Instant lastNoteDate) {
+        this.lastNoteDate = lastNoteDate;
+    }
+
+    /**
+     * Gets the total number of occurrences of trigger terms in the notes of the patient.
+     *
+     * @return The total number of occurrences.
+     */
+    public long getTriggerTermOccurrences() {
+        return triggerTermOccurrences;
+    }
+
+    /**
+     * Sets the total number of occurrences of trigger terms in the notes of the patient.
+     *
+     * @param triggerTermOccurrences The total number of occurrences to set.
+     */
+    public void setTriggerTermOccurrences(long triggerTermOccurrences) {
+        this.triggerTermOccurrences = triggerTermOccurrences;
+    }
+
+    /**
+     * Gets the sum of the number of distinct trigger terms present in each note of the patient.
+     *
+     * @return The sum of the number of distinct trigger terms.
+     */
+    public long getTriggerTermMatches() {
+        return triggerTermMatches;
+    }
+
+    /**
+     * Sets the sum of the number of distinct trigger terms present in each note of the patient.
+     *
+     * @param triggerTermMatches The sum of the number of distinct trigger terms to set.
+     */
+    public void setTriggerTermMatches(long triggerTermMatches) {
+        this.triggerTermMatches = triggerTermMatches;
+    }
+}
@@ -0,0 +1,70 @@
+package com.microdiab.mnotes.model;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+
+/**
+ * Compresses and decompresses the content of the notes with Deflate (zlib format),
+ * as stored in the {@code compressedNote} field of {@link Note}.
+ */
+public final class NoteTextCodec {
+
+    private static final int BUFFER_SIZE = 8192;
+
+    private NoteTextCodec() {
+    }
+
+    /**
+     * Compresses a text, encoded in UTF-8.
+     *
+     * @param text The text to compress.
+     * @return The compressed bytes.
+     */
+    public static byte[] deflate(String text) {
+        Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+        try {
+            deflater.setInput(text.getBytes(StandardCharsets.UTF_8));
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[BUFFER_SIZE];
+            while (!deflater.finished()) {
+                out.write(buffer, 0, deflater.deflate(buffer));
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    /**
+     * Decompresses bytes produced by {@link #deflate(String)}.
+     *
+     * @param compressed The compressed bytes.
+     * @return The decompressed text.
+     * @throws IllegalStateException If the bytes are not a valid Deflate stream.
+     */
+    public static String inflate(byte[] compressed) {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(compressed);
+            ByteArrayOutputStream out = new ByteArrayOutputStream(compressed.length * 4);
+            byte[] buffer = new byte[BUFFER_SIZE];
+            while (!inflater.finished()) {
+                int length = inflater.inflate(buffer);
+                if (length == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new IllegalStateException("Truncated compressed note");
+                }
+                out.write(buffer, 0, length);
+            }
+            return out.toString(StandardCharsets.UTF_8);
+        } catch (DataFormatException e) {
+            throw new IllegalStateException("Invalid compressed note", e);
+        } finally {
+            inflater.end();
+        }
+    }
+}
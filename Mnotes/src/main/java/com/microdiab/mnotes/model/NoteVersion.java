@@ -0,0 +1,122 @@
+package com.microdiab.mnotes.model;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.Instant;
+
+
+/**
+ * Represents the version of the notes of a patient, stored in the MongoDB database.
+ * This class is mapped to the "collection_note_versions" collection in MongoDB.
+ *
+ * There is one document per patient, identified by the patient identifier ({@code patId}).
+ * The version is a counter incremented each time a note of the patient is saved,
+ * which allows the notes of a patient to be revalidated (ETag) without reading them.
+ * The ETag also carries the creation time of the document, so that a counter restarted from zero,
+ * e.g. after the collection has been dropped or restored, never matches an ETag given out before.
+ *
+ * @see org.springframework.data.mongodb.core.mapping.Document
+ */
+@Document(collection = "collection_note_versions")
+public class NoteVersion {
+
+    /**
+     * Patient identifier that corresponds to the patient's record in the SQL database.
+     * Used as the document identifier.
+     */
+    @Id
+    private Long patId;
+
+    /**
+     * Number of times the notes of the patient have been changed.
+     */
+    private long version;
+
+    /**
+     * Creation time of the document, set once when the first version of the patient is stored.
+     * Null for a patient whose notes were never changed, or for a document stored by an earlier version.
+     */
+    private Instant createdAt;
+
+    /**
+     * Default constructor for the NoteVersion class.
+     */
+    public NoteVersion() {
+    }
+
+    /**
+     * Parameterized constructor for the NoteVersion class.
+     *
+     * @param patId   The patient identifier corresponding to the SQL database.
+     * @param version The version of the notes of the patient.
+     */
+    public NoteVersion(Long patId, long version) {
+        this.patId = patId;
+        this.version = version;
+    }
+
+    /**
+     * Gets the patient identifier corresponding to the SQL database.
+     *
+     * @return The patient identifier.
+     */
+    public Long getPatId() {
+        return patId;
+    }
+
+    /**
+     * Sets the patient identifier corresponding to the SQL database.
+     *
+     * @param patId The patient identifier to set.
+     */
+    public void setPatId(Long patId) {
+        this.patId = patId;
+    }
+
+    /**
+     * Gets the version of the notes of the patient.
+     *
+     * @return The version.
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Sets the version of the notes of the patient.
+     *
+     * @param version The version to set.
+     */
+    public void setVersion(long version) {
+        this.version = version;
+    }
+
+    /**
+     * Gets the creation time of the document.
+     *
+     * @return The creation time, or null if it is unknown.
+     */
+    public Instant getCreatedAt() {
+        return createdAt;
+    }
+
+    /**
+     * Sets the creation time of the document.
+     *
+     * @param createdAt The creation time to set.
+     */
+    public void setCreatedAt(Instant createdAt) {
+        this.createdAt = createdAt;
+    }
+
+    /**
+     * Gets the value of the ETag of the notes of the patient, {@code <epoch>-<version>}, where the epoch
+     * is the creation time of the document in milliseconds ({@code 0} if it is unknown).
+     *
+     * @return The value of the ETag, without quotes.
+     */
+    public String toETagValue() {
+        return (createdAt != null ? createdAt.toEpochMilli() : 0L) + "-" + version;
+    }
+}
@@ -2,6 +2,7 @@ package com.microdiab.mnotes.repository;
 
 import com.microdiab.mnotes.model.Note;
 import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.data.mongodb.repository.Query;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
@@ -25,10 +26,12 @@ public interface NoteRepository extends MongoRepository<Note, String> {
     /**
      * Finds all notes associated with a specific patient identifier ({@code patId}).
      * This method is used to retrieve all notes for a patient from the MongoDB collection.
+     * The search terms of compressed notes, only used by the full-text search, are not read.
      *
      * @param patId The patient identifier from the SQL database.
      * @return A list of {@link Note} entities associated with the given {@code patId}.
      */
+    @Query(value = "{ 'patId': ?0 }", fields = "{ 'searchTerms': 0 }")
     List<Note> findByPatId(Long patId);
 
 }
@@ -0,0 +1,35 @@
+package com.microdiab.mnotes.repository;
+
+import com.microdiab.mnotes.model.Note;
+import org.springframework.data.mongodb.repository.Query;
+import org.springframework.data.mongodb.repository.ReactiveMongoRepository;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+
+
+/**
+ * Reactive repository interface for reading {@link Note} entities in MongoDB.
+ * This interface extends {@link org.springframework.data.mongodb.repository.ReactiveMongoRepository}
+ * and uses the non-blocking MongoDB driver: results are emitted as the driver yields them,
+ * without holding a thread while waiting for the database.
+ *
+ * It is only instantiated with the {@code reactive} profile, which enables the reactive
+ * MongoDB auto-configuration excluded by default.
+ *
+ * @see org.springframework.data.mongodb.repository.ReactiveMongoRepository
+ * @see com.microdiab.mnotes.repository.NoteRepository
+ */
+@Repository
+public interface ReactiveNoteRepository extends ReactiveMongoRepository<Note, String> {
+
+    /**
+     * Finds all notes associated with a specific patient identifier ({@code patId}).
+     * The search terms of compressed notes, only used by the full-text search, are not read.
+     *
+     * @param patId The patient identifier from the SQL database.
+     * @return A {@link Flux} emitting the {@link Note} entities associated with the given {@code patId}.
+     */
+    @Query(value = "{ 'patId': ?0 }", fields = "{ 'searchTerms': 0 }")
+    Flux<Note> findByPatId(Long patId);
+
+}
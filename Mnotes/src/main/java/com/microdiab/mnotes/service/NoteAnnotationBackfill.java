@@ -0,0 +1,103 @@
+package com.microdiab.mnotes.service;
+
+import com.microdiab.mnotes.model.Note;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Profile;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+
+/**
+ * Background job annotating the notes stored before the write-time annotation existed,
+ * or inserted without going through {@link NoteService#saveNote(Note)}.
+ *
+ * <p>The job looks for notes without trigger term counts, annotates them with the
+ * {@link TriggerTermAnnotator} and writes the annotations back with unordered bulk updates,
+ * one batch at a time, until no note is left. It runs periodically, so a run finding
+ * nothing to do costs a single query.</p>
+ *
+ * <p>The annotations are part of the notes returned by the API, so the versions of the patients
+ * of each batch are incremented and their cached notes evicted once the batch is written
+ * (see {@link NoteVersionTracker}).</p>
+ *
+ * <p>It can be disabled with {@code mnotes.annotation.backfill.enabled=false}
+ * and is not active with the {@code test} profile.</p>
+ */
+@Profile("!test")
+@Component
+@ConditionalOnProperty(prefix = "mnotes.annotation.backfill", name = "enabled", havingValue = "true", matchIfMissing = true)
+public class NoteAnnotationBackfill {
+
+    private static final Logger log = LoggerFactory.getLogger(NoteAnnotationBackfill.class);
+
+    private final MongoTemplate mongoTemplate;
+
+    private final TriggerTermAnnotator triggerTermAnnotator;
+
+    private final NoteVersionTracker noteVersionTracker;
+
+    /** Maximum number of notes read and updated per batch. */
+    private final int batchSize;
+
+
+    /**
+     * Constructs a new {@code NoteAnnotationBackfill} with the specified dependencies.
+     *
+     * @param mongoTemplate        The template used to read and update the notes.
+     * @param triggerTermAnnotator The component computing the annotations of a note.
+     * @param noteVersionTracker   The component marking the notes of the annotated patients as changed.
+     * @param batchSize            The maximum number of notes processed per batch.
+     */
+    public NoteAnnotationBackfill(MongoTemplate mongoTemplate,
+                                  TriggerTermAnnotator triggerTermAnnotator,
+                                  NoteVersionTracker noteVersionTracker,
+                                  @Value("${mnotes.annotation.backfill.batch-size:500}") int batchSize) {
+        this.mongoTemplate = mongoTemplate;
+        this.triggerTermAnnotator = triggerTermAnnotator;
+        this.noteVersionTracker = noteVersionTracker;
+        this.batchSize = batchSize;
+    }
+
+
+    /**
+     * Annotates all the notes that have no trigger term counts yet.
+     *
+     * @return The number of notes annotated during this run.
+     */
+    @Scheduled(initialDelayString = "${mnotes.annotation.backfill.initial-delay:PT30S}",
+               fixedDelayString = "${mnotes.annotation.backfill.fixed-delay:PT1H}")
+    public long backfill() {
+        Query query = Query.query(Criteria.where("triggerTermCounts").exists(false)).limit(batchSize);
+
+        long annotated = 0;
+        List<Note> batch = mongoTemplate.find(query, Note.class);
+        while (!batch.isEmpty()) {
+            BulkOperations bulkOperations = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Note.class);
+            for (Note note : batch) {
+                triggerTermAnnotator.annotate(note);
+                bulkOperations.updateOne(
+                        Query.query(Criteria.where("_id").is(note.getId())),
+                        new Update().set("triggerTermCounts", note.getTriggerTermCounts()));
+            }
+            bulkOperations.execute();
+            noteVersionTracker.markChanged(batch);
+            annotated += batch.size();
+            batch = mongoTemplate.find(query, Note.class);
+        }
+
+        if (annotated > 0) {
+            log.info("Trigger term annotation backfill: {} notes annotated.", annotated);
+        }
+        return annotated;
+    }
+}
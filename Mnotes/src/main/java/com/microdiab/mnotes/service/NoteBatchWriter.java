@@ -0,0 +1,333 @@
+package com.microdiab.mnotes.service;
+
+import com.microdiab.mnotes.model.Note;
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.bulk.BulkWriteError;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+
+/**
+ * Group-commit writer inserting new notes in batches, used by {@link NoteService} when
+ * {@code mnotes.write.batching.enabled=true}.
+ *
+ * <p>Notes to insert are put in a bounded in-memory queue. A single writer thread takes them
+ * from the queue and inserts them with one {@code insertMany} per batch, as soon as the batch
+ * reaches {@code max-batch-size} notes or the first note of the batch has waited {@code max-delay}.
+ * The caller of {@link #insert(Note)} waits until the batch holding its note is acknowledged by
+ * MongoDB, so a note is never reported as saved before it is written. If the queue is full,
+ * the note is inserted directly by the caller. With the {@code bucket} storage layout, the notes of a
+ * batch are appended to the buckets of their patients with a single ordered bulk write instead
+ * (see {@link NoteBucketStore#insertAll(List)}).</p>
+ *
+ * <p>The versions of the notes of the patients of a batch are incremented with a single bulk write,
+ * instead of one update per note, and their cached notes are evicted (see {@link NoteVersionTracker}).
+ * The {@code insertMany} is ordered: if a note of a batch cannot be inserted, the notes before it are
+ * written and reported as saved to their callers, their versions being incremented as well, while the
+ * callers of the failed note and of the notes after it receive the error. A failure to increment the versions
+ * is retried once then logged, rather than reported to callers whose notes are saved, and whose retries would
+ * insert them twice.</p>
+ *
+ * <p>The depth of the queue, the size of the batches and the latency of the flushes are exposed
+ * as metrics ({@code mnotes.notes.write.*}). Pending notes are flushed when the application stops.</p>
+ */
+@Component
+public class NoteBatchWriter {
+
+    private static final Logger log = LoggerFactory.getLogger(NoteBatchWriter.class);
+
+    private final MongoTemplate mongoTemplate;
+
+    private final NoteVersionTracker noteVersionTracker;
+
+    private final NoteBucketStore noteBucketStore;
+
+    private final boolean enabled;
+
+    private final boolean bucketLayout;
+
+    /** Maximum number of notes inserted per batch. */
+    private final int maxBatchSize;
+
+    /** Maximum time the first note of a batch waits for other notes before the batch is flushed. */
+    private final Duration maxDelay;
+
+    /** Maximum time a caller waits for the acknowledgment of its note. */
+    private final Duration ackTimeout;
+
+    private final BlockingQueue<PendingNote> queue;
+
+    private final DistributionSummary batchSize;
+
+    private final Timer flushLatency;
+
+    private volatile boolean running;
+
+    private Thread writerThread;
+
+
+    /**
+     * Constructs a new {@code NoteBatchWriter} and registers its metrics.
+     *
+     * @param mongoTemplate      The template used to insert the notes.
+     * @param noteVersionTracker The component marking the notes of the patients of a batch as changed.
+     * @param noteBucketStore    The store of the buckets, used with the {@code bucket} storage layout.
+     * @param meterRegistry      The registry of the write metrics.
+     * @param enabled            Whether new notes are inserted in batches.
+     * @param maxBatchSize       The maximum number of notes inserted per batch.
+     * @param maxDelay           The maximum time the first note of a batch waits before the batch is flushed.
+     * @param queueCapacity      The maximum number of notes waiting to be inserted.
+     * @param ackTimeout         The maximum time a caller waits for the acknowledgment of its note.
+     * @param storageLayout      The storage layout of the notes ({@code document} or {@code bucket}).
+     */
+    public NoteBatchWriter(MongoTemplate mongoTemplate,
+                           NoteVersionTracker noteVersionTracker,
+                           NoteBucketStore noteBucketStore,
+                           MeterRegistry meterRegistry,
+                           @Value("${mnotes.write.batching.enabled:false}") boolean enabled,
+                           @Value("${mnotes.write.batching.max-batch-size:100}") int maxBatchSize,
+                           @Value("${mnotes.write.batching.max-delay:5ms}") Duration maxDelay,
+                           @Value("${mnotes.write.batching.queue-capacity:10000}") int queueCapacity,
+                           @Value("${mnotes.write.batching.ack-timeout:10s}") Duration ackTimeout,
+                           @Value("${mnotes.storage.layout:document}") String storageLayout) {
+        this.mongoTemplate = mongoTemplate;
+        this.noteVersionTracker = noteVersionTracker;
+        this.noteBucketStore = noteBucketStore;
+        this.enabled = enabled;
+        this.bucketLayout = "bucket".equalsIgnoreCase(storageLayout);
+        this.maxBatchSize = maxBatchSize;
+        this.maxDelay = maxDelay;
+        this.ackTimeout = ackTimeout;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+
+        Gauge.builder("mnotes.notes.write.queue.depth", queue, BlockingQueue::size)
+                .description("Number of notes waiting to be inserted")
+                .register(meterRegistry);
+        this.batchSize = DistributionSummary.builder("mnotes.notes.write.batch.size")
+                .description("Number of notes inserted per batch")
+                .register(meterRegistry);
+        this.flushLatency = Timer.builder("mnotes.notes.write.flush")
+                .description("Duration of the insertion of a batch of notes")
+                .register(meterRegistry);
+    }
+
+
+    /**
+     * Indicates whether new notes are inserted in batches.
+     *
+     * @return {@code true} if batching is enabled.
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+
+    /**
+     * Starts the writer thread, if batching is enabled.
+     */
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        running = true;
+        writerThread = new Thread(this::writeLoop, "note-batch-writer");
+        writerThread.setDaemon(true);
+        writerThread.start();
+        log.info("Note batch writer started (max batch size {}, max delay {})", maxBatchSize, maxDelay);
+    }
+
+
+    /**
+     * Stops the writer thread once the pending notes have been flushed.
+     * Notes still in the queue when the writer thread has ended are flushed by the calling thread.
+     *
+     * @throws InterruptedException If interrupted while waiting for the writer thread.
+     */
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        if (writerThread == null) {
+            return;
+        }
+        running = false;
+        writerThread.join(ackTimeout.toMillis());
+        List<PendingNote> remaining = new ArrayList<>();
+        queue.drainTo(remaining);
+        if (!remaining.isEmpty()) {
+            flush(remaining);
+        }
+    }
+
+
+    /**
+     * Inserts a new note and waits until it is acknowledged by MongoDB.
+     * The note is inserted together with the other notes of its batch,
+     * and the version of the notes of its patient is incremented.
+     *
+     * @param note The note to insert, without identifier.
+     * @return The inserted note, including its generated identifier.
+     * @throws IllegalStateException If the note was not acknowledged within the acknowledgment timeout
+     *                               (the note may still be inserted with its batch afterwards).
+     */
+    public Note insert(Note note) {
+        PendingNote pendingNote = new PendingNote(note, new CompletableFuture<>());
+        if (!running || !queue.offer(pendingNote)) {
+            flush(List.of(pendingNote));
+        } else if (!running && queue.remove(pendingNote)) {
+            // The writer was stopped while the note was queued: its thread may have already ended
+            flush(List.of(pendingNote));
+        }
+
+        try {
+            return pendingNote.result().get(ackTimeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new IllegalStateException("Failed to insert note", e.getCause());
+        } catch (TimeoutException e) {
+            throw new IllegalStateException("Note not acknowledged within " + ackTimeout, e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for the note to be inserted", e);
+        }
+    }
+
+
+    /**
+     * Takes the notes from the queue and flushes them in batches until the writer is stopped
+     * and the queue is empty.
+     */
+    private void writeLoop() {
+        while (running || !queue.isEmpty()) {
+            try {
+                PendingNote first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                List<PendingNote> batch = new ArrayList<>(maxBatchSize);
+                batch.add(first);
+                long deadline = System.nanoTime() + maxDelay.toNanos();
+                while (batch.size() < maxBatchSize) {
+                    PendingNote next = queue.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+                flush(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+
+    /**
+     * Inserts a batch of notes with a single ordered {@code insertMany}, or bulk write of the buckets, increments the versions of the
+     * notes of the patients concerned with a single bulk write, and completes their callers, even if the versions cannot be incremented.
+     * If the insertion fails, the notes written before the failed one are still marked as changed
+     * and reported as saved, and the other callers receive the error.
+     *
+     * @param batch The notes to insert.
+     */
+    void flush(List<PendingNote> batch) {
+        List<Note> notes = batch.stream().map(PendingNote::note).toList();
+        int written = 0;
+        try {
+            written = flushLatency.recordCallable(() -> {
+                if (bucketLayout) {
+                    noteBucketStore.insertAll(notes);
+                } else {
+                    mongoTemplate.insert(notes, Note.class);
+                }
+                return notes.size();
+            });
+        } catch (Exception e) {
+            written = writtenBeforeFailure(e);
+            log.error("Failed to insert a batch of {} note(s), {} written before the failure", batch.size(), written, e);
+            batch.subList(written, batch.size()).forEach(pendingNote -> pendingNote.result().completeExceptionally(e));
+        }
+        if (written == 0) {
+            return;
+        }
+
+        // The versions are incremented first, so that a caller reads its note once completed,
+        // but the written notes are reported as saved even if it fails: failing their callers would make them retry
+        markChanged(notes.subList(0, written));
+        batchSize.record(written);
+        batch.subList(0, written).forEach(pendingNote -> pendingNote.result().complete(pendingNote.note()));
+    }
+
+
+    /**
+     * Increments the versions of the notes of the patients of the written notes, retrying once if it fails.
+     * If the retry fails as well, the failure is logged: the cached notes of the patients are evicted anyway
+     * (see {@link NoteVersionTracker#markChanged(Map)}), but their ETags are not renewed until their next change.
+     *
+     * @param writtenNotes The written notes.
+     */
+    private void markChanged(List<Note> writtenNotes) {
+        try {
+            noteVersionTracker.markChanged(writtenNotes);
+        } catch (RuntimeException e) {
+            log.warn("Failed to increment the versions of {} inserted note(s), retrying", writtenNotes.size(), e);
+            try {
+                noteVersionTracker.markChanged(writtenNotes);
+            } catch (RuntimeException retryFailure) {
+                log.error("Failed to increment the versions of {} inserted note(s)", writtenNotes.size(), retryFailure);
+            }
+        }
+    }
+
+
+    /**
+     * Finds how many notes of a batch were written before the failure of its ordered {@code insertMany},
+     * from the index of the first write error reported by MongoDB.
+     *
+     * @param failure The failure of the insertion.
+     * @return The number of notes written, {@code 0} if it cannot be determined.
+     */
+    static int writtenBeforeFailure(Throwable failure) {
+        for (Throwable cause = failure; cause != null; cause = cause.getCause()) {
+            if (cause instanceof MongoBulkWriteException bulkWriteException) {
+                return bulkWriteException.getWriteErrors().stream()
+                        .mapToInt(BulkWriteError::getIndex)
+                        .min()
+                        .orElse(0);
+            }
+        }
+        return 0;
+    }
+
+
+    /**
+     * A note waiting to be inserted, with the future completed once its batch is acknowledged.
+     *
+     * @param note   The note to insert.
+     * @param result The future completed with the inserted note.
+     */
+    record PendingNote(Note note, CompletableFuture<Note> result) {
+    }
+}
@@ -0,0 +1,147 @@
+package com.microdiab.mnotes.service;
+
+import com.microdiab.mnotes.model.Note;
+import com.microdiab.mnotes.model.NoteBucket;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Profile;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+
+/**
+ * Migration tool converting the notes stored one per document ("collection_notes")
+ * into per-patient, per-month {@link NoteBucket} documents ("collection_note_buckets").
+ *
+ * <p>The notes are streamed in {@code patId} order, using the {@code patId} index, and the notes
+ * of each patient are packed into buckets by the {@link NoteBucketStore}. For a patient that already
+ * has buckets, only the notes whose identifier is not found in its buckets are added to them, so the
+ * migration can be run again after an interruption or to pick up notes created before switching
+ * the storage layout, without duplicating notes. The source collection is left untouched.</p>
+ *
+ * <p>It runs once at startup when {@code mnotes.storage.bucket.migration.enabled=true}
+ * and is not active with the {@code test} profile.</p>
+ */
+@Profile("!test")
+@Component
+@ConditionalOnProperty(prefix = "mnotes.storage.bucket.migration", name = "enabled", havingValue = "true")
+public class NoteBucketMigration implements ApplicationRunner {
+
+    private static final Logger log = LoggerFactory.getLogger(NoteBucketMigration.class);
+
+    private final MongoTemplate mongoTemplate;
+
+    private final NoteBucketStore noteBucketStore;
+
+    private final NoteService noteService;
+
+
+    /**
+     * Constructs a new {@code NoteBucketMigration} with the specified dependencies.
+     *
+     * @param mongoTemplate   The template used to read the notes and write the buckets.
+     * @param noteBucketStore The store packing the notes of a patient into buckets.
+     * @param noteService     The service used to mark the notes of the migrated patients as changed.
+     */
+    public NoteBucketMigration(MongoTemplate mongoTemplate, NoteBucketStore noteBucketStore, NoteService noteService) {
+        this.mongoTemplate = mongoTemplate;
+        this.noteBucketStore = noteBucketStore;
+        this.noteService = noteService;
+    }
+
+
+    /**
+     * Runs the migration at application startup.
+     *
+     * @param args The application arguments (not used).
+     */
+    @Override
+    public void run(ApplicationArguments args) {
+        migrate();
+    }
+
+
+    /**
+     * Converts the notes that are not in buckets yet into buckets.
+     *
+     * @return The number of notes migrated.
+     */
+    public long migrate() {
+        Set<Long> patIdsWithBuckets = new HashSet<>(
+                mongoTemplate.findDistinct(new Query(), "patId", NoteBucket.class, Long.class));
+
+        long migratedNotes = 0;
+        long migratedPatients = 0;
+        Query query = new Query().with(Sort.by("patId"));
+        try (Stream<Note> notes = mongoTemplate.stream(query, Note.class)) {
+            Iterator<Note> iterator = notes.iterator();
+            Long currentPatId = null;
+            List<Note> patientNotes = new ArrayList<>();
+            while (iterator.hasNext()) {
+                Note note = iterator.next();
+                if (!note.getPatId().equals(currentPatId)) {
+                    long migrated = migratePatient(currentPatId, patientNotes, patIdsWithBuckets);
+                    migratedNotes += migrated;
+                    migratedPatients += migrated > 0 ? 1 : 0;
+                    currentPatId = note.getPatId();
+                    patientNotes = new ArrayList<>();
+                }
+                patientNotes.add(note);
+            }
+            long migrated = migratePatient(currentPatId, patientNotes, patIdsWithBuckets);
+            migratedNotes += migrated;
+            migratedPatients += migrated > 0 ? 1 : 0;
+        }
+
+        log.info("Bucket migration: {} note(s) of {} patient(s) migrated, {} patient(s) already had buckets",
+                migratedNotes, migratedPatients, patIdsWithBuckets.size());
+        return migratedNotes;
+    }
+
+
+    /**
+     * Writes the notes of one patient into buckets. If the patient already has buckets,
+     * only its notes missing from them are added, one by one, to the bucket of their month.
+     *
+     * @param patId             The patient identifier, null before the first patient.
+     * @param notes             The notes of the patient.
+     * @param patIdsWithBuckets The patients that already have buckets.
+     * @return The number of notes migrated.
+     */
+    private long migratePatient(Long patId, List<Note> notes, Set<Long> patIdsWithBuckets) {
+        if (patId == null || notes.isEmpty()) {
+            return 0;
+        }
+        if (!patIdsWithBuckets.contains(patId)) {
+            mongoTemplate.insert(noteBucketStore.toBuckets(patId, notes), NoteBucket.class);
+            noteService.markNotesChanged(patId);
+            return notes.size();
+        }
+
+        Set<String> bucketedNoteIds = noteBucketStore.findByPatId(patId, List.of("id")).stream()
+                .map(Note::getId)
+                .collect(Collectors.toSet());
+        List<Note> missingNotes = notes.stream()
+                .filter(note -> !bucketedNoteIds.contains(note.getId()))
+                .toList();
+        if (missingNotes.isEmpty()) {
+            return 0;
+        }
+        missingNotes.forEach(noteBucketStore::save);
+        noteService.markNotesChanged(patId);
+        return missingNotes.size();
+    }
+}
@@ -0,0 +1,312 @@
+package com.microdiab.mnotes.service;
+
+import com.microdiab.mnotes.model.Note;
+import com.microdiab.mnotes.model.NoteBucket;
+import com.mongodb.ReadPreference;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Component;
+
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.stream.Collectors;
+
+
+/**
+ * Stores the notes in per-patient, per-month {@link NoteBucket} documents,
+ * used by {@link NoteService} with the {@code bucket} storage layout.
+ *
+ * <p>A note is appended to the bucket of its patient and month that still has room,
+ * with a single upsert: when all the buckets of the month are full, the upsert creates a new one.
+ * The notes of a patient are read back from the buckets in creation order, so callers see
+ * the same list as with one document per note.</p>
+ *
+ * <p>Notes can also be written in bulk, by the {@link NoteImporter} and the {@link NoteBatchWriter},
+ * with a single ordered bulk write of these upserts per batch.</p>
+ *
+ * <p>The maximum number of notes per bucket is set by {@code mnotes.storage.bucket.max-notes}.</p>
+ */
+@Component
+public class NoteBucketStore {
+
+    private final MongoTemplate mongoTemplate;
+
+    /** Maximum number of notes per bucket. */
+    private final int maxNotesPerBucket;
+
+
+    /**
+     * Constructs a new {@code NoteBucketStore} with the specified dependencies.
+     *
+     * @param mongoTemplate     The template used to read and write the buckets.
+     * @param maxNotesPerBucket The maximum number of notes per bucket.
+     */
+    public NoteBucketStore(MongoTemplate mongoTemplate,
+                           @Value("${mnotes.storage.bucket.max-notes:200}") int maxNotesPerBucket) {
+        this.mongoTemplate = mongoTemplate;
+        this.maxNotesPerBucket = maxNotesPerBucket;
+    }
+
+
+    /**
+     * Saves a note in the buckets of its patient.
+     * A new note gets an ObjectId-based identifier, whose timestamp determines its bucket period;
+     * an existing note is replaced in place in its bucket.
+     *
+     * @param note The note to save.
+     * @return The saved note, including its identifier.
+     */
+    public Note save(Note note) {
+        if (note.getId() != null) {
+            long replaced = mongoTemplate.updateFirst(
+                    Query.query(Criteria.where("patId").is(note.getPatId()).and("notes.id").is(note.getId())),
+                    new Update().set("notes.$", note),
+                    NoteBucket.class).getMatchedCount();
+            if (replaced > 0) {
+                return note;
+            }
+        } else {
+            note.setId(new ObjectId().toHexString());
+        }
+
+        mongoTemplate.upsert(appendQuery(note), appendUpdate(note), NoteBucket.class);
+        return note;
+    }
+
+
+    /**
+     * Inserts new notes in the buckets of their patients with a single ordered bulk write,
+     * each note being appended as by {@link #save(Note)}. The notes get ObjectId-based identifiers.
+     * If a write fails, the notes before it are written and the notes after it are not.
+     *
+     * @param notes The notes to insert, without identifiers.
+     */
+    public void insertAll(List<Note> notes) {
+        if (notes.isEmpty()) {
+            return;
+        }
+        BulkOperations bulkOperations = mongoTemplate.bulkOps(BulkOperations.BulkMode.ORDERED, NoteBucket.class);
+        for (Note note : notes) {
+            note.setId(new ObjectId().toHexString());
+            bulkOperations.upsert(appendQuery(note), appendUpdate(note));
+        }
+        bulkOperations.execute();
+    }
+
+
+    /**
+     * Saves several notes with a single ordered bulk write, each note being saved as by {@link #save(Note)}.
+     * The buckets of the notes with an identifier are looked up first, with a single query: such a note is
+     * replaced in place in its bucket, moved to the buckets of its new patient if its patient changed,
+     * or appended if it is not found. The notes without identifier get ObjectId-based identifiers.
+     *
+     * @param notes The notes to save.
+     */
+    public void saveAll(List<Note> notes) {
+        saveAll(notes, findPatIdsByNoteId(notes.stream()
+                .map(Note::getId)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toSet())));
+    }
+
+
+    /**
+     * Saves several notes as {@link #saveAll(List)} does, the buckets of the notes with an identifier
+     * having already been looked up with {@link #findPatIdsByNoteId(Collection)}.
+     *
+     * @param notes        The notes to save.
+     * @param storedPatIds The patient identifier of the buckets of each stored note, by note identifier.
+     */
+    public void saveAll(List<Note> notes, Map<String, Long> storedPatIds) {
+        if (notes.isEmpty()) {
+            return;
+        }
+
+        BulkOperations bulkOperations = mongoTemplate.bulkOps(BulkOperations.BulkMode.ORDERED, NoteBucket.class);
+        for (Note note : notes) {
+            Long storedPatId = note.getId() != null ? storedPatIds.get(note.getId()) : null;
+            if (note.getId() == null) {
+                note.setId(new ObjectId().toHexString());
+            } else if (note.getPatId().equals(storedPatId)) {
+                bulkOperations.updateOne(
+                        Query.query(Criteria.where("patId").is(storedPatId).and("notes.id").is(note.getId())),
+                        new Update().set("notes.$", note));
+                continue;
+            } else if (storedPatId != null) {
+                bulkOperations.updateOne(
+                        Query.query(Criteria.where("patId").is(storedPatId).and("notes.id").is(note.getId())),
+                        new Update().pull("notes", new Document("_id", storedId(note.getId()))).inc("count", -1));
+            }
+            bulkOperations.upsert(appendQuery(note), appendUpdate(note));
+        }
+        bulkOperations.execute();
+    }
+
+
+    /**
+     * Finds the patients whose buckets hold the given notes.
+     *
+     * @param noteIds The identifiers of the notes.
+     * @return The patient identifier of each note found, by note identifier.
+     */
+    public Map<String, Long> findPatIdsByNoteId(Collection<String> noteIds) {
+        Map<String, Long> patIds = new HashMap<>();
+        if (noteIds.isEmpty()) {
+            return patIds;
+        }
+        Query query = Query.query(Criteria.where("notes.id").in(noteIds));
+        query.fields().include("patId", "notes.id");
+        for (NoteBucket bucket : mongoTemplate.find(query, NoteBucket.class)) {
+            bucket.getNotes().stream()
+                    .map(Note::getId)
+                    .filter(noteIds::contains)
+                    .forEach(noteId -> patIds.put(noteId, bucket.getPatId()));
+        }
+        return patIds;
+    }
+
+
+    /**
+     * Selects the bucket of the patient and month of a note that still has room,
+     * the upsert of {@link #appendUpdate(Note)} creating a new one when all are full.
+     */
+    private Query appendQuery(Note note) {
+        return Query.query(Criteria.where("patId").is(note.getPatId())
+                .and("period").is(periodOf(note.getId()))
+                .and("count").lt(maxNotesPerBucket));
+    }
+
+
+    private static Update appendUpdate(Note note) {
+        return new Update().push("notes", note).inc("count", 1);
+    }
+
+
+    /**
+     * Converts a note identifier to its stored form: an ObjectId when it is one in hexadecimal form.
+     */
+    private static Object storedId(String noteId) {
+        return ObjectId.isValid(noteId) ? new ObjectId(noteId) : noteId;
+    }
+
+
+    /**
+     * Retrieves all the notes of a patient from its buckets, in creation order.
+     *
+     * @param patId The patient identifier from the SQL database.
+     * @return The notes of the patient, an empty list if the patient has no note.
+     */
+    public List<Note> findByPatId(Long patId) {
+        return readByPatId(patId, ReadPreference.primary());
+    }
+
+
+    /**
+     * Retrieves all the notes of a patient from its buckets, in creation order,
+     * from the replica set members selected by the given read preference.
+     * The search terms of compressed notes, only used by the full-text search, are not read.
+     *
+     * @param patId          The patient identifier from the SQL database.
+     * @param readPreference The read preference of the query (see {@link NoteReadRouting}).
+     * @return The notes of the patient, an empty list if the patient has no note.
+     */
+    public List<Note> readByPatId(Long patId, ReadPreference readPreference) {
+        Query query = Query.query(Criteria.where("patId").is(patId))
+                .with(Sort.by("period", "_id"))
+                .withReadPreference(readPreference);
+        query.fields().exclude("notes.searchTerms");
+        return mongoTemplate.find(query, NoteBucket.class).stream()
+                .flatMap(bucket -> bucket.getNotes().stream())
+                .toList();
+    }
+
+
+    /**
+     * Retrieves the notes of a patient from its buckets, in creation order,
+     * reading only the given fields of the notes.
+     *
+     * @param patId  The patient identifier from the SQL database.
+     * @param fields The stored fields of the notes to read (see {@link Note}).
+     * @return The partially read notes of the patient, an empty list if the patient has no note.
+     */
+    public List<Note> findByPatId(Long patId, Collection<String> fields) {
+        return readByPatId(patId, fields, ReadPreference.primary());
+    }
+
+
+    /**
+     * Retrieves the notes of a patient from its buckets, in creation order, reading only the given fields
+     * of the notes from the replica set members selected by the given read preference.
+     *
+     * @param patId          The patient identifier from the SQL database.
+     * @param fields         The stored fields of the notes to read (see {@link Note}).
+     * @param readPreference The read preference of the query (see {@link NoteReadRouting}).
+     * @return The partially read notes of the patient, an empty list if the patient has no note.
+     */
+    public List<Note> readByPatId(Long patId, Collection<String> fields, ReadPreference readPreference) {
+        Query query = Query.query(Criteria.where("patId").is(patId))
+                .with(Sort.by("period", "_id"))
+                .withReadPreference(readPreference);
+        fields.forEach(field -> query.fields().include("notes." + field));
+        return mongoTemplate.find(query, NoteBucket.class).stream()
+                .flatMap(bucket -> bucket.getNotes().stream())
+                .toList();
+    }
+
+
+    /**
+     * Packs notes of a single patient into buckets, sorted by creation date,
+     * as done by the migration from the one-document-per-note layout.
+     *
+     * @param patId The patient identifier from the SQL database.
+     * @param notes The notes of the patient, with their ObjectId-based identifiers.
+     * @return The buckets holding the notes, at most {@code max-notes} notes each.
+     */
+    public List<NoteBucket> toBuckets(Long patId, List<Note> notes) {
+        List<Note> sortedNotes = new ArrayList<>(notes);
+        sortedNotes.sort(Comparator.comparing(Note::getId));
+
+        List<NoteBucket> buckets = new ArrayList<>();
+        NoteBucket current = null;
+        for (Note note : sortedNotes) {
+            String period = periodOf(note.getId());
+            if (current == null || !current.getPeriod().equals(period) || current.getCount() >= maxNotesPerBucket) {
+                current = new NoteBucket(patId, period, new ArrayList<>());
+                buckets.add(current);
+            }
+            current.getNotes().add(note);
+            current.setCount(current.getNotes().size());
+        }
+        return buckets;
+    }
+
+
+    /**
+     * Computes the bucket period of a note from the timestamp of its ObjectId.
+     *
+     * Identifiers that are not ObjectIds fall into the current month.
+     *
+     * @param noteId The identifier of the note, an ObjectId in hexadecimal form.
+     * @return The month of creation of the note, formatted as {@code yyyy-MM} (UTC).
+     */
+    static String periodOf(String noteId) {
+        if (!ObjectId.isValid(noteId)) {
+            return YearMonth.now(ZoneOffset.UTC).toString();
+        }
+        return YearMonth.from(new ObjectId(noteId).getDate().toInstant().atZone(ZoneOffset.UTC)).toString();
+    }
+}
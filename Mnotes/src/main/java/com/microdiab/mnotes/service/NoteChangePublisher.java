@@ -0,0 +1,220 @@
+package com.microdiab.mnotes.service;
+
+import com.microdiab.mnotes.model.NoteChangeEvent;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.VirtualThreadTaskExecutor;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+
+/**
+ * Fans out the {@link NoteChangeEvent}s to the subscribers of {@code GET /notes/changes},
+ * as Server-Sent Events named {@code notes-changed}.
+ *
+ * <p>Each subscriber holds an {@link SseEmitter}, removed when the connection completes, times out
+ * or fails. A comment is sent periodically to every subscriber, so that idle connections are not
+ * closed by proxies. The number of subscribers, of published events and of subscribers dropped
+ * because they fell behind are exposed as metrics ({@code mnotes.notes.changes.*}).</p>
+ *
+ * <p>Events are produced by the {@link NoteChangeStreamListener}, when the MongoDB change stream
+ * is enabled ({@code mnotes.change-stream.enabled=true}). Publishing an event, like a heartbeat, only
+ * adds it to the bounded queue of each subscriber ({@code mnotes.changes.subscriber-queue-capacity}),
+ * so it never blocks the change stream nor the scheduler. Each queue is drained, in order, by a virtual
+ * thread, one at a time per subscriber: a client that stops reading only blocks its own thread. Once its queue is full, the subscriber is dropped and its connection
+ * completed, so that it reconnects and reloads the notes it is interested in.</p>
+ */
+@Component
+public class NoteChangePublisher {
+
+    static final String EVENT_NAME = "notes-changed";
+
+    private static final Logger log = LoggerFactory.getLogger(NoteChangePublisher.class);
+
+    private final List<Subscriber> subscribers = new CopyOnWriteArrayList<>();
+
+    /** Maximum duration of a subscription, after which the subscriber has to reconnect. */
+    private final Duration subscriptionTimeout;
+
+    /** Maximum number of events waiting to be sent to a subscriber. */
+    private final int queueCapacity;
+
+    private final Counter publishedEvents;
+
+    private final Counter droppedSubscribers;
+
+    /** Executor running the tasks sending the events to the subscribers. */
+    private final Executor sender;
+
+
+    /**
+     * A subscriber and the events waiting to be sent to it.
+     */
+    private static final class Subscriber {
+
+        private final SseEmitter emitter;
+
+        private final BlockingQueue<SseEmitter.SseEventBuilder> queue;
+
+        /** Whether a task of the sender is draining the queue. */
+        private final AtomicBoolean draining = new AtomicBoolean();
+
+        private volatile boolean closed;
+
+        private Subscriber(SseEmitter emitter, int queueCapacity) {
+            this.emitter = emitter;
+            this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        }
+    }
+
+
+    /**
+     * Constructs a new {@code NoteChangePublisher} sending the events on virtual threads, and registers its metrics.
+     *
+     * @param meterRegistry       The registry of the publication metrics.
+     * @param subscriptionTimeout The maximum duration of a subscription.
+     * @param queueCapacity       The maximum number of events waiting to be sent to a subscriber.
+     */
+    @Autowired
+    public NoteChangePublisher(MeterRegistry meterRegistry,
+                               @Value("${mnotes.changes.subscription-timeout:30m}") Duration subscriptionTimeout,
+                               @Value("${mnotes.changes.subscriber-queue-capacity:100}") int queueCapacity) {
+        this(meterRegistry, subscriptionTimeout, queueCapacity, new VirtualThreadTaskExecutor("note-changes-"));
+    }
+
+
+    /**
+     * Constructs a new {@code NoteChangePublisher} with the specified executor, and registers its metrics.
+     *
+     * @param meterRegistry       The registry of the publication metrics.
+     * @param subscriptionTimeout The maximum duration of a subscription.
+     * @param queueCapacity       The maximum number of events waiting to be sent to a subscriber.
+     * @param sender              The executor running the tasks sending the events to the subscribers.
+     */
+    NoteChangePublisher(MeterRegistry meterRegistry, Duration subscriptionTimeout, int queueCapacity, Executor sender) {
+        this.subscriptionTimeout = subscriptionTimeout;
+        this.queueCapacity = queueCapacity;
+        this.sender = sender;
+        Gauge.builder("mnotes.notes.changes.subscribers", subscribers, List::size)
+                .description("Number of subscribers to the notes change events")
+                .register(meterRegistry);
+        this.publishedEvents = Counter.builder("mnotes.notes.changes.published")
+                .description("Number of notes change events published")
+                .register(meterRegistry);
+        this.droppedSubscribers = Counter.builder("mnotes.notes.changes.dropped")
+                .description("Number of subscribers dropped because their queue of events was full")
+                .register(meterRegistry);
+    }
+
+
+    /**
+     * Registers a new subscriber to the notes change events.
+     *
+     * @return The emitter sending the events to the subscriber.
+     */
+    public SseEmitter subscribe() {
+        return register(new SseEmitter(subscriptionTimeout.toMillis()));
+    }
+
+
+    /**
+     * Registers the emitter of a new subscriber.
+     *
+     * @param emitter The emitter sending the events to the subscriber.
+     * @return The registered emitter.
+     */
+    SseEmitter register(SseEmitter emitter) {
+        Subscriber subscriber = new Subscriber(emitter, queueCapacity);
+        emitter.onCompletion(() -> remove(subscriber));
+        emitter.onTimeout(() -> remove(subscriber));
+        emitter.onError(error -> remove(subscriber));
+        subscribers.add(subscriber);
+        return emitter;
+    }
+
+
+    /**
+     * Sends an event to all the subscribers, asynchronously. Subscribers that cannot be reached,
+     * or that have too many events waiting, are removed.
+     *
+     * @param event The event to send.
+     */
+    public void publish(NoteChangeEvent event) {
+        publishedEvents.increment();
+        enqueue(SseEmitter.event().name(EVENT_NAME).data(event, MediaType.APPLICATION_JSON));
+    }
+
+
+    /**
+     * Sends a comment to all the subscribers, to keep idle connections open.
+     */
+    @Scheduled(fixedDelayString = "${mnotes.changes.heartbeat-interval:PT30S}")
+    public void heartbeat() {
+        enqueue(SseEmitter.event().comment("heartbeat"));
+    }
+
+
+    private void enqueue(SseEmitter.SseEventBuilder event) {
+        for (Subscriber subscriber : subscribers) {
+            if (subscriber.queue.offer(event)) {
+                if (subscriber.draining.compareAndSet(false, true)) {
+                    sender.execute(() -> drain(subscriber));
+                }
+            } else {
+                log.debug("Dropping notes change subscriber: {} events waiting", queueCapacity);
+                droppedSubscribers.increment();
+                remove(subscriber);
+                // Completing waits for a send in progress, which may be stalled
+                sender.execute(subscriber.emitter::complete);
+            }
+        }
+    }
+
+
+    /**
+     * Sends the events waiting in the queue of a subscriber, in order, until it is empty.
+     */
+    private void drain(Subscriber subscriber) {
+        do {
+            SseEmitter.SseEventBuilder event;
+            while (!subscriber.closed && (event = subscriber.queue.poll()) != null) {
+                send(subscriber, event);
+            }
+            subscriber.draining.set(false);
+        } while (!subscriber.closed && !subscriber.queue.isEmpty() && subscriber.draining.compareAndSet(false, true));
+    }
+
+
+    private void send(Subscriber subscriber, SseEmitter.SseEventBuilder event) {
+        try {
+            subscriber.emitter.send(event);
+        } catch (IOException | IllegalStateException e) {
+            log.debug("Removing unreachable notes change subscriber: {}", e.getMessage());
+            remove(subscriber);
+            subscriber.emitter.completeWithError(e);
+        }
+    }
+
+
+    private void remove(Subscriber subscriber) {
+        subscriber.closed = true;
+        subscriber.queue.clear();
+        subscribers.remove(subscriber);
+    }
+}
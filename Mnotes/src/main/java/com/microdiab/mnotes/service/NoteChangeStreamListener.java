@@ -0,0 +1,163 @@
+package com.microdiab.mnotes.service;
+
+import com.microdiab.mnotes.model.Note;
+import com.microdiab.mnotes.model.NoteBucket;
+import com.microdiab.mnotes.model.NoteChangeEvent;
+import com.mongodb.client.model.changestream.ChangeStreamDocument;
+import com.mongodb.client.model.changestream.FullDocument;
+import com.mongodb.client.model.changestream.FullDocumentBeforeChange;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Profile;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.messaging.ChangeStreamRequest;
+import org.springframework.data.mongodb.core.messaging.DefaultMessageListenerContainer;
+import org.springframework.data.mongodb.core.messaging.MessageListenerContainer;
+import org.springframework.data.mongodb.core.messaging.Subscription;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+
+/**
+ * Listens to the MongoDB change stream of the notes collections and republishes each change
+ * as a compact {@link NoteChangeEvent}.
+ *
+ * <p>The change stream is opened on "collection_notes" and "collection_note_buckets", filtered on
+ * the insert, update, replace and delete operations and projected on the patient identifier,
+ * so only a few bytes per change are transferred. For each change, the notes of the patient are
+ * first evicted from the local caches, so that this instance no longer serves them stale even
+ * when they were written by another instance, then the event is sent to the subscribers of
+ * {@code GET /notes/changes}.</p>
+ *
+ * <p>Change streams require a replica set (a single-node replica set is enough). The listener
+ * is enabled with {@code mnotes.change-stream.enabled=true} and is not active with the
+ * {@code test} profile.</p>
+ */
+@Profile("!test")
+@Component
+@ConditionalOnProperty(prefix = "mnotes.change-stream", name = "enabled", havingValue = "true")
+public class NoteChangeStreamListener {
+
+    private static final Logger log = LoggerFactory.getLogger(NoteChangeStreamListener.class);
+
+    private final MongoTemplate mongoTemplate;
+
+    private final NoteService noteService;
+
+    private final NoteChangePublisher noteChangePublisher;
+
+    private MessageListenerContainer container;
+
+    private final List<Subscription> subscriptions = new ArrayList<>();
+
+
+    /**
+     * Constructs a new {@code NoteChangeStreamListener} with the specified dependencies.
+     *
+     * @param mongoTemplate       The template used to open the change streams.
+     * @param noteService         The service whose cached notes are evicted on change.
+     * @param noteChangePublisher The publisher sending the events to the subscribers.
+     */
+    public NoteChangeStreamListener(MongoTemplate mongoTemplate, NoteService noteService,
+                                    NoteChangePublisher noteChangePublisher) {
+        this.mongoTemplate = mongoTemplate;
+        this.noteService = noteService;
+        this.noteChangePublisher = noteChangePublisher;
+    }
+
+
+    /**
+     * Opens the change streams of the notes collections.
+     */
+    @PostConstruct
+    public void start() {
+        container = new DefaultMessageListenerContainer(mongoTemplate);
+        for (Class<?> type : List.of(Note.class, NoteBucket.class)) {
+            ChangeStreamRequest<Document> request = ChangeStreamRequest.<Document>builder(message -> onChange(message.getRaw()))
+                    .collection(mongoTemplate.getCollectionName(type))
+                    .filter(Aggregation.newAggregation(
+                            Aggregation.match(Criteria.where("operationType").in("insert", "update", "replace", "delete")),
+                            Aggregation.stage(new Document("$project", new Document("operationType", 1)
+                                    .append("documentKey", 1)
+                                    .append("fullDocument.patId", 1)
+                                    .append("fullDocumentBeforeChange.patId", 1)))))
+                    .fullDocumentLookup(FullDocument.UPDATE_LOOKUP)
+                    .fullDocumentBeforeChangeLookup(FullDocumentBeforeChange.WHEN_AVAILABLE)
+                    .build();
+            subscriptions.add(container.register(request, Document.class,
+                    error -> log.error("Error on the change stream of {}", mongoTemplate.getCollectionName(type), error)));
+        }
+        container.start();
+        log.info("Notes change stream started");
+    }
+
+
+    /**
+     * Waits until the change streams are open, so that the changes made afterwards are received.
+     *
+     * @param timeout The maximum time to wait for each change stream.
+     * @return {@code true} if all the change streams are open.
+     * @throws InterruptedException If interrupted while waiting.
+     */
+    boolean awaitActive(Duration timeout) throws InterruptedException {
+        for (Subscription subscription : subscriptions) {
+            if (!subscription.await(timeout)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+
+    /**
+     * Closes the change streams.
+     */
+    @PreDestroy
+    public void stop() {
+        if (container != null) {
+            container.stop();
+        }
+    }
+
+
+    /**
+     * Handles a change of the notes: evicts the cached notes of the patient, then publishes the event.
+     * When the patient cannot be determined (e.g. a deletion without pre-image), all the cached notes are evicted.
+     *
+     * @param change The change read from the change stream, or null.
+     */
+    void onChange(ChangeStreamDocument<Document> change) {
+        if (change == null) {
+            return;
+        }
+        Long patId = patIdOf(change.getFullDocument());
+        if (patId == null) {
+            patId = patIdOf(change.getFullDocumentBeforeChange());
+        }
+
+        if (patId != null) {
+            noteService.evictCachedNotes(patId);
+        } else {
+            noteService.evictAllCachedNotes();
+        }
+        noteChangePublisher.publish(new NoteChangeEvent(patId, change.getOperationTypeString(), Instant.now()));
+    }
+
+
+    private static Long patIdOf(Document document) {
+        if (document == null || !(document.get("patId") instanceof Number patId)) {
+            return null;
+        }
+        return patId.longValue();
+    }
+}
@@ -0,0 +1,133 @@
+package com.microdiab.mnotes.service;
+
+import com.microdiab.mnotes.model.Note;
+import com.microdiab.mnotes.model.NoteTextCodec;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.text.Normalizer;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+
+/**
+ * Compresses the content of large notes before they are stored.
+ *
+ * <p>A note whose content exceeds {@code mnotes.compression.threshold-bytes} (UTF-8 encoded) is stored
+ * in the {@code compressedNote} field instead of the {@code note} field. Only its distinct terms are kept
+ * uncompressed, in the {@code searchTerms} field covered by the text index, so that the note remains found by
+ * the full-text search without storing a second full copy of its content. Reading code is not affected:
+ * {@link Note#getNote()} decompresses the content lazily.</p>
+ *
+ * <p>The sizes before and after compression and the compression ratio are exposed as metrics
+ * ({@code mnotes.notes.compression.*}). Compression can be disabled with
+ * {@code mnotes.compression.enabled=false}.</p>
+ */
+@Component
+public class NoteCompressor {
+
+    /** Separators between the terms of a note: anything but letters and digits. */
+    private static final Pattern TERM_SEPARATORS = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+    private final boolean enabled;
+
+    /** Minimum size, in bytes, of the content of a note to be stored compressed. */
+    private final int thresholdBytes;
+
+    private final DistributionSummary originalSize;
+
+    private final DistributionSummary compressedSize;
+
+    private final DistributionSummary compressionRatio;
+
+    private final Counter uncompressedNotes;
+
+
+    /**
+     * Constructs a new {@code NoteCompressor} and registers its metrics.
+     *
+     * @param meterRegistry  The registry of the compression metrics.
+     * @param enabled        Whether large notes are compressed.
+     * @param thresholdBytes The minimum size, in bytes, of the content of a note to be compressed.
+     */
+    public NoteCompressor(MeterRegistry meterRegistry,
+                          @Value("${mnotes.compression.enabled:true}") boolean enabled,
+                          @Value("${mnotes.compression.threshold-bytes:16384}") int thresholdBytes) {
+        this.enabled = enabled;
+        this.thresholdBytes = thresholdBytes;
+        this.originalSize = DistributionSummary.builder("mnotes.notes.compression.original.size")
+                .description("Size of the content of the compressed notes before compression")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        this.compressedSize = DistributionSummary.builder("mnotes.notes.compression.compressed.size")
+                .description("Size of the content of the compressed notes after compression")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        this.compressionRatio = DistributionSummary.builder("mnotes.notes.compression.ratio")
+                .description("Original size divided by compressed size, per compressed note")
+                .register(meterRegistry);
+        this.uncompressedNotes = Counter.builder("mnotes.notes.compression.skipped")
+                .description("Notes stored uncompressed, below the size threshold")
+                .register(meterRegistry);
+    }
+
+
+    /**
+     * Compresses the content of the note if it exceeds the size threshold.
+     * The note is returned unchanged otherwise.
+     *
+     * @param note The note to compress.
+     * @return The same note, with its content moved to the {@code compressedNote} field and its distinct terms
+     *         set in the {@code searchTerms} field if it was compressed.
+     */
+    public Note compress(Note note) {
+        String text = note.getNote();
+        if (!enabled || text == null) {
+            return note;
+        }
+
+        byte[] utf8 = text.getBytes(StandardCharsets.UTF_8);
+        if (utf8.length < thresholdBytes) {
+            note.setCompressedNote(null);
+            note.setSearchTerms(null);
+            uncompressedNotes.increment();
+            return note;
+        }
+
+        byte[] compressed = NoteTextCodec.deflate(text);
+        note.setCompressedNote(compressed);
+        note.setSearchTerms(searchTerms(text));
+        note.setNote(null);
+
+        originalSize.record(utf8.length);
+        compressedSize.record(compressed.length);
+        compressionRatio.record((double) utf8.length / compressed.length);
+        return note;
+    }
+
+
+    /**
+     * Computes the search terms of a text: its distinct terms, in lower case (Unicode NFC),
+     * in order of first occurrence and separated by spaces.
+     *
+     * <p>Repeated terms are kept once, which is enough for the text index to find the note. Phrase searches
+     * and the relevance score, which depend on the position and the frequency of the terms, are therefore
+     * only approximate for compressed notes.</p>
+     *
+     * @param text The text of the note.
+     * @return The distinct terms of the text, an empty string if it has none.
+     */
+    public String searchTerms(String text) {
+        return Arrays.stream(TERM_SEPARATORS.split(Normalizer.normalize(text, Normalizer.Form.NFC)
+                        .toLowerCase(Locale.ROOT)))
+                .filter(term -> !term.isEmpty())
+                .distinct()
+                .collect(Collectors.joining(" "));
+    }
+}
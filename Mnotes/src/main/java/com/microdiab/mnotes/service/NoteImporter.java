@@ -0,0 +1,339 @@
+package com.microdiab.mnotes.service;
+
+import com.fasterxml.jackson.core.JsonLocation;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.microdiab.mnotes.exception.MalformedImportException;
+import com.microdiab.mnotes.model.Note;
+import com.microdiab.mnotes.model.NoteImportResult;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.FindAndReplaceOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+
+/**
+ * Imports notes from a JSON array or a newline-delimited JSON (NDJSON) stream of any size.
+ *
+ * <p>Unlike {@code JsonDataInitializer}, which reads its whole file into memory, the input is read
+ * with the Jackson streaming parser, one record at a time. Each record is validated like the body of
+ * {@code POST /notes}, annotated and compressed like a saved note, then buffered until
+ * {@code mnotes.import.batch-size} notes are written with a single unordered bulk write. Memory use is
+ * therefore bounded by the size of a batch, whatever the size of the input.</p>
+ *
+ * <p>Records that are not valid notes are counted and skipped. A record carrying an {@code id}
+ * replaces the note with this identifier, so that an import can be run again after a failure.
+ * A record replacing a note of another patient changes the notes of both patients.
+ * After each batch, the versions of the notes of its patients are incremented with a single bulk
+ * write and their cached notes are evicted. This is done as well when the bulk write of a batch fails,
+ * since the notes of an unordered bulk write other than the failed ones are still written.</p>
+ *
+ * <p>With the {@code bucket} storage layout, each batch is written to the buckets of its patients with a single
+ * ordered bulk write instead (see {@link NoteBucketStore#saveAll(List)}).
+ * The progress of the imports is exposed as metrics ({@code mnotes.notes.import.*}).</p>
+ */
+@Component
+public class NoteImporter {
+
+    private static final Logger log = LoggerFactory.getLogger(NoteImporter.class);
+
+    private final MongoTemplate mongoTemplate;
+
+    private final NoteVersionTracker noteVersionTracker;
+
+    private final NoteBucketStore noteBucketStore;
+
+    private final TriggerTermAnnotator triggerTermAnnotator;
+
+    private final NoteCompressor noteCompressor;
+
+    private final ObjectMapper objectMapper;
+
+    private final Validator validator;
+
+    /** Number of notes written per bulk write. */
+    private final int batchSize;
+
+    /** Maximum number of error messages returned in the result of an import. */
+    private final int maxReportedErrors;
+
+    private final boolean bucketLayout;
+
+    private final Counter importedRecords;
+
+    private final Counter rejectedRecords;
+
+    private final Timer batchLatency;
+
+
+    /**
+     * Constructs a new {@code NoteImporter} and registers its metrics.
+     *
+     * @param mongoTemplate        The template used to write the notes.
+     * @param noteVersionTracker   The component marking the notes of the imported patients as changed.
+     * @param noteBucketStore      The store of the buckets, used with the {@code bucket} storage layout.
+     * @param triggerTermAnnotator The annotator computing the trigger term counts of the notes.
+     * @param noteCompressor       The compressor of the content of large notes.
+     * @param objectMapper         The Jackson {@link ObjectMapper} used to parse the records.
+     * @param validator            The validator checking the constraints of the notes.
+     * @param meterRegistry        The registry of the import metrics.
+     * @param batchSize            The number of notes written per bulk write.
+     * @param maxReportedErrors    The maximum number of error messages returned in the result.
+     * @param storageLayout        The storage layout of the notes ({@code document} or {@code bucket}).
+     */
+    public NoteImporter(MongoTemplate mongoTemplate,
+                        NoteVersionTracker noteVersionTracker,
+                        NoteBucketStore noteBucketStore,
+                        TriggerTermAnnotator triggerTermAnnotator,
+                        NoteCompressor noteCompressor,
+                        ObjectMapper objectMapper,
+                        Validator validator,
+                        MeterRegistry meterRegistry,
+                        @Value("${mnotes.import.batch-size:1000}") int batchSize,
+                        @Value("${mnotes.import.max-reported-errors:100}") int maxReportedErrors,
+                        @Value("${mnotes.storage.layout:document}") String storageLayout) {
+        this.mongoTemplate = mongoTemplate;
+        this.noteVersionTracker = noteVersionTracker;
+        this.noteBucketStore = noteBucketStore;
+        this.triggerTermAnnotator = triggerTermAnnotator;
+        this.noteCompressor = noteCompressor;
+        this.objectMapper = objectMapper;
+        this.validator = validator;
+        this.batchSize = batchSize;
+        this.maxReportedErrors = maxReportedErrors;
+        this.bucketLayout = "bucket".equalsIgnoreCase(storageLayout);
+
+        this.importedRecords = Counter.builder("mnotes.notes.import.records")
+                .description("Records of the imports, by outcome")
+                .tag("outcome", "imported")
+                .register(meterRegistry);
+        this.rejectedRecords = Counter.builder("mnotes.notes.import.records")
+                .description("Records of the imports, by outcome")
+                .tag("outcome", "rejected")
+                .register(meterRegistry);
+        this.batchLatency = Timer.builder("mnotes.notes.import.batch")
+                .description("Duration of the bulk write of a batch of imported notes")
+                .register(meterRegistry);
+    }
+
+
+    /**
+     * Imports the notes of a JSON array or of a newline-delimited JSON stream.
+     * The format is detected from the first token of the input.
+     *
+     * @param inputStream The input to read, not closed by this method.
+     * @return The number of imported and rejected records, with the errors of the first rejected ones.
+     * @throws MalformedImportException If the input is not well-formed JSON. The notes of the records
+     *                                  read before the malformed part are imported; if their write fails,
+     *                                  the failure is added as suppressed exception.
+     * @throws IOException              If the input cannot be read.
+     */
+    public NoteImportResult importNotes(InputStream inputStream) throws IOException {
+        NoteImportResult result = new NoteImportResult();
+        List<Note> batch = new ArrayList<>(batchSize);
+        long position = 0;
+
+        try (JsonParser parser = objectMapper.createParser(inputStream)) {
+            parser.disable(JsonParser.Feature.AUTO_CLOSE_SOURCE);
+            JsonToken token = parser.nextToken();
+            boolean array = token == JsonToken.START_ARRAY;
+            if (array) {
+                token = parser.nextToken();
+            }
+
+            while (token != null && token != JsonToken.END_ARRAY) {
+                position++;
+                JsonNode record = objectMapper.readTree(parser);
+                Note note = toValidNote(record, position, result);
+                if (note != null) {
+                    batch.add(noteCompressor.compress(triggerTermAnnotator.annotate(note)));
+                    if (batch.size() >= batchSize) {
+                        writeBatch(batch, result);
+                    }
+                }
+                token = parser.nextToken();
+            }
+        } catch (JsonProcessingException e) {
+            RuntimeException writeFailure = null;
+            try {
+                writeBatch(batch, result);
+            } catch (RuntimeException failure) {
+                writeFailure = failure;
+            }
+            JsonLocation location = e.getLocation();
+            MalformedImportException malformed = new MalformedImportException("Malformed JSON"
+                    + (location != null ? " at line " + location.getLineNr() + ", column " + location.getColumnNr() : "")
+                    + " after " + result.getImported() + " imported note(s): " + e.getOriginalMessage(), e);
+            if (writeFailure != null) {
+                malformed.addSuppressed(writeFailure);
+            }
+            throw malformed;
+        }
+
+        writeBatch(batch, result);
+        log.info("Notes import completed: {} imported, {} rejected", result.getImported(), result.getRejected());
+        return result;
+    }
+
+
+    /**
+     * Converts a record into a note and checks its constraints.
+     *
+     * @param record   The record read from the input.
+     * @param position The position of the record in the input, from 1.
+     * @param result   The result of the import, updated if the record is rejected.
+     * @return The note, or {@code null} if the record is rejected.
+     */
+    private Note toValidNote(JsonNode record, long position, NoteImportResult result) {
+        if (!record.isObject()) {
+            reject(result, position, "not a JSON object");
+            return null;
+        }
+
+        Note note;
+        try {
+            note = objectMapper.treeToValue(record, Note.class);
+        } catch (JsonProcessingException | IllegalArgumentException e) {
+            reject(result, position, "invalid note (" + e.getMessage().lines().findFirst().orElse("") + ")");
+            return null;
+        }
+
+        Set<ConstraintViolation<Note>> violations = validator.validate(note);
+        if (!violations.isEmpty()) {
+            reject(result, position, violations.stream()
+                    .map(ConstraintViolation::getMessage)
+                    .sorted()
+                    .collect(Collectors.joining(", ")));
+            return null;
+        }
+        return note;
+    }
+
+
+    /**
+     * Counts a rejected record, and reports its error if the maximum number of reported errors is not reached.
+     *
+     * @param result   The result of the import.
+     * @param position The position of the record in the input, from 1.
+     * @param message  The reason of the rejection.
+     */
+    private void reject(NoteImportResult result, long position, String message) {
+        result.setRejected(result.getRejected() + 1);
+        rejectedRecords.increment();
+        if (result.getErrors().size() < maxReportedErrors) {
+            result.getErrors().add("Record " + position + ": " + message);
+        }
+    }
+
+
+    /**
+     * Writes a batch of notes with a single unordered bulk write (ordered with the bucket layout), then increments the versions of the notes
+     * of the patients of the batch with another one, and evicts their cached notes. The batch is cleared.
+     * The patients of the replaced notes are looked up first, with a single query: a note moved to another patient
+     * changes the notes of both patients. If the bulk write fails, the notes of the batch are marked as changed
+     * before the failure is rethrown.
+     *
+     * @param batch  The notes to write.
+     * @param result The result of the import, updated with the number of written notes.
+     */
+    private void writeBatch(List<Note> batch, NoteImportResult result) {
+        if (batch.isEmpty()) {
+            return;
+        }
+
+        Map<String, Long> storedPatIds = findStoredPatIds(batch);
+        Map<Long, Long> changesPerPatient = new HashMap<>();
+        for (Note note : batch) {
+            changesPerPatient.merge(note.getPatId(), 1L, Long::sum);
+            Long storedPatId = note.getId() != null ? storedPatIds.get(note.getId()) : null;
+            if (storedPatId != null && !storedPatId.equals(note.getPatId())) {
+                changesPerPatient.merge(storedPatId, 1L, Long::sum);
+            }
+        }
+
+        try {
+            batchLatency.record(() -> {
+                if (bucketLayout) {
+                    noteBucketStore.saveAll(batch, storedPatIds);
+                    return;
+                }
+                BulkOperations noteOperations = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Note.class);
+                for (Note note : batch) {
+                    if (note.getId() == null) {
+                        noteOperations.insert(note);
+                    } else {
+                        noteOperations.replaceOne(Query.query(Criteria.where("_id").is(note.getId())),
+                                note, FindAndReplaceOptions.options().upsert());
+                    }
+                }
+                noteOperations.execute();
+            });
+        } catch (RuntimeException e) {
+            log.error("Failed to write a batch of {} imported note(s) after {} imported note(s)",
+                    batch.size(), result.getImported(), e);
+            try {
+                noteVersionTracker.markChanged(changesPerPatient);
+            } catch (RuntimeException versionFailure) {
+                e.addSuppressed(versionFailure);
+            }
+            throw e;
+        }
+        noteVersionTracker.markChanged(changesPerPatient);
+
+        result.setImported(result.getImported() + batch.size());
+        importedRecords.increment(batch.size());
+        log.debug("Notes import in progress: {} imported, {} rejected", result.getImported(), result.getRejected());
+        batch.clear();
+    }
+
+
+    /**
+     * Finds the patients of the stored notes that the notes of a batch replace.
+     *
+     * @param batch The notes to write.
+     * @return The patient identifier of each stored note, by note identifier.
+     */
+    private Map<String, Long> findStoredPatIds(List<Note> batch) {
+        Set<String> noteIds = batch.stream()
+                .map(Note::getId)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toSet());
+        if (bucketLayout) {
+            return noteBucketStore.findPatIdsByNoteId(noteIds);
+        }
+
+        Map<String, Long> patIds = new HashMap<>();
+        if (noteIds.isEmpty()) {
+            return patIds;
+        }
+        Query query = Query.query(Criteria.where("_id").in(noteIds));
+        query.fields().include("patId");
+        for (Note note : mongoTemplate.find(query, Note.class)) {
+            patIds.put(note.getId(), note.getPatId());
+        }
+        return patIds;
+    }
+}
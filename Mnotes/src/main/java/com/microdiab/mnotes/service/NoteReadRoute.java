@@ -0,0 +1,44 @@
+package com.microdiab.mnotes.service;
+
+import java.util.Locale;
+
+
+/**
+ * Members of the MongoDB replica set a read of the notes is routed to,
+ * resolved into a read preference by {@link NoteReadRouting}.
+ *
+ * <ul>
+ *   <li>{@link #PRIMARY}: reads of the user interface, which must see the notes just written (read-your-writes).</li>
+ *   <li>{@link #SECONDARY}: reads tolerating a bounded replication lag, such as the risk assessment and exports,
+ *       which are taken off the primary.</li>
+ * </ul>
+ *
+ * Callers of {@code GET /notes/{patId}} choose the route with the {@value #HEADER} header.
+ */
+public enum NoteReadRoute {
+
+    PRIMARY,
+
+    SECONDARY;
+
+    /** Request header selecting the route of a read of the notes ({@code primary} or {@code secondary}). */
+    public static final String HEADER = "X-Read-Routing";
+
+
+    /**
+     * Resolves the route named by the {@value #HEADER} header.
+     *
+     * @param value The value of the header, case insensitive, or null if the header is absent.
+     * @return The named route, {@link #PRIMARY} if the header is absent, or null if the value is unknown.
+     */
+    public static NoteReadRoute fromHeader(String value) {
+        if (value == null || value.isBlank()) {
+            return PRIMARY;
+        }
+        return switch (value.trim().toLowerCase(Locale.ROOT)) {
+            case "primary" -> PRIMARY;
+            case "secondary" -> SECONDARY;
+            default -> null;
+        };
+    }
+}
@@ -0,0 +1,59 @@
+package com.microdiab.mnotes.service;
+
+import com.mongodb.ReadPreference;
+import com.mongodb.TagSet;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Resolves the {@link ReadPreference} of each {@link NoteReadRoute}.
+ *
+ * <p>{@link NoteReadRoute#PRIMARY} always reads from the primary. {@link NoteReadRoute#SECONDARY} uses the
+ * read preference mode of {@code mnotes.read-routing.secondary-mode} (e.g. {@code secondaryPreferred}),
+ * bounded by {@code mnotes.read-routing.max-staleness}: a secondary lagging further behind the primary
+ * is not selected. The default mode is {@code primary}, so all reads stay on the primary unless secondary
+ * reads are enabled, which is required with a standalone MongoDB.</p>
+ */
+@Component
+public class NoteReadRouting {
+
+    /** Smallest maximum staleness accepted by MongoDB. */
+    static final Duration MIN_MAX_STALENESS = Duration.ofSeconds(90);
+
+    private final ReadPreference secondaryReadPreference;
+
+
+    /**
+     * Constructs a new {@code NoteReadRouting}.
+     *
+     * @param secondaryMode The read preference mode of the secondary route, e.g. {@code secondaryPreferred}.
+     * @param maxStaleness  The maximum replication lag of the secondaries read by the secondary route.
+     * @throws IllegalArgumentException If the mode is unknown or the maximum staleness is below 90 seconds.
+     */
+    public NoteReadRouting(@Value("${mnotes.read-routing.secondary-mode:primary}") String secondaryMode,
+                           @Value("${mnotes.read-routing.max-staleness:90s}") Duration maxStaleness) {
+        if (maxStaleness.compareTo(MIN_MAX_STALENESS) < 0) {
+            throw new IllegalArgumentException("mnotes.read-routing.max-staleness must be at least " + MIN_MAX_STALENESS);
+        }
+        ReadPreference mode = ReadPreference.valueOf(secondaryMode);
+        this.secondaryReadPreference = mode.equals(ReadPreference.primary())
+                ? mode
+                : ReadPreference.valueOf(secondaryMode, List.<TagSet>of(), maxStaleness.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+
+    /**
+     * Returns the read preference of a route.
+     *
+     * @param route The route of the read.
+     * @return The read preference to apply to the queries of the read.
+     */
+    public ReadPreference readPreference(NoteReadRoute route) {
+        return route == NoteReadRoute.SECONDARY ? secondaryReadPreference : ReadPreference.primary();
+    }
+}
@@ -1,11 +1,40 @@
 package com.microdiab.mnotes.service;
 
+import com.microdiab.mnotes.configuration.CacheConfig;
 import com.microdiab.mnotes.model.Note;
+import com.microdiab.mnotes.model.NoteBucket;
+import com.microdiab.mnotes.model.NoteSearchHit;
+import com.microdiab.mnotes.model.NoteSummary;
+import com.microdiab.mnotes.model.NoteVersion;
 import com.microdiab.mnotes.repository.NoteRepository;
+import com.mongodb.ReadPreference;
+import jakarta.annotation.PostConstruct;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.cache.annotation.Caching;
+import org.bson.Document;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.AggregationOperation;
+import org.springframework.data.mongodb.core.aggregation.AggregationOptions;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.TextCriteria;
+import org.springframework.data.mongodb.core.query.TextQuery;
 import org.springframework.stereotype.Service;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 
 /**
@@ -16,44 +45,524 @@ import java.util.List;
  * It is responsible for saving and retrieving patient notes, ensuring data integrity
  * and validation before delegating to the repository layer.
  *
+ * Notes are read through the {@link CacheConfig#NOTES_CACHE} cache, keyed by {@code patId}.
+ * Saving a note evicts the entry of its patient so that the next read reloads it from MongoDB.
+ *
+ * Each patient also has a {@link NoteVersion} counter, incremented whenever one of its notes is saved.
+ * The version is used as an ETag, so callers can revalidate the notes of a patient without reading them.
+ * It is read from the primary on each request and never cached, as the notes may be changed through another instance.
+ *
+ * Note summaries are computed by a MongoDB aggregation pipeline using the {@code patId} index,
+ * so only a few numbers per patient are returned and the content of the notes is never read by the caller.
+ *
+ * Full-text search relies on the French text index of the note content, which also covers the search terms
+ * of compressed notes (see {@link NoteCompressor}): the {@code $text} query is resolved by the index, sorted by relevance, paginated
+ * and projected on the identifiers only.
+ *
+ * With the {@code bucket} storage layout ({@code mnotes.storage.layout=bucket}), notes are saved to
+ * and read from per-patient, per-month buckets through the {@link NoteBucketStore}, including by the
+ * {@link NoteBatchWriter} and the {@link NoteImporter}, and summaries are computed over the notes unwound
+ * from the buckets. The text index only covers the notes stored one per document, so the full-text search
+ * must be disabled ({@code mnotes.search.enabled=false}) with this layout: the service refuses to start otherwise.
+ *
+ * Reads that tolerate a bounded replication lag, such as the summaries and the reads of
+ * {@link #readNotesByPatId(Long, NoteReadRoute)} on the secondary route, may be served by secondaries
+ * (see {@link NoteReadRouting}). The notes read from the secondaries are cached apart, in the
+ * {@link CacheConfig#SECONDARY_NOTES_CACHE} cache; the notes of {@link CacheConfig#NOTES_CACHE}
+ * and the versions are always read from the primary.
+ *
  * @see com.microdiab.mnotes.model.Note
  * @see com.microdiab.mnotes.repository.NoteRepository
  */
 @Service
 public class NoteService {
 
+    /**
+     * Fields of the notes that can be requested in a projection, as exposed by the API.
+     */
+    public static final Set<String> PROJECTABLE_FIELDS =
+            Set.of("id", "patId", "patient", "note", "triggerTermCounts", "createdAt");
+
     /**
      * Repository for accessing and managing {@link Note} entities in MongoDB.
      */
     @Autowired
     private NoteRepository noteRepository;
 
+    /**
+     * Template used to read the {@link NoteVersion} counters and to run the queries and aggregations.
+     */
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    /**
+     * Component incrementing the {@link NoteVersion} counters and evicting the cached notes.
+     */
+    @Autowired
+    private NoteVersionTracker noteVersionTracker;
+
+    /**
+     * Component computing the trigger term counts of a note at write time.
+     */
+    @Autowired
+    private TriggerTermAnnotator triggerTermAnnotator;
+
+    /**
+     * Component compressing the content of large notes before they are stored.
+     */
+    @Autowired
+    private NoteCompressor noteCompressor;
+
+    /**
+     * Store of the notes packed in per-patient buckets, used with the {@code bucket} storage layout.
+     */
+    @Autowired
+    private NoteBucketStore noteBucketStore;
+
+    /**
+     * Group-commit writer inserting new notes in batches, when enabled.
+     */
+    @Autowired
+    private NoteBatchWriter noteBatchWriter;
+
+    /**
+     * Resolver of the read preference of the reads that may be served by secondaries.
+     */
+    @Autowired
+    private NoteReadRouting noteReadRouting;
+
+    /**
+     * Storage layout of the notes: {@code document} (one document per note) or {@code bucket}.
+     */
+    @Value("${mnotes.storage.layout:document}")
+    private String storageLayout;
+
+    /**
+     * Whether the full-text search of {@link #searchNotes(String, int, int)} is enabled.
+     */
+    @Value("${mnotes.search.enabled:true}")
+    private boolean searchEnabled;
+
+
+    /**
+     * Checks at startup that the full-text search is disabled with the {@code bucket} storage layout,
+     * whose notes are not covered by the text index.
+     *
+     * @throws IllegalStateException If the full-text search is enabled with the {@code bucket} storage layout.
+     */
+    @PostConstruct
+    void checkStorageLayout() {
+        if (isBucketLayout() && searchEnabled) {
+            throw new IllegalStateException("The full-text search is not supported with the bucket storage layout "
+                    + "(mnotes.storage.layout=bucket): its notes are not covered by the text index of collection_notes. "
+                    + "Set mnotes.search.enabled=false (NOTES_SEARCH_ENABLED=false) to use this layout.");
+        }
+    }
+
 
     /**
      * Saves a patient note to the MongoDB database.
      * Validates that the provided note is not null before saving.
+     * The note is annotated with its trigger term counts before being stored.
+     * Its content is compressed if it exceeds the compression threshold (see {@link NoteCompressor}).
+     * When batching is enabled, a new note is inserted together with other notes by the
+     * {@link NoteBatchWriter}, which also increments the versions, and this method returns
+     * once its batch is acknowledged.
+     * The version of the patient's notes is incremented and the cached notes
+     * of the patient are evicted once the note is saved.
      *
      * @param note The note to be saved. Must not be null.
      * @return The saved note, including the generated unique identifier.
      * @throws IllegalArgumentException If the provided note is null.
      */
+    @Caching(evict = {
+            @CacheEvict(cacheNames = CacheConfig.NOTES_CACHE, key = "#note.patId"),
+            @CacheEvict(cacheNames = CacheConfig.SECONDARY_NOTES_CACHE, key = "#note.patId")
+    })
     public Note saveNote(Note note) {
-        return noteRepository.save(note);
+        Note noteToSave = noteCompressor.compress(triggerTermAnnotator.annotate(note));
+        if (noteToSave.getId() == null && noteBatchWriter.isEnabled()) {
+            return noteBatchWriter.insert(noteToSave);
+        }
+        Note savedNote = isBucketLayout() ? noteBucketStore.save(noteToSave) : noteRepository.save(noteToSave);
+        incrementVersion(savedNote.getPatId());
+        return savedNote;
+    }
+
+
+    /**
+     * Marks the notes of a patient as changed when they were written without {@link #saveNote(Note)},
+     * e.g. by a bulk insert. Increments the version of the patient's notes and evicts its cached entries.
+     *
+     * @param patId The patient identifier from the SQL database. Must not be null.
+     */
+    @Caching(evict = {
+            @CacheEvict(cacheNames = CacheConfig.NOTES_CACHE, key = "#patId"),
+            @CacheEvict(cacheNames = CacheConfig.SECONDARY_NOTES_CACHE, key = "#patId")
+    })
+    public void markNotesChanged(Long patId) {
+        incrementVersion(patId);
+    }
+
+
+    /**
+     * Evicts the cached notes of a patient, without changing the version,
+     * e.g. when their change is reported by the MongoDB change stream.
+     *
+     * @param patId The patient identifier from the SQL database.
+     */
+    @Caching(evict = {
+            @CacheEvict(cacheNames = CacheConfig.NOTES_CACHE, key = "#patId"),
+            @CacheEvict(cacheNames = CacheConfig.SECONDARY_NOTES_CACHE, key = "#patId")
+    })
+    public void evictCachedNotes(Long patId) {
+        // Eviction only, performed by the cache annotations
+    }
+
+
+    /**
+     * Evicts the cached notes of all the patients.
+     */
+    @Caching(evict = {
+            @CacheEvict(cacheNames = CacheConfig.NOTES_CACHE, allEntries = true),
+            @CacheEvict(cacheNames = CacheConfig.SECONDARY_NOTES_CACHE, allEntries = true)
+    })
+    public void evictAllCachedNotes() {
+        // Eviction only, performed by the cache annotations
+    }
+
+
+    /**
+     * Retrieves the version of the notes of a patient.
+     * Only the small {@link NoteVersion} document is read by its identifier, never the notes themselves.
+     * The version is not cached: a version cached by this instance would miss the changes made through
+     * the other instances, and answer 304 Not Modified for notes that have changed.
+     *
+     * @param patId The patient identifier from the SQL database. Must not be null.
+     * @return The version of the patient's notes, version {@code 0} with no creation time
+     *         if they were never changed through this service.
+     * @throws IllegalArgumentException If the provided patient identifier is null.
+     */
+    public NoteVersion getNotesVersion(Long patId) {
+        if (patId == null) {
+            throw new IllegalArgumentException("patId cannot be null");
+        }
+        NoteVersion noteVersion = mongoTemplate.findById(patId, NoteVersion.class);
+        return noteVersion != null ? noteVersion : new NoteVersion(patId, 0L);
+    }
+
+
+    /**
+     * Retrieves the summary of the notes of a patient.
+     *
+     * @param patId The patient identifier from the SQL database. Must not be null.
+     * @return The summary of the patient's notes, with zero values if the patient has no note.
+     * @throws IllegalArgumentException If the provided patient identifier is null.
+     */
+    public NoteSummary getNoteSummary(Long patId) {
+        if (patId == null) {
+            throw new IllegalArgumentException("patId cannot be null");
+        }
+        return getNoteSummaries(List.of(patId)).get(0);
+    }
+
+
+    /**
+     * Retrieves the summaries of the notes of several patients with a single aggregation.
+     *
+     * <p>The pipeline matches the notes of the patients on the {@code patId} index, computes per note
+     * the number of trigger term occurrences and of distinct trigger terms present, then groups the
+     * results by patient. The creation date of the last note is taken from the highest ObjectId, whether it is
+     * stored as an ObjectId or in its hexadecimal form; identifiers that are not ObjectIds are ignored.
+     * With the {@code bucket} storage layout, the buckets of the patients are matched instead and
+     * their notes unwound before the same computation.</p>
+     *
+     * <p>Summaries feed the risk assessment, so the aggregation follows the {@link NoteReadRoute#SECONDARY} route.</p>
+     *
+     * @param patIds The patient identifiers from the SQL database. Must not be null or empty.
+     * @return One summary per requested patient, in the requested order, with zero values for patients without notes.
+     * @throws IllegalArgumentException If the list of patient identifiers is null, empty or contains null.
+     */
+    public List<NoteSummary> getNoteSummaries(List<Long> patIds) {
+        if (patIds == null || patIds.isEmpty() || patIds.stream().anyMatch(Objects::isNull)) {
+            throw new IllegalArgumentException("patIds cannot be null or empty");
+        }
+
+        Document triggerTermCounts = new Document("$objectToArray",
+                new Document("$ifNull", List.of("$triggerTermCounts", new Document())));
+
+        List<AggregationOperation> stages = new ArrayList<>();
+        stages.add(Aggregation.match(Criteria.where("patId").in(patIds)));
+        if (isBucketLayout()) {
+            stages.add(Aggregation.unwind("notes"));
+            stages.add(Aggregation.replaceRoot("notes"));
+        }
+        stages.addAll(List.of(
+                Aggregation.stage(new Document("$project", new Document("patId", 1)
+                        .append("objectId", new Document("$convert", new Document("input", "$_id")
+                                .append("to", "objectId")
+                                .append("onError", null)
+                                .append("onNull", null)))
+                        .append("occurrences", new Document("$sum", new Document("$map",
+                                new Document("input", triggerTermCounts).append("in", "$$this.v"))))
+                        .append("matches", new Document("$size", new Document("$filter",
+                                new Document("input", triggerTermCounts)
+                                        .append("cond", new Document("$gt", List.of("$$this.v", 0)))))))),
+                Aggregation.stage(new Document("$group", new Document("_id", "$patId")
+                        .append("noteCount", new Document("$sum", 1))
+                        .append("lastNoteId", new Document("$max", "$objectId"))
+                        .append("triggerTermOccurrences", new Document("$sum", "$occurrences"))
+                        .append("triggerTermMatches", new Document("$sum", "$matches")))),
+                Aggregation.stage(new Document("$project", new Document("_id", 0)
+                        .append("patId", "$_id")
+                        .append("noteCount", 1)
+                        .append("lastNoteDate", new Document("$convert", new Document("input", "$lastNoteId")
+                                .append("to", "date")
+                                .append("onError", null)
+                                .append("onNull", null)))
+                        .append("triggerTermOccurrences", 1)
+                        .append("triggerTermMatches", 1)))
+        ));
+
+        Class<?> inputType = isBucketLayout() ? NoteBucket.class : Note.class;
+        AggregationOptions options = AggregationOptions.builder()
+                .readPreference(noteReadRouting.readPreference(NoteReadRoute.SECONDARY))
+                .build();
+        Map<Long, NoteSummary> summariesByPatId = mongoTemplate
+                .aggregate(Aggregation.newAggregation(stages).withOptions(options), inputType, NoteSummary.class)
+                .getMappedResults()
+                .stream()
+                .collect(Collectors.toMap(NoteSummary::getPatId, Function.identity()));
+
+        return patIds.stream()
+                .map(patId -> summariesByPatId.getOrDefault(patId, NoteSummary.empty(patId)))
+                .toList();
+    }
+
+
+    /**
+     * Searches the notes mentioning the given terms, using the text index of the note content.
+     *
+     * <p>Terms are analyzed with the French language rules (stemming, stop words, case and
+     * diacritics insensitive). Phrases can be searched between double quotes, and terms
+     * prefixed with a minus sign are excluded, following the MongoDB {@code $text} syntax.
+     * Results are sorted by relevance and only the identifiers of the notes and patients are read.</p>
+     *
+     * @param terms The terms to search for. Must not be blank.
+     * @param page  The zero-based index of the page to return.
+     * @param size  The maximum number of results per page. Must be positive.
+     * @return The matching notes of the requested page, an empty list if there are no more results.
+     * @throws IllegalArgumentException If the terms are blank, or if the page or size are invalid.
+     * @throws IllegalStateException    If the full-text search is disabled ({@code mnotes.search.enabled=false}).
+     */
+    public List<NoteSearchHit> searchNotes(String terms, int page, int size) {
+        if (!searchEnabled) {
+            throw new IllegalStateException("Full-text search is disabled (mnotes.search.enabled=false)");
+        }
+        if (terms == null || terms.isBlank()) {
+            throw new IllegalArgumentException("search terms cannot be blank");
+        }
+        if (page < 0 || size < 1) {
+            throw new IllegalArgumentException("page must not be negative and size must be positive");
+        }
+
+        Query query = TextQuery.queryText(TextCriteria.forLanguage("french").matching(terms))
+                .sortByScore()
+                .with(PageRequest.of(page, size));
+        query.fields().include("patId", "patient");
+
+        return mongoTemplate.find(query, NoteSearchHit.class, mongoTemplate.getCollectionName(Note.class));
+    }
+
+
+    /**
+     * Atomically increments the version of the notes of a patient, creating it if needed.
+     *
+     * @param patId The patient identifier from the SQL database.
+     */
+    private void incrementVersion(Long patId) {
+        noteVersionTracker.markChanged(Map.of(patId, 1L));
     }
 
 
     /**
      * Retrieves all notes associated with a specific patient identifier ({@code patId}).
      * Validates that the provided patient identifier is not null before querying.
+     * The result is cached, so repeated reads of the same patient are served from memory.
      *
      * @param patId The patient identifier from the SQL database. Must not be null.
      * @return A list of {@link Note} entities associated with the given {@code patId}.
      * @throws IllegalArgumentException If the provided patient identifier is null.
      */
+    @Cacheable(cacheNames = CacheConfig.NOTES_CACHE, key = "#patId", condition = "#patId != null")
     public List<Note> getNotesByPatId(Long patId) {
         if (patId == null) {
             throw new IllegalArgumentException("patId cannot be null");
         }
-        return noteRepository.findByPatId(patId);
+        return isBucketLayout() ? noteBucketStore.findByPatId(patId) : noteRepository.findByPatId(patId);
+    }
+
+
+    /**
+     * Indicates whether the reads of a route are served by the primary, e.g. the reads of the secondary
+     * route while {@code mnotes.read-routing.secondary-mode} is {@code primary}.
+     *
+     * @param route The route of the read.
+     * @return {@code true} if the reads of the route always see the latest notes.
+     */
+    public boolean readsFromPrimary(NoteReadRoute route) {
+        return ReadPreference.primary().equals(noteReadRouting.readPreference(route));
+    }
+
+
+    /**
+     * Retrieves all notes of a patient from the replica set members of the given route.
+     *
+     * <p>The notes read on the secondary route are cached in the {@link CacheConfig#SECONDARY_NOTES_CACHE}
+     * cache, evicted together with {@link CacheConfig#NOTES_CACHE}. A read from a secondary may miss the
+     * latest notes, so it is never served to the reads of {@link #getNotesByPatId(Long)}, which expect
+     * to see their own writes. As a read following an eviction may cache notes not yet replicated, the cache
+     * has a time-to-live of its own: the notes returned are at most the maximum staleness plus this
+     * time-to-live behind the primary (see {@link CacheConfig#SECONDARY_NOTES_CACHE}).</p>
+     *
+     * @param patId The patient identifier from the SQL database. Must not be null.
+     * @param route The route of the read (see {@link NoteReadRouting}). Must not be null.
+     * @return A list of {@link Note} entities associated with the given {@code patId}.
+     * @throws IllegalArgumentException If the provided patient identifier or route is null.
+     */
+    @Cacheable(cacheNames = CacheConfig.SECONDARY_NOTES_CACHE, key = "#patId",
+            condition = "#patId != null && #route == T(com.microdiab.mnotes.service.NoteReadRoute).SECONDARY")
+    public List<Note> readNotesByPatId(Long patId, NoteReadRoute route) {
+        if (patId == null || route == null) {
+            throw new IllegalArgumentException("patId and route cannot be null");
+        }
+        ReadPreference readPreference = noteReadRouting.readPreference(route);
+        if (isBucketLayout()) {
+            return noteBucketStore.readByPatId(patId, readPreference);
+        }
+        Query query = Query.query(Criteria.where("patId").is(patId)).withReadPreference(readPreference);
+        query.fields().exclude("searchTerms");
+        return mongoTemplate.find(query, Note.class);
+    }
+
+
+    /**
+     * Retrieves the notes of a patient, reading only the requested fields from MongoDB.
+     *
+     * <p>The projection is applied by MongoDB, so the fields that are not requested, such as
+     * the content of the notes, are neither transferred nor decoded. The content of a note covers
+     * its compressed form, and the creation date is taken from the identifier.
+     * The result is not cached, unlike {@link #getNotesByPatId(Long)}.</p>
+     *
+     * @param patId  The patient identifier from the SQL database. Must not be null.
+     * @param fields The fields to read, among {@link #PROJECTABLE_FIELDS}. Must not be null or empty.
+     * @return The notes of the patient, with only the requested fields set.
+     * @throws IllegalArgumentException If the patient identifier is null, or if the fields are empty or unknown.
+     */
+    public List<Note> getNotesByPatId(Long patId, Collection<String> fields) {
+        return getNotesByPatId(patId, fields, NoteReadRoute.PRIMARY);
+    }
+
+
+    /**
+     * Retrieves the notes of a patient, reading only the requested fields from the replica set members
+     * of the given route (see {@link NoteReadRouting}), as {@link #getNotesByPatId(Long, Collection)} does.
+     *
+     * <p>When the trigger term counts are requested, the notes written before they were computed at write time,
+     * and not annotated yet by the {@link NoteAnnotationBackfill}, get counts computed from their content, which
+     * is read for these notes only. Clients such as the risk assessment can then rely on the counts alone.</p>
+     *
+     * @param patId  The patient identifier from the SQL database. Must not be null.
+     * @param fields The fields to read, among {@link #PROJECTABLE_FIELDS}. Must not be null or empty.
+     * @param route  The route of the read. Must not be null.
+     * @return The notes of the patient, with only the requested fields set.
+     * @throws IllegalArgumentException If the patient identifier or the route is null, or if the fields are empty or unknown.
+     */
+    public List<Note> getNotesByPatId(Long patId, Collection<String> fields, NoteReadRoute route) {
+        if (patId == null || route == null) {
+            throw new IllegalArgumentException("patId and route cannot be null");
+        }
+        if (fields == null || fields.isEmpty() || !PROJECTABLE_FIELDS.containsAll(fields)) {
+            throw new IllegalArgumentException("fields must be among " + PROJECTABLE_FIELDS);
+        }
+
+        Set<String> storedFields = new LinkedHashSet<>();
+        for (String field : fields) {
+            switch (field) {
+                case "note" -> storedFields.addAll(List.of("note", "compressedNote"));
+                case "createdAt" -> storedFields.add("id");
+                default -> storedFields.add(field);
+            }
+        }
+        // The identifiers are needed to complete the trigger term counts of the notes not annotated yet
+        boolean idRequested = storedFields.contains("id");
+        boolean countsRequested = storedFields.contains("triggerTermCounts");
+        if (countsRequested) {
+            storedFields.add("id");
+        }
+
+        ReadPreference readPreference = noteReadRouting.readPreference(route);
+        List<Note> notes;
+        if (isBucketLayout()) {
+            notes = noteBucketStore.readByPatId(patId, storedFields, readPreference);
+        } else {
+            Query query = Query.query(Criteria.where("patId").is(patId)).withReadPreference(readPreference);
+            storedFields.forEach(field -> query.fields().include(field));
+            if (!storedFields.contains("id")) {
+                query.fields().exclude("id");
+            }
+            notes = mongoTemplate.find(query, Note.class);
+        }
+
+        if (countsRequested) {
+            annotateUnannotatedNotes(patId, notes, readPreference);
+            if (!idRequested) {
+                notes.forEach(note -> note.setId(null));
+            }
+        }
+        return notes;
+    }
+
+
+    /**
+     * Sets the trigger term counts of the notes read without them, from their content,
+     * read by their identifiers from the same replica set members.
+     *
+     * @param patId          The patient identifier of the notes.
+     * @param notes          The notes read, with their identifiers.
+     * @param readPreference The read preference of the notes read.
+     */
+    private void annotateUnannotatedNotes(Long patId, List<Note> notes, ReadPreference readPreference) {
+        Map<String, Note> unannotatedNotes = notes.stream()
+                .filter(note -> note.getTriggerTermCounts() == null && note.getId() != null)
+                .collect(Collectors.toMap(Note::getId, Function.identity(), (first, second) -> first));
+        if (unannotatedNotes.isEmpty()) {
+            return;
+        }
+
+        List<Note> contents;
+        if (isBucketLayout()) {
+            contents = noteBucketStore.readByPatId(patId, List.of("id", "note", "compressedNote"), readPreference);
+        } else {
+            Query query = Query.query(Criteria.where("id").in(unannotatedNotes.keySet())).withReadPreference(readPreference);
+            query.fields().include("note", "compressedNote");
+            contents = mongoTemplate.find(query, Note.class);
+        }
+        for (Note content : contents) {
+            Note note = unannotatedNotes.get(content.getId());
+            if (note != null) {
+                note.setTriggerTermCounts(triggerTermAnnotator.annotate(content).getTriggerTermCounts());
+            }
+        }
+    }
+
+
+    /**
+     * Indicates whether the notes are stored with the {@code bucket} storage layout.
+     *
+     * @return {@code true} if the notes are packed in per-patient buckets.
+     */
+    private boolean isBucketLayout() {
+        return "bucket".equalsIgnoreCase(storageLayout);
     }
 }
@@ -0,0 +1,153 @@
+package com.microdiab.mnotes.service;
+
+import com.microdiab.mnotes.model.Note;
+import com.microdiab.mnotes.model.NoteTextCodec;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.IndexField;
+import org.springframework.data.mongodb.core.index.IndexInfo;
+import org.springframework.data.mongodb.core.index.IndexOperations;
+import org.springframework.data.mongodb.core.index.TextIndexDefinition;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Component;
+
+import java.util.Iterator;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+
+/**
+ * Creates the text index of the full-text search on "collection_notes" at startup,
+ * and migrates the text index created by an earlier version of the service.
+ *
+ * <p>The index covers the content of the notes ({@code note}) and the search terms of the compressed notes
+ * ({@code searchTerms}, see {@link NoteCompressor}), with the French language analyzer. MongoDB allows a single
+ * text index per collection, so a text index on other fields ({@code note_text} or {@code normalizedNote_text},
+ * created by earlier versions) is dropped first. The notes written by those versions are then migrated once:
+ * the full normalized copy of their content ({@code normalizedNote}) is removed, and the compressed notes get
+ * their search terms.</p>
+ *
+ * <p>It runs at startup when the indexes are created automatically
+ * ({@code spring.data.mongodb.auto-index-creation=true}), which is not the case with the {@code test} profile.</p>
+ */
+@Component
+@ConditionalOnProperty(prefix = "spring.data.mongodb", name = "auto-index-creation", havingValue = "true")
+public class NoteTextIndexInitializer implements ApplicationRunner {
+
+    private static final Logger log = LoggerFactory.getLogger(NoteTextIndexInitializer.class);
+
+    /** Name of the text index of the full-text search. */
+    public static final String TEXT_INDEX_NAME = "note_searchTerms_text";
+
+    /** Fields covered by the text index. */
+    public static final Set<String> TEXT_INDEX_FIELDS = Set.of("note", "searchTerms");
+
+    /** Number of compressed notes updated per bulk write during the migration. */
+    private static final int MIGRATION_BATCH_SIZE = 500;
+
+    private final MongoTemplate mongoTemplate;
+
+    private final NoteCompressor noteCompressor;
+
+
+    /**
+     * Constructs a new {@code NoteTextIndexInitializer} with the specified dependencies.
+     *
+     * @param mongoTemplate  The template used to manage the indexes and migrate the notes.
+     * @param noteCompressor The component computing the search terms of the compressed notes.
+     */
+    public NoteTextIndexInitializer(MongoTemplate mongoTemplate, NoteCompressor noteCompressor) {
+        this.mongoTemplate = mongoTemplate;
+        this.noteCompressor = noteCompressor;
+    }
+
+
+    /**
+     * Creates the text index at application startup.
+     *
+     * @param args The application arguments (not used).
+     */
+    @Override
+    public void run(ApplicationArguments args) {
+        ensureTextIndex();
+    }
+
+
+    /**
+     * Creates the text index if it does not exist yet, dropping any other text index of the collection
+     * and migrating the notes written by the earlier versions of the service.
+     *
+     * @return {@code true} if an earlier text index was dropped and the notes migrated.
+     */
+    public boolean ensureTextIndex() {
+        IndexOperations indexOperations = mongoTemplate.indexOps(Note.class);
+        boolean indexed = false;
+        boolean migrated = false;
+        for (IndexInfo index : indexOperations.getIndexInfo()) {
+            Set<String> textFields = index.getIndexFields().stream()
+                    .filter(IndexField::isText)
+                    .map(IndexField::getKey)
+                    .collect(Collectors.toSet());
+            if (textFields.isEmpty()) {
+                continue;
+            }
+            if (textFields.equals(TEXT_INDEX_FIELDS)) {
+                indexed = true;
+            } else {
+                log.info("Dropping the text index {} on {}, replaced by {}.", index.getName(), textFields, TEXT_INDEX_NAME);
+                indexOperations.dropIndex(index.getName());
+                migrated = true;
+            }
+        }
+
+        if (migrated) {
+            migrateNotes();
+        }
+        if (!indexed) {
+            indexOperations.createIndex(TextIndexDefinition.builder()
+                    .named(TEXT_INDEX_NAME)
+                    .withDefaultLanguage("french")
+                    .onField("note")
+                    .onField("searchTerms")
+                    .build());
+        }
+        return migrated;
+    }
+
+
+    /**
+     * Removes the normalized copies of the notes and sets the search terms of the compressed notes.
+     */
+    private void migrateNotes() {
+        long unset = mongoTemplate.updateMulti(Query.query(Criteria.where("normalizedNote").exists(true)),
+                new Update().unset("normalizedNote"), Note.class).getModifiedCount();
+
+        Query compressedNotes = Query.query(Criteria.where("compressedNote").exists(true).and("searchTerms").exists(false));
+        compressedNotes.fields().include("compressedNote");
+        long indexed = 0;
+        try (Stream<Note> notes = mongoTemplate.stream(compressedNotes, Note.class)) {
+            Iterator<Note> iterator = notes.iterator();
+            while (iterator.hasNext()) {
+                BulkOperations bulkOperations = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Note.class);
+                int batchSize = 0;
+                while (iterator.hasNext() && batchSize < MIGRATION_BATCH_SIZE) {
+                    Note note = iterator.next();
+                    bulkOperations.updateOne(Query.query(Criteria.where("_id").is(note.getId())),
+                            Update.update("searchTerms", noteCompressor.searchTerms(NoteTextCodec.inflate(note.getCompressedNote()))));
+                    batchSize++;
+                }
+                bulkOperations.execute();
+                indexed += batchSize;
+            }
+        }
+        log.info("Text index migration: {} normalized copies removed, {} compressed notes indexed.", unset, indexed);
+    }
+}
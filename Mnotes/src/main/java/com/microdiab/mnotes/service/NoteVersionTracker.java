@@ -0,0 +1,109 @@
+package com.microdiab.mnotes.service;
+
+import com.microdiab.mnotes.configuration.CacheConfig;
+import com.microdiab.mnotes.model.Note;
+import com.microdiab.mnotes.model.NoteVersion;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+
+/**
+ * Component marking the notes of patients as changed: it increments their {@link NoteVersion}
+ * counters and evicts their cached notes.
+ *
+ * <p>It is the single place where the versions are incremented, used by every writer of notes:
+ * {@link NoteService} when a note is saved on its own, and the {@link NoteBatchWriter}, the
+ * {@link NoteImporter} and the {@link NoteAnnotationBackfill} when notes are written in bulk.
+ * The counters of all the patients concerned are incremented with a single unordered bulk write,
+ * or a single upsert for one patient. The caches are evicted through the {@link CacheManager},
+ * so that the writers do not depend on {@link NoteService}.</p>
+ */
+@Component
+public class NoteVersionTracker {
+
+    private final MongoTemplate mongoTemplate;
+
+    private final CacheManager cacheManager;
+
+
+    /**
+     * Constructs a new {@code NoteVersionTracker} with the specified dependencies.
+     *
+     * @param mongoTemplate The template used to increment the versions.
+     * @param cacheManager  The manager of the notes caches.
+     */
+    public NoteVersionTracker(MongoTemplate mongoTemplate, CacheManager cacheManager) {
+        this.mongoTemplate = mongoTemplate;
+        this.cacheManager = cacheManager;
+    }
+
+
+    /**
+     * Marks the notes of the patients of the given notes as changed,
+     * the version of each patient being incremented by its number of notes.
+     *
+     * @param notes The written notes.
+     */
+    public void markChanged(Collection<Note> notes) {
+        markChanged(notes.stream().collect(Collectors.groupingBy(Note::getPatId, Collectors.counting())));
+    }
+
+
+    /**
+     * Marks the notes of several patients as changed, then evicts their cached notes.
+     * The creation time of a version document is set when it is inserted by the first change.
+     * The cached notes are evicted even if the versions cannot be incremented.
+     *
+     * @param changesPerPatient The number of changed notes of each patient, by which its version is incremented.
+     */
+    public void markChanged(Map<Long, Long> changesPerPatient) {
+        if (changesPerPatient.isEmpty()) {
+            return;
+        }
+        Instant now = Instant.now();
+        try {
+            if (changesPerPatient.size() == 1) {
+                Map.Entry<Long, Long> change = changesPerPatient.entrySet().iterator().next();
+                mongoTemplate.upsert(
+                        Query.query(Criteria.where("_id").is(change.getKey())),
+                        new Update().inc("version", change.getValue()).setOnInsert("createdAt", now),
+                        NoteVersion.class);
+            } else {
+                BulkOperations bulkOperations = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, NoteVersion.class);
+                changesPerPatient.forEach((patId, count) -> bulkOperations.upsert(
+                        Query.query(Criteria.where("_id").is(patId)),
+                        new Update().inc("version", count).setOnInsert("createdAt", now)));
+                bulkOperations.execute();
+            }
+        } finally {
+            evict(changesPerPatient.keySet());
+        }
+    }
+
+
+    /**
+     * Evicts the cached notes of several patients, without changing their versions.
+     *
+     * @param patIds The patient identifiers from the SQL database.
+     */
+    public void evict(Collection<Long> patIds) {
+        for (String cacheName : List.of(CacheConfig.NOTES_CACHE, CacheConfig.SECONDARY_NOTES_CACHE)) {
+            Cache cache = cacheManager.getCache(cacheName);
+            if (cache != null) {
+                patIds.forEach(cache::evict);
+            }
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package com.microdiab.mnotes.service;
+
+import com.microdiab.mnotes.model.Note;
+import com.microdiab.mnotes.model.NoteBucket;
+import com.microdiab.mnotes.repository.ReactiveNoteRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+
+
+/**
+ * Reactive service for reading {@link Note} entities, active with the {@code reactive} profile.
+ *
+ * Unlike {@link NoteService}, which blocks the calling thread until MongoDB answers,
+ * this service returns a {@link Flux} backed by the {@link ReactiveNoteRepository}: notes are
+ * streamed as the driver yields them and no thread is held while waiting for the database.
+ *
+ * Writes still go through {@link NoteService}, so that annotation, versioning and
+ * cache eviction stay in a single place. Reads follow the same storage layout
+ * ({@code mnotes.storage.layout}) and projection as {@link NoteService#getNotesByPatId(Long)}:
+ * with the {@code bucket} layout, the notes are streamed from the buckets of the patient,
+ * and the search terms of compressed notes are never read.
+ *
+ * @see com.microdiab.mnotes.repository.ReactiveNoteRepository
+ */
+@Profile("reactive")
+@Service
+public class ReactiveNoteService {
+
+    /**
+     * Reactive repository for reading {@link Note} entities in MongoDB.
+     */
+    @Autowired
+    private ReactiveNoteRepository reactiveNoteRepository;
+
+    /**
+     * Reactive template used to stream the buckets of a patient, with the {@code bucket} storage layout.
+     */
+    @Autowired
+    private ReactiveMongoTemplate reactiveMongoTemplate;
+
+    /**
+     * Storage layout of the notes: {@code document} (one document per note) or {@code bucket}.
+     */
+    @Value("${mnotes.storage.layout:document}")
+    private String storageLayout;
+
+
+    /**
+     * Streams all notes associated with a specific patient identifier ({@code patId}).
+     *
+     * @param patId The patient identifier from the SQL database. Must not be null.
+     * @return A {@link Flux} emitting the notes associated with the given {@code patId}.
+     * @throws IllegalArgumentException If the provided patient identifier is null.
+     */
+    public Flux<Note> getNotesByPatId(Long patId) {
+        if (patId == null) {
+            throw new IllegalArgumentException("patId cannot be null");
+        }
+        if (!"bucket".equalsIgnoreCase(storageLayout)) {
+            return reactiveNoteRepository.findByPatId(patId);
+        }
+        Query query = Query.query(Criteria.where("patId").is(patId))
+                .with(Sort.by("period", "_id"));
+        query.fields().exclude("notes.searchTerms");
+        return reactiveMongoTemplate.find(query, NoteBucket.class)
+                .concatMapIterable(NoteBucket::getNotes);
+    }
+}
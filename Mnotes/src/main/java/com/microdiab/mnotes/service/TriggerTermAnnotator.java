@@ -0,0 +1,84 @@
+package com.microdiab.mnotes.service;
+
+import com.microdiab.mnotes.model.Note;
+import org.springframework.stereotype.Component;
+
+import java.text.Normalizer;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+
+/**
+ * Component computing the write-time annotation of a {@link Note}:
+ * the number of occurrences of each trigger term.
+ *
+ * <p>The trigger terms are the ones used by the *mrisk* microservice to calculate
+ * the diabetes risk level. Storing their counts with the note lets the risk calculation
+ * read precomputed integers instead of scanning the note content on every read.</p>
+ *
+ * <p>A term matches anywhere in the text, including in the middle of a word,
+ * and case is ignored, as in the risk calculation.</p>
+ */
+@Component
+public class TriggerTermAnnotator {
+
+    /**
+     * Trigger terms used for risk calculation. Must be kept in line with the list of *mrisk*.
+     */
+    public static final List<String> TRIGGER_TERMS = List.of("Hémoglobine A1C", "Microalbumine", "Taille", "Poids",
+            "Fumeur", "Fumeuse", "Anormal", "Cholestérol", "Vertiges", "Rechute", "Réaction", "Anticorps");
+
+
+    /**
+     * Sets the trigger term counts of a note, computed from its normalized content.
+     * The normalized content itself is not stored.
+     *
+     * @param note The note to annotate. Must not be null.
+     * @return The annotated note.
+     */
+    public Note annotate(Note note) {
+        note.setTriggerTermCounts(countTriggerTerms(normalize(note.getNote())));
+        return note;
+    }
+
+
+    /**
+     * Normalizes a text: Unicode NFC composition, lower case and collapsed whitespace.
+     *
+     * @param text The text to normalize.
+     * @return The normalized text, or an empty string if the text is null.
+     */
+    public String normalize(String text) {
+        if (text == null) {
+            return "";
+        }
+        return Normalizer.normalize(text, Normalizer.Form.NFC)
+                .toLowerCase(Locale.ROOT)
+                .replaceAll("\\s+", " ")
+                .trim();
+    }
+
+
+    /**
+     * Counts the non-overlapping occurrences of each trigger term in a normalized text.
+     *
+     * @param normalizedText The text, already normalized with {@link #normalize(String)}.
+     * @return The number of occurrences of each trigger term, in the order of {@link #TRIGGER_TERMS}.
+     */
+    public Map<String, Integer> countTriggerTerms(String normalizedText) {
+        Map<String, Integer> counts = new LinkedHashMap<>();
+        for (String term : TRIGGER_TERMS) {
+            String normalizedTerm = normalize(term);
+            int count = 0;
+            int index = normalizedText.indexOf(normalizedTerm);
+            while (index >= 0) {
+                count++;
+                index = normalizedText.indexOf(normalizedTerm, index + normalizedTerm.length());
+            }
+            counts.put(term, count);
+        }
+        return counts;
+    }
+}
@@ -0,0 +1,67 @@
+package com.microdiab.mnotes.configuration;
+
+import com.mongodb.MongoClientSettings;
+import com.mongodb.ServerAddress;
+import com.mongodb.connection.ClusterId;
+import com.mongodb.connection.ConnectionId;
+import com.mongodb.connection.ConnectionPoolSettings;
+import com.mongodb.connection.ServerId;
+import com.mongodb.event.ConnectionCheckOutFailedEvent;
+import com.mongodb.event.ConnectionCheckedOutEvent;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MongoClientConfigTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+
+    @Test
+    void mongoConnectionPoolCustomizer_shouldApplyPoolProperties() {
+        // Arrange
+        MongoClientSettings.Builder builder = MongoClientSettings.builder();
+
+        // Act
+        new MongoClientConfig()
+                .mongoConnectionPoolCustomizer(meterRegistry, 50, 5, 4, Duration.ofSeconds(3), Duration.ofMinutes(10))
+                .customize(builder);
+
+        // Assert
+        ConnectionPoolSettings pool = builder.build().getConnectionPoolSettings();
+        assertEquals(50, pool.getMaxSize());
+        assertEquals(5, pool.getMinSize());
+        assertEquals(4, pool.getMaxConnecting());
+        assertEquals(3000, pool.getMaxWaitTime(TimeUnit.MILLISECONDS));
+        assertEquals(10, pool.getMaxConnectionIdleTime(TimeUnit.MINUTES));
+        assertInstanceOf(MongoConnectionCheckoutListener.class, pool.getConnectionPoolListeners().get(0));
+    }
+
+
+    @Test
+    void checkoutListener_shouldRecordWaitTimeByStatus() {
+        // Arrange
+        MongoConnectionCheckoutListener listener = new MongoConnectionCheckoutListener(meterRegistry);
+        ServerId serverId = new ServerId(new ClusterId(), new ServerAddress("mongodb-mnotes", 27017));
+
+        // Act
+        listener.connectionCheckedOut(new ConnectionCheckedOutEvent(new ConnectionId(serverId), 1L,
+                TimeUnit.MILLISECONDS.toNanos(15)));
+        listener.connectionCheckOutFailed(new ConnectionCheckOutFailedEvent(serverId, 2L,
+                ConnectionCheckOutFailedEvent.Reason.TIMEOUT, TimeUnit.MILLISECONDS.toNanos(2000)));
+
+        // Assert
+        Timer success = meterRegistry.get(MongoConnectionCheckoutListener.CHECKOUT_TIMER)
+                .tags("status", "success", "server.address", "mongodb-mnotes:27017").timer();
+        assertEquals(1, success.count());
+        assertEquals(15.0, success.totalTime(TimeUnit.MILLISECONDS));
+        Timer timeout = meterRegistry.get(MongoConnectionCheckoutListener.CHECKOUT_TIMER)
+                .tags("status", "timeout").timer();
+        assertEquals(2000.0, timeout.totalTime(TimeUnit.MILLISECONDS));
+    }
+}
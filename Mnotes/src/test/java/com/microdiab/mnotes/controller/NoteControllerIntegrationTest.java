@@ -1,9 +1,18 @@
 package com.microdiab.mnotes.controller;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.microdiab.mnotes.exception.MalformedImportException;
 import com.microdiab.mnotes.model.Note;
+import com.microdiab.mnotes.model.NoteImportResult;
+import com.microdiab.mnotes.model.NoteSearchHit;
+import com.microdiab.mnotes.model.NoteSummary;
+import com.microdiab.mnotes.model.NoteVersion;
+import com.microdiab.mnotes.service.NoteChangePublisher;
+import com.microdiab.mnotes.service.NoteImporter;
+import com.microdiab.mnotes.service.NoteReadRoute;
 import com.microdiab.mnotes.service.NoteService;
 import com.microdiab.mnotes.tracing.TracingHelper;
+import jakarta.servlet.ServletException;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -12,16 +21,27 @@ import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.http.MediaType;
 import org.springframework.test.context.bean.override.mockito.MockitoBean;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.util.DigestUtils;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import java.io.InputStream;
+import java.time.Instant;
 import java.util.Arrays;
 import java.util.List;
 
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @WebMvcTest(NoteController.class)
@@ -40,6 +60,12 @@ public class NoteControllerIntegrationTest {
     @MockitoBean
     private TracingHelper tracing;
 
+    @MockitoBean
+    private NoteChangePublisher noteChangePublisher;
+
+    @MockitoBean
+    private NoteImporter noteImporter;
+
     private Note note1;
     private Note note2;
 
@@ -74,10 +100,50 @@ public class NoteControllerIntegrationTest {
                 .andExpect(status().isBadRequest());
     }
 
+    // Verifies that an NDJSON body is passed as a stream to the importer and that its result is returned.
+    @Test
+    void importNotes_shouldReturnImportResult() throws Exception {
+        when(noteImporter.importNotes(any(InputStream.class)))
+                .thenReturn(new NoteImportResult(2, 1, List.of("Record 3: patient is mandatory")));
+
+        mockMvc.perform(post("/notes/import")
+                        .contentType(MediaType.APPLICATION_NDJSON)
+                        .content("{}\n{}\n{}\n"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.imported").value(2))
+                .andExpect(jsonPath("$.rejected").value(1))
+                .andExpect(jsonPath("$.errors[0]").value("Record 3: patient is mandatory"));
+    }
+
+    // Verifies that the controller returns a 400 Bad Request status if the imported body is malformed.
+    @Test
+    void importNotes_shouldReturnBadRequest_whenJsonIsMalformed() throws Exception {
+        when(noteImporter.importNotes(any(InputStream.class)))
+                .thenThrow(new MalformedImportException("Malformed JSON at line 1, column 2", null));
+
+        mockMvc.perform(post("/notes/import")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("[{"))
+                .andExpect(status().isBadRequest());
+    }
+
+    // Verifies that other failures of the import are not reported as a malformed body.
+    @Test
+    void importNotes_shouldNotReturnBadRequest_whenImportFailsForAnotherReason() throws Exception {
+        when(noteImporter.importNotes(any(InputStream.class)))
+                .thenThrow(new IllegalArgumentException("Unexpected failure"));
+
+        ServletException exception = assertThrows(ServletException.class, () -> mockMvc.perform(post("/notes/import")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("[]")));
+        assertInstanceOf(IllegalArgumentException.class, exception.getCause());
+    }
+
     // Verifies that the controller returns a list of notes for a given patId, with a status of 200 OK.
     @Test
     void getNotesByPatId_shouldReturnListOfNotes() throws Exception {
         List<Note> notes = Arrays.asList(note1, note2);
+        when(noteService.getNotesVersion(15L)).thenReturn(new NoteVersion(15L, 0L));
         when(noteService.getNotesByPatId(anyLong())).thenReturn(notes);
 
         mockMvc.perform(get("/notes/15"))
@@ -88,4 +154,212 @@ public class NoteControllerIntegrationTest {
                 .andExpect(jsonPath("$[1].id").value("id421"))
                 .andExpect(jsonPath("$[1].note").value("Note du patient 2"));
     }
+
+    // Verifies that the controller returns the version of the patient's notes as an ETag.
+    @Test
+    void getNotesByPatId_shouldReturnETag() throws Exception {
+        when(noteService.getNotesVersion(15L)).thenReturn(new NoteVersion(15L, 2L));
+        when(noteService.getNotesByPatId(15L)).thenReturn(List.of(note1));
+
+        mockMvc.perform(get("/notes/15"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "\"0-2\""));
+    }
+
+    // Verifies that a matching If-None-Match header gives a 304 Not Modified without reading the notes.
+    @Test
+    void getNotesByPatId_shouldReturnNotModified_whenETagMatches() throws Exception {
+        when(noteService.getNotesVersion(15L)).thenReturn(new NoteVersion(15L, 2L));
+
+        mockMvc.perform(get("/notes/15").header("If-None-Match", "\"0-2\""))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string("ETag", "\"0-2\""));
+
+        verify(noteService, never()).getNotesByPatId(anyLong());
+    }
+
+    // Verifies that a version counter restarted from zero, with a new epoch, does not match an earlier ETag.
+    @Test
+    void getNotesByPatId_shouldReturnNotes_whenVersionCounterWasRecreated() throws Exception {
+        NoteVersion recreated = new NoteVersion(15L, 2L);
+        recreated.setCreatedAt(Instant.ofEpochMilli(1700000000000L));
+        when(noteService.getNotesVersion(15L)).thenReturn(recreated);
+        when(noteService.getNotesByPatId(15L)).thenReturn(List.of(note1));
+
+        mockMvc.perform(get("/notes/15").header("If-None-Match", "\"0-2\""))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "\"1700000000000-2\""));
+    }
+
+    // Verifies that only the requested fields are returned, with an ETag depending on them.
+    @Test
+    void getNotesByPatId_shouldReturnRequestedFieldsOnly() throws Exception {
+        Note projectedNote = new Note("id124", 15L, null, null);
+        when(noteService.getNotesVersion(15L)).thenReturn(new NoteVersion(15L, 2L));
+        when(noteService.getNotesByPatId(15L, List.of("patId", "id"))).thenReturn(List.of(projectedNote));
+
+        mockMvc.perform(get("/notes/15").param("fields", "patId,id"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "\"0-2;id,patId\""))
+                .andExpect(jsonPath("$[0].id").value("id124"))
+                .andExpect(jsonPath("$[0].patId").value(15))
+                .andExpect(jsonPath("$[0].note").doesNotExist())
+                .andExpect(jsonPath("$[0].patient").doesNotExist());
+
+        verify(noteService, never()).getNotesByPatId(anyLong());
+    }
+
+    // Verifies that unknown fields give a 400 Bad Request without reading the notes.
+    @Test
+    void getNotesByPatId_shouldReturnBadRequest_whenFieldsAreUnknown() throws Exception {
+        mockMvc.perform(get("/notes/15").param("fields", "id,password"))
+                .andExpect(status().isBadRequest());
+
+        verify(noteService, never()).getNotesByPatId(anyLong(), any());
+    }
+
+    // Verifies that a read routed to the secondaries bypasses the primary cache and returns an ETag of its content.
+    @Test
+    void getNotesByPatId_shouldReadFromSecondaries_whenRequested() throws Exception {
+        when(noteService.readsFromPrimary(NoteReadRoute.SECONDARY)).thenReturn(false);
+        when(noteService.readNotesByPatId(15L, NoteReadRoute.SECONDARY)).thenReturn(List.of(note1));
+        String etag = "\"" + DigestUtils.md5DigestAsHex(objectMapper.writeValueAsBytes(List.of(note1))) + "\"";
+
+        mockMvc.perform(get("/notes/15").header(NoteReadRoute.HEADER, "secondary"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", etag))
+                .andExpect(jsonPath("$[0].id").value("id124"));
+
+        verify(noteService, never()).getNotesByPatId(anyLong());
+        verify(noteService, never()).getNotesVersion(anyLong());
+    }
+
+    // Verifies that a read routed to the secondaries returns 304 Not Modified when its content has not changed.
+    @Test
+    void getNotesByPatId_shouldReturnNotModified_whenSecondaryContentIsUnchanged() throws Exception {
+        when(noteService.readsFromPrimary(NoteReadRoute.SECONDARY)).thenReturn(false);
+        when(noteService.readNotesByPatId(15L, NoteReadRoute.SECONDARY)).thenReturn(List.of(note1));
+        String etag = "\"" + DigestUtils.md5DigestAsHex(objectMapper.writeValueAsBytes(List.of(note1))) + "\"";
+
+        mockMvc.perform(get("/notes/15").header(NoteReadRoute.HEADER, "secondary").header("If-None-Match", etag))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string("ETag", etag));
+    }
+
+    // Verifies that the requested fields are read from the secondaries, without the cache, with an ETag of their content.
+    @Test
+    void getNotesByPatId_shouldReadFieldsFromSecondaries_whenRequested() throws Exception {
+        when(noteService.readsFromPrimary(NoteReadRoute.SECONDARY)).thenReturn(false);
+        when(noteService.getNotesByPatId(15L, List.of("triggerTermCounts"), NoteReadRoute.SECONDARY)).thenReturn(List.of(note1));
+        String etag = "\"" + DigestUtils.md5DigestAsHex(objectMapper.writeValueAsBytes(List.of(note1))) + "\"";
+
+        mockMvc.perform(get("/notes/15").param("fields", "triggerTermCounts").header(NoteReadRoute.HEADER, "secondary"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", etag));
+
+        verify(noteService, never()).readNotesByPatId(anyLong(), any());
+        verify(noteService, never()).getNotesVersion(anyLong());
+    }
+
+    // Verifies that the secondary route is served like a primary read, from the cache with the version ETag,
+    // while secondary reads are not enabled.
+    @Test
+    void getNotesByPatId_shouldReadCachedNotes_whenSecondaryRouteReadsFromPrimary() throws Exception {
+        when(noteService.readsFromPrimary(NoteReadRoute.SECONDARY)).thenReturn(true);
+        when(noteService.getNotesVersion(15L)).thenReturn(new NoteVersion(15L, 3L));
+        when(noteService.getNotesByPatId(15L)).thenReturn(List.of(note1));
+
+        mockMvc.perform(get("/notes/15").header(NoteReadRoute.HEADER, "secondary"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "\"0-3\""))
+                .andExpect(jsonPath("$[0].id").value("id124"));
+
+        verify(noteService, never()).readNotesByPatId(anyLong(), any());
+    }
+
+    // Verifies that the controller returns a 400 Bad Request status if the read route is unknown.
+    @Test
+    void getNotesByPatId_shouldReturnBadRequest_whenReadRoutingIsUnknown() throws Exception {
+        mockMvc.perform(get("/notes/15").header(NoteReadRoute.HEADER, "nearest"))
+                .andExpect(status().isBadRequest());
+
+        verify(noteService, never()).getNotesByPatId(anyLong());
+    }
+
+    // Verifies that the summary of the notes of a patient is returned without the content of the notes.
+    @Test
+    void getNoteSummary_shouldReturnSummary() throws Exception {
+        when(noteService.getNoteSummary(15L))
+                .thenReturn(new NoteSummary(15L, 2, Instant.parse("2026-01-10T10:00:00Z"), 4, 3));
+
+        mockMvc.perform(get("/notes/15/summary"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.patId").value(15))
+                .andExpect(jsonPath("$.noteCount").value(2))
+                .andExpect(jsonPath("$.triggerTermOccurrences").value(4))
+                .andExpect(jsonPath("$.triggerTermMatches").value(3))
+                .andExpect(jsonPath("$.note").doesNotExist());
+    }
+
+    // Verifies that the summaries of several patients are returned in the requested order.
+    @Test
+    void getNoteSummaries_shouldReturnSummariesOfPatients() throws Exception {
+        when(noteService.getNoteSummaries(List.of(15L, 16L)))
+                .thenReturn(List.of(new NoteSummary(15L, 2, null, 4, 3), NoteSummary.empty(16L)));
+
+        mockMvc.perform(get("/notes/summary").param("patIds", "15,16"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(2))
+                .andExpect(jsonPath("$[0].patId").value(15))
+                .andExpect(jsonPath("$[1].patId").value(16))
+                .andExpect(jsonPath("$[1].noteCount").value(0));
+    }
+
+    // Verifies that the search returns the matching notes without their content.
+    @Test
+    void searchNotes_shouldReturnMatchingNotes() throws Exception {
+        when(noteService.searchNotes("fumeur", 0, 20))
+                .thenReturn(List.of(new NoteSearchHit("id124", 15L, "Patient 1", 1.1f)));
+
+        mockMvc.perform(get("/notes/search").param("q", "fumeur"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(1))
+                .andExpect(jsonPath("$[0].id").value("id124"))
+                .andExpect(jsonPath("$[0].patId").value(15))
+                .andExpect(jsonPath("$[0].note").doesNotExist());
+    }
+
+    // Verifies that a blank search or an out-of-range page size is rejected with a 400 Bad Request.
+    @Test
+    void searchNotes_shouldReturnBadRequest_whenParametersAreInvalid() throws Exception {
+        mockMvc.perform(get("/notes/search").param("q", " "))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(get("/notes/search").param("q", "fumeur").param("size", "500"))
+                .andExpect(status().isBadRequest());
+
+        verify(noteService, never()).searchNotes(any(), anyInt(), anyInt());
+    }
+
+    // Verifies that the controller returns a 409 Conflict status if the full-text search is disabled.
+    @Test
+    void searchNotes_shouldReturnConflict_whenSearchIsDisabled() throws Exception {
+        when(noteService.searchNotes("fumeur", 0, 20))
+                .thenThrow(new IllegalStateException("Full-text search is disabled (mnotes.search.enabled=false)"));
+
+        mockMvc.perform(get("/notes/search").param("q", "fumeur"))
+                .andExpect(status().isConflict());
+    }
+
+    // Verifies that subscribing to the notes changes opens a Server-Sent Events stream.
+    @Test
+    void subscribeToNoteChanges_shouldOpenEventStream() throws Exception {
+        when(noteChangePublisher.subscribe()).thenReturn(new SseEmitter());
+
+        mockMvc.perform(get("/notes/changes").accept(MediaType.TEXT_EVENT_STREAM))
+                .andExpect(status().isOk())
+                .andExpect(request().asyncStarted());
+
+        verify(noteChangePublisher).subscribe();
+        verify(noteService, never()).getNotesByPatId(anyLong());
+    }
 }
@@ -1,6 +1,7 @@
 package com.microdiab.mnotes.controller;
 
 import com.microdiab.mnotes.model.Note;
+import com.microdiab.mnotes.model.NoteVersion;
 import com.microdiab.mnotes.service.NoteService;
 import com.microdiab.mnotes.tracing.TracingHelper;
 import org.junit.jupiter.api.BeforeEach;
@@ -11,14 +12,21 @@ import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
 import org.springframework.validation.BindingResult;
 import org.springframework.validation.ObjectError;
+import org.springframework.web.context.request.ServletWebRequest;
 
 import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 @ExtendWith(MockitoExtension.class)
@@ -80,18 +88,40 @@ public class NoteControllerTest {
 
 
     @Test
-    void getNotesByPatId_ReturnsListOfNotes() {
+    void getNotesByPatId_ReturnsListOfNotes() throws Exception {
         // Arrange
         Long patId = 1L;
         List<Note> notes = List.of(note);
+        when(noteService.getNotesVersion(patId)).thenReturn(new NoteVersion(patId, 3L));
         when(noteService.getNotesByPatId(patId)).thenReturn(notes);
+        ServletWebRequest request = new ServletWebRequest(new MockHttpServletRequest("GET", "/notes/1"), new MockHttpServletResponse());
 
         // Act
-        ResponseEntity<List<Note>> response = noteController.getNotesByPatId(patId);
+        ResponseEntity<List<Note>> response = noteController.getNotesByPatId(patId, null, null, request);
 
         // Assert
         assertNotNull(response);
         assertEquals(HttpStatus.OK, response.getStatusCode());
         assertEquals(notes, response.getBody());
+        assertEquals("\"0-3\"", response.getHeaders().getETag());
     }
-}
\ No newline at end of file
+
+
+    @Test
+    void getNotesByPatId_MatchingETag_ReturnsNotModifiedWithoutReadingNotes() throws Exception {
+        // Arrange
+        Long patId = 1L;
+        when(noteService.getNotesVersion(patId)).thenReturn(new NoteVersion(patId, 3L));
+        MockHttpServletRequest servletRequest = new MockHttpServletRequest("GET", "/notes/1");
+        servletRequest.addHeader("If-None-Match", "\"0-3\"");
+        ServletWebRequest request = new ServletWebRequest(servletRequest, new MockHttpServletResponse());
+
+        // Act
+        ResponseEntity<List<Note>> response = noteController.getNotesByPatId(patId, null, null, request);
+
+        // Assert
+        assertEquals(HttpStatus.NOT_MODIFIED, response.getStatusCode());
+        assertNull(response.getBody());
+        verify(noteService, never()).getNotesByPatId(anyLong());
+    }
+}
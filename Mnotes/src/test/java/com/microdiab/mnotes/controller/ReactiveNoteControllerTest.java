@@ -0,0 +1,75 @@
+package com.microdiab.mnotes.controller;
+
+import com.microdiab.mnotes.model.Note;
+import com.microdiab.mnotes.service.ReactiveNoteService;
+import com.microdiab.mnotes.tracing.TracingHelper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import reactor.core.publisher.Flux;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@ExtendWith(MockitoExtension.class)
+public class ReactiveNoteControllerTest {
+
+    @Mock
+    private ReactiveNoteService reactiveNoteService;
+
+    @Mock
+    private TracingHelper tracing;
+
+    @InjectMocks
+    private ReactiveNoteController reactiveNoteController;
+
+    private MockMvc mockMvc;
+
+    @BeforeEach
+    void setUp() {
+        mockMvc = MockMvcBuilders.standaloneSetup(reactiveNoteController).build();
+    }
+
+
+    @Test
+    void streamNotesByPatId_shouldWriteOneJsonDocumentPerLine() throws Exception {
+        // Arrange
+        Note note1 = new Note("1", 1L, "Test Patient", "Première note");
+        Note note2 = new Note("2", 1L, "Test Patient", "Deuxième note");
+        when(reactiveNoteService.getNotesByPatId(1L)).thenReturn(Flux.just(note1, note2));
+
+        // Act
+        MvcResult mvcResult = mockMvc.perform(get("/notes/1/stream").accept(MediaType.APPLICATION_NDJSON))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        // Assert
+        String body = mockMvc.perform(asyncDispatch(mvcResult))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_NDJSON))
+                .andReturn().getResponse().getContentAsString(StandardCharsets.UTF_8);
+
+        String[] lines = body.strip().split("\n");
+        assertEquals(2, lines.length);
+        assertTrue(lines[0].contains("\"note\":\"Première note\""));
+        assertTrue(lines[1].contains("\"note\":\"Deuxième note\""));
+        verify(reactiveNoteService).getNotesByPatId(1L);
+        verify(tracing).tag("patient.id", 1L);
+    }
+}
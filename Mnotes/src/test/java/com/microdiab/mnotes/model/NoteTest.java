@@ -6,6 +6,8 @@ import jakarta.validation.Validator;
 import jakarta.validation.ValidatorFactory;
 import org.junit.jupiter.api.BeforeEach;
 
+import java.time.Instant;
+
 import static org.junit.jupiter.api.Assertions.*;
 
 
@@ -93,4 +95,39 @@ public class NoteTest {
         assertTrue(result.contains("patient=''"));
         assertTrue(result.contains("note=''"));
     }
+
+    @Test
+    void testToString_WithCompressedNote() {
+        Note note = new Note("123", 1L, "Jean Dupont", null);
+        note.setCompressedNote(new byte[] {1, 2, 3});
+        assertEquals("Note{patId=1, patient='Jean Dupont', compressedNote=3 bytes}", note.toString());
+    }
+
+    @Test
+    void testGetNote_DecompressesCompressedNote() {
+        Note note = new Note("123", 1L, "Jean Dupont", null);
+        note.setCompressedNote(NoteTextCodec.deflate("Note compressée"));
+
+        assertEquals("Note compressée", note.getNote());
+        assertEquals("Note compressée", note.getNote());
+    }
+
+    @Test
+    void testGetNote_PrefersUncompressedContent() {
+        Note note = new Note("123", 1L, "Jean Dupont", "Note valide");
+        assertNull(note.getCompressedNote());
+        assertEquals("Note valide", note.getNote());
+    }
+
+    @Test
+    void testGetCreatedAt_TakenFromObjectId() {
+        Note note = new Note("65a0f2c8e4b0a1b2c3d4e5f6", 1L, "Jean Dupont", "Note valide");
+        assertEquals(Instant.ofEpochSecond(0x65a0f2c8L), note.getCreatedAt());
+    }
+
+    @Test
+    void testGetCreatedAt_NullWhenIdIsNotObjectId() {
+        assertNull(new Note("123", 1L, "Jean Dupont", "Note valide").getCreatedAt());
+        assertNull(new Note().getCreatedAt());
+    }
 }
@@ -0,0 +1,80 @@
+package com.microdiab.mnotes.service;
+
+import com.microdiab.mnotes.model.Note;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class NoteAnnotationBackfillTest {
+
+    @Mock
+    private MongoTemplate mongoTemplate;
+
+    @Mock
+    private BulkOperations bulkOperations;
+
+    @Mock
+    private NoteVersionTracker noteVersionTracker;
+
+    private NoteAnnotationBackfill backfill;
+
+    @BeforeEach
+    void setUp() {
+        backfill = new NoteAnnotationBackfill(mongoTemplate, new TriggerTermAnnotator(), noteVersionTracker, 2);
+    }
+
+
+    @Test
+    void backfill_shouldAnnotateNotesBatchByBatch() {
+        // Arrange
+        Note note1 = new Note("1", 1L, "Patient A", "Fumeur");
+        Note note2 = new Note("2", 1L, "Patient A", "Poids");
+        Note note3 = new Note("3", 2L, "Patient B", "Taille");
+        when(mongoTemplate.find(any(Query.class), eq(Note.class)))
+                .thenReturn(List.of(note1, note2))
+                .thenReturn(List.of(note3))
+                .thenReturn(List.of());
+        when(mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Note.class)).thenReturn(bulkOperations);
+
+        // Act
+        long annotated = backfill.backfill();
+
+        // Assert
+        assertEquals(3, annotated);
+        verify(bulkOperations, times(3)).updateOne(any(Query.class), any(Update.class));
+        verify(bulkOperations, times(2)).execute();
+        assertEquals(1, note1.getTriggerTermCounts().get("Fumeur"));
+        assertEquals(1, note3.getTriggerTermCounts().get("Taille"));
+        verify(noteVersionTracker).markChanged(List.of(note1, note2));
+        verify(noteVersionTracker).markChanged(List.of(note3));
+    }
+
+
+    @Test
+    void backfill_shouldDoNothingWhenAllNotesAreAnnotated() {
+        // Arrange
+        when(mongoTemplate.find(any(Query.class), eq(Note.class))).thenReturn(List.of());
+
+        // Act
+        long annotated = backfill.backfill();
+
+        // Assert
+        assertEquals(0, annotated);
+        verify(mongoTemplate, never()).bulkOps(any(BulkOperations.BulkMode.class), eq(Note.class));
+        verifyNoInteractions(noteVersionTracker);
+    }
+}
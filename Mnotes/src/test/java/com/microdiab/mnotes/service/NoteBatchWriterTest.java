@@ -0,0 +1,260 @@
+package com.microdiab.mnotes.service;
+
+import com.microdiab.mnotes.configuration.CacheConfig;
+import com.microdiab.mnotes.model.Note;
+import com.microdiab.mnotes.model.NoteVersion;
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.ServerAddress;
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.bulk.BulkWriteResult;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.bson.BsonDocument;
+import org.bson.Document;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.dao.DataIntegrityViolationException;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class NoteBatchWriterTest {
+
+    @Mock
+    private MongoTemplate mongoTemplate;
+
+    @Mock
+    private BulkOperations bulkOperations;
+
+    @Mock
+    private NoteBucketStore noteBucketStore;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private final CacheManager cacheManager =
+            new ConcurrentMapCacheManager(CacheConfig.NOTES_CACHE, CacheConfig.SECONDARY_NOTES_CACHE);
+
+    private NoteBatchWriter writer;
+
+    private NoteBatchWriter newWriter(boolean enabled, int maxBatchSize, Duration maxDelay, int queueCapacity) {
+        return newWriter(enabled, maxBatchSize, maxDelay, queueCapacity, "document");
+    }
+
+    private NoteBatchWriter newWriter(boolean enabled, int maxBatchSize, Duration maxDelay, int queueCapacity,
+                                      String storageLayout) {
+        writer = new NoteBatchWriter(mongoTemplate, new NoteVersionTracker(mongoTemplate, cacheManager), noteBucketStore,
+                meterRegistry, enabled, maxBatchSize, maxDelay, queueCapacity, Duration.ofSeconds(5), storageLayout);
+        writer.start();
+        return writer;
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        if (writer != null) {
+            writer.stop();
+        }
+    }
+
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void insert_shouldGroupConcurrentNotesIntoOneBatch() throws Exception {
+        // Arrange
+        when(mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, NoteVersion.class)).thenReturn(bulkOperations);
+        newWriter(true, 3, Duration.ofSeconds(2), 100);
+        ExecutorService callers = Executors.newFixedThreadPool(3);
+        CountDownLatch start = new CountDownLatch(1);
+        List<CompletableFuture<Note>> results = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            Note note = new Note(null, i < 2 ? 1L : 2L, "Patient", "Note " + i);
+            results.add(CompletableFuture.supplyAsync(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return writer.insert(note);
+            }, callers));
+        }
+
+        // Act
+        start.countDown();
+        CompletableFuture.allOf(results.toArray(CompletableFuture[]::new)).get(5, TimeUnit.SECONDS);
+        callers.shutdown();
+
+        // Assert
+        ArgumentCaptor<Collection<Note>> captor = ArgumentCaptor.forClass(Collection.class);
+        verify(mongoTemplate, times(1)).insert(captor.capture(), eq(Note.class));
+        assertEquals(3, captor.getValue().size());
+        verify(bulkOperations, times(2)).upsert(any(Query.class), any(Update.class));
+        verify(bulkOperations, times(1)).execute();
+        assertEquals(1, meterRegistry.get("mnotes.notes.write.batch.size").summary().count());
+        assertEquals(3.0, meterRegistry.get("mnotes.notes.write.batch.size").summary().max());
+        assertEquals(1, meterRegistry.get("mnotes.notes.write.flush").timer().count());
+    }
+
+
+    @Test
+    void insert_shouldFlushAfterMaximumDelay() {
+        // Arrange
+        newWriter(true, 100, Duration.ofMillis(10), 100);
+        Note note = new Note(null, 1L, "Patient", "Note seule");
+
+        // Act
+        Note savedNote = writer.insert(note);
+
+        // Assert
+        assertSame(note, savedNote);
+        verify(mongoTemplate, times(1)).insert(anyCollection(), eq(Note.class));
+        verify(mongoTemplate).upsert(any(Query.class), incrementsVersionBy(1L), eq(NoteVersion.class));
+    }
+
+
+    @Test
+    void insert_shouldPropagateInsertFailureToCaller() {
+        // Arrange
+        newWriter(true, 100, Duration.ofMillis(10), 100);
+        when(mongoTemplate.insert(anyCollection(), eq(Note.class)))
+                .thenThrow(new DataIntegrityViolationException("duplicate key"));
+        Note note = new Note(null, 1L, "Patient", "Note");
+
+        // Act & Assert
+        assertThrows(DataIntegrityViolationException.class, () -> writer.insert(note));
+    }
+
+
+    @Test
+    void insert_shouldInsertDirectlyWhenWriterIsNotRunning() {
+        // Arrange
+        newWriter(false, 100, Duration.ofMillis(10), 100);
+        Note note = new Note(null, 1L, "Patient", "Note");
+
+        // Act
+        Note savedNote = writer.insert(note);
+
+        // Assert
+        assertSame(note, savedNote);
+        assertFalse(writer.isEnabled());
+        verify(mongoTemplate, times(1)).insert(List.of(note), Note.class);
+        assertEquals(0.0, meterRegistry.get("mnotes.notes.write.queue.depth").gauge().value());
+    }
+
+
+    @Test
+    void flush_shouldCompleteNotesWrittenBeforeFailure_andFailTheOthers() {
+        // Arrange
+        newWriter(false, 100, Duration.ofMillis(10), 100);
+        cacheManager.getCache(CacheConfig.NOTES_CACHE).put(1L, List.of());
+        MongoBulkWriteException bulkWriteException = new MongoBulkWriteException(
+                BulkWriteResult.acknowledged(1, 0, 0, 0, List.of(), List.of()),
+                List.of(new BulkWriteError(11000, "duplicate key", new BsonDocument(), 1)),
+                null, new ServerAddress(), Set.of());
+        when(mongoTemplate.insert(anyCollection(), eq(Note.class)))
+                .thenThrow(new DuplicateKeyException("duplicate key", bulkWriteException));
+        List<NoteBatchWriter.PendingNote> batch = List.of(
+                new NoteBatchWriter.PendingNote(new Note(null, 1L, "Patient A", "Écrite"), new CompletableFuture<>()),
+                new NoteBatchWriter.PendingNote(new Note(null, 2L, "Patient B", "En double"), new CompletableFuture<>()),
+                new NoteBatchWriter.PendingNote(new Note(null, 3L, "Patient C", "Non tentée"), new CompletableFuture<>()));
+
+        // Act
+        writer.flush(batch);
+
+        // Assert
+        assertSame(batch.get(0).note(), batch.get(0).result().join());
+        assertTrue(batch.get(1).result().isCompletedExceptionally());
+        assertTrue(batch.get(2).result().isCompletedExceptionally());
+        verify(mongoTemplate).upsert(eq(Query.query(Criteria.where("_id").is(1L))), incrementsVersionBy(1L),
+                eq(NoteVersion.class));
+        verify(mongoTemplate, never()).bulkOps(any(BulkOperations.BulkMode.class), eq(NoteVersion.class));
+        assertNull(cacheManager.getCache(CacheConfig.NOTES_CACHE).get(1L));
+    }
+
+
+    @Test
+    void flush_shouldCompleteWrittenNotes_whenVersionsCannotBeIncremented() {
+        // Arrange
+        newWriter(false, 100, Duration.ofMillis(10), 100);
+        cacheManager.getCache(CacheConfig.NOTES_CACHE).put(1L, List.of());
+        when(mongoTemplate.upsert(any(Query.class), any(Update.class), eq(NoteVersion.class)))
+                .thenThrow(new DataAccessResourceFailureException("MongoDB unavailable"));
+        NoteBatchWriter.PendingNote pendingNote =
+                new NoteBatchWriter.PendingNote(new Note(null, 1L, "Patient A", "Écrite"), new CompletableFuture<>());
+
+        // Act
+        writer.flush(List.of(pendingNote));
+
+        // Assert
+        assertSame(pendingNote.note(), pendingNote.result().join());
+        verify(mongoTemplate, times(2)).upsert(any(Query.class), any(Update.class), eq(NoteVersion.class));
+        assertNull(cacheManager.getCache(CacheConfig.NOTES_CACHE).get(1L));
+    }
+
+
+    @Test
+    void flush_shouldAppendNotesToBuckets_whenStorageLayoutIsBucket() {
+        // Arrange
+        newWriter(false, 100, Duration.ofMillis(10), 100, "bucket");
+        List<NoteBatchWriter.PendingNote> batch = List.of(
+                new NoteBatchWriter.PendingNote(new Note(null, 1L, "Patient A", "Première"), new CompletableFuture<>()),
+                new NoteBatchWriter.PendingNote(new Note(null, 1L, "Patient A", "Deuxième"), new CompletableFuture<>()));
+
+        // Act
+        writer.flush(batch);
+
+        // Assert
+        verify(noteBucketStore).insertAll(List.of(batch.get(0).note(), batch.get(1).note()));
+        verify(mongoTemplate, never()).insert(anyCollection(), eq(Note.class));
+        verify(mongoTemplate).upsert(eq(Query.query(Criteria.where("_id").is(1L))), incrementsVersionBy(2L),
+                eq(NoteVersion.class));
+        assertSame(batch.get(1).note(), batch.get(1).result().join());
+    }
+
+
+    @Test
+    void insert_shouldInsertDirectlyOnceWriterIsStopped() throws InterruptedException {
+        // Arrange
+        newWriter(true, 100, Duration.ofMillis(10), 100);
+        writer.stop();
+        Note note = new Note(null, 1L, "Patient", "Note après l'arrêt");
+
+        // Act
+        Note savedNote = writer.insert(note);
+
+        // Assert
+        assertSame(note, savedNote);
+        verify(mongoTemplate, times(1)).insert(List.of(note), Note.class);
+    }
+
+
+    private static Update incrementsVersionBy(long count) {
+        return argThat(update -> new Document("version", count).equals(update.getUpdateObject().get("$inc"))
+                && update.getUpdateObject().get("$setOnInsert", Document.class).containsKey("createdAt"));
+    }
+}
@@ -0,0 +1,123 @@
+package com.microdiab.mnotes.service;
+
+import com.microdiab.mnotes.model.Note;
+import com.microdiab.mnotes.model.NoteBucket;
+import com.mongodb.client.result.UpdateResult;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class NoteBucketMigrationTest {
+
+    @Mock
+    private MongoTemplate mongoTemplate;
+
+    @Mock
+    private NoteService noteService;
+
+    private NoteBucketMigration migration;
+
+    @BeforeEach
+    void setUp() {
+        migration = new NoteBucketMigration(mongoTemplate, new NoteBucketStore(mongoTemplate, 200), noteService);
+    }
+
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void migrate_shouldPackNotesOfEachPatientNotYetMigrated() {
+        // Arrange
+        Note note1 = new Note(new ObjectId().toHexString(), 1L, "Patient A", "Première note");
+        Note note2 = new Note(new ObjectId().toHexString(), 1L, "Patient A", "Deuxième note");
+        Note note3 = new Note(new ObjectId().toHexString(), 2L, "Patient B", "Déjà migrée");
+        Note note4 = new Note(new ObjectId().toHexString(), 3L, "Patient C", "Note");
+        when(mongoTemplate.findDistinct(any(Query.class), eq("patId"), eq(NoteBucket.class), eq(Long.class)))
+                .thenReturn(List.of(2L));
+        when(mongoTemplate.stream(any(Query.class), eq(Note.class)))
+                .thenReturn(Stream.of(note1, note2, note3, note4));
+        when(mongoTemplate.find(any(Query.class), eq(NoteBucket.class)))
+                .thenReturn(List.of(bucketOf(2L, note3.getId())));
+
+        // Act
+        long migrated = migration.migrate();
+
+        // Assert
+        assertEquals(3, migrated);
+        ArgumentCaptor<Collection<NoteBucket>> captor = ArgumentCaptor.forClass(Collection.class);
+        verify(mongoTemplate, times(2)).insert(captor.capture(), eq(NoteBucket.class));
+        NoteBucket bucket = captor.getAllValues().get(0).iterator().next();
+        assertEquals(1L, bucket.getPatId());
+        assertEquals(List.of(note1, note2), bucket.getNotes());
+        verify(noteService).markNotesChanged(1L);
+        verify(noteService).markNotesChanged(3L);
+        verify(noteService, never()).markNotesChanged(2L);
+    }
+
+
+    @Test
+    void migrate_shouldAddOnlyMissingNotesOfPatientWithBuckets() {
+        // Arrange
+        Note migratedNote = new Note(new ObjectId().toHexString(), 2L, "Patient B", "Déjà migrée");
+        Note olderNote = new Note(new ObjectId().toHexString(), 2L, "Patient B", "Restée dans collection_notes");
+        when(mongoTemplate.findDistinct(any(Query.class), eq("patId"), eq(NoteBucket.class), eq(Long.class)))
+                .thenReturn(List.of(2L));
+        when(mongoTemplate.stream(any(Query.class), eq(Note.class))).thenReturn(Stream.of(migratedNote, olderNote));
+        when(mongoTemplate.find(any(Query.class), eq(NoteBucket.class)))
+                .thenReturn(List.of(bucketOf(2L, migratedNote.getId())));
+        when(mongoTemplate.updateFirst(any(Query.class), any(Update.class), eq(NoteBucket.class)))
+                .thenReturn(UpdateResult.acknowledged(0, 0L, null));
+
+        // Act
+        long migrated = migration.migrate();
+
+        // Assert
+        assertEquals(1, migrated);
+        ArgumentCaptor<Update> captor = ArgumentCaptor.forClass(Update.class);
+        verify(mongoTemplate).upsert(any(Query.class), captor.capture(), eq(NoteBucket.class));
+        assertEquals(olderNote, ((Document) captor.getValue().getUpdateObject().get("$push")).get("notes"));
+        verify(mongoTemplate, never()).insert(anyCollection(), eq(NoteBucket.class));
+        verify(noteService).markNotesChanged(2L);
+    }
+
+
+    @Test
+    void migrate_shouldDoNothingWithoutNotes() {
+        // Arrange
+        when(mongoTemplate.findDistinct(any(Query.class), eq("patId"), eq(NoteBucket.class), eq(Long.class)))
+                .thenReturn(List.of());
+        when(mongoTemplate.stream(any(Query.class), eq(Note.class))).thenReturn(Stream.empty());
+
+        // Act
+        long migrated = migration.migrate();
+
+        // Assert
+        assertEquals(0, migrated);
+        verify(mongoTemplate, never()).insert(anyCollection(), eq(NoteBucket.class));
+    }
+
+
+    private static NoteBucket bucketOf(Long patId, String noteId) {
+        Note note = new Note();
+        note.setId(noteId);
+        return new NoteBucket(patId, NoteBucketStore.periodOf(noteId), List.of(note));
+    }
+}
@@ -0,0 +1,183 @@
+package com.microdiab.mnotes.service;
+
+import com.microdiab.mnotes.model.Note;
+import com.microdiab.mnotes.model.NoteBucket;
+import com.mongodb.client.result.UpdateResult;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.time.Instant;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class NoteBucketStoreTest {
+
+    @Mock
+    private MongoTemplate mongoTemplate;
+
+    @Mock
+    private BulkOperations bulkOperations;
+
+    private NoteBucketStore noteBucketStore;
+
+    @BeforeEach
+    void setUp() {
+        noteBucketStore = new NoteBucketStore(mongoTemplate, 2);
+    }
+
+    private static String idAt(String instant) {
+        return new ObjectId(Date.from(Instant.parse(instant))).toHexString();
+    }
+
+
+    @Test
+    void save_shouldPushNewNoteIntoBucketOfItsMonthWithRoom() {
+        // Arrange
+        Note note = new Note(null, 1L, "Patient A", "Note");
+
+        // Act
+        Note savedNote = noteBucketStore.save(note);
+
+        // Assert
+        assertNotNull(savedNote.getId());
+        ArgumentCaptor<Query> queryCaptor = ArgumentCaptor.forClass(Query.class);
+        ArgumentCaptor<Update> updateCaptor = ArgumentCaptor.forClass(Update.class);
+        verify(mongoTemplate).upsert(queryCaptor.capture(), updateCaptor.capture(), eq(NoteBucket.class));
+        Document query = queryCaptor.getValue().getQueryObject();
+        assertEquals(1L, query.get("patId"));
+        assertEquals(NoteBucketStore.periodOf(savedNote.getId()), query.get("period"));
+        assertEquals(new Document("$lt", 2), query.get("count"));
+        Document update = updateCaptor.getValue().getUpdateObject();
+        assertSame(note, update.get("$push", Document.class).get("notes"));
+        assertEquals(1, update.get("$inc", Document.class).get("count"));
+        verify(mongoTemplate, never()).updateFirst(any(Query.class), any(Update.class), eq(NoteBucket.class));
+    }
+
+
+    @Test
+    void save_shouldReplaceExistingNoteInPlace() {
+        // Arrange
+        Note note = new Note(idAt("2026-03-05T10:00:00Z"), 1L, "Patient A", "Note modifiée");
+        when(mongoTemplate.updateFirst(any(Query.class), any(Update.class), eq(NoteBucket.class)))
+                .thenReturn(UpdateResult.acknowledged(1, 1L, null));
+
+        // Act
+        noteBucketStore.save(note);
+
+        // Assert
+        verify(mongoTemplate, never()).upsert(any(Query.class), any(Update.class), eq(NoteBucket.class));
+    }
+
+
+    @Test
+    void findByPatId_shouldFlattenBucketsInOrder() {
+        // Arrange
+        Note note1 = new Note("1", 1L, "Patient A", "Première note");
+        Note note2 = new Note("2", 1L, "Patient A", "Deuxième note");
+        Note note3 = new Note("3", 1L, "Patient A", "Troisième note");
+        when(mongoTemplate.find(any(Query.class), eq(NoteBucket.class))).thenReturn(List.of(
+                new NoteBucket(1L, "2026-01", List.of(note1, note2)),
+                new NoteBucket(1L, "2026-02", List.of(note3))));
+
+        // Act
+        List<Note> notes = noteBucketStore.findByPatId(1L);
+
+        // Assert
+        assertEquals(List.of(note1, note2, note3), notes);
+        ArgumentCaptor<Query> captor = ArgumentCaptor.forClass(Query.class);
+        verify(mongoTemplate).find(captor.capture(), eq(NoteBucket.class));
+        assertEquals(new Document("notes.searchTerms", 0), captor.getValue().getFieldsObject());
+    }
+
+
+    @Test
+    void insertAll_shouldAppendNotesWithSingleOrderedBulkWrite() {
+        // Arrange
+        when(mongoTemplate.bulkOps(BulkOperations.BulkMode.ORDERED, NoteBucket.class)).thenReturn(bulkOperations);
+        Note note1 = new Note(null, 1L, "Patient A", "Première");
+        Note note2 = new Note(null, 2L, "Patient B", "Deuxième");
+
+        // Act
+        noteBucketStore.insertAll(List.of(note1, note2));
+
+        // Assert
+        assertNotNull(note1.getId());
+        assertNotNull(note2.getId());
+        ArgumentCaptor<Update> updateCaptor = ArgumentCaptor.forClass(Update.class);
+        verify(bulkOperations, times(2)).upsert(any(Query.class), updateCaptor.capture());
+        assertSame(note2, updateCaptor.getAllValues().get(1).getUpdateObject().get("$push", Document.class).get("notes"));
+        verify(bulkOperations).execute();
+        verify(mongoTemplate, never()).upsert(any(Query.class), any(Update.class), eq(NoteBucket.class));
+    }
+
+
+    @Test
+    void saveAll_shouldReplaceMoveOrAppendNotesAccordingToTheirBuckets() {
+        // Arrange
+        when(mongoTemplate.bulkOps(BulkOperations.BulkMode.ORDERED, NoteBucket.class)).thenReturn(bulkOperations);
+        Note stored = new Note(idAt("2026-03-05T10:00:00Z"), 1L, "Patient A", "Note modifiée");
+        Note moved = new Note(idAt("2026-03-06T10:00:00Z"), 2L, "Patient B", "Note déplacée");
+        Note missing = new Note("note-3", 1L, "Patient A", "Note absente");
+        Note created = new Note(null, 1L, "Patient A", "Nouvelle note");
+        NoteBucket bucket = new NoteBucket(1L, "2026-03", List.of(
+                new Note(stored.getId(), null, null, null), new Note(moved.getId(), null, null, null)));
+        when(mongoTemplate.find(any(Query.class), eq(NoteBucket.class))).thenReturn(List.of(bucket));
+
+        // Act
+        noteBucketStore.saveAll(List.of(stored, moved, missing, created));
+
+        // Assert
+        ArgumentCaptor<Query> lookupCaptor = ArgumentCaptor.forClass(Query.class);
+        verify(mongoTemplate).find(lookupCaptor.capture(), eq(NoteBucket.class));
+        assertEquals(Document.parse("{'patId': 1, 'notes.id': 1}"), lookupCaptor.getValue().getFieldsObject());
+        ArgumentCaptor<Update> updateCaptor = ArgumentCaptor.forClass(Update.class);
+        verify(bulkOperations, times(2)).updateOne(any(Query.class), updateCaptor.capture());
+        assertSame(stored, updateCaptor.getAllValues().get(0).getUpdateObject().get("$set", Document.class).get("notes.$"));
+        Document pull = updateCaptor.getAllValues().get(1).getUpdateObject();
+        assertEquals(new Document("notes", new Document("_id", new ObjectId(moved.getId()))), pull.get("$pull"));
+        assertEquals(-1, pull.get("$inc", Document.class).get("count"));
+        ArgumentCaptor<Query> upsertCaptor = ArgumentCaptor.forClass(Query.class);
+        verify(bulkOperations, times(3)).upsert(upsertCaptor.capture(), any(Update.class));
+        assertEquals(2L, upsertCaptor.getAllValues().get(0).getQueryObject().get("patId"));
+        assertNotNull(created.getId());
+        verify(bulkOperations).execute();
+    }
+
+
+    @Test
+    void toBuckets_shouldSplitNotesByMonthAndMaximumCount() {
+        // Arrange
+        Note january1 = new Note(idAt("2026-01-05T10:00:00Z"), 1L, "Patient A", "1");
+        Note january2 = new Note(idAt("2026-01-15T10:00:00Z"), 1L, "Patient A", "2");
+        Note january3 = new Note(idAt("2026-01-25T10:00:00Z"), 1L, "Patient A", "3");
+        Note february = new Note(idAt("2026-02-01T10:00:00Z"), 1L, "Patient A", "4");
+
+        // Act
+        List<NoteBucket> buckets = noteBucketStore.toBuckets(1L, List.of(february, january3, january1, january2));
+
+        // Assert
+        assertEquals(3, buckets.size());
+        assertEquals("2026-01", buckets.get(0).getPeriod());
+        assertEquals(List.of(january1, january2), buckets.get(0).getNotes());
+        assertEquals(2, buckets.get(0).getCount());
+        assertEquals(List.of(january3), buckets.get(1).getNotes());
+        assertEquals("2026-02", buckets.get(2).getPeriod());
+        assertEquals(1, buckets.get(2).getCount());
+    }
+}
@@ -0,0 +1,202 @@
+package com.microdiab.mnotes.service;
+
+import com.microdiab.mnotes.model.NoteChangeEvent;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.task.VirtualThreadTaskExecutor;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class NoteChangePublisherTest {
+
+    private static final NoteChangeEvent EVENT = new NoteChangeEvent(15L, "insert", Instant.parse("2026-01-10T10:00:00Z"));
+
+    private SimpleMeterRegistry meterRegistry;
+
+    private NoteChangePublisher publisher;
+
+    /** Sends submitted to the executor of the publisher, run on demand by the tests. */
+    private List<Runnable> pendingSends;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        pendingSends = new ArrayList<>();
+        publisher = new NoteChangePublisher(meterRegistry, Duration.ofMinutes(5), 2, pendingSends::add);
+    }
+
+    /**
+     * Emitter recording the events sent to it, or failing as a disconnected client would.
+     */
+    private static class RecordingEmitter extends SseEmitter {
+
+        private final List<Set<DataWithMediaType>> sentEvents = new CopyOnWriteArrayList<>();
+
+        private final boolean disconnected;
+
+        private boolean completed;
+
+        RecordingEmitter(boolean disconnected) {
+            this.disconnected = disconnected;
+        }
+
+        @Override
+        public void send(SseEventBuilder builder) throws IOException {
+            if (disconnected) {
+                throw new IOException("Broken pipe");
+            }
+            sentEvents.add(builder.build());
+        }
+
+        @Override
+        public void complete() {
+            completed = true;
+            super.complete();
+        }
+    }
+
+
+    @Test
+    void subscribe_shouldReturnEmitterAndCountSubscriber() {
+        // Act
+        SseEmitter emitter = publisher.subscribe();
+
+        // Assert
+        assertNotNull(emitter);
+        assertEquals(300_000L, emitter.getTimeout());
+        assertEquals(1.0, subscriberCount());
+    }
+
+
+    @Test
+    void publish_shouldSendEventToSubscribersAndDropDisconnectedOnes() {
+        // Arrange
+        RecordingEmitter connected = new RecordingEmitter(false);
+        RecordingEmitter disconnected = new RecordingEmitter(true);
+        publisher.register(connected);
+        publisher.register(disconnected);
+
+        // Act
+        publisher.publish(EVENT);
+
+        // Assert
+        assertTrue(connected.sentEvents.isEmpty());
+        assertEquals(2, pendingSends.size());
+        pendingSends.forEach(Runnable::run);
+        assertEquals(1, connected.sentEvents.size());
+        String eventText = connected.sentEvents.get(0).stream()
+                .map(part -> String.valueOf(part.getData())).reduce("", String::concat);
+        assertTrue(eventText.contains("event:" + NoteChangePublisher.EVENT_NAME));
+        assertTrue(connected.sentEvents.get(0).stream().anyMatch(part -> part.getData() == EVENT));
+        assertEquals(1.0, subscriberCount());
+        assertEquals(1.0, meterRegistry.get("mnotes.notes.changes.published").counter().count());
+    }
+
+
+    @Test
+    void publish_shouldSendQueuedEventsInOrderWithOneTaskPerSubscriber() {
+        // Arrange
+        RecordingEmitter connected = new RecordingEmitter(false);
+        publisher.register(connected);
+
+        // Act
+        publisher.publish(EVENT);
+        publisher.heartbeat();
+
+        // Assert
+        assertEquals(1, pendingSends.size());
+        pendingSends.forEach(Runnable::run);
+        assertEquals(2, connected.sentEvents.size());
+        assertTrue(connected.sentEvents.get(0).stream().anyMatch(part -> part.getData() == EVENT));
+        assertTrue(String.valueOf(connected.sentEvents.get(1).iterator().next().getData()).startsWith(":heartbeat"));
+    }
+
+
+    @Test
+    void publish_shouldDropAndCompleteSubscriberWhenItsQueueIsFull() {
+        // Arrange
+        RecordingEmitter slow = new RecordingEmitter(false);
+        publisher.register(slow);
+
+        // Act
+        publisher.publish(EVENT);
+        publisher.publish(EVENT);
+        publisher.publish(EVENT);
+
+        // Assert
+        assertEquals(0.0, subscriberCount());
+        assertEquals(1.0, meterRegistry.get("mnotes.notes.changes.dropped").counter().count());
+        pendingSends.forEach(Runnable::run);
+        assertTrue(slow.completed);
+        assertTrue(slow.sentEvents.isEmpty());
+    }
+
+
+    @Test
+    void publish_shouldNotBeDelayedBySubscriberThatStopsReading() throws Exception {
+        // Arrange
+        publisher = new NoteChangePublisher(meterRegistry, Duration.ofMinutes(5), 2,
+                new VirtualThreadTaskExecutor("note-changes-test-"));
+        CountDownLatch stalled = new CountDownLatch(1);
+        CountDownLatch received = new CountDownLatch(1);
+        publisher.register(new SseEmitter() {
+            @Override
+            public void send(SseEventBuilder builder) throws IOException {
+                try {
+                    stalled.await();
+                } catch (InterruptedException e) {
+                    throw new IOException(e);
+                }
+            }
+        });
+        publisher.register(new SseEmitter() {
+            @Override
+            public void send(SseEventBuilder builder) {
+                received.countDown();
+            }
+        });
+
+        try {
+            // Act
+            publisher.publish(EVENT);
+
+            // Assert
+            assertTrue(received.await(5, TimeUnit.SECONDS));
+        } finally {
+            stalled.countDown();
+        }
+    }
+
+
+    @Test
+    void heartbeat_shouldSendCommentToSubscribers() {
+        // Arrange
+        RecordingEmitter connected = new RecordingEmitter(false);
+        publisher.register(connected);
+
+        // Act
+        publisher.heartbeat();
+
+        // Assert
+        pendingSends.forEach(Runnable::run);
+        assertEquals(1, connected.sentEvents.size());
+        assertTrue(String.valueOf(connected.sentEvents.get(0).iterator().next().getData()).startsWith(":heartbeat"));
+    }
+
+
+    private double subscriberCount() {
+        return meterRegistry.get("mnotes.notes.changes.subscribers").gauge().value();
+    }
+}
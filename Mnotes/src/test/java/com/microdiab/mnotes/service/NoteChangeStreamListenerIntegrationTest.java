@@ -0,0 +1,158 @@
+package com.microdiab.mnotes.service;
+
+import com.microdiab.mnotes.model.Note;
+import com.microdiab.mnotes.model.NoteBucket;
+import com.microdiab.mnotes.model.NoteChangeEvent;
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoClients;
+import de.flapdoodle.embed.mongo.commands.MongodArguments;
+import de.flapdoodle.embed.mongo.config.Storage;
+import de.flapdoodle.embed.mongo.distribution.Version;
+import de.flapdoodle.embed.mongo.transitions.Mongod;
+import de.flapdoodle.embed.mongo.transitions.RunningMongodProcess;
+import de.flapdoodle.reverse.TransitionWalker;
+import de.flapdoodle.reverse.transitions.Start;
+import org.bson.Document;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Objects;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.abort;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.*;
+
+/**
+ * Runs the {@link NoteChangeStreamListener} against an embedded single-node replica set,
+ * change streams not being available on a standalone MongoDB.
+ *
+ * <p>The MongoDB binaries are downloaded by flapdoodle on the first run; the tests are skipped
+ * when they cannot be downloaded (e.g. without network access).</p>
+ */
+@ExtendWith(MockitoExtension.class)
+public class NoteChangeStreamListenerIntegrationTest {
+
+    private static final String REPLICA_SET = "rs0";
+
+    private static TransitionWalker.ReachedState<RunningMongodProcess> mongod;
+
+    private static MongoClient mongoClient;
+
+    @Mock
+    private NoteService noteService;
+
+    @Mock
+    private NoteChangePublisher noteChangePublisher;
+
+    private MongoTemplate mongoTemplate;
+
+    private NoteChangeStreamListener listener;
+
+    @BeforeAll
+    static void startReplicaSet() throws InterruptedException {
+        try {
+            mongod = Mongod.instance()
+                    .withMongodArguments(Start.to(MongodArguments.class).initializedWith(MongodArguments.defaults()
+                            .withReplication(Storage.of(REPLICA_SET, 1024))))
+                    .start(Version.Main.V6_0);
+        } catch (RuntimeException e) {
+            abort("Embedded MongoDB unavailable: " + e.getMessage());
+        }
+
+        String address = mongod.current().getServerAddress().toString();
+        mongoClient = MongoClients.create("mongodb://" + address + "/?directConnection=true");
+        mongoClient.getDatabase("admin").runCommand(new Document("replSetInitiate", new Document("_id", REPLICA_SET)
+                .append("members", List.of(new Document("_id", 0).append("host", address)))));
+        long deadline = System.nanoTime() + Duration.ofSeconds(30).toNanos();
+        while (!Boolean.TRUE.equals(mongoClient.getDatabase("admin").runCommand(new Document("hello", 1))
+                .getBoolean("isWritablePrimary"))) {
+            if (System.nanoTime() > deadline) {
+                throw new IllegalStateException("The replica set has no primary");
+            }
+            Thread.sleep(200);
+        }
+    }
+
+    @AfterAll
+    static void stopReplicaSet() {
+        if (mongoClient != null) {
+            mongoClient.close();
+        }
+        if (mongod != null) {
+            mongod.close();
+        }
+    }
+
+    @BeforeEach
+    void setUp() throws InterruptedException {
+        mongoTemplate = new MongoTemplate(mongoClient, "test_notes");
+        listener = new NoteChangeStreamListener(mongoTemplate, noteService, noteChangePublisher);
+        listener.start();
+        assertTrue(listener.awaitActive(Duration.ofSeconds(10)));
+    }
+
+    @AfterEach
+    void tearDown() {
+        listener.stop();
+        mongoTemplate.getDb().drop();
+    }
+
+
+    @Test
+    void insertedNote_shouldEvictCachedNotesAndPublishEvent() {
+        // Act
+        mongoTemplate.insert(new Note(null, 42L, "Patient", "Nouvelle note"));
+
+        // Assert
+        verify(noteService, timeout(10_000)).evictCachedNotes(42L);
+        verify(noteChangePublisher, timeout(10_000)).publish(argThat(event -> isEvent(event, 42L, "insert")));
+    }
+
+
+    @Test
+    void updatedBucket_shouldEvictCachedNotesAndPublishEvent() {
+        // Arrange
+        NoteBucket bucket = mongoTemplate.insert(new NoteBucket(43L, "2026-01", List.of()));
+
+        // Act
+        mongoTemplate.updateFirst(Query.query(Criteria.where("_id").is(bucket.getId())),
+                new Update().push("notes", new Note("n1", 43L, "Patient", "Note du bucket")), NoteBucket.class);
+
+        // Assert
+        verify(noteService, timeout(10_000).times(2)).evictCachedNotes(43L);
+        verify(noteChangePublisher, timeout(10_000)).publish(argThat(event -> isEvent(event, 43L, "update")));
+    }
+
+
+    @Test
+    void deletedNote_shouldEvictAllCachedNotesWithoutPreImage() {
+        // Arrange
+        Note note = mongoTemplate.insert(new Note(null, 44L, "Patient", "Note supprimée"));
+        verify(noteService, timeout(10_000)).evictCachedNotes(44L);
+
+        // Act
+        mongoTemplate.remove(note);
+
+        // Assert
+        verify(noteService, timeout(10_000)).evictAllCachedNotes();
+        verify(noteChangePublisher, timeout(10_000)).publish(argThat(event -> isEvent(event, null, "delete")));
+    }
+
+
+    private static boolean isEvent(NoteChangeEvent event, Long patId, String operation) {
+        return event != null && Objects.equals(patId, event.getPatId()) && operation.equals(event.getOperation());
+    }
+}
@@ -0,0 +1,93 @@
+package com.microdiab.mnotes.service;
+
+import com.microdiab.mnotes.model.NoteChangeEvent;
+import com.mongodb.client.model.changestream.ChangeStreamDocument;
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.mongodb.core.MongoTemplate;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class NoteChangeStreamListenerTest {
+
+    @Mock
+    private MongoTemplate mongoTemplate;
+
+    @Mock
+    private NoteService noteService;
+
+    @Mock
+    private NoteChangePublisher noteChangePublisher;
+
+    @Mock
+    private ChangeStreamDocument<Document> change;
+
+    private NoteChangeStreamListener listener;
+
+    @BeforeEach
+    void setUp() {
+        listener = new NoteChangeStreamListener(mongoTemplate, noteService, noteChangePublisher);
+    }
+
+
+    @Test
+    void onChange_shouldEvictCachedNotesBeforePublishingEvent() {
+        // Arrange
+        when(change.getFullDocument()).thenReturn(new Document("patId", 15L));
+        when(change.getOperationTypeString()).thenReturn("insert");
+
+        // Act
+        listener.onChange(change);
+
+        // Assert
+        InOrder inOrder = inOrder(noteService, noteChangePublisher);
+        inOrder.verify(noteService).evictCachedNotes(15L);
+        ArgumentCaptor<NoteChangeEvent> captor = ArgumentCaptor.forClass(NoteChangeEvent.class);
+        inOrder.verify(noteChangePublisher).publish(captor.capture());
+        assertEquals(15L, captor.getValue().getPatId());
+        assertEquals("insert", captor.getValue().getOperation());
+        assertNotNull(captor.getValue().getChangedAt());
+    }
+
+
+    @Test
+    void onChange_shouldUsePreImageOfDeletedNote() {
+        // Arrange
+        when(change.getFullDocument()).thenReturn(null);
+        when(change.getFullDocumentBeforeChange()).thenReturn(new Document("patId", 16));
+        when(change.getOperationTypeString()).thenReturn("delete");
+
+        // Act
+        listener.onChange(change);
+
+        // Assert
+        verify(noteService).evictCachedNotes(16L);
+    }
+
+
+    @Test
+    void onChange_shouldEvictAllCachedNotesWhenPatientIsUnknown() {
+        // Arrange
+        when(change.getFullDocument()).thenReturn(null);
+        when(change.getFullDocumentBeforeChange()).thenReturn(null);
+        when(change.getOperationTypeString()).thenReturn("delete");
+
+        // Act
+        listener.onChange(change);
+
+        // Assert
+        verify(noteService).evictAllCachedNotes();
+        verify(noteService, never()).evictCachedNotes(any());
+        ArgumentCaptor<NoteChangeEvent> captor = ArgumentCaptor.forClass(NoteChangeEvent.class);
+        verify(noteChangePublisher).publish(captor.capture());
+        assertNull(captor.getValue().getPatId());
+    }
+}
@@ -0,0 +1,91 @@
+package com.microdiab.mnotes.service;
+
+import com.microdiab.mnotes.model.Note;
+import com.microdiab.mnotes.model.NoteTextCodec;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class NoteCompressorTest {
+
+    private static final String LARGE_CONTENT = "Hémoglobine A1C supérieure à la normale. ".repeat(100);
+
+    private SimpleMeterRegistry meterRegistry;
+
+    private NoteCompressor noteCompressor;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        noteCompressor = new NoteCompressor(meterRegistry, true, 1024);
+    }
+
+
+    @Test
+    void compress_shouldKeepSmallNoteUncompressed() {
+        // Arrange
+        Note note = new Note(null, 1L, "Patient A", "Note courte");
+        note.setSearchTerms("note courte");
+
+        // Act
+        noteCompressor.compress(note);
+
+        // Assert
+        assertNull(note.getCompressedNote());
+        assertEquals("Note courte", note.getNote());
+        assertNull(note.getSearchTerms());
+        assertEquals(1.0, meterRegistry.get("mnotes.notes.compression.skipped").counter().count());
+    }
+
+    @Test
+    void compress_shouldCompressLargeNoteAndRecordMetrics() {
+        // Arrange
+        Note note = new Note(null, 1L, "Patient A", LARGE_CONTENT);
+
+        // Act
+        noteCompressor.compress(note);
+
+        // Assert
+        assertNotNull(note.getCompressedNote());
+        assertTrue(note.getCompressedNote().length < LARGE_CONTENT.length());
+        assertEquals(LARGE_CONTENT, NoteTextCodec.inflate(note.getCompressedNote()));
+        assertEquals(LARGE_CONTENT, note.getNote());
+
+        assertEquals(1, meterRegistry.get("mnotes.notes.compression.original.size").summary().count());
+        assertTrue(meterRegistry.get("mnotes.notes.compression.ratio").summary().mean() > 1.0);
+    }
+
+    @Test
+    void compress_shouldKeepOnlyDistinctTermsOfCompressedNote() {
+        // Arrange
+        Note note = new Note(null, 1L, "Patient A", LARGE_CONTENT);
+
+        // Act
+        noteCompressor.compress(note);
+
+        // Assert - the text index covers the search terms, which a compressed note keeps once each
+        assertNotNull(note.getCompressedNote());
+        assertEquals("hémoglobine a1c supérieure à la normale", note.getSearchTerms());
+    }
+
+    @Test
+    void compress_shouldNotCompressWhenDisabled() {
+        // Arrange
+        NoteCompressor disabledCompressor = new NoteCompressor(new SimpleMeterRegistry(), false, 1024);
+        Note note = new Note(null, 1L, "Patient A", LARGE_CONTENT);
+
+        // Act
+        disabledCompressor.compress(note);
+
+        // Assert
+        assertNull(note.getCompressedNote());
+        assertEquals(LARGE_CONTENT, note.getNote());
+    }
+
+    @Test
+    void inflate_shouldRejectInvalidData() {
+        // Act & Assert
+        assertThrows(IllegalStateException.class, () -> NoteTextCodec.inflate(new byte[] {1, 2, 3}));
+    }
+}
@@ -0,0 +1,282 @@
+package com.microdiab.mnotes.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.microdiab.mnotes.exception.MalformedImportException;
+import com.microdiab.mnotes.model.Note;
+import com.microdiab.mnotes.model.NoteImportResult;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.validation.Validation;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.FindAndReplaceOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class NoteImporterTest {
+
+    @Mock
+    private MongoTemplate mongoTemplate;
+
+    @Mock
+    private NoteVersionTracker noteVersionTracker;
+
+    @Mock
+    private NoteBucketStore noteBucketStore;
+
+    @Mock
+    private BulkOperations noteOperations;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private NoteImporter newImporter(int batchSize, String storageLayout) {
+        return new NoteImporter(mongoTemplate, noteVersionTracker, noteBucketStore, new TriggerTermAnnotator(),
+                new NoteCompressor(meterRegistry, true, 16384), new ObjectMapper(),
+                Validation.buildDefaultValidatorFactory().getValidator(), meterRegistry,
+                batchSize, 100, storageLayout);
+    }
+
+    private void mockBulkOperations() {
+        when(mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Note.class)).thenReturn(noteOperations);
+    }
+
+    /** Records the number of changed notes of each patient marked as changed, for each batch. */
+    private List<Map<Long, Long>> recordChangedPatIds() {
+        List<Map<Long, Long>> changedPatIds = new ArrayList<>();
+        doAnswer(invocation -> changedPatIds.add(Map.copyOf(invocation.getArgument(0))))
+                .when(noteVersionTracker).markChanged(anyMap());
+        return changedPatIds;
+    }
+
+    private static InputStream input(String content) {
+        return new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8));
+    }
+
+
+    @Test
+    void importNotes_shouldWriteJsonArrayInBatches() throws IOException {
+        // Arrange
+        mockBulkOperations();
+        NoteImporter importer = newImporter(2, "document");
+        String json = """
+                [
+                  {"patId": 1, "patient": "TestNone", "note": "Le patient se sent bien"},
+                  {"patId": 1, "patient": "TestNone", "note": "Poids stable"},
+                  {"patId": 2, "patient": "TestBorderline", "note": "Fumeur, cholestérol élevé"}
+                ]
+                """;
+
+        List<Map<Long, Long>> changedPatIds = recordChangedPatIds();
+
+        // Act
+        NoteImportResult result = importer.importNotes(input(json));
+
+        // Assert
+        assertEquals(3, result.getImported());
+        assertEquals(0, result.getRejected());
+        verify(noteOperations, times(3)).insert(any(Note.class));
+        verify(noteOperations, times(2)).execute();
+        assertEquals(List.of(Map.of(1L, 2L), Map.of(2L, 1L)), changedPatIds);
+        assertEquals(3.0, meterRegistry.get("mnotes.notes.import.records").tag("outcome", "imported").counter().count());
+        assertEquals(2, meterRegistry.get("mnotes.notes.import.batch").timer().count());
+    }
+
+
+    @Test
+    void importNotes_shouldAnnotateNotesAndReplaceNotesWithIdentifier() throws IOException {
+        // Arrange
+        mockBulkOperations();
+        NoteImporter importer = newImporter(100, "document");
+        String ndjson = """
+                {"id": "65a1b2c3d4e5f6a7b8c9d0e1", "patId": 3, "patient": "TestInDanger", "note": "Fumeuse, vertiges"}
+                {"patId": 3, "patient": "TestInDanger", "note": "Taille et poids normaux"}
+                """;
+
+        // Act
+        NoteImportResult result = importer.importNotes(input(ndjson));
+
+        // Assert
+        assertEquals(2, result.getImported());
+        ArgumentCaptor<Note> replaced = ArgumentCaptor.forClass(Note.class);
+        verify(noteOperations).replaceOne(any(Query.class), replaced.capture(), any(FindAndReplaceOptions.class));
+        assertEquals("65a1b2c3d4e5f6a7b8c9d0e1", replaced.getValue().getId());
+        assertNotNull(replaced.getValue().getTriggerTermCounts());
+        verify(noteOperations).insert(any(Note.class));
+        verify(noteOperations).execute();
+    }
+
+
+    @Test
+    void importNotes_shouldRejectInvalidRecords() throws IOException {
+        // Arrange
+        mockBulkOperations();
+        NoteImporter importer = newImporter(100, "document");
+        String ndjson = """
+                {"patId": 1, "patient": "TestNone", "note": "Le patient se sent bien"}
+                {"patId": -1, "patient": "TestNone", "note": "Identifiant négatif"}
+                {"patId": "abc", "patient": "TestNone", "note": "Identifiant invalide"}
+                42
+                """;
+
+        // Act
+        NoteImportResult result = importer.importNotes(input(ndjson));
+
+        // Assert
+        assertEquals(1, result.getImported());
+        assertEquals(3, result.getRejected());
+        assertEquals("Record 2: patId must be a positive number", result.getErrors().get(0));
+        assertTrue(result.getErrors().get(1).startsWith("Record 3: invalid note"));
+        assertEquals("Record 4: not a JSON object", result.getErrors().get(2));
+        verify(noteOperations, times(1)).insert(any(Note.class));
+        assertEquals(3.0, meterRegistry.get("mnotes.notes.import.records").tag("outcome", "rejected").counter().count());
+    }
+
+
+    @Test
+    void importNotes_shouldWriteNotesReadBeforeMalformedJson() {
+        // Arrange
+        mockBulkOperations();
+        NoteImporter importer = newImporter(100, "document");
+        String json = "[{\"patId\": 1, \"patient\": \"TestNone\", \"note\": \"Le patient se sent bien\"}, {\"patId\": ";
+
+        // Act
+        MalformedImportException exception = assertThrows(MalformedImportException.class,
+                () -> importer.importNotes(input(json)));
+
+        // Assert
+        assertTrue(exception.getMessage().startsWith("Malformed JSON"));
+        assertTrue(exception.getMessage().contains("after 1 imported note(s)"));
+        verify(noteOperations).insert(any(Note.class));
+        verify(noteOperations).execute();
+    }
+
+
+    @Test
+    void importNotes_shouldMarkNotesAsChanged_whenBulkWriteFails() {
+        // Arrange
+        mockBulkOperations();
+        NoteImporter importer = newImporter(1, "document");
+        String ndjson = """
+                {"patId": 1, "patient": "TestNone", "note": "Le patient se sent bien"}
+                {"patId": 2, "patient": "TestBorderline", "note": "Fumeur"}
+                """;
+        when(noteOperations.execute())
+                .thenReturn(null)
+                .thenThrow(new DataAccessResourceFailureException("MongoDB unavailable"));
+        List<Map<Long, Long>> changedPatIds = recordChangedPatIds();
+
+        // Act & Assert
+        assertThrows(DataAccessResourceFailureException.class, () -> importer.importNotes(input(ndjson)));
+        assertEquals(List.of(Map.of(1L, 1L), Map.of(2L, 1L)), changedPatIds);
+    }
+
+
+    @Test
+    void importNotes_shouldKeepMalformedJsonFailure_whenPendingBatchWriteFails() {
+        // Arrange
+        mockBulkOperations();
+        NoteImporter importer = newImporter(100, "document");
+        String json = "[{\"patId\": 1, \"patient\": \"TestNone\", \"note\": \"Le patient se sent bien\"}, {\"patId\": ";
+        DataAccessResourceFailureException writeFailure = new DataAccessResourceFailureException("MongoDB unavailable");
+        when(noteOperations.execute()).thenThrow(writeFailure);
+
+        // Act
+        MalformedImportException exception = assertThrows(MalformedImportException.class,
+                () -> importer.importNotes(input(json)));
+
+        // Assert
+        assertTrue(exception.getMessage().contains("after 0 imported note(s)"));
+        assertArrayEquals(new Throwable[]{writeFailure}, exception.getSuppressed());
+    }
+
+
+    @Test
+    void importNotes_shouldMarkPreviousPatientAsChanged_whenReplacedNoteChangesPatient() throws IOException {
+        // Arrange
+        mockBulkOperations();
+        NoteImporter importer = newImporter(100, "document");
+        String ndjson = """
+                {"id": "65a1b2c3d4e5f6a7b8c9d0e1", "patId": 3, "patient": "TestInDanger", "note": "Fumeuse, vertiges"}
+                {"id": "65a1b2c3d4e5f6a7b8c9d0e2", "patId": 3, "patient": "TestInDanger", "note": "Taille et poids normaux"}
+                """;
+        when(mongoTemplate.find(any(Query.class), eq(Note.class))).thenReturn(List.of(
+                new Note("65a1b2c3d4e5f6a7b8c9d0e1", 7L, "TestNone", null),
+                new Note("65a1b2c3d4e5f6a7b8c9d0e2", 3L, "TestInDanger", null)));
+        List<Map<Long, Long>> changedPatIds = recordChangedPatIds();
+
+        // Act
+        importer.importNotes(input(ndjson));
+
+        // Assert
+        assertEquals(List.of(Map.of(3L, 2L, 7L, 1L)), changedPatIds);
+        ArgumentCaptor<Query> captor = ArgumentCaptor.forClass(Query.class);
+        verify(mongoTemplate).find(captor.capture(), eq(Note.class));
+        assertEquals(1, captor.getValue().getFieldsObject().get("patId"));
+    }
+
+
+    @Test
+    void importNotes_shouldNotWrite_whenInputIsEmptyArray() throws IOException {
+        // Arrange
+        NoteImporter importer = newImporter(100, "document");
+
+        // Act
+        NoteImportResult result = importer.importNotes(input("[]"));
+
+        // Assert
+        assertEquals(0, result.getImported());
+        verifyNoInteractions(mongoTemplate, noteVersionTracker);
+    }
+
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void importNotes_shouldWriteBatchesToBuckets_whenStorageLayoutIsBucket() throws IOException {
+        // Arrange
+        NoteImporter importer = newImporter(2, "bucket");
+        String ndjson = """
+                {"id": "65a1b2c3d4e5f6a7b8c9d0e1", "patId": 3, "patient": "TestInDanger", "note": "Fumeuse, vertiges"}
+                {"patId": 3, "patient": "TestInDanger", "note": "Taille et poids normaux"}
+                {"patId": 4, "patient": "TestEarlyOnset", "note": "Anticorps"}
+                """;
+        List<List<String>> writtenBatches = new ArrayList<>();
+        doAnswer(invocation -> writtenBatches.add(((List<Note>) invocation.getArgument(0)).stream()
+                .map(Note::getPatient)
+                .toList()))
+                .when(noteBucketStore).saveAll(anyList(), anyMap());
+        when(noteBucketStore.findPatIdsByNoteId(anyCollection()))
+                .thenReturn(Map.of("65a1b2c3d4e5f6a7b8c9d0e1", 5L))
+                .thenReturn(Map.of());
+        List<Map<Long, Long>> changedPatIds = recordChangedPatIds();
+
+        // Act
+        NoteImportResult result = importer.importNotes(input(ndjson));
+
+        // Assert
+        assertEquals(3, result.getImported());
+        assertEquals(List.of(List.of("TestInDanger", "TestInDanger"), List.of("TestEarlyOnset")), writtenBatches);
+        assertEquals(List.of(Map.of(3L, 2L, 5L, 1L), Map.of(4L, 1L)), changedPatIds);
+        verify(mongoTemplate, never()).bulkOps(any(BulkOperations.BulkMode.class), eq(Note.class));
+    }
+}
@@ -0,0 +1,56 @@
+package com.microdiab.mnotes.service;
+
+import com.mongodb.ReadPreference;
+import com.mongodb.TaggableReadPreference;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class NoteReadRoutingTest {
+
+    @Test
+    void readPreference_shouldBoundSecondaryReadsByMaxStaleness() {
+        // Arrange
+        NoteReadRouting routing = new NoteReadRouting("secondaryPreferred", Duration.ofMinutes(2));
+
+        // Act
+        ReadPreference secondary = routing.readPreference(NoteReadRoute.SECONDARY);
+        ReadPreference primary = routing.readPreference(NoteReadRoute.PRIMARY);
+
+        // Assert
+        assertEquals(ReadPreference.secondaryPreferred().getName(), secondary.getName());
+        assertEquals(120_000L, ((TaggableReadPreference) secondary).getMaxStaleness(TimeUnit.MILLISECONDS));
+        assertEquals(ReadPreference.primary(), primary);
+    }
+
+
+    @Test
+    void readPreference_shouldReadFromPrimaryWhenSecondaryReadsAreDisabled() {
+        // Arrange
+        NoteReadRouting routing = new NoteReadRouting("primary", Duration.ofSeconds(90));
+
+        // Act & Assert
+        assertEquals(ReadPreference.primary(), routing.readPreference(NoteReadRoute.SECONDARY));
+    }
+
+
+    @Test
+    void constructor_shouldRejectInvalidSettings() {
+        // Act & Assert
+        assertThrows(IllegalArgumentException.class, () -> new NoteReadRouting("secondaryPreferred", Duration.ofSeconds(30)));
+        assertThrows(IllegalArgumentException.class, () -> new NoteReadRouting("closest", Duration.ofSeconds(90)));
+    }
+
+
+    @Test
+    void fromHeader_shouldResolveRouteCaseInsensitively() {
+        // Act & Assert
+        assertEquals(NoteReadRoute.PRIMARY, NoteReadRoute.fromHeader(null));
+        assertEquals(NoteReadRoute.PRIMARY, NoteReadRoute.fromHeader("Primary"));
+        assertEquals(NoteReadRoute.SECONDARY, NoteReadRoute.fromHeader(" secondary "));
+        assertNull(NoteReadRoute.fromHeader("nearest"));
+    }
+}
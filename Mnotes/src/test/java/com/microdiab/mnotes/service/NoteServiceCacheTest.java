@@ -0,0 +1,149 @@
+package com.microdiab.mnotes.service;
+
+import com.microdiab.mnotes.configuration.CacheConfig;
+import com.microdiab.mnotes.model.Note;
+import com.microdiab.mnotes.model.NoteVersion;
+import com.microdiab.mnotes.repository.NoteRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.cache.CacheAutoConfiguration;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.caffeine.CaffeineCache;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@SpringBootTest(classes = {NoteService.class, TriggerTermAnnotator.class, NoteCompressor.class, NoteBucketStore.class,
+        NoteBatchWriter.class, NoteVersionTracker.class, NoteReadRouting.class, SimpleMeterRegistry.class, CacheConfig.class})
+@ImportAutoConfiguration(CacheAutoConfiguration.class)
+@ActiveProfiles("test")
+public class NoteServiceCacheTest {
+
+    @MockitoBean
+    private NoteRepository noteRepository;
+
+    @MockitoBean
+    private MongoTemplate mongoTemplate;
+
+    @Autowired
+    private NoteService noteService;
+
+    @Autowired
+    private CacheManager cacheManager;
+
+    private Note note;
+
+    @BeforeEach
+    void setUp() {
+        cacheManager.getCache(CacheConfig.NOTES_CACHE).clear();
+        cacheManager.getCache(CacheConfig.SECONDARY_NOTES_CACHE).clear();
+        note = new Note("1", 1001L, "Patient A", "Première note pour le patient A.");
+    }
+
+
+    @Test
+    void getNotesByPatId_shouldServeRepeatedReadsFromCache() {
+        // Arrange
+        when(noteRepository.findByPatId(1001L)).thenReturn(List.of(note));
+
+        // Act
+        noteService.getNotesByPatId(1001L);
+        List<Note> secondRead = noteService.getNotesByPatId(1001L);
+
+        // Assert
+        assertEquals(List.of(note), secondRead);
+        verify(noteRepository, times(1)).findByPatId(1001L);
+    }
+
+
+    @Test
+    void saveNote_shouldEvictCachedNotesOfPatient() {
+        // Arrange
+        when(noteRepository.findByPatId(1001L)).thenReturn(List.of(note));
+        when(noteRepository.save(note)).thenReturn(note);
+        noteService.getNotesByPatId(1001L);
+
+        // Act
+        noteService.saveNote(note);
+        noteService.getNotesByPatId(1001L);
+
+        // Assert
+        verify(noteRepository, times(2)).findByPatId(1001L);
+    }
+
+
+    @Test
+    void saveNote_shouldNotEvictOtherPatients() {
+        // Arrange
+        Note otherNote = new Note("2", 1002L, "Patient B", "Note pour le patient B.");
+        when(noteRepository.findByPatId(1001L)).thenReturn(List.of(note));
+        when(noteRepository.save(otherNote)).thenReturn(otherNote);
+        noteService.getNotesByPatId(1001L);
+
+        // Act
+        noteService.saveNote(otherNote);
+        noteService.getNotesByPatId(1001L);
+
+        // Assert
+        verify(noteRepository, times(1)).findByPatId(1001L);
+    }
+
+
+    @Test
+    void getNotesVersion_shouldNotBeCached() {
+        // Act
+        noteService.getNotesVersion(1001L);
+        noteService.getNotesVersion(1001L);
+
+        // Assert - a version changed through another instance must be seen by the next request
+        verify(mongoTemplate, times(2)).findById(1001L, NoteVersion.class);
+    }
+
+
+    @Test
+    void readNotesByPatId_shouldCacheSecondaryReadsApart_andEvictThemWhenNoteIsSaved() {
+        // Arrange
+        when(mongoTemplate.find(any(Query.class), eq(Note.class))).thenReturn(List.of(note));
+        when(noteRepository.findByPatId(1001L)).thenReturn(List.of(note));
+        when(noteRepository.save(note)).thenReturn(note);
+
+        // Act
+        noteService.readNotesByPatId(1001L, NoteReadRoute.SECONDARY);
+        noteService.readNotesByPatId(1001L, NoteReadRoute.SECONDARY);
+        noteService.getNotesByPatId(1001L);
+        noteService.saveNote(note);
+        noteService.readNotesByPatId(1001L, NoteReadRoute.SECONDARY);
+
+        // Assert
+        verify(mongoTemplate, times(2)).find(any(Query.class), eq(Note.class));
+        verify(noteRepository, times(1)).findByPatId(1001L);
+    }
+
+
+    @Test
+    void secondaryNotesCache_shouldHaveItsOwnTimeToLive() {
+        // Arrange
+        CaffeineCache cache = (CaffeineCache) cacheManager.getCache(CacheConfig.SECONDARY_NOTES_CACHE);
+
+        // Act
+        Optional<Duration> ttl = cache.getNativeCache().policy().expireAfterWrite()
+                .map(expiration -> expiration.getExpiresAfter());
+
+        // Assert
+        assertEquals(Optional.of(Duration.ofSeconds(30)), ttl);
+    }
+}
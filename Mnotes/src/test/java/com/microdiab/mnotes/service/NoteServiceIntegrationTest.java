@@ -2,12 +2,16 @@ package com.microdiab.mnotes.service;
 
 import com.microdiab.mnotes.model.Note;
 import com.microdiab.mnotes.repository.NoteRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.mongodb.core.MongoTemplate;
 
+import java.time.Duration;
 import java.util.Arrays;
 import java.util.List;
 
@@ -21,6 +25,24 @@ public class NoteServiceIntegrationTest {
     @Mock
     private NoteRepository noteRepository;
 
+    @Mock
+    private MongoTemplate mongoTemplate;
+
+    @Spy
+    private TriggerTermAnnotator triggerTermAnnotator;
+
+    @Spy
+    private NoteCompressor noteCompressor = new NoteCompressor(new SimpleMeterRegistry(), true, 16384);
+
+    @Mock
+    private NoteBatchWriter noteBatchWriter;
+
+    @Mock
+    private NoteVersionTracker noteVersionTracker;
+
+    @Spy
+    private NoteReadRouting noteReadRouting = new NoteReadRouting("primary", Duration.ofSeconds(90));
+
     @InjectMocks
     private NoteService noteService;
 
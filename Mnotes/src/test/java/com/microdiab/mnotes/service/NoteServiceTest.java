@@ -1,17 +1,39 @@
 package com.microdiab.mnotes.service;
 
 import com.microdiab.mnotes.model.Note;
+import com.microdiab.mnotes.model.NoteBucket;
+import com.microdiab.mnotes.model.NoteSearchHit;
+import com.microdiab.mnotes.model.NoteSummary;
+import com.microdiab.mnotes.model.NoteVersion;
 import com.microdiab.mnotes.repository.NoteRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.mongodb.core.MongoTemplate;
 import org.springframework.dao.DataAccessException;
+import com.mongodb.ReadPreference;
+import com.mongodb.TaggableReadPreference;
+import org.bson.Document;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.AggregationResults;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.TextQuery;
+import org.springframework.test.util.ReflectionTestUtils;
 
+import java.time.Duration;
+import java.time.Instant;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
@@ -22,6 +44,27 @@ public class NoteServiceTest {
     @Mock
     private NoteRepository noteRepository;
 
+    @Mock
+    private MongoTemplate mongoTemplate;
+
+    @Spy
+    private TriggerTermAnnotator triggerTermAnnotator;
+
+    @Spy
+    private NoteCompressor noteCompressor = new NoteCompressor(new SimpleMeterRegistry(), true, 16384);
+
+    @Mock
+    private NoteBatchWriter noteBatchWriter;
+
+    @Mock
+    private NoteBucketStore noteBucketStore;
+
+    @Mock
+    private NoteVersionTracker noteVersionTracker;
+
+    @Spy
+    private NoteReadRouting noteReadRouting = new NoteReadRouting("secondaryPreferred", Duration.ofSeconds(120));
+
     @InjectMocks
     private NoteService noteService;
 
@@ -32,6 +75,7 @@ public class NoteServiceTest {
     void setUp() {
         note1 = new Note("1", 1001L, "Patient A", "Première note pour le patient A.");
         note2 = new Note("2", 1001L, "Patient A", "Deuxième note pour le patient A.");
+        ReflectionTestUtils.setField(noteService, "searchEnabled", true);
     }
 
 
@@ -50,6 +94,117 @@ public class NoteServiceTest {
     }
 
 
+    @Test
+    void saveNote_shouldAnnotateNoteBeforeSaving() {
+        // Arrange
+        Note note = new Note(null, 1001L, "Patient A", "Fumeur, taille et POIDS relevés. Fumeur depuis 10 ans.");
+        when(noteRepository.save(note)).thenReturn(note);
+
+        // Act
+        noteService.saveNote(note);
+
+        // Assert
+        verify(triggerTermAnnotator, times(1)).annotate(note);
+        assertNull(note.getSearchTerms());
+        assertEquals(2, note.getTriggerTermCounts().get("Fumeur"));
+        assertEquals(1, note.getTriggerTermCounts().get("Poids"));
+        assertEquals(0, note.getTriggerTermCounts().get("Anticorps"));
+    }
+
+
+    @Test
+    void saveNote_shouldCompressLargeNoteAfterAnnotatingIt() {
+        // Arrange
+        String content = "Fumeur. " + "Résultats de laboratoire dans les normes. ".repeat(1000);
+        Note note = new Note(null, 1001L, "Patient A", content);
+        when(noteRepository.save(note)).thenReturn(note);
+
+        // Act
+        noteService.saveNote(note);
+
+        // Assert
+        verify(noteCompressor, times(1)).compress(note);
+        assertNotNull(note.getCompressedNote());
+        assertEquals("fumeur résultats de laboratoire dans les normes", note.getSearchTerms());
+        assertEquals(1, note.getTriggerTermCounts().get("Fumeur"));
+        assertEquals(content, note.getNote());
+    }
+
+
+    @Test
+    void saveNote_shouldInsertNewNoteThroughBatchWriterWhenEnabled() {
+        // Arrange
+        Note note = new Note(null, 1001L, "Patient A", "Nouvelle note");
+        when(noteBatchWriter.isEnabled()).thenReturn(true);
+        when(noteBatchWriter.insert(note)).thenReturn(note);
+
+        // Act
+        Note savedNote = noteService.saveNote(note);
+
+        // Assert
+        assertSame(note, savedNote);
+        assertNotNull(note.getTriggerTermCounts());
+        verify(noteBatchWriter, times(1)).insert(note);
+        verify(noteRepository, never()).save(any());
+        verify(noteVersionTracker, never()).markChanged(anyMap());
+    }
+
+
+    @Test
+    void saveNote_shouldIncrementNotesVersion() {
+        // Arrange
+        when(noteRepository.save(note1)).thenReturn(note1);
+
+        // Act
+        noteService.saveNote(note1);
+
+        // Assert
+        verify(noteVersionTracker, times(1)).markChanged(Map.of(1001L, 1L));
+    }
+
+
+    @Test
+    void markNotesChanged_shouldIncrementNotesVersion() {
+        // Act
+        noteService.markNotesChanged(1001L);
+
+        // Assert
+        verify(noteVersionTracker, times(1)).markChanged(Map.of(1001L, 1L));
+    }
+
+
+    @Test
+    void getNotesVersion_shouldReturnStoredVersion() {
+        // Arrange
+        when(mongoTemplate.findById(1001L, NoteVersion.class)).thenReturn(new NoteVersion(1001L, 4L));
+
+        // Act & Assert
+        assertEquals(4L, noteService.getNotesVersion(1001L).getVersion());
+    }
+
+
+    @Test
+    void getNotesVersion_shouldReturnZeroWhenNoVersionStored() {
+        // Arrange
+        when(mongoTemplate.findById(9999L, NoteVersion.class)).thenReturn(null);
+
+        // Act
+        NoteVersion noteVersion = noteService.getNotesVersion(9999L);
+
+        // Assert
+        assertEquals(0L, noteVersion.getVersion());
+        assertEquals("0-0", noteVersion.toETagValue());
+    }
+
+
+    @Test
+    void getNotesVersion_shouldThrowExceptionWhenPatIdIsNull() {
+        // Act & Assert
+        assertThrows(IllegalArgumentException.class, () -> noteService.getNotesVersion(null));
+        verify(mongoTemplate, never()).findById(any(), any());
+    }
+
+
     @Test
     void getNotesByPatId_shouldReturnListOfNotes() {
         // Arrange
@@ -112,4 +267,364 @@ public class NoteServiceTest {
         // Act & Assert
         assertThrows(DataAccessException.class, () -> noteService.getNotesByPatId(patId));
     }
+
+
+    @Test
+    void getNoteSummaries_shouldReturnOneSummaryPerPatientInRequestedOrder() {
+        // Arrange
+        NoteSummary summary = new NoteSummary(1001L, 2, Instant.parse("2026-01-10T10:00:00Z"), 5, 3);
+        when(mongoTemplate.aggregate(any(Aggregation.class), eq(Note.class), eq(NoteSummary.class)))
+                .thenReturn(new AggregationResults<>(List.of(summary), new Document()));
+
+        // Act
+        List<NoteSummary> summaries = noteService.getNoteSummaries(List.of(9999L, 1001L));
+
+        // Assert
+        assertEquals(2, summaries.size());
+        assertEquals(9999L, summaries.get(0).getPatId());
+        assertEquals(0, summaries.get(0).getNoteCount());
+        assertNull(summaries.get(0).getLastNoteDate());
+        assertSame(summary, summaries.get(1));
+    }
+
+
+    @Test
+    void getNoteSummary_shouldReturnEmptySummaryWhenPatientHasNoNotes() {
+        // Arrange
+        when(mongoTemplate.aggregate(any(Aggregation.class), eq(Note.class), eq(NoteSummary.class)))
+                .thenReturn(new AggregationResults<>(List.of(), new Document()));
+
+        // Act
+        NoteSummary summary = noteService.getNoteSummary(1001L);
+
+        // Assert
+        assertEquals(1001L, summary.getPatId());
+        assertEquals(0, summary.getNoteCount());
+        assertEquals(0, summary.getTriggerTermMatches());
+    }
+
+
+    @Test
+    void getNoteSummaries_shouldThrowExceptionWhenPatIdsAreEmpty() {
+        // Act & Assert
+        assertThrows(IllegalArgumentException.class, () -> noteService.getNoteSummaries(List.of()));
+        assertThrows(IllegalArgumentException.class, () -> noteService.getNoteSummary(null));
+        verify(mongoTemplate, never()).aggregate(any(Aggregation.class), eq(Note.class), eq(NoteSummary.class));
+    }
+
+
+    @Test
+    void saveNote_shouldStoreNoteInBucketsWithBucketLayout() {
+        // Arrange
+        ReflectionTestUtils.setField(noteService, "storageLayout", "bucket");
+        when(noteBucketStore.save(note1)).thenReturn(note1);
+
+        // Act
+        Note savedNote = noteService.saveNote(note1);
+
+        // Assert
+        assertSame(note1, savedNote);
+        verify(noteBucketStore, times(1)).save(note1);
+        verify(noteRepository, never()).save(any());
+        verify(noteVersionTracker).markChanged(Map.of(1001L, 1L));
+    }
+
+
+    @Test
+    void saveNote_shouldInsertNewNoteThroughBatchWriterWithBucketLayout() {
+        // Arrange
+        ReflectionTestUtils.setField(noteService, "storageLayout", "bucket");
+        Note note = new Note(null, 1001L, "Patient A", "Nouvelle note");
+        when(noteBatchWriter.isEnabled()).thenReturn(true);
+        when(noteBatchWriter.insert(note)).thenReturn(note);
+
+        // Act
+        noteService.saveNote(note);
+
+        // Assert
+        verify(noteBatchWriter).insert(note);
+        verify(noteBucketStore, never()).save(any());
+    }
+
+
+    @Test
+    void checkStorageLayout_shouldRefuseFullTextSearchWithBucketLayout() {
+        // Arrange
+        ReflectionTestUtils.setField(noteService, "storageLayout", "bucket");
+
+        // Act & Assert
+        IllegalStateException exception = assertThrows(IllegalStateException.class, () -> noteService.checkStorageLayout());
+        assertTrue(exception.getMessage().contains("mnotes.search.enabled=false"));
+        ReflectionTestUtils.setField(noteService, "searchEnabled", false);
+        assertDoesNotThrow(() -> noteService.checkStorageLayout());
+        ReflectionTestUtils.setField(noteService, "storageLayout", "document");
+        ReflectionTestUtils.setField(noteService, "searchEnabled", true);
+        assertDoesNotThrow(() -> noteService.checkStorageLayout());
+    }
+
+
+    @Test
+    void getNotesByPatId_shouldReadBucketsWithBucketLayout() {
+        // Arrange
+        ReflectionTestUtils.setField(noteService, "storageLayout", "bucket");
+        when(noteBucketStore.findByPatId(1001L)).thenReturn(Arrays.asList(note1, note2));
+
+        // Act
+        List<Note> notes = noteService.getNotesByPatId(1001L);
+
+        // Assert
+        assertEquals(Arrays.asList(note1, note2), notes);
+        verify(noteRepository, never()).findByPatId(anyLong());
+    }
+
+
+    @Test
+    void getNoteSummaries_shouldUnwindBucketsWithBucketLayout() {
+        // Arrange
+        ReflectionTestUtils.setField(noteService, "storageLayout", "bucket");
+        when(mongoTemplate.aggregate(any(Aggregation.class), eq(NoteBucket.class), eq(NoteSummary.class)))
+                .thenReturn(new AggregationResults<>(List.of(), new Document()));
+
+        // Act
+        noteService.getNoteSummary(1001L);
+
+        // Assert
+        ArgumentCaptor<Aggregation> captor = ArgumentCaptor.forClass(Aggregation.class);
+        verify(mongoTemplate).aggregate(captor.capture(), eq(NoteBucket.class), eq(NoteSummary.class));
+        List<Document> pipeline = captor.getValue().toPipeline(Aggregation.DEFAULT_CONTEXT);
+        assertEquals("$notes", pipeline.get(1).get("$unwind"));
+        assertTrue(pipeline.get(2).containsKey("$replaceRoot"));
+        // The embedded identifiers may be stored as strings: they are converted before taking the highest one
+        Document projection = pipeline.get(3).get("$project", Document.class);
+        assertEquals(Document.parse("{'$convert': {'input': '$_id', 'to': 'objectId', 'onError': null, 'onNull': null}}"),
+                projection.get("objectId"));
+        assertEquals(new Document("$max", "$objectId"),
+                pipeline.get(4).get("$group", Document.class).get("lastNoteId"));
+    }
+
+
+    @Test
+    void getNoteSummaries_shouldReadFromSecondaries() {
+        // Arrange
+        when(mongoTemplate.aggregate(any(Aggregation.class), eq(Note.class), eq(NoteSummary.class)))
+                .thenReturn(new AggregationResults<>(List.of(), new Document()));
+
+        // Act
+        noteService.getNoteSummary(1001L);
+
+        // Assert
+        ArgumentCaptor<Aggregation> captor = ArgumentCaptor.forClass(Aggregation.class);
+        verify(mongoTemplate).aggregate(captor.capture(), eq(Note.class), eq(NoteSummary.class));
+        ReadPreference readPreference = captor.getValue().getOptions().getReadPreference();
+        assertEquals("secondaryPreferred", readPreference.getName());
+        assertEquals(120_000L, ((TaggableReadPreference) readPreference).getMaxStaleness(TimeUnit.MILLISECONDS));
+    }
+
+
+    @Test
+    void readsFromPrimary_shouldDependOnReadPreferenceOfRoute() {
+        // Arrange
+        NoteReadRouting primaryOnly = new NoteReadRouting("primary", Duration.ofSeconds(90));
+
+        // Act & Assert
+        assertFalse(noteService.readsFromPrimary(NoteReadRoute.SECONDARY));
+        assertTrue(noteService.readsFromPrimary(NoteReadRoute.PRIMARY));
+        ReflectionTestUtils.setField(noteService, "noteReadRouting", primaryOnly);
+        assertTrue(noteService.readsFromPrimary(NoteReadRoute.SECONDARY));
+    }
+
+
+    @Test
+    void readNotesByPatId_shouldQueryWithReadPreferenceOfRoute() {
+        // Arrange
+        when(mongoTemplate.find(any(Query.class), eq(Note.class))).thenReturn(List.of(note1));
+
+        // Act
+        List<Note> secondaryNotes = noteService.readNotesByPatId(1001L, NoteReadRoute.SECONDARY);
+        noteService.readNotesByPatId(1001L, NoteReadRoute.PRIMARY);
+
+        // Assert
+        assertEquals(List.of(note1), secondaryNotes);
+        ArgumentCaptor<Query> captor = ArgumentCaptor.forClass(Query.class);
+        verify(mongoTemplate, times(2)).find(captor.capture(), eq(Note.class));
+        assertEquals(new Document("patId", 1001L), captor.getAllValues().get(0).getQueryObject());
+        assertEquals(new Document("searchTerms", 0), captor.getAllValues().get(0).getFieldsObject());
+        assertEquals("secondaryPreferred", captor.getAllValues().get(0).getReadPreference().getName());
+        assertEquals(ReadPreference.primary(), captor.getAllValues().get(1).getReadPreference());
+        verifyNoInteractions(noteRepository);
+    }
+
+
+    @Test
+    void readNotesByPatId_shouldReadBucketsWithBucketLayout() {
+        // Arrange
+        ReflectionTestUtils.setField(noteService, "storageLayout", "bucket");
+        when(noteBucketStore.readByPatId(eq(1001L), any(ReadPreference.class))).thenReturn(List.of(note1));
+
+        // Act
+        List<Note> notes = noteService.readNotesByPatId(1001L, NoteReadRoute.SECONDARY);
+
+        // Assert
+        assertEquals(List.of(note1), notes);
+        verify(noteBucketStore).readByPatId(1001L, noteReadRouting.readPreference(NoteReadRoute.SECONDARY));
+        verifyNoInteractions(mongoTemplate);
+    }
+
+
+    @Test
+    void readNotesByPatId_shouldThrowExceptionWhenArgumentsAreNull() {
+        // Act & Assert
+        assertThrows(IllegalArgumentException.class, () -> noteService.readNotesByPatId(null, NoteReadRoute.SECONDARY));
+        assertThrows(IllegalArgumentException.class, () -> noteService.readNotesByPatId(1001L, null));
+        verifyNoInteractions(mongoTemplate);
+    }
+
+
+    @Test
+    void getNotesByPatIdWithFields_shouldProjectRequestedFieldsOnly() {
+        // Arrange
+        when(mongoTemplate.find(any(Query.class), eq(Note.class))).thenReturn(List.of(note1));
+
+        // Act
+        List<Note> notes = noteService.getNotesByPatId(1001L, List.of("patId", "createdAt", "note"));
+
+        // Assert
+        assertEquals(List.of(note1), notes);
+        ArgumentCaptor<Query> captor = ArgumentCaptor.forClass(Query.class);
+        verify(mongoTemplate).find(captor.capture(), eq(Note.class));
+        Document fields = captor.getValue().getFieldsObject();
+        assertEquals(Document.parse("{'patId': 1, 'id': 1, 'note': 1, 'compressedNote': 1}"), fields);
+        assertEquals(1001L, captor.getValue().getQueryObject().get("patId"));
+        verify(noteRepository, never()).findByPatId(anyLong());
+    }
+
+
+    @Test
+    void getNotesByPatIdWithFields_shouldExcludeIdentifierWhenNotRequested() {
+        // Arrange
+        when(mongoTemplate.find(any(Query.class), eq(Note.class))).thenReturn(List.of());
+
+        // Act
+        noteService.getNotesByPatId(1001L, List.of("patId"));
+
+        // Assert
+        ArgumentCaptor<Query> captor = ArgumentCaptor.forClass(Query.class);
+        verify(mongoTemplate).find(captor.capture(), eq(Note.class));
+        assertEquals(Document.parse("{'patId': 1, 'id': 0}"), captor.getValue().getFieldsObject());
+    }
+
+
+    @Test
+    void getNotesByPatIdWithFields_shouldThrowExceptionWhenFieldsAreInvalid() {
+        // Act & Assert
+        assertThrows(IllegalArgumentException.class, () -> noteService.getNotesByPatId(1001L, List.of()));
+        assertThrows(IllegalArgumentException.class, () -> noteService.getNotesByPatId(1001L, List.of("normalizedNote")));
+        assertThrows(IllegalArgumentException.class, () -> noteService.getNotesByPatId(null, List.of("id")));
+        verifyNoInteractions(mongoTemplate);
+    }
+
+
+    @Test
+    void getNotesByPatIdWithFields_shouldProjectBucketsWithBucketLayout() {
+        // Arrange
+        ReflectionTestUtils.setField(noteService, "storageLayout", "bucket");
+        when(noteBucketStore.readByPatId(eq(1001L), any(), any(ReadPreference.class))).thenReturn(List.of(note1));
+
+        // Act
+        List<Note> notes = noteService.getNotesByPatId(1001L, List.of("id", "patId"));
+
+        // Assert
+        assertEquals(List.of(note1), notes);
+        verify(noteBucketStore).readByPatId(1001L, new LinkedHashSet<>(List.of("id", "patId")), ReadPreference.primary());
+        verify(mongoTemplate, never()).find(any(Query.class), eq(Note.class));
+    }
+
+
+    @Test
+    void getNotesByPatIdWithFields_shouldReadFromSecondariesOnSecondaryRoute() {
+        // Arrange
+        when(mongoTemplate.find(any(Query.class), eq(Note.class))).thenReturn(List.of(note1));
+
+        // Act
+        noteService.getNotesByPatId(1001L, List.of("patId"), NoteReadRoute.SECONDARY);
+
+        // Assert
+        ArgumentCaptor<Query> captor = ArgumentCaptor.forClass(Query.class);
+        verify(mongoTemplate).find(captor.capture(), eq(Note.class));
+        assertEquals(noteReadRouting.readPreference(NoteReadRoute.SECONDARY), captor.getValue().getReadPreference());
+    }
+
+
+    @Test
+    void getNotesByPatIdWithFields_shouldComputeCountsOfNotesNotAnnotatedYet() {
+        // Arrange
+        Note annotated = new Note("1", 1001L, null, null);
+        annotated.setTriggerTermCounts(Map.of("Fumeur", 1));
+        Note unannotated = new Note("2", 1001L, null, null);
+        Note content = new Note("2", null, null, "Fumeur, Cholestérol et cholestérol");
+        when(mongoTemplate.find(any(Query.class), eq(Note.class)))
+                .thenReturn(List.of(annotated, unannotated))
+                .thenReturn(List.of(content));
+
+        // Act
+        List<Note> notes = noteService.getNotesByPatId(1001L, List.of("triggerTermCounts"), NoteReadRoute.SECONDARY);
+
+        // Assert
+        assertEquals(Map.of("Fumeur", 1), notes.get(0).getTriggerTermCounts());
+        assertEquals(1, notes.get(1).getTriggerTermCounts().get("Fumeur"));
+        assertEquals(2, notes.get(1).getTriggerTermCounts().get("Cholestérol"));
+        assertNull(notes.get(0).getId());
+        assertNull(notes.get(1).getId());
+        ArgumentCaptor<Query> captor = ArgumentCaptor.forClass(Query.class);
+        verify(mongoTemplate, times(2)).find(captor.capture(), eq(Note.class));
+        assertEquals(Document.parse("{'triggerTermCounts': 1, 'id': 1}"), captor.getAllValues().get(0).getFieldsObject());
+        Document in = (Document) captor.getAllValues().get(1).getQueryObject().get("id");
+        assertEquals(List.of("2"), List.copyOf((Collection<?>) in.get("$in")));
+        assertEquals(noteReadRouting.readPreference(NoteReadRoute.SECONDARY), captor.getAllValues().get(1).getReadPreference());
+    }
+
+
+    @Test
+    void searchNotes_shouldRunPaginatedTextQueryProjectedOnIdentifiers() {
+        // Arrange
+        NoteSearchHit hit = new NoteSearchHit("1", 1001L, "Patient A", 1.5f);
+        when(mongoTemplate.getCollectionName(Note.class)).thenReturn("collection_notes");
+        when(mongoTemplate.find(any(Query.class), eq(NoteSearchHit.class), eq("collection_notes"))).thenReturn(List.of(hit));
+
+        // Act
+        List<NoteSearchHit> hits = noteService.searchNotes("cholestérol", 2, 10);
+
+        // Assert
+        assertEquals(List.of(hit), hits);
+        ArgumentCaptor<Query> captor = ArgumentCaptor.forClass(Query.class);
+        verify(mongoTemplate).find(captor.capture(), eq(NoteSearchHit.class), eq("collection_notes"));
+        Query query = captor.getValue();
+        assertInstanceOf(TextQuery.class, query);
+        assertEquals(Document.parse("{'$search': 'cholestérol', '$language': 'french'}"), query.getQueryObject().get("$text"));
+        assertEquals(20, query.getSkip());
+        assertEquals(10, query.getLimit());
+        assertEquals(1, query.getFieldsObject().get("patId"));
+        assertNull(query.getFieldsObject().get("note"));
+    }
+
+
+    @Test
+    void searchNotes_shouldThrowExceptionWhenSearchIsDisabled() {
+        // Arrange
+        ReflectionTestUtils.setField(noteService, "searchEnabled", false);
+
+        // Act & Assert
+        assertThrows(IllegalStateException.class, () -> noteService.searchNotes("fumeur", 0, 10));
+        verifyNoInteractions(mongoTemplate);
+    }
+
+
+    @Test
+    void searchNotes_shouldThrowExceptionWhenParametersAreInvalid() {
+        // Act & Assert
+        assertThrows(IllegalArgumentException.class, () -> noteService.searchNotes(" ", 0, 10));
+        assertThrows(IllegalArgumentException.class, () -> noteService.searchNotes("fumeur", -1, 10));
+        assertThrows(IllegalArgumentException.class, () -> noteService.searchNotes("fumeur", 0, 0));
+        verify(mongoTemplate, never()).find(any(Query.class), eq(NoteSearchHit.class), any());
+    }
 }
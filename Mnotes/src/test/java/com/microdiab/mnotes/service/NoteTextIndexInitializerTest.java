@@ -0,0 +1,123 @@
+package com.microdiab.mnotes.service;
+
+import com.microdiab.mnotes.model.Note;
+import com.microdiab.mnotes.model.NoteTextCodec;
+import com.mongodb.client.result.UpdateResult;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.IndexDefinition;
+import org.springframework.data.mongodb.core.index.IndexField;
+import org.springframework.data.mongodb.core.index.IndexInfo;
+import org.springframework.data.mongodb.core.index.IndexOperations;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class NoteTextIndexInitializerTest {
+
+    @Mock
+    private MongoTemplate mongoTemplate;
+
+    @Mock
+    private IndexOperations indexOperations;
+
+    @Mock
+    private BulkOperations bulkOperations;
+
+    private NoteTextIndexInitializer initializer;
+
+    @BeforeEach
+    void setUp() {
+        initializer = new NoteTextIndexInitializer(mongoTemplate, new NoteCompressor(new SimpleMeterRegistry(), true, 1024));
+        when(mongoTemplate.indexOps(Note.class)).thenReturn(indexOperations);
+    }
+
+
+    @Test
+    void ensureTextIndex_shouldCreateIndexOnNoteAndSearchTerms() {
+        // Arrange
+        when(indexOperations.getIndexInfo()).thenReturn(List.of(
+                new IndexInfo(List.of(IndexField.create("_id", Sort.Direction.ASC)), "_id_", false, false, null)));
+
+        // Act
+        boolean migrated = initializer.ensureTextIndex();
+
+        // Assert
+        assertFalse(migrated);
+        ArgumentCaptor<IndexDefinition> captor = ArgumentCaptor.forClass(IndexDefinition.class);
+        verify(indexOperations).createIndex(captor.capture());
+        assertEquals(new Document("note", "text").append("searchTerms", "text"), captor.getValue().getIndexKeys());
+        assertEquals(NoteTextIndexInitializer.TEXT_INDEX_NAME, captor.getValue().getIndexOptions().get("name"));
+        assertEquals("french", captor.getValue().getIndexOptions().get("default_language"));
+        verify(indexOperations, never()).dropIndex(anyString());
+    }
+
+    @Test
+    void ensureTextIndex_shouldKeepExistingIndex() {
+        // Arrange
+        when(indexOperations.getIndexInfo()).thenReturn(List.of(textIndex(NoteTextIndexInitializer.TEXT_INDEX_NAME,
+                "note", "searchTerms")));
+
+        // Act
+        boolean migrated = initializer.ensureTextIndex();
+
+        // Assert
+        assertFalse(migrated);
+        verify(indexOperations, never()).createIndex(any());
+        verify(indexOperations, never()).dropIndex(anyString());
+        verify(mongoTemplate, never()).updateMulti(any(Query.class), any(Update.class), eq(Note.class));
+    }
+
+    @Test
+    void ensureTextIndex_shouldReplaceEarlierIndexAndMigrateNotes() {
+        // Arrange
+        Note compressed = new Note("1", 1L, "Patient A", null);
+        compressed.setCompressedNote(NoteTextCodec.deflate("Fumeur, fumeur et poids"));
+        when(indexOperations.getIndexInfo()).thenReturn(List.of(textIndex("normalizedNote_text", "normalizedNote")));
+        when(mongoTemplate.updateMulti(any(Query.class), any(Update.class), eq(Note.class)))
+                .thenReturn(UpdateResult.acknowledged(3, 3L, null));
+        when(mongoTemplate.stream(any(Query.class), eq(Note.class))).thenReturn(Stream.of(compressed));
+        when(mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Note.class)).thenReturn(bulkOperations);
+
+        // Act
+        boolean migrated = initializer.ensureTextIndex();
+
+        // Assert
+        assertTrue(migrated);
+        verify(indexOperations).dropIndex("normalizedNote_text");
+        verify(indexOperations).createIndex(any());
+        ArgumentCaptor<Update> unset = ArgumentCaptor.forClass(Update.class);
+        verify(mongoTemplate).updateMulti(any(Query.class), unset.capture(), eq(Note.class));
+        assertEquals(new Document("$unset", new Document("normalizedNote", 1)), unset.getValue().getUpdateObject());
+        ArgumentCaptor<Update> searchTerms = ArgumentCaptor.forClass(Update.class);
+        verify(bulkOperations).updateOne(any(Query.class), searchTerms.capture());
+        assertEquals(new Document("$set", new Document("searchTerms", "fumeur et poids")),
+                searchTerms.getValue().getUpdateObject());
+        verify(bulkOperations).execute();
+    }
+
+
+    private static IndexInfo textIndex(String name, String... fields) {
+        return new IndexInfo(Stream.of(fields).map(field -> IndexField.text(field, 1F)).toList(), name, false, false, "french");
+    }
+}
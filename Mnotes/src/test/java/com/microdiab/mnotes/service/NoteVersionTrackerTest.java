@@ -0,0 +1,100 @@
+package com.microdiab.mnotes.service;
+
+import com.microdiab.mnotes.configuration.CacheConfig;
+import com.microdiab.mnotes.model.Note;
+import com.microdiab.mnotes.model.NoteVersion;
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class NoteVersionTrackerTest {
+
+    @Mock
+    private MongoTemplate mongoTemplate;
+
+    @Mock
+    private BulkOperations bulkOperations;
+
+    private CacheManager cacheManager;
+
+    private NoteVersionTracker noteVersionTracker;
+
+    @BeforeEach
+    void setUp() {
+        cacheManager = new ConcurrentMapCacheManager(CacheConfig.NOTES_CACHE, CacheConfig.SECONDARY_NOTES_CACHE);
+        noteVersionTracker = new NoteVersionTracker(mongoTemplate, cacheManager);
+    }
+
+
+    @Test
+    void markChanged_shouldIncrementVersionsInOneBulkWrite_andEvictCachedNotes() {
+        // Arrange
+        when(mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, NoteVersion.class)).thenReturn(bulkOperations);
+        cacheManager.getCache(CacheConfig.NOTES_CACHE).put(1L, List.of());
+        cacheManager.getCache(CacheConfig.SECONDARY_NOTES_CACHE).put(1L, List.of());
+        cacheManager.getCache(CacheConfig.NOTES_CACHE).put(3L, List.of());
+
+        // Act
+        noteVersionTracker.markChanged(List.of(
+                new Note(null, 1L, "Patient A", "Fumeur"),
+                new Note(null, 1L, "Patient A", "Poids"),
+                new Note(null, 2L, "Patient B", "Taille")));
+
+        // Assert
+        verify(bulkOperations).upsert(eq(Query.query(Criteria.where("_id").is(1L))), incrementsVersionBy(2L));
+        verify(bulkOperations).upsert(eq(Query.query(Criteria.where("_id").is(2L))), incrementsVersionBy(1L));
+        verify(bulkOperations).execute();
+        assertNull(cacheManager.getCache(CacheConfig.NOTES_CACHE).get(1L));
+        assertNull(cacheManager.getCache(CacheConfig.SECONDARY_NOTES_CACHE).get(1L));
+        assertNotNull(cacheManager.getCache(CacheConfig.NOTES_CACHE).get(3L));
+    }
+
+
+    @Test
+    void markChanged_shouldDoNothingWithoutChanges() {
+        // Act
+        noteVersionTracker.markChanged(Map.of());
+
+        // Assert
+        verifyNoInteractions(mongoTemplate);
+    }
+
+
+    @Test
+    void markChanged_shouldEvictCachedNotes_whenVersionCannotBeIncremented() {
+        // Arrange
+        cacheManager.getCache(CacheConfig.NOTES_CACHE).put(1L, List.of());
+        when(mongoTemplate.upsert(eq(Query.query(Criteria.where("_id").is(1L))), incrementsVersionBy(1L),
+                eq(NoteVersion.class))).thenThrow(new DataAccessResourceFailureException("MongoDB unavailable"));
+
+        // Act & Assert
+        assertThrows(DataAccessResourceFailureException.class, () -> noteVersionTracker.markChanged(Map.of(1L, 1L)));
+        assertNull(cacheManager.getCache(CacheConfig.NOTES_CACHE).get(1L));
+    }
+
+
+    private static Update incrementsVersionBy(long count) {
+        return argThat(update -> new Document("version", count).equals(update.getUpdateObject().get("$inc"))
+                && update.getUpdateObject().get("$setOnInsert", Document.class).containsKey("createdAt"));
+    }
+}
@@ -0,0 +1,86 @@
+package com.microdiab.mnotes.service;
+
+import com.microdiab.mnotes.model.Note;
+import com.microdiab.mnotes.model.NoteBucket;
+import com.microdiab.mnotes.repository.ReactiveNoteRepository;
+import org.bson.Document;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.core.publisher.Flux;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class ReactiveNoteServiceTest {
+
+    @Mock
+    private ReactiveNoteRepository reactiveNoteRepository;
+
+    @Mock
+    private ReactiveMongoTemplate reactiveMongoTemplate;
+
+    @InjectMocks
+    private ReactiveNoteService reactiveNoteService;
+
+
+    @Test
+    void getNotesByPatId_shouldStreamNotesOfPatient() {
+        // Arrange
+        Note note1 = new Note("1", 1001L, "Patient A", "Première note pour le patient A.");
+        Note note2 = new Note("2", 1001L, "Patient A", "Deuxième note pour le patient A.");
+        when(reactiveNoteRepository.findByPatId(1001L)).thenReturn(Flux.just(note1, note2));
+
+        // Act
+        List<Note> result = reactiveNoteService.getNotesByPatId(1001L).collectList().block();
+
+        // Assert
+        assertEquals(List.of(note1, note2), result);
+        verify(reactiveNoteRepository, times(1)).findByPatId(1001L);
+        verifyNoInteractions(reactiveMongoTemplate);
+    }
+
+    @Test
+    void getNotesByPatId_shouldStreamNotesFromBuckets_whenBucketLayout() {
+        // Arrange
+        ReflectionTestUtils.setField(reactiveNoteService, "storageLayout", "bucket");
+        Note note1 = new Note("1", 1001L, "Patient A", "Première note pour le patient A.");
+        Note note2 = new Note("2", 1001L, "Patient A", "Deuxième note pour le patient A.");
+        Note note3 = new Note("3", 1001L, "Patient A", "Troisième note pour le patient A.");
+        when(reactiveMongoTemplate.find(any(Query.class), eq(NoteBucket.class))).thenReturn(Flux.just(
+                new NoteBucket(1001L, "2026-01", List.of(note1, note2)),
+                new NoteBucket(1001L, "2026-02", List.of(note3))));
+
+        // Act
+        List<Note> result = reactiveNoteService.getNotesByPatId(1001L).collectList().block();
+
+        // Assert
+        assertEquals(List.of(note1, note2, note3), result);
+        ArgumentCaptor<Query> captor = ArgumentCaptor.forClass(Query.class);
+        verify(reactiveMongoTemplate).find(captor.capture(), eq(NoteBucket.class));
+        assertEquals(new Document("patId", 1001L), captor.getValue().getQueryObject());
+        assertEquals(new Document("notes.searchTerms", 0), captor.getValue().getFieldsObject());
+        verifyNoInteractions(reactiveNoteRepository);
+    }
+
+    @Test
+    void getNotesByPatId_shouldThrowWhenPatIdIsNull() {
+        // Act & Assert
+        IllegalArgumentException exception = assertThrows(IllegalArgumentException.class,
+                () -> reactiveNoteService.getNotesByPatId(null));
+
+        assertEquals("patId cannot be null", exception.getMessage());
+        verifyNoInteractions(reactiveNoteRepository);
+    }
+}
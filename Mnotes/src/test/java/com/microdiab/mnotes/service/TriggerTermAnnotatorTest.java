@@ -0,0 +1,82 @@
+package com.microdiab.mnotes.service;
+
+import com.microdiab.mnotes.model.Note;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TriggerTermAnnotatorTest {
+
+    private TriggerTermAnnotator annotator;
+
+    @BeforeEach
+    void setUp() {
+        annotator = new TriggerTermAnnotator();
+    }
+
+
+    @Test
+    void normalize_shouldLowerCaseAndCollapseWhitespace() {
+        assertEquals("hémoglobine a1c élevée", annotator.normalize("  Hémoglobine\n  A1C\tÉLEVÉE "));
+    }
+
+
+    @Test
+    void normalize_shouldComposeDecomposedAccents() {
+        // "Réaction" written with a combining acute accent
+        assertEquals("réaction", annotator.normalize("Re\u0301action"));
+    }
+
+
+    @Test
+    void normalize_shouldReturnEmptyStringWhenTextIsNull() {
+        assertEquals("", annotator.normalize(null));
+    }
+
+
+    @Test
+    void countTriggerTerms_shouldCountOccurrencesOfEachTerm() {
+        Map<String, Integer> counts = annotator.countTriggerTerms(
+                annotator.normalize("Le patient est Fumeur. Cholestérol anormal, taux de cholestérol élevé."));
+
+        assertEquals(1, counts.get("Fumeur"));
+        assertEquals(2, counts.get("Cholestérol"));
+        assertEquals(1, counts.get("Anormal"));
+        assertEquals(0, counts.get("Vertiges"));
+        assertEquals(TriggerTermAnnotator.TRIGGER_TERMS.size(), counts.size());
+    }
+
+
+    @Test
+    void countTriggerTerms_shouldMatchTermsInsideWords() {
+        Map<String, Integer> counts = annotator.countTriggerTerms(annotator.normalize("Réactions multiples, Microalbuminemie"));
+
+        assertEquals(1, counts.get("Réaction"));
+        assertEquals(1, counts.get("Microalbumine"));
+    }
+
+
+    @Test
+    void countTriggerTerms_shouldMatchTermSplitOnSeveralLines() {
+        Map<String, Integer> counts = annotator.countTriggerTerms(annotator.normalize("Hémoglobine\nA1C supérieure"));
+
+        assertEquals(1, counts.get("Hémoglobine A1C"));
+    }
+
+
+    @Test
+    void annotate_shouldSetCountsWithoutKeepingNormalizedNote() {
+        Note note = new Note(null, 1L, "Patient A", "Vertiges et Rechute");
+
+        Note annotated = annotator.annotate(note);
+
+        assertSame(note, annotated);
+        assertEquals("Vertiges et Rechute", note.getNote());
+        assertNull(note.getSearchTerms());
+        assertEquals(1, note.getTriggerTermCounts().get("Vertiges"));
+        assertEquals(1, note.getTriggerTermCounts().get("Rechute"));
+    }
+}
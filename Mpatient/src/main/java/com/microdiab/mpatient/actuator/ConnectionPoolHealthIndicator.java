@@ -0,0 +1,92 @@
+package com.microdiab.mpatient.actuator;
+
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.boot.actuate.health.Status;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.sql.SQLException;
+
+
+/**
+ * The {@code ConnectionPoolHealthIndicator} class reports the saturation of the HikariCP connection pool
+ * of the patient database in the {@code connectionPool} component of the {@code /actuator/health} endpoint.
+ *
+ * <ul>
+ *   <li>{@code UP}: connections are available without waiting.</li>
+ *   <li>{@code SATURATED}: requests are waiting for a connection, or the share of active connections
+ *       reached {@code mpatient.db-pool.saturation-threshold} of the maximum pool size. This status is
+ *       answered with HTTP 200, since the instance still serves requests, only more slowly.</li>
+ *   <li>{@code UNKNOWN}: the pool has not been started yet, or the data source is not a HikariCP pool.</li>
+ * </ul>
+ *
+ * The details hold the active, idle, total, maximum and pending connections, which are also published
+ * as {@code hikaricp.connections.*} metrics.
+ *
+ * @see HealthIndicator
+ * @see HikariPoolMXBean
+ */
+@Component("connectionPool")
+public class ConnectionPoolHealthIndicator implements HealthIndicator {
+
+    /** Status of a pool whose connections are all, or nearly all, in use. */
+    public static final Status SATURATED = new Status("SATURATED", "The connection pool is saturated");
+
+    private final DataSource dataSource;
+
+    private final double saturationThreshold;
+
+    /**
+     * Constructor for the {@code ConnectionPoolHealthIndicator} class.
+     *
+     * @param dataSource          The data source of the patient database.
+     * @param saturationThreshold The share of active connections, between 0 and 1, from which the pool is saturated.
+     */
+    public ConnectionPoolHealthIndicator(DataSource dataSource,
+                                         @Value("${mpatient.db-pool.saturation-threshold:0.9}") double saturationThreshold) {
+        this.dataSource = dataSource;
+        this.saturationThreshold = saturationThreshold;
+    }
+
+
+    /**
+     * Method called by Spring Boot Actuator to report the health of the connection pool.
+     *
+     * @return The health of the pool, with its connection counts.
+     */
+    @Override
+    public Health health() {
+        HikariDataSource hikariDataSource;
+        try {
+            hikariDataSource = dataSource.unwrap(HikariDataSource.class);
+        } catch (SQLException e) {
+            return Health.unknown().withDetail("reason", "The data source is not a HikariCP pool").build();
+        }
+        HikariPoolMXBean pool = hikariDataSource.getHikariPoolMXBean();
+        if (pool == null) {
+            return Health.unknown().withDetail("reason", "The connection pool is not started").build();
+        }
+
+        int active = pool.getActiveConnections();
+        int pending = pool.getThreadsAwaitingConnection();
+        int maximum = hikariDataSource.getMaximumPoolSize();
+        double usage = maximum > 0 ? (double) active / maximum : 0;
+
+        Health.Builder builder = pending > 0 || usage >= saturationThreshold
+                ? Health.status(SATURATED)
+                : Health.up();
+        return builder
+                .withDetail("pool", hikariDataSource.getPoolName())
+                .withDetail("active", active)
+                .withDetail("idle", pool.getIdleConnections())
+                .withDetail("total", pool.getTotalConnections())
+                .withDetail("maximum", maximum)
+                .withDetail("pending", pending)
+                .withDetail("usage", Math.round(usage * 100) / 100.0)
+                .build();
+    }
+}
@@ -4,6 +4,12 @@ package com.microdiab.mpatient.controller;
 import com.microdiab.mpatient.exceptions.PatientNotFoundException;
 import com.microdiab.mpatient.repository.PatientRepository;
 import com.microdiab.mpatient.model.Patient;
+import com.microdiab.mpatient.model.PatientImportResult;
+import com.microdiab.mpatient.model.PatientLookupResult;
+import com.microdiab.mpatient.model.PatientRevision;
+import com.microdiab.mpatient.model.PatientSummary;
+import com.microdiab.mpatient.service.PatientExporter;
+import com.microdiab.mpatient.service.PatientImporter;
 import com.microdiab.mpatient.service.PatientService;
 import com.microdiab.mpatient.tracing.TracingHelper;
 import io.micrometer.tracing.annotation.NewSpan;
@@ -18,17 +24,42 @@ import jakarta.validation.Valid;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.util.DigestUtils;
 import org.springframework.validation.BindingResult;
 import org.springframework.web.bind.annotation.*;
-
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.context.request.async.AsyncWebRequest;
+import org.springframework.web.context.request.async.WebAsyncUtils;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
 
 
 /**
  * REST Controller for managing patient-related operations.
- * This class provides endpoints to list, retrieve, add, and update patient records.
+ * This class provides endpoints to list, search, retrieve (one by one or by IDs), add, import, export, and update patient records.
  * It integrates with {@link PatientRepository} and {@link PatientService} for data access and business logic.
  *
  * All endpoints are documented using OpenAPI/Swagger annotations for API clarity and testing.
@@ -43,6 +74,24 @@ public class PatientController {
 
     private static final Logger log = LoggerFactory.getLogger(PatientController.class);
 
+    /** Default number of patients per page of the patient list. */
+    static final int DEFAULT_PAGE_SIZE = 20;
+
+    /** Maximum number of patients per page of the patient list. */
+    static final int MAX_PAGE_SIZE = 200;
+
+    /** Response header carrying the total number of patients, in the offset mode of the patient list. */
+    static final String TOTAL_COUNT_HEADER = "X-Total-Count";
+
+    /** Maximum number of patients created by a single {@code POST /patients/batch} request, or looked up by {@code POST /patients/by-ids}. */
+    static final int MAX_BATCH_SIZE = 5000;
+
+    /** Media type of the CSV patient imports. */
+    static final String TEXT_CSV_VALUE = "text/csv";
+
+    /** Properties the patient list can be sorted on. */
+    private static final Set<String> SORTABLE_PROPERTIES = Set.of("id", "lastname", "firstname", "dateofbirth");
+
     /** Repository for accessing patient data. */
     private final PatientRepository patientRepository;
 
@@ -52,6 +101,12 @@ public class PatientController {
     /** Service for tracing business logic. */
     private final TracingHelper tracing;
 
+    /** Importer of CSV and NDJSON patient files. */
+    private final PatientImporter patientImporter;
+
+    /** Exporter of the patients as CSV or NDJSON. */
+    private final PatientExporter patientExporter;
+
 
     /**
      * Constructs a new {@code PatientController} with the specified repository and service.
@@ -60,62 +115,326 @@ public class PatientController {
      *
      * @param patientRepository the repository for patient data access
      * @param patientService    the service handling patient business logic
+     * @param tracing           the helper adding business information to the current span
+     * @param patientImporter   the importer of CSV and NDJSON patient files
+     * @param patientExporter   the exporter of the patients as CSV or NDJSON
      */
     @Autowired
-    public PatientController(PatientRepository patientRepository, PatientService patientService, TracingHelper tracing) {
+    public PatientController(PatientRepository patientRepository, PatientService patientService, TracingHelper tracing,
+                             PatientImporter patientImporter, PatientExporter patientExporter) {
         this.patientRepository = patientRepository;
         this.patientService = patientService;
         this.tracing = tracing;
+        this.patientImporter = patientImporter;
+        this.patientExporter = patientExporter;
     }
 
 
     /**
-     * Retrieves the complete list of registered patients.
+     * Retrieves one page of the registered patients.
      *
-     * @return A {@link ResponseEntity} containing the list of patients.
+     * Two pagination modes are supported:
+     * <ul>
+     *   <li>offset mode ({@code page}, {@code size}, {@code sort}): the page number is translated into
+     *       an offset, and the total number of patients is returned in the {@code X-Total-Count} header;</li>
+     *   <li>keyset mode ({@code afterId}, {@code size}): the patients whose id is greater than {@code afterId}
+     *       are returned in id order. The primary key index is seeked directly, so deep pages cost the same
+     *       as the first one, and no count is run.</li>
+     * </ul>
+     * The body is the list of the patients of the page. The {@code Link} header gives the URLs of the
+     * next and previous pages, when they exist. The weak {@code ETag} of the page is computed from the IDs
+     * and versions of its patients and the total count, and its {@code Last-Modified} header is the latest
+     * modification time of its patients: a request whose {@code If-None-Match} matches gets a 304 Not Modified,
+     * without the body being serialized.
+     *
+     * @param page    The zero-based page number (offset mode).
+     * @param size    The number of patients per page, between 1 and {@value #MAX_PAGE_SIZE}.
+     * @param sort    The sort property and optional direction, e.g. {@code lastname,desc} (offset mode).
+     * @param afterId The id after which the page starts (keyset mode), or null for the offset mode.
+     * @return A {@link ResponseEntity} containing the patients of the page, a 304 Not Modified if the page
+     *         is unchanged, or a 400 Bad Request if the pagination parameters are invalid.
      */
-    @Operation(summary = "List all patients", description = "Returns the complete list of registered patients.")
+    @Operation(summary = "List the patients, one page at a time",
+               description = "Returns one page of the registered patients. Offset mode: page, size and sort " +
+                             "(id, lastname, firstname or dateofbirth, optionally followed by ',asc' or ',desc'), " +
+                             "with the total count in the X-Total-Count header. Keyset mode: afterId and size, " +
+                             "in id order. The Link header gives the next and previous pages.")
     @ApiResponses(value = {
-        @ApiResponse(responseCode = "200", description = "List of patients",
+        @ApiResponse(responseCode = "200", description = "Patients of the page",
                      content = @Content(mediaType = "application/json",
-                                        array = @ArraySchema(schema = @Schema(implementation = Patient.class))))
+                                        array = @ArraySchema(schema = @Schema(implementation = Patient.class)))),
+        @ApiResponse(responseCode = "400", description = "Invalid pagination parameters")
     })
     @GetMapping("/patients")
     @NewSpan("mpatient-list-patients")
-    public ResponseEntity<List<Patient>> showPatientList() {
+    public ResponseEntity<List<Patient>> showPatientList(@RequestParam(defaultValue = "0") int page,
+                                                         @RequestParam(defaultValue = "" + DEFAULT_PAGE_SIZE) int size,
+                                                         @RequestParam(defaultValue = "id") String sort,
+                                                         @RequestParam(required = false) Long afterId) {
 
         tracing.tag("endpoint", "/patients");
-        tracing.event("Fetching all patients");
+        tracing.event("Fetching a page of patients");
+
+        Sort order = parseSort(sort);
+        if (page < 0 || size < 1 || size > MAX_PAGE_SIZE || order == null
+                || (afterId != null && (page != 0 || !order.equals(Sort.by("id"))))) {
+            tracing.error("ValidationError", "Invalid pagination parameters");
+            return ResponseEntity.badRequest().build();
+        }
 
-        List<Patient> patients = patientRepository.findAll();
+        ServletUriComponentsBuilder currentUri = ServletUriComponentsBuilder.fromCurrentRequest();
+        List<String> links = new ArrayList<>();
+        HttpHeaders headers = new HttpHeaders();
+        List<Patient> patients;
+
+        if (afterId != null) {
+            patients = patientRepository.findByIdGreaterThanOrderByIdAsc(afterId, Limit.of(size));
+            if (patients.size() == size) {
+                links.add(link(currentUri.replaceQueryParam("afterId", patients.get(size - 1).getId()), "next"));
+            }
+        } else {
+            Page<Patient> patientPage = patientRepository.findAll(
+                    PageRequest.of(page, size, order.and(Sort.by("id"))));
+            patients = patientPage.getContent();
+            headers.set(TOTAL_COUNT_HEADER, String.valueOf(patientPage.getTotalElements()));
+            if (patientPage.hasNext()) {
+                links.add(link(currentUri.cloneBuilder().replaceQueryParam("page", page + 1), "next"));
+            }
+            if (patientPage.hasPrevious()) {
+                links.add(link(currentUri.cloneBuilder().replaceQueryParam("page", page - 1), "prev"));
+            }
+        }
+        if (!links.isEmpty()) {
+            headers.set(HttpHeaders.LINK, String.join(", ", links));
+        }
+        String totalCount = headers.getFirst(TOTAL_COUNT_HEADER);
+        headers.setETag(pageETag(patients, totalCount != null ? Long.valueOf(totalCount) : null));
+        patients.stream().map(Patient::getUpdatedAt).filter(Objects::nonNull).max(Comparator.naturalOrder())
+                .ifPresent(headers::setLastModified);
 
         tracing.tag("patient.count", patients.size());
 
-        return ResponseEntity.ok(patients);
+        return ResponseEntity.ok().headers(headers).body(patients);
+    }
+
+
+    /**
+     * Exports all the patients as a newline-delimited JSON (NDJSON) stream or a CSV file, e.g. to back up
+     * the patient base or to feed a reporting tool.
+     *
+     * The patients are streamed from the database and written to the response one at a time, so the export
+     * does not load the patient base into memory. The CSV output can be imported again with
+     * {@code POST /patients/import}. The response is written asynchronously, within the timeout of the
+     * exports ({@code mpatient.export.timeout}), which replaces the default timeout for this request only.
+     *
+     * @param format     The format of the export, {@code ndjson} (default) or {@code csv}.
+     * @param webRequest The current request, whose asynchronous processing is given the timeout of the exports.
+     * @return A {@link ResponseEntity} streaming the patients in id order,
+     *         or a 400 Bad Request if the format is unknown.
+     */
+    @Operation(summary = "Export all the patients",
+               description = "Streams all the patients in id order, as NDJSON (one patient per line) or as CSV " +
+                             "(id, lastname, firstname, dateofbirth, gender, address, phone), without loading them into memory.")
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Patients, as NDJSON or CSV",
+                     content = {@Content(mediaType = MediaType.APPLICATION_NDJSON_VALUE),
+                                @Content(mediaType = TEXT_CSV_VALUE)}),
+        @ApiResponse(responseCode = "400", description = "Unknown export format")
+    })
+    @GetMapping("/patients/export")
+    @NewSpan("mpatient-export-patients")
+    public ResponseEntity<StreamingResponseBody> exportPatients(@RequestParam(defaultValue = "ndjson") String format,
+                                                                WebRequest webRequest) {
+
+        tracing.tag("endpoint", "/patients/export");
+        tracing.tag("export.format", format);
+        tracing.event("Exporting patients");
+
+        boolean csv = "csv".equalsIgnoreCase(format);
+        if (!csv && !"ndjson".equalsIgnoreCase(format)) {
+            tracing.error("ValidationError", "Unknown export format: " + format);
+            return ResponseEntity.badRequest().build();
+        }
+
+        AsyncWebRequest asyncWebRequest = WebAsyncUtils.getAsyncManager(webRequest).getAsyncWebRequest();
+        if (asyncWebRequest != null) {
+            asyncWebRequest.setTimeout(patientExporter.getTimeout().toMillis());
+        }
+
+        StreamingResponseBody body = outputStream -> {
+            long count = csv ? patientExporter.exportCsv(outputStream) : patientExporter.exportNdjson(outputStream);
+            log.debug("Patients exported: {}", count);
+        };
+
+        return ResponseEntity.ok()
+                .contentType(csv ? MediaType.parseMediaType(TEXT_CSV_VALUE + ";charset=UTF-8") : MediaType.APPLICATION_NDJSON)
+                .header(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment()
+                        .filename(csv ? "patients.csv" : "patients.ndjson").build().toString())
+                .body(body);
+    }
+
+
+    /**
+     * Parses the {@code sort} parameter of the patient list.
+     *
+     * @param sort The sort property, optionally followed by {@code ,asc} or {@code ,desc}.
+     * @return The corresponding sort, or null if the property cannot be sorted on or the direction is unknown.
+     */
+    private static Sort parseSort(String sort) {
+        String[] parts = sort.split(",");
+        if (parts.length > 2 || !SORTABLE_PROPERTIES.contains(parts[0].trim())) {
+            return null;
+        }
+        Optional<Sort.Direction> direction = parts.length == 2
+                ? Sort.Direction.fromOptionalString(parts[1].trim())
+                : Optional.of(Sort.Direction.ASC);
+        return direction.map(value -> Sort.by(value, parts[0].trim())).orElse(null);
+    }
+
+
+    /**
+     * Formats a link of the {@code Link} header.
+     *
+     * @param uri The URI of the linked page.
+     * @param rel The relation of the linked page to the current one.
+     * @return The link, e.g. {@code <http://host/patients?page=1>; rel="next"}.
+     */
+    private static String link(UriComponentsBuilder uri, String rel) {
+        return "<" + uri.toUriString() + ">; rel=\"" + rel + "\"";
+    }
+
+
+    /**
+     * Searches the patients by last name prefix, first name prefix and date of birth.
+     *
+     * At least one criterion is required. The names match the patients whose name starts with them,
+     * and the date of birth matches exactly. The results are sorted by last name, first name, date of
+     * birth and id, which is the order of the index used for a last name search, and only hold the
+     * {@link PatientSummary} columns. As for the patient list, the total number of matches is returned
+     * in the {@code X-Total-Count} header and the next and previous pages in the {@code Link} header.
+     *
+     * @param lastname    The beginning of the last name, or null.
+     * @param firstname   The beginning of the first name, or null.
+     * @param dob         The date of birth ({@code yyyy-MM-dd}), or null.
+     * @param page        The zero-based page number.
+     * @param size        The number of patients per page, between 1 and {@value #MAX_PAGE_SIZE}.
+     * @return A {@link ResponseEntity} containing the matching patients of the page,
+     *         or a 400 Bad Request if no criterion is given or the pagination parameters are invalid.
+     */
+    @Operation(summary = "Search the patients",
+               description = "Returns one page of the patients whose last name and first name start with the given " +
+                             "values and who are born on the given date, each criterion being optional but at least " +
+                             "one being required. The total count is in the X-Total-Count header.")
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Matching patients of the page",
+                     content = @Content(mediaType = "application/json",
+                                        array = @ArraySchema(schema = @Schema(implementation = PatientSummary.class)))),
+        @ApiResponse(responseCode = "400", description = "No search criterion or invalid pagination parameters")
+    })
+    @GetMapping("/patients/search")
+    @NewSpan("mpatient-search-patients")
+    public ResponseEntity<List<PatientSummary>> searchPatients(@RequestParam(required = false) String lastname,
+                                                               @RequestParam(required = false) String firstname,
+                                                               @RequestParam(required = false)
+                                                               @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate dob,
+                                                               @RequestParam(defaultValue = "0") int page,
+                                                               @RequestParam(defaultValue = "" + DEFAULT_PAGE_SIZE) int size) {
+
+        tracing.tag("endpoint", "/patients/search");
+        tracing.event("Searching patients");
+
+        String lastnamePattern = prefixPattern(lastname);
+        String firstnamePattern = prefixPattern(firstname);
+        if ((lastnamePattern == null && firstnamePattern == null && dob == null)
+                || page < 0 || size < 1 || size > MAX_PAGE_SIZE) {
+            tracing.error("ValidationError", "Invalid search parameters");
+            return ResponseEntity.badRequest().build();
+        }
+
+        Page<PatientSummary> results = patientRepository.searchByPrefix(lastnamePattern, firstnamePattern, dob,
+                PageRequest.of(page, size, Sort.by("lastname", "firstname", "dateofbirth", "id")));
+
+        ServletUriComponentsBuilder currentUri = ServletUriComponentsBuilder.fromCurrentRequest();
+        List<String> links = new ArrayList<>();
+        HttpHeaders headers = new HttpHeaders();
+        headers.set(TOTAL_COUNT_HEADER, String.valueOf(results.getTotalElements()));
+        if (results.hasNext()) {
+            links.add(link(currentUri.cloneBuilder().replaceQueryParam("page", page + 1), "next"));
+        }
+        if (results.hasPrevious()) {
+            links.add(link(currentUri.cloneBuilder().replaceQueryParam("page", page - 1), "prev"));
+        }
+        if (!links.isEmpty()) {
+            headers.set(HttpHeaders.LINK, String.join(", ", links));
+        }
+
+        tracing.tag("patient.count", results.getNumberOfElements());
+
+        return ResponseEntity.ok().headers(headers).body(results.getContent());
+    }
+
+
+    /**
+     * Converts a searched name into a {@code LIKE} pattern matching the names starting with it.
+     * The wildcards of the name, and the {@code !} escape character, are escaped.
+     *
+     * @param prefix The searched name, or null.
+     * @return The pattern, or null if the name is null or blank.
+     */
+    static String prefixPattern(String prefix) {
+        if (prefix == null || prefix.isBlank()) {
+            return null;
+        }
+        return prefix.trim()
+                .replace("!", "!!")
+                .replace("%", "!%")
+                .replace("_", "!_") + "%";
     }
 
+
     /**
      * Retrieves a specific patient by their ID.
      *
-     * @param id The ID of the patient to retrieve.
-     * @return A {@link ResponseEntity} containing the patient details.
+     * The response carries the version of the patient as its {@code ETag}, and the time of its last
+     * modification as its {@code Last-Modified} header. A conditional request ({@code If-None-Match} or
+     * {@code If-Modified-Since}) for a patient which has not changed is answered with a 304 Not Modified,
+     * after reading only the revision of the patient by primary key.
+     *
+     * @param id      The ID of the patient to retrieve.
+     * @param request The current request, holding the conditional headers.
+     * @return A {@link ResponseEntity} containing the patient details, or a 304 Not Modified.
      * @throws PatientNotFoundException If the patient does not exist.
      */
-    @Operation(summary = "Retrieve a patient by ID", description = "Returns details for a specific patient.")
+    @Operation(summary = "Retrieve a patient by ID",
+               description = "Returns details for a specific patient, with its version as ETag and its last " +
+                             "modification time as Last-Modified. Conditional requests get a 304 if the patient is unchanged.")
     @ApiResponses(value = {
         @ApiResponse(responseCode = "200", description = "Patient found",
                      content = @Content(mediaType = "application/json",
                                         schema = @Schema(implementation = Patient.class))),
+        @ApiResponse(responseCode = "304", description = "Patient not modified"),
         @ApiResponse(responseCode = "404", description = "Patient not found")
     })
     @GetMapping("/patient/{id}")
     @NewSpan("mpatient-get-patient")
-    public ResponseEntity<Patient> showPatientId(@PathVariable Long id) {
+    public ResponseEntity<Patient> showPatientId(@PathVariable Long id, WebRequest request) {
 
         tracing.tag("endpoint", "/patient/{id}");
         tracing.tag("patient.id", id);
         tracing.event("Fetching patient");
 
+        if (request.getHeader(HttpHeaders.IF_NONE_MATCH) != null || request.getHeader(HttpHeaders.IF_MODIFIED_SINCE) != null) {
+            Optional<PatientRevision> revision = patientRepository.findRevisionById(id);
+            if (revision.isPresent() && request.checkNotModified(
+                    eTag(revision.get().getVersion()), revision.get().getUpdatedAt().toEpochMilli())) {
+                tracing.event("Patient not modified");
+                return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                        .eTag(eTag(revision.get().getVersion()))
+                        .lastModified(revision.get().getUpdatedAt())
+                        .build();
+            }
+        }
+
         Optional<Patient> patient = patientRepository.findById(id);
 
         if (patient.isEmpty()) {
@@ -123,7 +442,39 @@ public class PatientController {
             throw new PatientNotFoundException("The patient corresponding to the ID " + id + " does not exist.");
         }
 
-        return ResponseEntity.ok(patient.get());
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok().eTag(eTag(patient.get().getVersion()));
+        if (patient.get().getUpdatedAt() != null) {
+            response.lastModified(patient.get().getUpdatedAt());
+        }
+        return response.body(patient.get());
+    }
+
+
+    /**
+     * Builds the entity tag of a patient from its version.
+     *
+     * @param version The version of the patient.
+     * @return The quoted entity tag, e.g. {@code "3"}.
+     */
+    static String eTag(Long version) {
+        return "\"" + version + "\"";
+    }
+
+
+    /**
+     * Builds the weak entity tag of a page of patients from the total count and the ID and version
+     * of each patient, so that it changes whenever a patient of the page is created, modified or deleted.
+     *
+     * @param patients   The patients of the page.
+     * @param totalCount The total number of patients, or null in keyset mode.
+     * @return The weak entity tag of the page, e.g. {@code W/"5d41402abc4b2a76b9719d911017c592"}.
+     */
+    static String pageETag(List<Patient> patients, Long totalCount) {
+        StringBuilder revisions = new StringBuilder(String.valueOf(totalCount));
+        for (Patient patient : patients) {
+            revisions.append(';').append(patient.getId()).append(':').append(patient.getVersion());
+        }
+        return "W/\"" + DigestUtils.md5DigestAsHex(revisions.toString().getBytes(StandardCharsets.UTF_8)) + "\"";
     }
 
 
@@ -164,20 +515,159 @@ public class PatientController {
     }
 
 
+    /**
+     * Registers a batch of new patients in the database, in a single transaction.
+     *
+     * The patients are inserted by JDBC batches, e.g. for the registrations sent by partner clinics.
+     * If one of them is invalid or already registered, none of them is saved.
+     *
+     * @param patients The patients to add, at most {@value #MAX_BATCH_SIZE}.
+     * @return A {@link ResponseEntity} containing the saved patients with their IDs,
+     *         or a 400 Bad Request if the batch is empty or too large.
+     */
+    @Operation(summary = "Add a batch of new patients",
+               description = "Registers up to " + MAX_BATCH_SIZE + " new patients in a single transaction, " +
+                             "inserted by JDBC batches. If one patient is invalid or duplicated, none is saved.")
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Patients successfully added",
+                     content = @Content(mediaType = "application/json",
+                                        array = @ArraySchema(schema = @Schema(implementation = Patient.class)))),
+        @ApiResponse(responseCode = "400", description = "Validation error, empty or too large batch"),
+        @ApiResponse(responseCode = "409", description = "One of the patients already exists")
+    })
+    @PostMapping("/patients/batch")
+    @NewSpan("mpatient-add-patients-batch")
+    public ResponseEntity<List<Patient>> addPatients(@RequestBody List<@Valid Patient> patients) {
+
+        tracing.tag("endpoint", "/patients/batch");
+        tracing.tag("patient.count", patients.size());
+        tracing.event("Adding a batch of patients");
+
+        if (patients.isEmpty() || patients.size() > MAX_BATCH_SIZE) {
+            tracing.error("ValidationError", "Invalid batch size " + patients.size());
+            return ResponseEntity.badRequest().build();
+        }
+
+        List<Patient> savedPatients = patientService.savePatients(patients);
+
+        tracing.event("Patients saved successfully");
+        log.debug("{} patients recorded", savedPatients.size());
+
+        return ResponseEntity.ok(savedPatients);
+    }
+
+
+    /**
+     * Retrieves several patients by their IDs in a single request, e.g. for the batch risk assessment,
+     * instead of one {@code GET /patient/{id}} per patient.
+     *
+     * @param ids The IDs of the patients to retrieve, at most {@value #MAX_BATCH_SIZE}.
+     * @return A {@link ResponseEntity} containing the patients found and the IDs which do not match any patient,
+     *         or a 400 Bad Request if the list is empty, too large or contains a null ID.
+     */
+    @Operation(summary = "Retrieve patients by IDs",
+               description = "Returns the patients matching a JSON array of IDs (at most 5000), in the order of the " +
+                             "request, and the list of the IDs which do not match any patient.")
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Patients found and missing IDs",
+                     content = @Content(mediaType = "application/json",
+                                        schema = @Schema(implementation = PatientLookupResult.class))),
+        @ApiResponse(responseCode = "400", description = "Empty or too large list of IDs")
+    })
+    @PostMapping("/patients/by-ids")
+    @NewSpan("mpatient-find-patients-by-ids")
+    public ResponseEntity<PatientLookupResult> findPatientsByIds(@RequestBody List<Long> ids) {
+
+        tracing.tag("endpoint", "/patients/by-ids");
+        tracing.tag("patient.requested", ids.size());
+        tracing.event("Fetching patients by IDs");
+
+        if (ids.isEmpty() || ids.size() > MAX_BATCH_SIZE || ids.stream().anyMatch(Objects::isNull)) {
+            tracing.error("ValidationError", "Invalid list of " + ids.size() + " IDs");
+            return ResponseEntity.badRequest().build();
+        }
+
+        PatientLookupResult result = patientService.findPatientsByIds(ids);
+
+        tracing.tag("patient.count", result.getPatients().size());
+        tracing.tag("patient.missing", result.getMissingIds().size());
+        log.debug("Patients found: {}, missing: {}", result.getPatients().size(), result.getMissingIds().size());
+
+        return ResponseEntity.ok(result);
+    }
+
+
+    /**
+     * Imports the patients of a CSV file or of a newline-delimited JSON (NDJSON) stream, e.g. to migrate
+     * the patient base of a practice.
+     *
+     * The upload is streamed: the rows are validated one at a time and saved by batches, each in its own
+     * transaction, so files of any size can be imported. Invalid or already registered rows are skipped,
+     * and reported in the result with their line number.
+     *
+     * @param contentType The media type of the upload, {@code text/csv} or {@code application/x-ndjson}.
+     * @param body        The content of the upload.
+     * @return A {@link ResponseEntity} containing the number of imported and rejected rows with the errors
+     *         of the first rejected ones, or a 400 Bad Request if the CSV header or quoting is malformed.
+     * @throws IOException If the upload cannot be read.
+     */
+    @Operation(summary = "Import patients from a CSV or NDJSON file",
+               description = "Streams a CSV file (header with lastname, firstname, dateofbirth, gender and optionally " +
+                             "address and phone) or a NDJSON stream (one patient per line). Each row is validated, valid " +
+                             "patients are saved by batches and rejected rows are reported with their line number.")
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Import report",
+                     content = @Content(mediaType = "application/json",
+                                        schema = @Schema(implementation = PatientImportResult.class))),
+        @ApiResponse(responseCode = "400", description = "Malformed CSV header or quoting")
+    })
+    @PostMapping(value = "/patients/import", consumes = {TEXT_CSV_VALUE, MediaType.APPLICATION_NDJSON_VALUE})
+    @NewSpan("mpatient-import-patients")
+    public ResponseEntity<?> importPatients(@RequestHeader(HttpHeaders.CONTENT_TYPE) String contentType,
+                                            InputStream body) throws IOException {
+
+        tracing.tag("endpoint", "/patients/import");
+        tracing.event("Importing patients");
+
+        PatientImportResult result;
+        try {
+            result = MediaType.parseMediaType(contentType).isCompatibleWith(MediaType.APPLICATION_NDJSON)
+                    ? patientImporter.importNdjson(body)
+                    : patientImporter.importCsv(body);
+        } catch (IllegalArgumentException e) {
+            tracing.error("ImportError", e.getMessage());
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+
+        tracing.tag("patient.imported", result.getImported());
+        tracing.tag("patient.rejected", result.getRejected());
+        log.debug("Patients imported: {}, rejected: {}", result.getImported(), result.getRejected());
+
+        return ResponseEntity.ok(result);
+    }
+
+
     /**
      * Updates the information for an existing patient.
      *
+     * The body must carry the {@code version} the patient was read with: the update is only applied if the patient
+     * has not been modified since, so that a concurrent edit is never silently overwritten.
+     *
      * @param id The ID of the patient to update.
      * @param updatePatient The updated patient object.
      * @param result The binding result for validation.
-     * @return A {@link ResponseEntity} containing the updated patient or validation errors.
+     * @return A {@link ResponseEntity} containing the updated patient or validation errors,
+     *         or a 400 Bad Request if the version is missing.
      */
-    @Operation(summary = "Updates a patient", description = "Updates the information for an existing patient.")
+    @Operation(summary = "Updates a patient", description = "Updates the information for an existing patient, " +
+                                                            "if it has not been modified since the version sent in the body.")
     @ApiResponses(value = {
         @ApiResponse(responseCode = "200", description = "Patient successfully updated",
                      content = @Content(mediaType = "application/json",
                                         schema = @Schema(implementation = Patient.class))),
-        @ApiResponse(responseCode = "400", description = "Validation error")
+        @ApiResponse(responseCode = "400", description = "Validation error, or missing version"),
+        @ApiResponse(responseCode = "404", description = "Patient not found"),
+        @ApiResponse(responseCode = "409", description = "Patient modified since the version sent")
     })
     @PutMapping("/patient/{id}")
     @NewSpan("mpatient-update-patient")
@@ -192,6 +682,10 @@ public class PatientController {
             log.debug("Patient not saved, validation error : {}", result.getAllErrors());
             return ResponseEntity.badRequest().body(result.getAllErrors());
         }
+        if (updatePatient.getVersion() == null) {
+            tracing.error("ValidationError", "Missing version");
+            return ResponseEntity.badRequest().body(Map.of("error", "version is mandatory: send the version the patient was read with"));
+        }
 
         Patient updatedPatient = patientService.updatePatient(id, updatePatient);
 
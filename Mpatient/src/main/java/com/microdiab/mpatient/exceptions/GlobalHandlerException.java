@@ -24,6 +24,7 @@ import java.util.Map;
  *   <li>{@link MethodArgumentNotValidException} for validation errors</li>
  *   <li>{@link PatientDuplicateException} for duplicate patient records</li>
  *   <li>{@link PatientNotFoundException} for missing patient records</li>
+ *   <li>{@link PatientVersionConflictException} for concurrent updates of a patient</li>
  * </ul>
  *
  * @see org.springframework.web.bind.MethodArgumentNotValidException
@@ -80,4 +81,18 @@ public class GlobalHandlerException {
         errorResponse.put("error", ex.getMessage());
         return ResponseEntity.status(HttpStatus.NOT_FOUND).body(errorResponse);
     }
+
+
+    /**
+     * Handles exceptions thrown when a patient is updated with an outdated version.
+     *
+     * @param ex The version conflict exception.
+     * @return A {@link ResponseEntity} with a conflict status and error message.
+     */
+    @ExceptionHandler(PatientVersionConflictException.class)
+    public ResponseEntity<Map<String, String>> handlePatientVersionConflictException(PatientVersionConflictException ex) {
+        Map<String, String> errorResponse = new HashMap<>();
+        errorResponse.put("error", ex.getMessage());
+        return ResponseEntity.status(HttpStatus.CONFLICT).body(errorResponse);
+    }
 }
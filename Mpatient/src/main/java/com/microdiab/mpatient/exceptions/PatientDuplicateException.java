@@ -28,4 +28,15 @@ public class PatientDuplicateException extends RuntimeException {
         super(message);
         log.warn("*****  THROW Exception : {} - message : {}", getClass().getName(), getMessage());
     }
+
+    /**
+     * Constructs a new exception with the specified detail message and cause.
+     *
+     * @param message The detail message explaining the duplicate patient conflict.
+     * @param cause   The violation of the unique constraint reported by the database.
+     */
+    public PatientDuplicateException(String message, Throwable cause) {
+        super(message, cause);
+        log.warn("*****  THROW Exception : {} - message : {}", getClass().getName(), getMessage());
+    }
 }
@@ -0,0 +1,31 @@
+package com.microdiab.mpatient.exceptions;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+/**
+ * Custom exception thrown when a patient is updated with an outdated version,
+ * i.e. when it has been modified by another request since it was read.
+ *
+ * This exception is annotated with {@link ResponseStatus} to return an HTTP 409 (Conflict)
+ * status when triggered: the client must read the patient again before updating it.
+ *
+ * @see org.springframework.web.bind.annotation.ResponseStatus
+ */
+@ResponseStatus(HttpStatus.CONFLICT)
+public class PatientVersionConflictException extends RuntimeException {
+
+    private static final Logger log = LoggerFactory.getLogger(PatientVersionConflictException.class);
+
+    /**
+     * Constructs a new exception with the specified detail message.
+     *
+     * @param message The detail message explaining the version conflict.
+     */
+    public PatientVersionConflictException(String message) {
+        super(message);
+        log.warn("*****  THROW Exception : {} - message : {}", getClass().getName(), getMessage());
+    }
+}
@@ -1,10 +1,16 @@
 package com.microdiab.mpatient.model;
 
+import com.fasterxml.jackson.annotation.JsonProperty;
 import jakarta.persistence.*;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.NotNull;
 import jakarta.validation.constraints.Past;
+import jakarta.validation.constraints.Size;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.UpdateTimestamp;
 
+import java.time.Instant;
 import java.time.LocalDate;
 
 /**
@@ -18,45 +24,64 @@ import java.time.LocalDate;
  * <ul>
  *   <li>{@link NotBlank} for text fields (lastname, firstname, gender)</li>
  *   <li>{@link NotNull} and {@link Past} for the date of birth</li>
+ *   <li>{@link Size} for text fields, matching the length of their column in the {@code patient} table</li>
  * </ul>
  *
  * This entity is part of the *mPatient* microservice, which is responsible for managing
  * patient data in the *MicroDiab* application. It is designed to work with a SQL database
  * (preferably MySQL) and includes a unique identifier ({@code id}) that can be used for
- * synchronization with other databases (e.g., MongoDB) if needed.
+ * synchronization with other databases (e.g., MongoDB) if needed, a {@link Version}
+ * ({@code version}) detecting concurrent updates, and the time of its last modification
+ * ({@code updatedAt}). Both are returned as the {@code ETag} and {@code Last-Modified} headers of the patient.
+ *
+ * When the Hibernate second-level cache is enabled ({@code mpatient.cache.second-level.enabled}),
+ * the patients are cached in the {@value #CACHE_REGION} region with the {@code READ_WRITE} strategy,
+ * so that reads by ID are served from memory while updates stay consistent across transactions.
  *
  * @see jakarta.persistence.Entity
  * @see jakarta.persistence.Table
  * @see jakarta.validation.constraints.NotBlank
  * @see jakarta.validation.constraints.NotNull
  * @see jakarta.validation.constraints.Past
+ * @see jakarta.validation.constraints.Size
  */
 @Entity
 @Table(name = "patient")
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = Patient.CACHE_REGION)
 public class Patient {
 
+    /** Name of the second-level cache region of the patients, configured in {@code application.conf}. */
+    public static final String CACHE_REGION = "patient";
+
     /**
      * Unique identifier for the patient.
-     * This field is auto-generated using the {@link GenerationType#IDENTITY} strategy.
+     * This field is generated using the {@link GenerationType#TABLE} strategy: the IDs are allocated by
+     * blocks of 50 from the {@code id_generator} table, so that they are known before the inserts,
+     * which can then be sent by JDBC batches (unlike with {@link GenerationType#IDENTITY}).
      */
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "patient_id")
+    @TableGenerator(name = "patient_id", table = "id_generator", pkColumnName = "sequence_name",
+                    valueColumnName = "next_val", pkColumnValue = "patient", allocationSize = 50)
     private Long id;
 
 
     /**
      * Last name of the patient.
-     * This field is mandatory and cannot be blank.
+     * This field is mandatory, cannot be blank, and is limited to 100 characters.
      */
     @NotBlank(message = "lastname is mandatory")
+    @Size(max = 100, message = "lastname must be at most 100 characters")
     private String lastname;
 
 
     /**
      * First name of the patient.
-     * This field is mandatory and cannot be blank.
+     * This field is mandatory, cannot be blank, and is limited to 100 characters.
      */
     @NotBlank(message = "firstname is mandatory")
+    @Size(max = 100, message = "firstname must be at most 100 characters")
     private String firstname;
 
 
@@ -71,26 +96,47 @@ public class Patient {
 
     /**
      * Gender of the patient.
-     * This field is mandatory and cannot be blank.
+     * This field is mandatory, cannot be blank, and is limited to 1 character.
      */
     @NotBlank(message = "gender is mandatory")
+    @Size(max = 1, message = "gender must be at most 1 character")
     private String gender;
 
 
     /**
      * Address of the patient.
-     * This field is optional.
+     * This field is optional, and limited to 255 characters.
      */
+    @Size(max = 255, message = "address must be at most 255 characters")
     private String address;
 
 
     /**
      * Phone number of the patient.
-     * This field is optional.
+     * This field is optional, and limited to 50 characters.
      */
+    @Size(max = 50, message = "phone must be at most 50 characters")
     private String phone;
 
 
+    /**
+     * Version of the patient, used for optimistic locking.
+     * It is incremented by each update, and an update sent with an outdated version is rejected.
+     */
+    @Version
+    private Long version;
+
+
+    /**
+     * Date and time of the last modification of the patient (creation or update).
+     * It is set by the application, and ignored in the requests.
+     */
+    @UpdateTimestamp
+    @Column(name = "updated_at", nullable = false)
+    @JsonProperty(access = JsonProperty.Access.READ_ONLY)
+    private Instant updatedAt;
+
+
     /**
      * Default constructor for JPA.
      */
@@ -258,4 +304,44 @@ public class Patient {
     public void setPhone(String phone) {
         this.phone = phone;
     }
+
+
+    /**
+     * Returns the version of the patient, used for optimistic locking.
+     *
+     * @return the patient's version
+     */
+    public Long getVersion() {
+        return version;
+    }
+
+
+    /**
+     * Sets the version of the patient, used for optimistic locking.
+     *
+     * @param version the patient's version
+     */
+    public void setVersion(Long version) {
+        this.version = version;
+    }
+
+
+    /**
+     * Returns the date and time of the last modification of the patient.
+     *
+     * @return the patient's last modification time
+     */
+    public Instant getUpdatedAt() {
+        return updatedAt;
+    }
+
+
+    /**
+     * Sets the date and time of the last modification of the patient.
+     *
+     * @param updatedAt the patient's last modification time
+     */
+    public void setUpdatedAt(Instant updatedAt) {
+        this.updatedAt = updatedAt;
+    }
 }
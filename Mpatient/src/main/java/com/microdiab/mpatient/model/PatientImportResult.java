@@ -0,0 +1,110 @@
+package com.microdiab.mpatient.model;
+
+import java.util.ArrayList;
+import java.util.List;
+
+
+/**
+ * Represents the outcome of an import of patients, as returned by {@code POST /patients/import}.
+ *
+ * The number of imported and rejected rows is always complete, while the error messages
+ * only describe the first rejected rows, so that the report stays small for large files.
+ */
+public class PatientImportResult {
+
+    /**
+     * Number of patients inserted in the database.
+     */
+    private long imported;
+
+    /**
+     * Number of rows rejected because they are not valid patients or are already registered.
+     */
+    private long rejected;
+
+    /**
+     * Error messages of the first rejected rows, prefixed with their line number in the file (from 1).
+     */
+    private List<String> errors = new ArrayList<>();
+
+
+    /**
+     * Default constructor for the PatientImportResult class.
+     */
+    public PatientImportResult() {
+    }
+
+
+    /**
+     * Parameterized constructor for the PatientImportResult class.
+     *
+     * @param imported The number of patients inserted.
+     * @param rejected The number of rows rejected.
+     * @param errors   The error messages of the first rejected rows.
+     */
+    public PatientImportResult(long imported, long rejected, List<String> errors) {
+        this.imported = imported;
+        this.rejected = rejected;
+        this.errors = errors;
+    }
+
+
+    /**
+     * Returns the number of patients inserted in the database.
+     *
+     * @return the number of imported patients
+     */
+    public long getImported() {
+        return imported;
+    }
+
+
+    /**
+     * Sets the number of patients inserted in the database.
+     *
+     * @param imported the number of imported patients
+     */
+    public void setImported(long imported) {
+        this.imported = imported;
+    }
+
+
+    /**
+     * Returns the number of rows rejected.
+     *
+     * @return the number of rejected rows
+     */
+    public long getRejected() {
+        return rejected;
+    }
+
+
+    /**
+     * Sets the number of rows rejected.
+     *
+     * @param rejected the number of rejected rows
+     */
+    public void setRejected(long rejected) {
+        this.rejected = rejected;
+    }
+
+
+    /**
+     * Returns the error messages of the first rejected rows.
+     *
+     * @return the error messages, prefixed with the line number of the row
+     */
+    public List<String> getErrors() {
+        return errors;
+    }
+
+
+    /**
+     * Sets the error messages of the first rejected rows.
+     *
+     * @param errors the error messages, prefixed with the line number of the row
+     */
+    public void setErrors(List<String> errors) {
+        this.errors = errors;
+    }
+}
@@ -0,0 +1,84 @@
+package com.microdiab.mpatient.model;
+
+import java.util.ArrayList;
+import java.util.List;
+
+
+/**
+ * Represents the outcome of a lookup of patients by their IDs, as returned by {@code POST /patients/by-ids}.
+ *
+ * The patients found are listed in the order of the requested IDs, and the requested IDs
+ * which do not match any patient are listed separately, so that a caller can tell them apart
+ * without comparing the two lists.
+ */
+public class PatientLookupResult {
+
+    /**
+     * Patients matching the requested IDs, in the order of the request.
+     */
+    private List<Patient> patients = new ArrayList<>();
+
+    /**
+     * Requested IDs which do not match any patient, in the order of the request.
+     */
+    private List<Long> missingIds = new ArrayList<>();
+
+
+    /**
+     * Default constructor for the PatientLookupResult class.
+     */
+    public PatientLookupResult() {
+    }
+
+
+    /**
+     * Parameterized constructor for the PatientLookupResult class.
+     *
+     * @param patients   The patients found.
+     * @param missingIds The requested IDs which do not match any patient.
+     */
+    public PatientLookupResult(List<Patient> patients, List<Long> missingIds) {
+        this.patients = patients;
+        this.missingIds = missingIds;
+    }
+
+
+    /**
+     * Returns the patients matching the requested IDs.
+     *
+     * @return the patients found, in the order of the request
+     */
+    public List<Patient> getPatients() {
+        return patients;
+    }
+
+
+    /**
+     * Sets the patients matching the requested IDs.
+     *
+     * @param patients the patients found, in the order of the request
+     */
+    public void setPatients(List<Patient> patients) {
+        this.patients = patients;
+    }
+
+
+    /**
+     * Returns the requested IDs which do not match any patient.
+     *
+     * @return the missing IDs, in the order of the request
+     */
+    public List<Long> getMissingIds() {
+        return missingIds;
+    }
+
+
+    /**
+     * Sets the requested IDs which do not match any patient.
+     *
+     * @param missingIds the missing IDs, in the order of the request
+     */
+    public void setMissingIds(List<Long> missingIds) {
+        this.missingIds = missingIds;
+    }
+}
@@ -0,0 +1,29 @@
+package com.microdiab.mpatient.model;
+
+import java.time.Instant;
+
+/**
+ * Revision of a {@link Patient}: its version and the time of its last modification.
+ *
+ * It is read by primary key without the other columns of the patient, to answer the conditional
+ * requests ({@code If-None-Match}, {@code If-Modified-Since}) of {@code GET /patient/{id}}
+ * with a {@code 304 Not Modified} when the patient has not changed.
+ *
+ * @see com.microdiab.mpatient.repository.PatientRepository#findRevisionById
+ */
+public interface PatientRevision {
+
+    /**
+     * Gets the version of the patient, returned as its {@code ETag}.
+     *
+     * @return The version of the patient.
+     */
+    Long getVersion();
+
+    /**
+     * Gets the date and time of the last modification of the patient, returned as its {@code Last-Modified} header.
+     *
+     * @return The last modification time of the patient.
+     */
+    Instant getUpdatedAt();
+}
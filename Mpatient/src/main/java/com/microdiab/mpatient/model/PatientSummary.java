@@ -0,0 +1,50 @@
+package com.microdiab.mpatient.model;
+
+import java.time.LocalDate;
+
+/**
+ * Lightweight projection of a {@link Patient}, returned by the patient search.
+ *
+ * Only the columns identifying a patient are selected, so the search reads them from the
+ * indexes of the {@code patient} table (which also hold the primary key) instead of the rows,
+ * and the address and phone number are neither read nor sent.
+ *
+ * @see com.microdiab.mpatient.repository.PatientRepository#searchByPrefix
+ */
+public interface PatientSummary {
+
+    /**
+     * Gets the unique identifier of the patient.
+     *
+     * @return The ID of the patient.
+     */
+    Long getId();
+
+    /**
+     * Gets the last name of the patient.
+     *
+     * @return The last name of the patient.
+     */
+    String getLastname();
+
+    /**
+     * Gets the first name of the patient.
+     *
+     * @return The first name of the patient.
+     */
+    String getFirstname();
+
+    /**
+     * Gets the date of birth of the patient.
+     *
+     * @return The date of birth of the patient.
+     */
+    LocalDate getDateofbirth();
+
+    /**
+     * Gets the gender of the patient.
+     *
+     * @return The gender of the patient.
+     */
+    String getGender();
+}
@@ -2,10 +2,22 @@ package com.microdiab.mpatient.repository;
 
 
 import com.microdiab.mpatient.model.Patient;
+import com.microdiab.mpatient.model.PatientRevision;
+import com.microdiab.mpatient.model.PatientSummary;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDate;
+import java.util.List;
+import java.util.Optional;
 
 /**
  * Repository interface for managing {@link Patient} entities in the *mPatient* microservice
@@ -17,17 +29,24 @@ import java.time.LocalDate;
  *
  * The repository includes a custom method to check for the existence of a patient
  * based on unique personal details (lastname, firstname, date of birth, and gender).
- * This method is used to prevent duplicate patient records in the system.
+ * Duplicate patient records are rejected by the {@code uc_patient_unique} constraint
+ * on these columns, which the creation of a patient relies on.
+ *
+ * The paginated and sorted reads of the patient list are inherited from
+ * {@link org.springframework.data.repository.PagingAndSortingRepository}, and the
+ * keyset pagination on {@code id} is provided by {@link #findByIdGreaterThanOrderByIdAsc(Long, Limit)}.
+ * The patient search is provided by {@link #searchByPrefix(String, String, LocalDate, Pageable)},
+ * the single-statement update of a patient by {@link #updatePatient(Long, Patient)} (see {@link PatientUpdateRepository}),
+ * and the revision of a patient, checked by the conditional requests, by {@link #findRevisionById(Long)}.
  *
  * @see com.microdiab.mpatient.model.Patient
  * @see org.springframework.data.jpa.repository.JpaRepository
  */
 @Repository
-public interface PatientRepository extends JpaRepository<Patient, Long> {
+public interface PatientRepository extends JpaRepository<Patient, Long>, PatientUpdateRepository {
 
     /**
      * Checks if a patient with the specified personal details already exists in the database.
-     * This method is used to prevent duplicate patient records.
      *
      * @param lastname    The last name of the patient.
      * @param firstname   The first name of the patient.
@@ -41,4 +60,61 @@ public interface PatientRepository extends JpaRepository<Patient, Long> {
             LocalDate dateofbirth,
             String gender
     );
+
+
+    /**
+     * Retrieves the version and the last modification time of a patient, without its other columns.
+     * The row is found by primary key, so that a conditional request is answered at the cost of a single
+     * index lookup, without loading the patient.
+     *
+     * @param id The ID of the patient.
+     * @return The revision of the patient, or empty if the patient does not exist.
+     */
+    @Query("SELECT p.version AS version, p.updatedAt AS updatedAt FROM Patient p WHERE p.id = :id")
+    Optional<PatientRevision> findRevisionById(@Param("id") Long id);
+
+
+    /**
+     * Retrieves the patients whose id is greater than the given one, in id order (keyset pagination).
+     * The query seeks the primary key index, so its cost does not depend on how deep the page is.
+     *
+     * @param afterId The id after which the patients are returned, e.g. the last id of the previous page.
+     * @param limit   The maximum number of patients to return.
+     * @return The next patients after {@code afterId}, in ascending id order.
+     *         The result is kept in the query cache when the second-level cache is enabled.
+     */
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
+    List<Patient> findByIdGreaterThanOrderByIdAsc(Long afterId, Limit limit);
+
+
+    /**
+     * Searches the patients by last name prefix, first name prefix and date of birth, each criterion being optional.
+     *
+     * The prefixes are {@code LIKE} patterns ending with {@code %}, in which {@code !} escapes the wildcards
+     * of the searched text. Since they do not start with a wildcard, they are resolved as range scans of the
+     * indexes of {@code schema.sql}: {@code uc_patient_unique} for a last name, {@code idx_patient_firstname}
+     * for a first name without last name, and {@code idx_patient_dateofbirth} for a date of birth alone.
+     * The absent criteria are bound to {@code null} and their condition is removed by the optimizer.
+     *
+     * @param lastname    The last name pattern, or null.
+     * @param firstname   The first name pattern, or null.
+     * @param dateofbirth The date of birth, or null.
+     * @param pageable    The page to return and its sort.
+     * @return The page of the matching patients, as {@link PatientSummary} projections.
+     *         The page and its count are kept in the query cache when the second-level cache is enabled.
+     */
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
+    @Query(value = "SELECT p.id AS id, p.lastname AS lastname, p.firstname AS firstname, "
+                 + "p.dateofbirth AS dateofbirth, p.gender AS gender FROM Patient p "
+                 + "WHERE (:lastname IS NULL OR p.lastname LIKE :lastname ESCAPE '!') "
+                 + "AND (:firstname IS NULL OR p.firstname LIKE :firstname ESCAPE '!') "
+                 + "AND (:dateofbirth IS NULL OR p.dateofbirth = :dateofbirth)",
+           countQuery = "SELECT COUNT(p) FROM Patient p "
+                 + "WHERE (:lastname IS NULL OR p.lastname LIKE :lastname ESCAPE '!') "
+                 + "AND (:firstname IS NULL OR p.firstname LIKE :firstname ESCAPE '!') "
+                 + "AND (:dateofbirth IS NULL OR p.dateofbirth = :dateofbirth)")
+    Page<PatientSummary> searchByPrefix(@Param("lastname") String lastname,
+                                        @Param("firstname") String firstname,
+                                        @Param("dateofbirth") LocalDate dateofbirth,
+                                        Pageable pageable);
 }
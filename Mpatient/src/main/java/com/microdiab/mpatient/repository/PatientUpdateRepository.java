@@ -0,0 +1,26 @@
+package com.microdiab.mpatient.repository;
+
+import com.microdiab.mpatient.model.Patient;
+
+
+/**
+ * Repository fragment updating a patient with a single {@code UPDATE} statement, implemented by
+ * {@link PatientUpdateRepositoryImpl} and exposed by {@link PatientRepository}.
+ *
+ * @see com.microdiab.mpatient.service.PatientService#updatePatient(Long, Patient)
+ */
+public interface PatientUpdateRepository {
+
+    /**
+     * Updates the modifiable columns of a patient with a single {@code UPDATE} statement, increments its version
+     * and sets its last modification time to the one of the given patient, without reading the patient first.
+     *
+     * The row is only updated if its version is still the one the given patient was read with (optimistic locking).
+     * Only the second-level cache entry of this patient is evicted, the other cached patients being kept.
+     *
+     * @param id      The ID of the patient to update.
+     * @param patient The new values of the patient, and the version it was read with.
+     * @return The number of updated rows: 1, or 0 if the patient does not exist or its version has changed.
+     */
+    int updatePatient(Long id, Patient patient);
+}
@@ -0,0 +1,101 @@
+package com.microdiab.mpatient.repository;
+
+import com.microdiab.mpatient.model.Patient;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.hibernate.Session;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.Calendar;
+import java.util.TimeZone;
+
+
+/**
+ * Implementation of {@link PatientUpdateRepository}.
+ *
+ * The {@code UPDATE} statement is run on the connection of the current transaction, outside of the Hibernate
+ * query engine: a bulk JPQL {@code UPDATE} would make Hibernate empty the whole {@link Patient#CACHE_REGION}
+ * region of the second-level cache. Instead, only the entry of the updated patient is evicted, when the
+ * statement is run and again once the transaction is committed, so that a concurrent read cannot cache the
+ * state it replaced. The cached query results on the {@code patient} table are invalidated, as they are
+ * by any change of a patient. A violation of a constraint is reported by Hibernate, with its name, then
+ * translated into a {@link org.springframework.dao.DataIntegrityViolationException} by the repository.
+ */
+public class PatientUpdateRepositoryImpl implements PatientUpdateRepository {
+
+    /** Table of the patients, whose cached query results are invalidated by an update. */
+    private static final String[] PATIENT_TABLE = {"patient"};
+
+    /** Time zone of the last modification times, bound as Hibernate binds the {@link java.time.Instant} columns. */
+    private static final TimeZone UTC = TimeZone.getTimeZone("UTC");
+
+    private static final String UPDATE_PATIENT = "UPDATE patient SET lastname = ?, firstname = ?, dateofbirth = ?, "
+            + "gender = ?, address = ?, phone = ?, version = version + 1, updated_at = ? WHERE id = ? AND version = ?";
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+
+    @Override
+    @Transactional
+    public int updatePatient(Long id, Patient patient) {
+        Session session = entityManager.unwrap(Session.class);
+        int updatedRows = session.doReturningWork(connection -> {
+            try (PreparedStatement statement = connection.prepareStatement(UPDATE_PATIENT)) {
+                statement.setString(1, patient.getLastname());
+                statement.setString(2, patient.getFirstname());
+                if (patient.getDateofbirth() != null) {
+                    statement.setDate(3, Date.valueOf(patient.getDateofbirth()));
+                } else {
+                    statement.setNull(3, Types.DATE);
+                }
+                statement.setString(4, patient.getGender());
+                statement.setString(5, patient.getAddress());
+                statement.setString(6, patient.getPhone());
+                statement.setTimestamp(7, Timestamp.from(patient.getUpdatedAt()), Calendar.getInstance(UTC));
+                statement.setLong(8, id);
+                statement.setLong(9, patient.getVersion());
+                return statement.executeUpdate();
+            }
+        });
+
+        if (updatedRows > 0) {
+            // The persistence context must not return the state read before the update
+            entityManager.detach(entityManager.getReference(Patient.class, id));
+            evict(session, id);
+            if (TransactionSynchronizationManager.isSynchronizationActive()) {
+                TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                    @Override
+                    public void afterCommit() {
+                        evict(session, id);
+                    }
+                });
+            }
+        }
+        return updatedRows;
+    }
+
+
+    /**
+     * Evicts a patient from the second-level cache, and invalidates the cached query results on the patient table.
+     *
+     * @param session The current session.
+     * @param id      The ID of the patient.
+     */
+    private static void evict(Session session, Long id) {
+        SessionFactoryImplementor sessionFactory = session.getSessionFactory().unwrap(SessionFactoryImplementor.class);
+        sessionFactory.getCache().evict(Patient.class, id);
+        if (sessionFactory.getSessionFactoryOptions().isQueryCacheEnabled()) {
+            sessionFactory.getCache().getTimestampsCache()
+                    .invalidate(PATIENT_TABLE, session.unwrap(SharedSessionContractImplementor.class));
+        }
+    }
+}
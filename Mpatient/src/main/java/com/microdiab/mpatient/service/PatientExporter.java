@@ -0,0 +1,207 @@
+package com.microdiab.mpatient.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.microdiab.mpatient.model.Patient;
+import jakarta.persistence.EntityManager;
+import org.hibernate.CacheMode;
+import org.hibernate.jpa.HibernateHints;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+
+/**
+ * Exports all the patients as a CSV file or a newline-delimited JSON (NDJSON) stream, whatever their number.
+ *
+ * <p>Unlike {@code findAll()}, which loads every patient into the persistence context, the patients are read
+ * by a forward-only query, written to the output one at a time, then detached. Memory use therefore stays flat,
+ * whatever the size of the patient base. The streaming is set on the statement of the export only, through its
+ * fetch size ({@code mpatient.export.fetch-size}): with MySQL, {@link Integer#MIN_VALUE} makes the driver
+ * stream the rows one at a time instead of loading the whole result, while the other queries keep the default
+ * behaviour of the shared datasource. The entities are read-only, so that Hibernate keeps no snapshot of them,
+ * and the second-level cache is bypassed, so that an export does not evict the patients being read by the
+ * other requests. The export runs in a read-only transaction, which holds a database connection until
+ * the output is written, within {@code mpatient.export.timeout}.</p>
+ *
+ * <p>The CSV output has a header and the columns {@code id}, {@code lastname}, {@code firstname},
+ * {@code dateofbirth}, {@code gender}, {@code address} and {@code phone}, so that it can be imported again
+ * by {@link PatientImporter}. Fields containing a comma, a quote or a line break are quoted.</p>
+ */
+@Component
+public class PatientExporter {
+
+    private static final Logger log = LoggerFactory.getLogger(PatientExporter.class);
+
+    /** Columns of a CSV export, in order. */
+    static final List<String> CSV_COLUMNS = List.of("id", "lastname", "firstname", "dateofbirth", "gender", "address", "phone");
+
+    private final EntityManager entityManager;
+
+    private final ObjectMapper objectMapper;
+
+    /** Fetch size of the query reading the patients, {@link Integer#MIN_VALUE} to stream them with MySQL. */
+    private final int fetchSize;
+
+    /** Maximum duration of an export request. */
+    private final Duration timeout;
+
+
+    /**
+     * Constructs a new {@code PatientExporter}.
+     *
+     * @param entityManager The entity manager reading and detaching the exported patients.
+     * @param objectMapper  The Jackson {@link ObjectMapper} used to write the NDJSON rows.
+     * @param fetchSize     The fetch size of the query reading the patients.
+     * @param timeout       The maximum duration of an export request.
+     */
+    public PatientExporter(EntityManager entityManager,
+                           ObjectMapper objectMapper,
+                           @Value("${mpatient.export.fetch-size:1000}") int fetchSize,
+                           @Value("${mpatient.export.timeout:30m}") Duration timeout) {
+        this.entityManager = entityManager;
+        this.objectMapper = objectMapper;
+        this.fetchSize = fetchSize;
+        this.timeout = timeout;
+    }
+
+
+    /**
+     * Returns the maximum duration of an export request, which is written asynchronously.
+     *
+     * @return The timeout of the export requests.
+     */
+    public Duration getTimeout() {
+        return timeout;
+    }
+
+
+    /**
+     * Writes all the patients as a newline-delimited JSON stream, encoded in UTF-8, one patient object per line.
+     *
+     * @param outputStream The output to write to, flushed but not closed by this method.
+     * @return The number of exported patients.
+     * @throws IOException If the output cannot be written.
+     */
+    @Transactional(readOnly = true)
+    public long exportNdjson(OutputStream outputStream) throws IOException {
+        return export(outputStream, null, patient -> {
+            try {
+                return objectMapper.writeValueAsString(patient);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+
+    /**
+     * Writes all the patients as a CSV file, encoded in UTF-8, with a header.
+     *
+     * @param outputStream The output to write to, flushed but not closed by this method.
+     * @return The number of exported patients.
+     * @throws IOException If the output cannot be written.
+     */
+    @Transactional(readOnly = true)
+    public long exportCsv(OutputStream outputStream) throws IOException {
+        return export(outputStream, String.join(",", CSV_COLUMNS), PatientExporter::toCsv);
+    }
+
+
+    /**
+     * Streams the patients and writes one line per patient, each patient being detached once written.
+     *
+     * @param outputStream The output to write to.
+     * @param header       The first line of the output, or {@code null}.
+     * @param formatter    The conversion of a patient into a line, without line break.
+     * @return The number of exported patients.
+     * @throws IOException If the output cannot be written.
+     */
+    private long export(OutputStream outputStream, String header, Function<Patient, String> formatter) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8));
+        if (header != null) {
+            writer.write(header);
+            writer.write('\n');
+        }
+
+        long count = 0;
+        try (Stream<Patient> patients = streamPatients()) {
+            for (Patient patient : (Iterable<Patient>) patients::iterator) {
+                writer.write(formatter.apply(patient));
+                writer.write('\n');
+                entityManager.detach(patient);
+                count++;
+            }
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+
+        writer.flush();
+        log.info("Patient export completed: {} patients", count);
+        return count;
+    }
+
+
+    /**
+     * Streams all the patients in id order, read-only and bypassing the second-level cache.
+     * The stream must be consumed and closed within a transaction.
+     *
+     * @return The stream of all the patients, in ascending id order.
+     */
+    private Stream<Patient> streamPatients() {
+        return entityManager.createQuery("SELECT p FROM Patient p ORDER BY p.id", Patient.class)
+                .setHint(HibernateHints.HINT_FETCH_SIZE, fetchSize)
+                .setHint(HibernateHints.HINT_READ_ONLY, true)
+                .setHint(HibernateHints.HINT_CACHE_MODE, CacheMode.IGNORE)
+                .getResultStream();
+    }
+
+
+    /**
+     * Converts a patient into a CSV line.
+     *
+     * @param patient The patient to convert.
+     * @return The fields of the patient in the order of {@link #CSV_COLUMNS}, separated by commas.
+     */
+    static String toCsv(Patient patient) {
+        return String.join(",",
+                csvField(patient.getId()),
+                csvField(patient.getLastname()),
+                csvField(patient.getFirstname()),
+                csvField(patient.getDateofbirth()),
+                csvField(patient.getGender()),
+                csvField(patient.getAddress()),
+                csvField(patient.getPhone()));
+    }
+
+
+    /**
+     * Formats a CSV field, quoted if it contains a comma, a quote or a line break (RFC 4180).
+     *
+     * @param value The value of the field, or {@code null}.
+     * @return The field, empty if the value is {@code null}.
+     */
+    static String csvField(Object value) {
+        if (value == null) {
+            return "";
+        }
+        String text = value.toString();
+        if (text.indexOf(',') < 0 && text.indexOf('"') < 0 && text.indexOf('\n') < 0 && text.indexOf('\r') < 0) {
+            return text;
+        }
+        return '"' + text.replace("\"", "\"\"") + '"';
+    }
+}
@@ -0,0 +1,459 @@
+package com.microdiab.mpatient.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.microdiab.mpatient.exceptions.PatientDuplicateException;
+import com.microdiab.mpatient.model.Patient;
+import com.microdiab.mpatient.model.PatientImportResult;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+
+/**
+ * Imports patients from a CSV file or a newline-delimited JSON (NDJSON) stream of any size,
+ * e.g. to migrate the patient base of a practice.
+ *
+ * <p>The input is read one row at a time. Each row is converted into a {@link Patient} and checked
+ * with the Bean Validation constraints of the entity, like the body of {@code POST /patient}, then
+ * buffered until {@code mpatient.import.batch-size} patients are saved by
+ * {@link PatientService#savePatients(List)}, in their own transaction and by JDBC batches.
+ * Memory use is therefore bounded by the size of a batch, whatever the size of the input.</p>
+ *
+ * <p>Invalid rows are counted and skipped. If a batch is refused by the database, e.g. because it contains
+ * a patient who is already registered, it is rolled back and its patients are saved one by one, so that
+ * only the refused rows are rejected. The result reports the errors of the first rejected rows, with their
+ * line number.</p>
+ *
+ * <p>The CSV input starts with a header naming its columns, in any order: {@code lastname},
+ * {@code firstname}, {@code dateofbirth} ({@code yyyy-MM-dd}) and {@code gender} are required,
+ * {@code address} and {@code phone} are optional, and other columns are ignored. Fields may be
+ * quoted, with {@code ""} escaping a quote. A record longer than {@value CsvReader#MAX_RECORD_LENGTH}
+ * characters, usually a quoted field that is never closed, is rejected and the reading resumes
+ * at the line following its first line.</p>
+ */
+@Component
+public class PatientImporter {
+
+    private static final Logger log = LoggerFactory.getLogger(PatientImporter.class);
+
+    /** Columns required in the header of a CSV import. */
+    static final List<String> REQUIRED_CSV_COLUMNS = List.of("lastname", "firstname", "dateofbirth", "gender");
+
+    private final PatientService patientService;
+
+    private final ObjectMapper objectMapper;
+
+    private final Validator validator;
+
+    /** Number of patients saved per transaction. */
+    private final int batchSize;
+
+    /** Maximum number of error messages returned in the result of an import. */
+    private final int maxReportedErrors;
+
+
+    /**
+     * Constructs a new {@code PatientImporter}.
+     *
+     * @param patientService    The service saving the batches of patients.
+     * @param objectMapper      The Jackson {@link ObjectMapper} used to parse the NDJSON rows.
+     * @param validator         The validator checking the constraints of the patients.
+     * @param batchSize         The number of patients saved per transaction.
+     * @param maxReportedErrors The maximum number of error messages returned in the result.
+     */
+    public PatientImporter(PatientService patientService,
+                           ObjectMapper objectMapper,
+                           Validator validator,
+                           @Value("${mpatient.import.batch-size:500}") int batchSize,
+                           @Value("${mpatient.import.max-reported-errors:100}") int maxReportedErrors) {
+        this.patientService = patientService;
+        this.objectMapper = objectMapper;
+        this.validator = validator;
+        this.batchSize = batchSize;
+        this.maxReportedErrors = maxReportedErrors;
+    }
+
+
+    /**
+     * Imports the patients of a CSV file, encoded in UTF-8.
+     *
+     * @param inputStream The input to read, not closed by this method.
+     * @return The number of imported and rejected rows, with the errors of the first rejected ones.
+     * @throws IllegalArgumentException If a required column is missing from the header, or a quoted field
+     *                                  is not terminated. The patients of the rows read before are imported.
+     * @throws IOException              If the input cannot be read.
+     */
+    public PatientImportResult importCsv(InputStream inputStream) throws IOException {
+        PatientImportResult result = new PatientImportResult();
+        CsvReader csv = new CsvReader(reader(inputStream));
+
+        List<String> header = csv.next();
+        if (header == null) {
+            return result;
+        }
+        Map<String, Integer> columns = new HashMap<>();
+        for (int i = 0; i < header.size(); i++) {
+            columns.putIfAbsent(header.get(i).replace("\uFEFF", "").trim().toLowerCase(Locale.ROOT), i);
+        }
+        List<String> missingColumns = REQUIRED_CSV_COLUMNS.stream().filter(column -> !columns.containsKey(column)).toList();
+        if (!missingColumns.isEmpty()) {
+            throw new IllegalArgumentException("Missing CSV column(s): " + String.join(", ", missingColumns));
+        }
+
+        List<PendingPatient> batch = new ArrayList<>(batchSize);
+        try {
+            List<String> fields;
+            while ((fields = csv.next()) != null) {
+                if (csv.oversized) {
+                    reject(result, csv.recordLine, "record longer than " + CsvReader.MAX_RECORD_LENGTH
+                            + " characters (unterminated quoted field?)");
+                    continue;
+                }
+                if (fields.size() == 1 && fields.get(0).isBlank()) {
+                    continue;
+                }
+                if (fields.size() != header.size()) {
+                    reject(result, csv.recordLine, "expected " + header.size() + " fields but found " + fields.size());
+                    continue;
+                }
+                Patient patient = toPatient(fields, columns, csv.recordLine, result);
+                if (patient != null) {
+                    accept(batch, new PendingPatient(csv.recordLine, patient), result);
+                }
+            }
+        } finally {
+            saveBatch(batch, result);
+        }
+
+        log.info("CSV patient import completed: {} imported, {} rejected", result.getImported(), result.getRejected());
+        return result;
+    }
+
+
+    /**
+     * Imports the patients of a newline-delimited JSON stream, encoded in UTF-8, holding one patient object per line.
+     * A malformed line only rejects its own row.
+     *
+     * @param inputStream The input to read, not closed by this method.
+     * @return The number of imported and rejected rows, with the errors of the first rejected ones.
+     * @throws IOException If the input cannot be read.
+     */
+    public PatientImportResult importNdjson(InputStream inputStream) throws IOException {
+        PatientImportResult result = new PatientImportResult();
+        BufferedReader reader = reader(inputStream);
+        List<PendingPatient> batch = new ArrayList<>(batchSize);
+        long lineNumber = 0;
+
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (line.isBlank()) {
+                    continue;
+                }
+                Patient patient = toPatient(line, lineNumber, result);
+                if (patient != null) {
+                    accept(batch, new PendingPatient(lineNumber, patient), result);
+                }
+            }
+        } finally {
+            saveBatch(batch, result);
+        }
+
+        log.info("NDJSON patient import completed: {} imported, {} rejected", result.getImported(), result.getRejected());
+        return result;
+    }
+
+
+    /**
+     * Converts the fields of a CSV row into a patient.
+     *
+     * @param fields     The fields of the row.
+     * @param columns    The index of each column, by lower case name.
+     * @param lineNumber The line number of the row.
+     * @param result     The result of the import, updated if the row is rejected.
+     * @return The patient, or {@code null} if the row is rejected.
+     */
+    private Patient toPatient(List<String> fields, Map<String, Integer> columns, long lineNumber, PatientImportResult result) {
+        Patient patient = new Patient();
+        patient.setLastname(field(fields, columns, "lastname"));
+        patient.setFirstname(field(fields, columns, "firstname"));
+        patient.setGender(field(fields, columns, "gender"));
+        patient.setAddress(field(fields, columns, "address"));
+        patient.setPhone(field(fields, columns, "phone"));
+
+        String dateofbirth = field(fields, columns, "dateofbirth");
+        if (dateofbirth != null) {
+            try {
+                patient.setDateofbirth(LocalDate.parse(dateofbirth));
+            } catch (DateTimeParseException e) {
+                reject(result, lineNumber, "invalid dateofbirth '" + dateofbirth + "' (expected yyyy-MM-dd)");
+                return null;
+            }
+        }
+        return patient;
+    }
+
+
+    /**
+     * Returns the value of a column of a CSV row.
+     *
+     * @param fields  The fields of the row.
+     * @param columns The index of each column, by lower case name.
+     * @param column  The name of the column.
+     * @return The trimmed value, or {@code null} if the column is absent or the value is blank.
+     */
+    private static String field(List<String> fields, Map<String, Integer> columns, String column) {
+        Integer index = columns.get(column);
+        if (index == null || fields.get(index).isBlank()) {
+            return null;
+        }
+        return fields.get(index).trim();
+    }
+
+
+    /**
+     * Converts a line of a NDJSON stream into a patient.
+     *
+     * @param line       The line to parse.
+     * @param lineNumber The line number.
+     * @param result     The result of the import, updated if the row is rejected.
+     * @return The patient, or {@code null} if the row is rejected.
+     */
+    private Patient toPatient(String line, long lineNumber, PatientImportResult result) {
+        try {
+            JsonNode node = objectMapper.readTree(line);
+            if (!node.isObject()) {
+                reject(result, lineNumber, "not a JSON object");
+                return null;
+            }
+            return objectMapper.treeToValue(node, Patient.class);
+        } catch (JsonProcessingException | IllegalArgumentException e) {
+            reject(result, lineNumber, "invalid patient (" + e.getMessage().lines().findFirst().orElse("") + ")");
+            return null;
+        }
+    }
+
+
+    /**
+     * Checks the constraints of a patient, and adds it to the batch if it is valid.
+     * The batch is saved once it is full.
+     *
+     * @param batch   The patients waiting to be saved.
+     * @param pending The patient and its line number.
+     * @param result  The result of the import.
+     */
+    private void accept(List<PendingPatient> batch, PendingPatient pending, PatientImportResult result) {
+        Set<ConstraintViolation<Patient>> violations = validator.validate(pending.patient());
+        if (!violations.isEmpty()) {
+            reject(result, pending.lineNumber(), violations.stream()
+                    .map(ConstraintViolation::getMessage)
+                    .sorted()
+                    .collect(Collectors.joining(", ")));
+            return;
+        }
+        batch.add(pending);
+        if (batch.size() >= batchSize) {
+            saveBatch(batch, result);
+        }
+    }
+
+
+    /**
+     * Saves a batch of patients in a single transaction, then clears it. If the database refuses one of the
+     * patients, e.g. because it is already registered, the transaction is rolled back and the patients are
+     * saved one by one, the refused ones being rejected.
+     *
+     * @param batch  The patients to save.
+     * @param result The result of the import, updated with the number of saved patients.
+     */
+    private void saveBatch(List<PendingPatient> batch, PatientImportResult result) {
+        if (batch.isEmpty()) {
+            return;
+        }
+
+        try {
+            patientService.savePatients(batch.stream().map(PendingPatient::patient).toList());
+            result.setImported(result.getImported() + batch.size());
+        } catch (PatientDuplicateException | DataIntegrityViolationException e) {
+            log.debug("Batch of {} patients rolled back, saving them one by one", batch.size(), e);
+            for (PendingPatient pending : batch) {
+                // The identifiers allocated to the rolled back batch were not persisted
+                pending.patient().setId(null);
+                pending.patient().setVersion(null);
+                try {
+                    patientService.savePatient(pending.patient());
+                    result.setImported(result.getImported() + 1);
+                } catch (PatientDuplicateException duplicate) {
+                    reject(result, pending.lineNumber(), "a patient already exists with the same last name, first name, date of birth, and gender");
+                } catch (DataIntegrityViolationException violation) {
+                    reject(result, pending.lineNumber(), "refused by the database ("
+                            + violation.getMostSpecificCause().getMessage() + ")");
+                }
+            }
+        }
+
+        log.debug("Patient import in progress: {} imported, {} rejected", result.getImported(), result.getRejected());
+        batch.clear();
+    }
+
+
+    /**
+     * Counts a rejected row, and reports its error if the maximum number of reported errors is not reached.
+     *
+     * @param result     The result of the import.
+     * @param lineNumber The line number of the row.
+     * @param message    The reason of the rejection.
+     */
+    private void reject(PatientImportResult result, long lineNumber, String message) {
+        result.setRejected(result.getRejected() + 1);
+        if (result.getErrors().size() < maxReportedErrors) {
+            result.getErrors().add("Line " + lineNumber + ": " + message);
+        }
+    }
+
+
+    private static BufferedReader reader(InputStream inputStream) {
+        return new BufferedReader(new InputStreamReader(inputStream, StandardCharsets.UTF_8));
+    }
+
+
+    /**
+     * A valid patient waiting to be saved, with the line number of its row.
+     *
+     * @param lineNumber The line number of the row.
+     * @param patient    The patient.
+     */
+    private record PendingPatient(long lineNumber, Patient patient) {
+    }
+
+
+    /**
+     * Reads the records of a CSV input one at a time (RFC 4180), a quoted field possibly spanning several lines.
+     * A record is read up to {@link #MAX_RECORD_LENGTH} characters, so that a quoted field that is never closed
+     * does not swallow the rest of the input.
+     */
+    static final class CsvReader {
+
+        /** Maximum number of characters of a record, well above the size of the columns of a patient. */
+        static final int MAX_RECORD_LENGTH = 65_536;
+
+        private final BufferedReader reader;
+
+        /** Number of lines read. */
+        private long lineNumber;
+
+        /** Line number of the first line of the last record read. */
+        long recordLine;
+
+        /** Whether the last record read was longer than {@link #MAX_RECORD_LENGTH}, its fields being discarded. */
+        boolean oversized;
+
+
+        CsvReader(BufferedReader reader) {
+            this.reader = reader;
+        }
+
+
+        /**
+         * Reads the next record. If the record is longer than {@link #MAX_RECORD_LENGTH} characters,
+         * it is flagged as {@link #oversized} without fields, and the next record starts at its second line.
+         *
+         * @return The fields of the record, unquoted, or {@code null} at the end of the input.
+         * @throws IllegalArgumentException If a quoted field is not terminated at the end of the input.
+         * @throws IOException              If the input cannot be read.
+         */
+        List<String> next() throws IOException {
+            String line = reader.readLine();
+            if (line == null) {
+                return null;
+            }
+            recordLine = ++lineNumber;
+            oversized = false;
+            // Room for the record, and for the line making it exceed the maximum
+            reader.mark(2 * MAX_RECORD_LENGTH);
+            long recordLength = line.length();
+
+            List<String> fields = new ArrayList<>();
+            StringBuilder field = new StringBuilder();
+            boolean quoted = false;
+            int i = 0;
+            while (true) {
+                if (i == line.length()) {
+                    if (!quoted) {
+                        break;
+                    }
+                    line = reader.readLine();
+                    if (line == null) {
+                        throw new IllegalArgumentException("Malformed CSV: unterminated quoted field starting at line " + recordLine);
+                    }
+                    lineNumber++;
+                    recordLength += line.length() + 1;
+                    if (recordLength > MAX_RECORD_LENGTH) {
+                        skipOversizedRecord();
+                        return List.of();
+                    }
+                    field.append('\n');
+                    i = 0;
+                    continue;
+                }
+                char c = line.charAt(i++);
+                if (quoted) {
+                    if (c != '"') {
+                        field.append(c);
+                    } else if (i < line.length() && line.charAt(i) == '"') {
+                        field.append('"');
+                        i++;
+                    } else {
+                        quoted = false;
+                    }
+                } else if (c == '"') {
+                    quoted = true;
+                } else if (c == ',') {
+                    fields.add(field.toString());
+                    field.setLength(0);
+                } else {
+                    field.append(c);
+                }
+            }
+            fields.add(field.toString());
+            return fields;
+        }
+
+
+        /**
+         * Flags the record being read as oversized, and goes back to its second line.
+         * If the lines read exceed the buffer of the reader, the reading resumes after them.
+         */
+        private void skipOversizedRecord() {
+            oversized = true;
+            try {
+                reader.reset();
+                lineNumber = recordLine;
+            } catch (IOException markInvalid) {
+                log.debug("CSV record starting at line {} skipped up to line {}", recordLine, lineNumber);
+            }
+        }
+    }
+}
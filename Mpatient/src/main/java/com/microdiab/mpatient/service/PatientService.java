@@ -2,28 +2,58 @@ package com.microdiab.mpatient.service;
 
 import com.microdiab.mpatient.exceptions.PatientDuplicateException;
 import com.microdiab.mpatient.exceptions.PatientNotFoundException;
+import com.microdiab.mpatient.exceptions.PatientVersionConflictException;
 import com.microdiab.mpatient.model.Patient;
+import com.microdiab.mpatient.model.PatientLookupResult;
 import com.microdiab.mpatient.repository.PatientRepository;
+import org.hibernate.exception.ConstraintViolationException;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 
 
 /**
  * Service class responsible for managing {@link Patient} entities.
  *
- * This service provides operations to create and update patients while ensuring
+ * This service provides operations to create (one by one or by batches), look up by IDs and update patients while ensuring
  * business rules such as duplicate prevention and existence verification.
  *
  * @see PatientRepository
  * @see PatientDuplicateException
  * @see PatientNotFoundException
+ * @see PatientVersionConflictException
  */
 @Service
 public class PatientService {
 
+    /** Name of the unique constraint on the identity of the patients, declared in {@code schema.sql}. */
+    static final String UNIQUE_PATIENT_CONSTRAINT = "uc_patient_unique";
+
     @Autowired
     private PatientRepository patientRepository;
 
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    /** Maximum number of IDs bound to the {@code IN} list of a single lookup query. */
+    static final int LOOKUP_CHUNK_SIZE = 1000;
+
+    /** Number of patients inserted per JDBC batch, after which the persistence context is flushed and cleared. */
+    @Value("${spring.jpa.properties.hibernate.jdbc.batch_size:50}")
+    private int batchSize;
+
 
     /**
      * Default constructor for {@link PatientService}.
@@ -39,55 +69,168 @@ public class PatientService {
     /**
      * Saves a new patient in the database.
      *
-     * Before saving, this method checks whether a patient already exists with the same
-     * last name, first name, date of birth, and gender. If such a patient is found,
-     * a {@link PatientDuplicateException} is thrown.
+     * The patient is inserted with a single statement: no preliminary lookup is run, and the
+     * {@code uc_patient_unique} constraint of the {@code patient} table (last name, first name,
+     * date of birth and gender) rejects duplicates. Its violation is translated into a
+     * {@link PatientDuplicateException}, which also covers two identical patients submitted
+     * concurrently, as only one of the inserts can succeed.
+     * An identifier sent by the client is ignored, so that an existing patient is never overwritten.
      *
      * @param patient the patient entity to be saved
      * @return the saved {@link Patient} instance
      * @throws PatientDuplicateException if a patient with identical identifying information already exists
      */
     public Patient savePatient(Patient patient) {
-        // Check whether a patient with the same criteria already exists.
-        if (patientRepository.existsByLastnameAndFirstnameAndDateofbirthAndGender(
-                patient.getLastname(),
-                patient.getFirstname(),
-                patient.getDateofbirth(),
-                patient.getGender())) {
-            throw new PatientDuplicateException ("A patient already exists with the same last name, first name, date of birth, and gender.");
+        patient.setId(null);
+        try {
+            return patientRepository.saveAndFlush(patient);
+        } catch (DataIntegrityViolationException e) {
+            if (isUniquePatientViolation(e)) {
+                throw new PatientDuplicateException("A patient already exists with the same last name, first name, date of birth, and gender.", e);
+            }
+            throw e;
+        }
+    }
+
+
+    /**
+     * Saves a batch of new patients in a single transaction.
+     *
+     * The IDs of the patients are allocated by blocks by Hibernate, so the inserts are sent by JDBC batches.
+     * Every {@code batchSize} patients, the persistence context is flushed, which sends the pending
+     * batch, and cleared, so that its size stays bounded whatever the number of patients.
+     * As for {@link #savePatient(Patient)}, the identifiers sent by the client are ignored.
+     *
+     * @param patients the patients to be saved
+     * @return the saved patients, with their identifiers
+     * @throws PatientDuplicateException if one of the patients already exists, or appears twice in the batch;
+     *                                   no patient of the batch is saved in that case
+     */
+    @Transactional
+    public List<Patient> savePatients(List<Patient> patients) {
+        try {
+            for (int i = 0; i < patients.size(); i++) {
+                Patient patient = patients.get(i);
+                patient.setId(null);
+                entityManager.persist(patient);
+                if ((i + 1) % batchSize == 0) {
+                    patientRepository.flush();
+                    entityManager.clear();
+                }
+            }
+            patientRepository.flush();
+            entityManager.clear();
+        } catch (DataIntegrityViolationException e) {
+            if (isUniquePatientViolation(e)) {
+                throw new PatientDuplicateException("The batch contains a patient who already exists with the same last name, first name, date of birth, and gender; no patient was saved.", e);
+            }
+            throw e;
+        }
+        return patients;
+    }
+
+
+    /**
+     * Retrieves the patients matching a list of IDs, and the IDs which do not match any patient.
+     *
+     * The patients are read with {@code findAllById}, i.e. a single {@code SELECT ... WHERE id IN (...)}
+     * query per chunk of {@value #LOOKUP_CHUNK_SIZE} IDs, which keeps the statements and their bind
+     * parameters within safe limits while replacing one query per patient. Duplicated IDs are looked up once.
+     *
+     * @param ids the identifiers of the patients to retrieve
+     * @return the patients found and the missing IDs, both in the order of the first occurrence of each ID
+     */
+    @Transactional(readOnly = true)
+    public PatientLookupResult findPatientsByIds(List<Long> ids) {
+        List<Long> distinctIds = new ArrayList<>(new LinkedHashSet<>(ids));
+        Map<Long, Patient> patientsById = new HashMap<>();
+        for (int start = 0; start < distinctIds.size(); start += LOOKUP_CHUNK_SIZE) {
+            List<Long> chunk = distinctIds.subList(start, Math.min(start + LOOKUP_CHUNK_SIZE, distinctIds.size()));
+            for (Patient patient : patientRepository.findAllById(chunk)) {
+                patientsById.put(patient.getId(), patient);
+            }
         }
-        // Save the patient
-        return patientRepository.save(patient);
+
+        PatientLookupResult result = new PatientLookupResult();
+        for (Long id : distinctIds) {
+            Patient patient = patientsById.get(id);
+            if (patient != null) {
+                result.getPatients().add(patient);
+            } else {
+                result.getMissingIds().add(id);
+            }
+        }
+        return result;
+    }
+
+
+    /**
+     * Checks whether a data integrity violation was caused by the {@code uc_patient_unique} constraint,
+     * rather than by another constraint such as a missing mandatory column.
+     *
+     * The constraint name extracted by the Hibernate dialect is used when available. Otherwise, the message
+     * of the driver is searched, as both MySQL ({@code for key 'patient.uc_patient_unique'}) and H2 name
+     * the violated index in it.
+     *
+     * @param e the exception thrown by the repository
+     * @return {@code true} if the unique constraint on the patient identity was violated
+     */
+    static boolean isUniquePatientViolation(DataIntegrityViolationException e) {
+        if (!(e.getCause() instanceof ConstraintViolationException violation)) {
+            return false;
+        }
+        String constraint = violation.getConstraintName() != null
+                ? violation.getConstraintName()
+                : violation.getSQLException().getMessage();
+        return constraint != null && constraint.toLowerCase(Locale.ROOT).contains(UNIQUE_PATIENT_CONSTRAINT);
     }
 
 
     /**
      * Updates an existing patient.
      *
-     * The method first verifies that the patient with the given identifier exists.
-     * If the patient cannot be found, a {@link PatientNotFoundException} is thrown.
-     * Otherwise, all modifiable fields are updated from the provided patient object.
+     * All modifiable fields are written with a single {@code UPDATE} statement, without reading the patient
+     * first, and the new state is built from the provided values, the incremented version and the current time,
+     * recorded as its last modification time. The provided patient must carry the version it was read with:
+     * the update is only applied if the patient has not been modified since, which detects a concurrent edit
+     * without an extra read; otherwise a {@link PatientVersionConflictException} is thrown. Only the second-level
+     * cache entry of the patient is evicted, the other cached patients staying in the cache.
+     *
+     * The existence of the patient is only checked when no row was updated, to report the right error.
      *
      * @param id            the identifier of the patient to update
      * @param updatePatient the patient object containing updated information
-     * @return the updated and persisted {@link Patient} instance
-     * @throws PatientNotFoundException if no patient exists with the specified id
+     * @return the updated {@link Patient} instance
+     * @throws PatientNotFoundException        if no patient exists with the specified id
+     * @throws PatientVersionConflictException if the patient has been modified since the provided version
+     * @throws PatientDuplicateException       if another patient has the same identifying information
+     * @throws IllegalArgumentException        if the version the patient was read with is missing
      */
     public Patient updatePatient(Long id, Patient updatePatient) {
-        // Checks whether the patient exists
-        Patient existingPatient = patientRepository.findById(id)
-                .orElseThrow(() -> new PatientNotFoundException("Le patient avec l'ID " + id + " n'existe pas."));
-
-        // Update patient information
-        existingPatient.setLastname(updatePatient.getLastname());
-        existingPatient.setFirstname(updatePatient.getFirstname());
-        existingPatient.setDateofbirth(updatePatient.getDateofbirth());
-        existingPatient.setGender(updatePatient.getGender());
-        existingPatient.setAddress(updatePatient.getAddress());
-        existingPatient.setPhone(updatePatient.getPhone());
-
-        // Save changes
-        return patientRepository.save(existingPatient);
+        if (updatePatient == null || updatePatient.getVersion() == null) {
+            throw new IllegalArgumentException("The version the patient was read with is required to update it.");
+        }
+        updatePatient.setUpdatedAt(Instant.now());
+        int updatedRows;
+        try {
+            updatedRows = patientRepository.updatePatient(id, updatePatient);
+        } catch (DataIntegrityViolationException e) {
+            if (isUniquePatientViolation(e)) {
+                throw new PatientDuplicateException("A patient already exists with the same last name, first name, date of birth, and gender.", e);
+            }
+            throw e;
+        }
+
+        if (updatedRows == 0) {
+            if (!patientRepository.existsById(id)) {
+                throw new PatientNotFoundException("Le patient avec l'ID " + id + " n'existe pas.");
+            }
+            throw new PatientVersionConflictException("The patient with ID " + id + " has been modified since version "
+                    + updatePatient.getVersion() + ", please reload it before updating it.");
+        }
+
+        updatePatient.setId(id);
+        updatePatient.setVersion(updatePatient.getVersion() + 1);
+        return updatePatient;
     }
 }
-
@@ -1,5 +1,9 @@
-INSERT INTO patient (lastname, firstname, dateofbirth, gender, address, phone) VALUES
-    ('TestNone', 'Test', '1966-12-31', 'F', '1 Brookside St', '100-222-3333'),
-    ('TestBorderline', 'Test', '1945-06-24', 'M', '2 High St', '200-333-4444'),
-    ('TestInDanger', 'Test', '2004-06-18', 'M', '3 Club Road', '300-444-5555'),
-    ('TestEarlyOnset', 'Test', '2002-06-28', 'F', '4 Valley Dr', '400-555-6666');
\ No newline at end of file
+INSERT INTO patient (id, lastname, firstname, dateofbirth, gender, address, phone) VALUES
+    (1, 'TestNone', 'Test', '1966-12-31', 'F', '1 Brookside St', '100-222-3333'),
+    (2, 'TestBorderline', 'Test', '1945-06-24', 'M', '2 High St', '200-333-4444'),
+    (3, 'TestInDanger', 'Test', '2004-06-18', 'M', '3 Club Road', '300-444-5555'),
+    (4, 'TestEarlyOnset', 'Test', '2002-06-28', 'F', '4 Valley Dr', '400-555-6666');
+
+-- The IDs allocated by Hibernate start after those of the rows inserted above (the patient table has no
+-- AUTO_INCREMENT, so that the generator is the only source of IDs and cannot collide with them)
+INSERT INTO id_generator (sequence_name, next_val) SELECT 'patient', COALESCE(MAX(id), 0) + 1 FROM patient;
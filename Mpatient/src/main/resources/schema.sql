@@ -1,12 +1,29 @@
 DROP TABLE IF EXISTS patient;
+DROP TABLE IF EXISTS id_generator;
+
+-- Next IDs allocated by Hibernate, by blocks of 50, so that the inserts can be batched
+-- (an AUTO_INCREMENT identity prevents JDBC batching). It is the only source of patient IDs:
+-- rows inserted outside Hibernate carry explicit IDs, and the table is seeded above them by data.sql.
+CREATE TABLE IF NOT EXISTS id_generator (
+    sequence_name       VARCHAR(50) NOT NULL PRIMARY KEY,
+    next_val            BIGINT NOT NULL
+);
 
 CREATE TABLE IF NOT EXISTS patient (
-    id                  BIGINT NOT NULL AUTO_INCREMENT PRIMARY KEY,
+    id                  BIGINT NOT NULL PRIMARY KEY,
     lastname            VARCHAR(100) NOT NULL,
     firstname           VARCHAR(100) NOT NULL,
     dateofbirth         DATE,
     gender              VARCHAR(1),
     address             VARCHAR(255),
     phone               VARCHAR(50),
+    version             BIGINT NOT NULL DEFAULT 0,
+    updated_at          DATETIME(6) NOT NULL DEFAULT CURRENT_TIMESTAMP(6),
     CONSTRAINT uc_patient_unique UNIQUE (lastname, firstname, dateofbirth, gender)
-);
\ No newline at end of file
+);
+
+-- Indexes of the patient search (GET /patients/search). A last name prefix is resolved with
+-- uc_patient_unique, which starts with lastname. All of them hold the columns of the search
+-- results (the primary key being part of every secondary index), so the rows are not read.
+CREATE INDEX idx_patient_firstname ON patient (firstname, dateofbirth, lastname, gender);
+CREATE INDEX idx_patient_dateofbirth ON patient (dateofbirth, lastname, firstname, gender);
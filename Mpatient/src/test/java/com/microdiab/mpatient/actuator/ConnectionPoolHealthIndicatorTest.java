@@ -0,0 +1,95 @@
+package com.microdiab.mpatient.actuator;
+
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.Status;
+
+import java.sql.SQLException;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class ConnectionPoolHealthIndicatorTest {
+
+    @Mock
+    private HikariDataSource dataSource;
+
+    @Mock
+    private HikariPoolMXBean pool;
+
+    private ConnectionPoolHealthIndicator healthIndicator;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        when(dataSource.unwrap(HikariDataSource.class)).thenReturn(dataSource);
+        lenient().when(dataSource.getMaximumPoolSize()).thenReturn(10);
+        lenient().when(dataSource.getPoolName()).thenReturn("mpatient-pool");
+        healthIndicator = new ConnectionPoolHealthIndicator(dataSource, 0.9);
+    }
+
+    @Test
+    void health_ShouldBeUp_WhenConnectionsAreAvailable() {
+        // Arrange
+        when(dataSource.getHikariPoolMXBean()).thenReturn(pool);
+        when(pool.getActiveConnections()).thenReturn(3);
+        when(pool.getIdleConnections()).thenReturn(7);
+        when(pool.getTotalConnections()).thenReturn(10);
+
+        // Act
+        Health health = healthIndicator.health();
+
+        // Assert
+        assertEquals(Status.UP, health.getStatus());
+        assertEquals(3, health.getDetails().get("active"));
+        assertEquals(0, health.getDetails().get("pending"));
+        assertEquals(0.3, health.getDetails().get("usage"));
+    }
+
+    @Test
+    void health_ShouldBeSaturated_WhenRequestsWaitForAConnection() {
+        // Arrange
+        when(dataSource.getHikariPoolMXBean()).thenReturn(pool);
+        when(pool.getActiveConnections()).thenReturn(5);
+        when(pool.getThreadsAwaitingConnection()).thenReturn(2);
+
+        // Act
+        Health health = healthIndicator.health();
+
+        // Assert
+        assertEquals(ConnectionPoolHealthIndicator.SATURATED, health.getStatus());
+        assertEquals(2, health.getDetails().get("pending"));
+    }
+
+    @Test
+    void health_ShouldBeSaturated_WhenUsageReachesThreshold() {
+        // Arrange
+        when(dataSource.getHikariPoolMXBean()).thenReturn(pool);
+        when(pool.getActiveConnections()).thenReturn(9);
+
+        // Act
+        Health health = healthIndicator.health();
+
+        // Assert
+        assertEquals(ConnectionPoolHealthIndicator.SATURATED, health.getStatus());
+    }
+
+    @Test
+    void health_ShouldBeUnknown_WhenPoolIsNotStarted() {
+        // Arrange
+        when(dataSource.getHikariPoolMXBean()).thenReturn(null);
+
+        // Act
+        Health health = healthIndicator.health();
+
+        // Assert
+        assertEquals(Status.UNKNOWN, health.getStatus());
+    }
+}
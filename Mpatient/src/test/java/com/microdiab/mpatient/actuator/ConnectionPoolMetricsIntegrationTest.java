@@ -0,0 +1,43 @@
+package com.microdiab.mpatient.actuator;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.actuate.observability.AutoConfigureObservability;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureMockMvc(addFilters = false)
+@AutoConfigureObservability(tracing = false)
+@ActiveProfiles("test")
+public class ConnectionPoolMetricsIntegrationTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Test
+    public void testHealth_ReportsConnectionPool() throws Exception {
+        // Act & Assert
+        mockMvc.perform(get("/actuator/health"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.components.connectionPool.status").value("UP"));
+    }
+
+    @Test
+    public void testPrometheus_PublishesHikariMetrics() throws Exception {
+        // Act & Assert
+        mockMvc.perform(get("/actuator/prometheus"))
+                .andExpect(status().isOk())
+                .andExpect(content().string(containsString("hikaricp_connections_active{pool=\"mpatient-pool\"")))
+                .andExpect(content().string(containsString("hikaricp_connections_pending{pool=\"mpatient-pool\"")))
+                .andExpect(content().string(containsString("hikaricp_connections_acquire_seconds_bucket")));
+    }
+}
@@ -3,6 +3,7 @@ package com.microdiab.mpatient.controller;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.microdiab.mpatient.exceptions.PatientDuplicateException;
 import com.microdiab.mpatient.exceptions.PatientNotFoundException;
+import com.microdiab.mpatient.exceptions.PatientVersionConflictException;
 import com.microdiab.mpatient.model.Patient;
 import com.microdiab.mpatient.repository.PatientRepository;
 import org.junit.jupiter.api.BeforeEach;
@@ -13,14 +14,23 @@ import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.http.MediaType;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 
+import java.time.Duration;
 import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
 
+import static org.hamcrest.Matchers.containsString;
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @SpringBootTest
@@ -60,6 +70,88 @@ public class PatientControllerIntegrationTest {
     }
 
 
+    @Test
+    public void testShowPatientList_Paginated() throws Exception {
+        // Arrange
+        patientRepository.save(new Patient(null, "Martin", "Marie", LocalDate.of(1990, 5, 15), "F", null, null));
+        patientRepository.save(new Patient(null, "Dupont", "Jean", LocalDate.of(1980, 1, 1), "M", null, null));
+        patientRepository.save(new Patient(null, "Bernard", "Paul", LocalDate.of(1970, 3, 8), "M", null, null));
+
+        // Act & Assert
+        mockMvc.perform(get("/patients").param("page", "1").param("size", "2").param("sort", "lastname,desc"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("X-Total-Count", "3"))
+                .andExpect(header().string("Link", containsString("page=0")))
+                .andExpect(header().string("Link", containsString("rel=\"prev\"")))
+                .andExpect(jsonPath("$.size()").value(1))
+                .andExpect(jsonPath("$[0].lastname").value("Bernard"));
+    }
+
+
+    @Test
+    public void testShowPatientList_Keyset() throws Exception {
+        // Arrange
+        Patient first = patientRepository.save(new Patient(null, "Martin", "Marie", LocalDate.of(1990, 5, 15), "F", null, null));
+        Patient second = patientRepository.save(new Patient(null, "Dupont", "Jean", LocalDate.of(1980, 1, 1), "M", null, null));
+        Patient third = patientRepository.save(new Patient(null, "Bernard", "Paul", LocalDate.of(1970, 3, 8), "M", null, null));
+
+        // Act & Assert
+        mockMvc.perform(get("/patients").param("afterId", String.valueOf(first.getId())).param("size", "1"))
+                .andExpect(status().isOk())
+                .andExpect(header().doesNotExist("X-Total-Count"))
+                .andExpect(header().string("Link", containsString("afterId=" + second.getId())))
+                .andExpect(jsonPath("$.size()").value(1))
+                .andExpect(jsonPath("$[0].lastname").value("Dupont"));
+
+        mockMvc.perform(get("/patients").param("afterId", String.valueOf(second.getId())).param("size", "5"))
+                .andExpect(status().isOk())
+                .andExpect(header().doesNotExist("Link"))
+                .andExpect(jsonPath("$[0].id").value(third.getId()));
+    }
+
+
+    @Test
+    public void testShowPatientList_InvalidSort() throws Exception {
+        // Act & Assert
+        mockMvc.perform(get("/patients").param("sort", "address"))
+                .andExpect(status().isBadRequest());
+    }
+
+
+    @Test
+    public void testSearchPatients() throws Exception {
+        // Arrange
+        patientRepository.save(new Patient(null, "Martin", "Marie", LocalDate.of(1990, 5, 15), "F", "456 Rue de Lyon", "0987654321"));
+        patientRepository.save(new Patient(null, "Martinez", "Paul", LocalDate.of(1970, 3, 8), "M", null, null));
+        patientRepository.save(new Patient(null, "Dupont", "Marie", LocalDate.of(1990, 5, 15), "F", null, null));
+
+        // Act & Assert
+        mockMvc.perform(get("/patients/search").param("lastname", "Mart").param("size", "1"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("X-Total-Count", "2"))
+                .andExpect(header().string("Link", containsString("page=1")))
+                .andExpect(jsonPath("$.size()").value(1))
+                .andExpect(jsonPath("$[0].lastname").value("Martin"))
+                .andExpect(jsonPath("$[0].phone").doesNotExist());
+
+        mockMvc.perform(get("/patients/search").param("firstname", "Mar").param("dob", "1990-05-15"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.size()").value(2))
+                .andExpect(jsonPath("$[0].lastname").value("Dupont"))
+                .andExpect(jsonPath("$[1].lastname").value("Martin"));
+    }
+
+
+    @Test
+    public void testSearchPatients_InvalidParameters() throws Exception {
+        // Act & Assert
+        mockMvc.perform(get("/patients/search"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(get("/patients/search").param("dob", "15/05/1990"))
+                .andExpect(status().isBadRequest());
+    }
+
+
     @Test
     public void testShowPatientId_Found() throws Exception {
         // Arrange
@@ -119,7 +211,47 @@ public class PatientControllerIntegrationTest {
                         .contentType(MediaType.APPLICATION_JSON)
                         .content(objectMapper.writeValueAsString(savedPatient)))
                 .andExpect(status().isOk())
-                .andExpect(jsonPath("$.lastname").value("NouveauNom"));
+                .andExpect(jsonPath("$.lastname").value("NouveauNom"))
+                .andExpect(jsonPath("$.version").value(1));
+    }
+
+
+    @Test
+    public void testUpdatePatient_OutdatedVersion() throws Exception {
+        // Arrange
+        Patient savedPatient = patientRepository.save(
+                new Patient(null, "Dupont", "Jean", LocalDate.of(1980, 1, 1), "M", "123 Rue de Paris", "0123456789"));
+        savedPatient.setAddress("1 Rue de Lille");
+        mockMvc.perform(put("/patient/{id}", savedPatient.getId())
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(savedPatient)))
+                .andExpect(status().isOk());
+
+        // Act & Assert: a second update sent with the version read before the first one
+        savedPatient.setAddress("2 Rue de Nantes");
+        mockMvc.perform(put("/patient/{id}", savedPatient.getId())
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(savedPatient)))
+                .andExpect(status().isConflict())
+                .andExpect(result -> assertTrue(result.getResolvedException() instanceof PatientVersionConflictException));
+        assertEquals("1 Rue de Lille", patientRepository.findById(savedPatient.getId()).orElseThrow().getAddress());
+    }
+
+    @Test
+    public void testUpdatePatient_MissingVersion() throws Exception {
+        // Arrange
+        Patient savedPatient = patientRepository.save(
+                new Patient(null, "Dupont", "Jean", LocalDate.of(1980, 1, 1), "M", "123 Rue de Paris", "0123456789"));
+        savedPatient.setAddress("1 Rue de Lille");
+        savedPatient.setVersion(null);
+
+        // Act & Assert
+        mockMvc.perform(put("/patient/{id}", savedPatient.getId())
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(savedPatient)))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.error").exists());
+        assertEquals("123 Rue de Paris", patientRepository.findById(savedPatient.getId()).orElseThrow().getAddress());
     }
 
     @Test
@@ -150,10 +282,218 @@ public class PatientControllerIntegrationTest {
     }
 
 
+    @Test
+    public void testAddPatients_Batch() throws Exception {
+        // Arrange
+        List<Patient> patients = new ArrayList<>();
+        for (int i = 0; i < 120; i++) {
+            patients.add(new Patient(null, "Patient" + i, "Jean", LocalDate.of(1980, 1, 1), "M", null, null));
+        }
+
+        // Act & Assert
+        mockMvc.perform(post("/patients/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(patients)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.size()").value(120))
+                .andExpect(jsonPath("$[119].id").isNumber());
+        assertEquals(120, patientRepository.count());
+    }
+
+
+    @Test
+    public void testAddPatients_DuplicateInBatch() throws Exception {
+        // Arrange
+        Patient patient = new Patient(null, "Dupont", "Jean", LocalDate.of(1980, 1, 1), "M", null, null);
+        Patient other = new Patient(null, "Martin", "Marie", LocalDate.of(1990, 5, 15), "F", null, null);
+
+        // Act & Assert
+        mockMvc.perform(post("/patients/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(List.of(other, patient, patient))))
+                .andExpect(status().isConflict());
+        assertEquals(0, patientRepository.count());
+    }
+
+
+    @Test
+    public void testAddPatients_InvalidPatient() throws Exception {
+        // Arrange
+        Patient invalid = new Patient(null, "", "Jean", LocalDate.of(1980, 1, 1), "M", null, null);
+
+        // Act & Assert
+        mockMvc.perform(post("/patients/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(List.of(invalid))))
+                .andExpect(status().isBadRequest());
+        assertEquals(0, patientRepository.count());
+    }
+
+
+    @Test
+    public void testShowPatientId_ConditionalRequests() throws Exception {
+        // Arrange
+        Patient saved = patientRepository.save(new Patient(null, "Dupont", "Jean", LocalDate.of(1980, 1, 1), "M", null, null));
+        String eTag = mockMvc.perform(get("/patient/{id}", saved.getId()))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "\"0\""))
+                .andExpect(header().exists("Last-Modified"))
+                .andReturn().getResponse().getHeader("ETag");
+
+        // Act & Assert
+        mockMvc.perform(get("/patient/{id}", saved.getId()).header("If-None-Match", eTag))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string("ETag", eTag));
+
+        Patient update = new Patient(null, "Dupont", "Jean", LocalDate.of(1980, 1, 1), "M", "12 rue de Paris", null);
+        update.setVersion(0L);
+        mockMvc.perform(put("/patient/{id}", saved.getId())
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(update)))
+                .andExpect(status().isOk());
+        mockMvc.perform(get("/patient/{id}", saved.getId()).header("If-None-Match", eTag))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "\"1\""))
+                .andExpect(jsonPath("$.address").value("12 rue de Paris"));
+    }
+
+
+    @Test
+    public void testShowPatientList_ConditionalRequest() throws Exception {
+        // Arrange
+        patientRepository.save(new Patient(null, "Dupont", "Jean", LocalDate.of(1980, 1, 1), "M", null, null));
+        String eTag = mockMvc.perform(get("/patients"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader("ETag");
+
+        // Act & Assert
+        mockMvc.perform(get("/patients").header("If-None-Match", eTag))
+                .andExpect(status().isNotModified());
+        patientRepository.save(new Patient(null, "Martin", "Marie", LocalDate.of(1990, 5, 15), "F", null, null));
+        mockMvc.perform(get("/patients").header("If-None-Match", eTag))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.size()").value(2));
+    }
+
+
+    @Test
+    public void testFindPatientsByIds() throws Exception {
+        // Arrange
+        Patient dupont = patientRepository.save(new Patient(null, "Dupont", "Jean", LocalDate.of(1980, 1, 1), "M", null, null));
+        Patient martin = patientRepository.save(new Patient(null, "Martin", "Marie", LocalDate.of(1990, 5, 15), "F", null, null));
+        long missingId = martin.getId() + 1000;
+
+        // Act & Assert
+        mockMvc.perform(post("/patients/by-ids")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(List.of(martin.getId(), missingId, dupont.getId()))))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.patients.size()").value(2))
+                .andExpect(jsonPath("$.patients[0].lastname").value("Martin"))
+                .andExpect(jsonPath("$.patients[1].lastname").value("Dupont"))
+                .andExpect(jsonPath("$.missingIds[0]").value(missingId));
+    }
+
+
+    @Test
+    public void testImportPatients_Csv() throws Exception {
+        // Arrange
+        patientRepository.save(new Patient(null, "Dupont", "Jean", LocalDate.of(1980, 1, 1), "M", null, null));
+        String csv = """
+                lastname,firstname,dateofbirth,gender,address,phone
+                Dupont,Jean,1980-01-01,M,,
+                Martin,Marie,1990-05-15,F,"12 rue de Paris, Lyon",0123456789
+                Durand,Luc,not-a-date,M,,
+                """;
+
+        // Act & Assert
+        mockMvc.perform(post("/patients/import")
+                        .contentType("text/csv")
+                        .content(csv))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.imported").value(1))
+                .andExpect(jsonPath("$.rejected").value(2))
+                .andExpect(jsonPath("$.errors.size()").value(2));
+        assertEquals(2, patientRepository.count());
+    }
+
+
+    @Test
+    public void testImportPatients_Ndjson() throws Exception {
+        // Arrange
+        String ndjson = """
+                {"lastname": "Dupont", "firstname": "Jean", "dateofbirth": "1980-01-01", "gender": "M"}
+                {"lastname": "", "firstname": "Marie", "dateofbirth": "1990-05-15", "gender": "F"}
+                """;
+
+        // Act & Assert
+        mockMvc.perform(post("/patients/import")
+                        .contentType(MediaType.APPLICATION_NDJSON)
+                        .content(ndjson))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.imported").value(1))
+                .andExpect(jsonPath("$.errors[0]").value("Line 2: lastname is mandatory"));
+        assertEquals(1, patientRepository.count());
+    }
+
+
+    @Test
+    public void testImportPatients_MissingCsvColumn() throws Exception {
+        // Act & Assert
+        mockMvc.perform(post("/patients/import")
+                        .contentType("text/csv")
+                        .content("lastname,firstname\nDupont,Jean\n"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.error").value("Missing CSV column(s): dateofbirth, gender"));
+    }
+
+
+    @Test
+    public void testExportPatients_Csv() throws Exception {
+        // Arrange
+        patientRepository.save(new Patient(null, "Dupont", "Jean", LocalDate.of(1980, 1, 1), "M", "12 rue de Paris, Lyon", null));
+        patientRepository.save(new Patient(null, "Martin", "Marie", LocalDate.of(1990, 5, 15), "F", null, "0123456789"));
+        MvcResult result = mockMvc.perform(get("/patients/export").param("format", "csv"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        // Act & Assert
+        String csv = mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Content-Type", containsString("text/csv")))
+                .andReturn().getResponse().getContentAsString();
+        String[] lines = csv.split("\n");
+        assertEquals(3, lines.length);
+        assertEquals("id,lastname,firstname,dateofbirth,gender,address,phone", lines[0]);
+        assertTrue(lines[1].endsWith(",Dupont,Jean,1980-01-01,M,\"12 rue de Paris, Lyon\","));
+        assertTrue(lines[2].endsWith(",Martin,Marie,1990-05-15,F,,0123456789"));
+    }
+
+
+    @Test
+    public void testExportPatients_Ndjson() throws Exception {
+        // Arrange
+        patientRepository.save(new Patient(null, "Dupont", "Jean", LocalDate.of(1980, 1, 1), "M", null, null));
+        MvcResult result = mockMvc.perform(get("/patients/export"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        assertEquals(Duration.ofMinutes(30).toMillis(), result.getRequest().getAsyncContext().getTimeout());
+
+        // Act & Assert
+        String ndjson = mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Content-Type", MediaType.APPLICATION_NDJSON_VALUE))
+                .andReturn().getResponse().getContentAsString();
+        Patient exported = objectMapper.readValue(ndjson.trim(), Patient.class);
+        assertEquals("Dupont", exported.getLastname());
+    }
+
+
     @Test
     public void testUpdatePatient_NotFound() throws Exception {
         // Arrange
         Patient patient = new Patient(999L, "Dupont", "Jean", LocalDate.of(1980, 1, 1), "M", "123 Rue de Paris", "0123456789");
+        patient.setVersion(0L);
 
         // Act & Assert
         mockMvc.perform(put("/patient/{id}", 999L)
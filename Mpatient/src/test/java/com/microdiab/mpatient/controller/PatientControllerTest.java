@@ -2,7 +2,13 @@ package com.microdiab.mpatient.controller;
 
 import com.microdiab.mpatient.exceptions.PatientNotFoundException;
 import com.microdiab.mpatient.model.Patient;
+import com.microdiab.mpatient.model.PatientImportResult;
+import com.microdiab.mpatient.model.PatientLookupResult;
+import com.microdiab.mpatient.model.PatientRevision;
+import com.microdiab.mpatient.model.PatientSummary;
 import com.microdiab.mpatient.repository.PatientRepository;
+import com.microdiab.mpatient.service.PatientExporter;
+import com.microdiab.mpatient.service.PatientImporter;
 import com.microdiab.mpatient.service.PatientService;
 import com.microdiab.mpatient.tracing.TracingHelper;
 import org.junit.jupiter.api.Test;
@@ -10,17 +16,41 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.ResponseEntity;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
 import org.springframework.validation.BindingResult;
-
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
 import java.time.LocalDate;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.when;
 
 @ExtendWith(MockitoExtension.class)
@@ -35,6 +65,12 @@ public class PatientControllerTest {
     @Mock
     private TracingHelper tracing;
 
+    @Mock
+    private PatientImporter patientImporter;
+
+    @Mock
+    private PatientExporter patientExporter;
+
     @InjectMocks
     private PatientController patientController;
 
@@ -46,14 +82,166 @@ public class PatientControllerTest {
         Patient patient2 = new Patient(2L, "Martin", "Marie", LocalDate.of(1990, 5, 15), "F", "456 Rue de Lyon", "0987654321");
         List<Patient> patients = Arrays.asList(patient1, patient2);
 
-        when(patientRepository.findAll()).thenReturn(patients);
+        when(patientRepository.findAll(any(Pageable.class))).thenReturn(new PageImpl<>(patients, PageRequest.of(0, 20), 2));
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(new MockHttpServletRequest("GET", "/patients")));
 
         // Act
-        ResponseEntity<List<Patient>> response = patientController.showPatientList();
+        ResponseEntity<List<Patient>> response = patientController.showPatientList(0, 20, "id", null);
 
         // Assert
         assertEquals(2, response.getBody().size());
         assertEquals("Dupont", response.getBody().get(0).getLastname());
+        assertEquals("2", response.getHeaders().getFirst("X-Total-Count"));
+        assertTrue(response.getHeaders().getETag().startsWith("W/"));
+        RequestContextHolder.resetRequestAttributes();
+    }
+
+
+    @Test
+    public void testShowPatientList_InvalidParameters() {
+        // Act
+        ResponseEntity<List<Patient>> unknownSort = patientController.showPatientList(0, 20, "phone", null);
+        ResponseEntity<List<Patient>> tooLarge = patientController.showPatientList(0, 1000, "id", null);
+        ResponseEntity<List<Patient>> keysetWithSort = patientController.showPatientList(0, 20, "lastname", 10L);
+
+        // Assert
+        assertEquals(400, unknownSort.getStatusCode().value());
+        assertEquals(400, tooLarge.getStatusCode().value());
+        assertEquals(400, keysetWithSort.getStatusCode().value());
+        verifyNoInteractions(patientRepository);
+    }
+
+
+    @Test
+    public void testSearchPatients_WithoutCriterion() {
+        // Act
+        ResponseEntity<List<PatientSummary>> response = patientController.searchPatients(" ", null, null, 0, 20);
+
+        // Assert
+        assertEquals(400, response.getStatusCode().value());
+        verifyNoInteractions(patientRepository);
+    }
+
+
+    @Test
+    public void testAddPatients() {
+        // Arrange
+        List<Patient> patients = List.of(new Patient(null, "Dupont", "Jean", LocalDate.of(1980, 1, 1), "M", null, null));
+        when(patientService.savePatients(patients)).thenReturn(patients);
+
+        // Act
+        ResponseEntity<List<Patient>> response = patientController.addPatients(patients);
+
+        // Assert
+        assertEquals(200, response.getStatusCode().value());
+        assertEquals(1, response.getBody().size());
+    }
+
+
+    @Test
+    public void testAddPatients_EmptyBatch() {
+        // Act
+        ResponseEntity<List<Patient>> response = patientController.addPatients(List.of());
+
+        // Assert
+        assertEquals(400, response.getStatusCode().value());
+        verifyNoInteractions(patientService);
+    }
+
+
+    @Test
+    public void testFindPatientsByIds() {
+        // Arrange
+        Patient patient = new Patient(1L, "Dupont", "Jean", LocalDate.of(1980, 1, 1), "M", null, null);
+        PatientLookupResult result = new PatientLookupResult(List.of(patient), List.of(2L));
+        when(patientService.findPatientsByIds(List.of(1L, 2L))).thenReturn(result);
+
+        // Act
+        ResponseEntity<PatientLookupResult> response = patientController.findPatientsByIds(List.of(1L, 2L));
+
+        // Assert
+        assertEquals(200, response.getStatusCode().value());
+        assertEquals(List.of(2L), response.getBody().getMissingIds());
+    }
+
+
+    @Test
+    public void testFindPatientsByIds_NullId() {
+        // Act
+        ResponseEntity<PatientLookupResult> response = patientController.findPatientsByIds(Arrays.asList(1L, null));
+
+        // Assert
+        assertEquals(400, response.getStatusCode().value());
+        verifyNoInteractions(patientService);
+    }
+
+
+    @Test
+    public void testImportPatients_Ndjson() throws IOException {
+        // Arrange
+        InputStream body = new ByteArrayInputStream("{}".getBytes(StandardCharsets.UTF_8));
+        PatientImportResult result = new PatientImportResult();
+        result.setImported(1);
+        when(patientImporter.importNdjson(body)).thenReturn(result);
+
+        // Act
+        ResponseEntity<?> response = patientController.importPatients("application/x-ndjson; charset=UTF-8", body);
+
+        // Assert
+        assertEquals(200, response.getStatusCode().value());
+        assertEquals(result, response.getBody());
+        verify(patientImporter).importNdjson(body);
+    }
+
+
+    @Test
+    public void testImportPatients_MalformedCsv() throws IOException {
+        // Arrange
+        InputStream body = new ByteArrayInputStream("lastname\n".getBytes(StandardCharsets.UTF_8));
+        when(patientImporter.importCsv(body)).thenThrow(new IllegalArgumentException("Missing CSV column(s): firstname"));
+
+        // Act
+        ResponseEntity<?> response = patientController.importPatients("text/csv", body);
+
+        // Assert
+        assertEquals(400, response.getStatusCode().value());
+        assertEquals(Map.of("error", "Missing CSV column(s): firstname"), response.getBody());
+    }
+
+
+    @Test
+    public void testExportPatients_Csv() throws IOException {
+        // Arrange
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+        // Act
+        ResponseEntity<StreamingResponseBody> response = patientController.exportPatients("CSV", new ServletWebRequest(new MockHttpServletRequest()));
+        response.getBody().writeTo(output);
+
+        // Assert
+        assertEquals(200, response.getStatusCode().value());
+        assertEquals("attachment; filename=\"patients.csv\"", response.getHeaders().getFirst(HttpHeaders.CONTENT_DISPOSITION));
+        verify(patientExporter).exportCsv(output);
+    }
+
+
+    @Test
+    public void testExportPatients_UnknownFormat() {
+        // Act
+        ResponseEntity<StreamingResponseBody> response = patientController.exportPatients("xml", new ServletWebRequest(new MockHttpServletRequest()));
+
+        // Assert
+        assertEquals(400, response.getStatusCode().value());
+        verifyNoInteractions(patientExporter);
+    }
+
+
+    @Test
+    public void testPrefixPattern() {
+        // Act & Assert
+        assertEquals("Dup%", PatientController.prefixPattern(" Dup "));
+        assertEquals("50!%!_off!!%", PatientController.prefixPattern("50%_off!"));
+        assertNull(PatientController.prefixPattern(null));
     }
 
 
@@ -61,13 +249,56 @@ public class PatientControllerTest {
     public void testShowPatientId_Found() {
         // Arrange
         Patient patient = new Patient(1L, "Dupont", "Jean", LocalDate.of(1980, 1, 1), "M", "123 Rue de Paris", "0123456789");
+        patient.setVersion(3L);
+        patient.setUpdatedAt(Instant.parse("2024-01-15T10:00:00Z"));
         when(patientRepository.findById(1L)).thenReturn(Optional.of(patient));
 
         // Act
-        ResponseEntity<Patient> response = patientController.showPatientId(1L);
+        ResponseEntity<Patient> response = patientController.showPatientId(1L, new ServletWebRequest(new MockHttpServletRequest()));
 
         // Assert
         assertEquals("Dupont", response.getBody().getLastname());
+        assertEquals("\"3\"", response.getHeaders().getETag());
+        assertEquals(Instant.parse("2024-01-15T10:00:00Z").toEpochMilli(), response.getHeaders().getLastModified());
+        verify(patientRepository, never()).findRevisionById(any());
+    }
+
+
+    @Test
+    public void testShowPatientId_NotModified() {
+        // Arrange
+        PatientRevision revision = mock(PatientRevision.class);
+        when(revision.getVersion()).thenReturn(3L);
+        when(revision.getUpdatedAt()).thenReturn(Instant.parse("2024-01-15T10:00:00Z"));
+        when(patientRepository.findRevisionById(1L)).thenReturn(Optional.of(revision));
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/patient/1");
+        request.addHeader(HttpHeaders.IF_NONE_MATCH, "\"3\"");
+
+        // Act
+        ResponseEntity<Patient> response = patientController.showPatientId(1L,
+                new ServletWebRequest(request, new MockHttpServletResponse()));
+
+        // Assert
+        assertEquals(304, response.getStatusCode().value());
+        assertNull(response.getBody());
+        verify(patientRepository, never()).findById(any());
+    }
+
+
+    @Test
+    public void testPageETag() {
+        // Arrange
+        Patient patient = new Patient(1L, "Dupont", "Jean", LocalDate.of(1980, 1, 1), "M", null, null);
+        patient.setVersion(0L);
+        String eTag = PatientController.pageETag(List.of(patient), 1L);
+
+        // Act
+        patient.setVersion(1L);
+
+        // Assert
+        assertTrue(eTag.startsWith("W/\""));
+        assertNotEquals(eTag, PatientController.pageETag(List.of(patient), 1L));
+        assertNotEquals(eTag, PatientController.pageETag(List.of(patient), 2L));
     }
 
     @Test
@@ -77,7 +308,7 @@ public class PatientControllerTest {
 
         // Act & Assert
         assertThrows(PatientNotFoundException.class, () -> {
-            patientController.showPatientId(1L);
+            patientController.showPatientId(1L, new ServletWebRequest(new MockHttpServletRequest()));
         });
     }
 
@@ -120,6 +351,7 @@ public class PatientControllerTest {
         // Arrange
         Patient patient = new Patient(1L, "Dupont", "Jean", LocalDate.of(1980, 1, 1), "M", "123 Rue de Paris", "0123456789");
         Patient updatedPatient = new Patient(1L, "Dupont", "Jean", LocalDate.of(1980, 1, 1), "M", "123 Rue de Paris", "0123456789");
+        patient.setVersion(0L);
         BindingResult result = mock(BindingResult.class);
 
         when(result.hasErrors()).thenReturn(false);
@@ -146,4 +378,20 @@ public class PatientControllerTest {
         // Assert
         assertEquals(400, response.getStatusCodeValue());
     }
+
+    @Test
+    public void testUpdatePatient_MissingVersion() {
+        // Arrange
+        Patient patient = new Patient(1L, "Dupont", "Jean", LocalDate.of(1980, 1, 1), "M", "123 Rue de Paris", "0123456789");
+        BindingResult result = mock(BindingResult.class);
+
+        when(result.hasErrors()).thenReturn(false);
+
+        // Act
+        ResponseEntity<?> response = patientController.updatePatient(1L, patient, result);
+
+        // Assert
+        assertEquals(400, response.getStatusCodeValue());
+        verify(patientService, never()).updatePatient(any(), any());
+    }
 }
@@ -0,0 +1,25 @@
+package com.microdiab.mpatient.exception;
+
+import com.microdiab.mpatient.exceptions.PatientVersionConflictException;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class PatientVersionConflictExceptionTest {
+
+
+    @Test
+    public void testPatientVersionConflictException_Message() {
+        // Arrange
+        String expectedMessage = "The patient with ID 1 has been modified since version 2";
+
+        // Act & Assert
+        PatientVersionConflictException exception = assertThrows(
+                PatientVersionConflictException.class,
+                () -> { throw new PatientVersionConflictException(expectedMessage); }
+        );
+
+        assertEquals(expectedMessage, exception.getMessage());
+    }
+}
@@ -245,6 +245,36 @@ public class PatientTest {
     }
 
 
+    @Test
+    void testFieldsLongerThanColumns() {
+        Patient patient = new Patient();
+        patient.setLastname("D".repeat(101));
+        patient.setFirstname("J".repeat(101));
+        patient.setDateofbirth(LocalDate.of(1990, 1, 1));
+        patient.setGender("MF");
+        patient.setAddress("A".repeat(256));
+        patient.setPhone("0".repeat(51));
+
+        Set<ConstraintViolation<Patient>> violations = validator.validate(patient);
+        assertEquals(5, violations.size());
+        assertTrue(violations.stream().anyMatch(v -> v.getMessage().equals("lastname must be at most 100 characters")));
+        assertTrue(violations.stream().anyMatch(v -> v.getMessage().equals("firstname must be at most 100 characters")));
+        assertTrue(violations.stream().anyMatch(v -> v.getMessage().equals("gender must be at most 1 character")));
+        assertTrue(violations.stream().anyMatch(v -> v.getMessage().equals("address must be at most 255 characters")));
+        assertTrue(violations.stream().anyMatch(v -> v.getMessage().equals("phone must be at most 50 characters")));
+    }
+
+
+    @Test
+    void testFieldsAsLongAsColumns() {
+        Patient patient = new Patient(null, "D".repeat(100), "J".repeat(100), LocalDate.of(1990, 1, 1), "M",
+                "A".repeat(255), "0".repeat(50));
+
+        Set<ConstraintViolation<Patient>> violations = validator.validate(patient);
+        assertTrue(violations.isEmpty());
+    }
+
+
     @Test
     void testAllFieldsInvalid() {
         Patient patient = new Patient();
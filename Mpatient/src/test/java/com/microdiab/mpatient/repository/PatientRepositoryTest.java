@@ -1,10 +1,13 @@
 package com.microdiab.mpatient.repository;
 
 import com.microdiab.mpatient.model.Patient;
+import com.microdiab.mpatient.model.PatientSummary;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
 import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.test.context.ActiveProfiles;
 
 import java.time.LocalDate;
@@ -49,6 +52,21 @@ public class PatientRepositoryTest {
         // Assert
         assertThat(exists).isFalse();
     }
-}
 
+    @Test
+    public void searchByPrefix_shouldEscapeWildcardsOfTheSearchedName() {
+        // Arrange
+        Patient patient = new Patient(null, "Dupont_Moreau", "Anne", LocalDate.of(1985, 2, 3), "F", null, null);
+        entityManager.persist(patient);
+        entityManager.persist(new Patient(null, "DupontXMoreau", "Anne", LocalDate.of(1985, 2, 3), "F", null, null));
+        entityManager.flush();
+
+        // Act
+        Page<PatientSummary> results = patientRepository.searchByPrefix("Dupont!_%", null, null, PageRequest.of(0, 10));
 
+        // Assert
+        assertThat(results.getTotalElements()).isEqualTo(1);
+        assertThat(results.getContent().get(0).getId()).isEqualTo(patient.getId());
+        assertThat(results.getContent().get(0).getDateofbirth()).isEqualTo(LocalDate.of(1985, 2, 3));
+    }
+}
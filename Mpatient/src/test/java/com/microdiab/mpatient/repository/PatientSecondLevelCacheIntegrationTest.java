@@ -0,0 +1,137 @@
+package com.microdiab.mpatient.repository;
+
+import com.microdiab.mpatient.model.Patient;
+import com.microdiab.mpatient.service.PatientService;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.LocalDate;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest(properties = "mpatient.cache.second-level.enabled=true")
+@ActiveProfiles("test")
+public class PatientSecondLevelCacheIntegrationTest {
+
+    @Autowired
+    private PatientRepository patientRepository;
+
+    @Autowired
+    private PatientService patientService;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private Statistics statistics;
+
+    @BeforeEach
+    public void setup() {
+        patientRepository.deleteAll();
+        SessionFactory sessionFactory = entityManagerFactory.unwrap(SessionFactory.class);
+        sessionFactory.getCache().evictAllRegions();
+        statistics = sessionFactory.getStatistics();
+        statistics.clear();
+    }
+
+
+    @Test
+    public void testFindById_ServedFromSecondLevelCache() {
+        // Arrange
+        Long id = patientRepository.save(new Patient(null, "Dupont", "Jean", LocalDate.of(1980, 1, 1), "M", null, null)).getId();
+        patientRepository.findById(id);
+        statistics.clear();
+
+        // Act
+        Patient patient = patientRepository.findById(id).orElseThrow();
+
+        // Assert
+        assertEquals("Dupont", patient.getLastname());
+        assertEquals(1, statistics.getSecondLevelCacheHitCount());
+        assertEquals(0, statistics.getEntityLoadCount());
+        assertEquals(0, statistics.getPrepareStatementCount());
+    }
+
+
+    @Test
+    public void testUpdatePatient_NotServedStaleFromCache() {
+        // Arrange
+        Patient saved = patientRepository.save(new Patient(null, "Dupont", "Jean", LocalDate.of(1980, 1, 1), "M", null, null));
+        patientRepository.findById(saved.getId());
+        Patient update = new Patient(null, "Dupont", "Jean", LocalDate.of(1980, 1, 1), "M", "12 rue de Paris", null);
+        update.setVersion(saved.getVersion());
+
+        // Act
+        patientService.updatePatient(saved.getId(), update);
+
+        // Assert
+        Patient patient = patientRepository.findById(saved.getId()).orElseThrow();
+        assertEquals("12 rue de Paris", patient.getAddress());
+        assertEquals(saved.getVersion() + 1, patient.getVersion());
+    }
+
+
+    @Test
+    public void testUpdatePatient_KeepsOtherPatientsCached() {
+        // Arrange
+        Patient updated = patientRepository.save(new Patient(null, "Dupont", "Jean", LocalDate.of(1980, 1, 1), "M", null, null));
+        Patient other = patientRepository.save(new Patient(null, "Martin", "Marie", LocalDate.of(1990, 5, 15), "F", null, null));
+        patientRepository.findById(other.getId());
+        Patient update = new Patient(null, "Dupont", "Jean", LocalDate.of(1980, 1, 1), "M", "12 rue de Paris", null);
+        update.setVersion(updated.getVersion());
+
+        // Act
+        patientService.updatePatient(updated.getId(), update);
+
+        // Assert
+        SessionFactory sessionFactory = entityManagerFactory.unwrap(SessionFactory.class);
+        assertTrue(sessionFactory.getCache().containsEntity(Patient.class, other.getId()));
+        statistics.clear();
+        assertEquals("Martin", patientRepository.findById(other.getId()).orElseThrow().getLastname());
+        assertEquals(1, statistics.getSecondLevelCacheHitCount());
+        assertEquals(0, statistics.getPrepareStatementCount());
+    }
+
+
+    @Test
+    public void testUpdatePatient_InvalidatesCachedSearchResults() {
+        // Arrange
+        Patient saved = patientRepository.save(new Patient(null, "Dupont", "Jean", LocalDate.of(1980, 1, 1), "M", null, null));
+        assertEquals(1, patientRepository.searchByPrefix("Dup%", null, null, PageRequest.of(0, 10)).getTotalElements());
+        Patient update = new Patient(null, "Durand", "Jean", LocalDate.of(1980, 1, 1), "M", null, null);
+        update.setVersion(saved.getVersion());
+
+        // Act
+        patientService.updatePatient(saved.getId(), update);
+
+        // Assert
+        assertEquals(0, patientRepository.searchByPrefix("Dup%", null, null, PageRequest.of(0, 10)).getTotalElements());
+        assertEquals("Durand", patientRepository.findById(saved.getId()).orElseThrow().getLastname());
+    }
+
+
+    @Test
+    public void testCacheStatistics_PublishedByMicrometer() {
+        // Arrange
+        Long id = patientRepository.save(new Patient(null, "Dupont", "Jean", LocalDate.of(1980, 1, 1), "M", null, null)).getId();
+
+        // Act
+        patientRepository.findById(id);
+
+        // Assert
+        assertNotNull(meterRegistry.find("hibernate.second.level.cache.requests").tag("result", "hit").functionCounter());
+        assertTrue(statistics.getSecondLevelCachePutCount() + statistics.getSecondLevelCacheHitCount() > 0);
+    }
+}
@@ -0,0 +1,101 @@
+package com.microdiab.mpatient.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.microdiab.mpatient.model.Patient;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.TypedQuery;
+import org.hibernate.CacheMode;
+import org.hibernate.jpa.HibernateHints;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class PatientExporterTest {
+
+    @Mock
+    private EntityManager entityManager;
+
+    @Mock
+    private TypedQuery<Patient> query;
+
+    private PatientExporter newExporter() {
+        return new PatientExporter(entityManager,
+                new ObjectMapper().registerModule(new JavaTimeModule()).disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS),
+                Integer.MIN_VALUE, Duration.ofMinutes(30));
+    }
+
+    private void streamPatients(Patient... patients) {
+        when(entityManager.createQuery(anyString(), eq(Patient.class))).thenReturn(query);
+        when(query.setHint(anyString(), any())).thenReturn(query);
+        when(query.getResultStream()).thenReturn(Stream.of(patients));
+    }
+
+
+    @Test
+    void exportCsv_shouldWriteHeaderAndQuotedFields_andDetachPatients() throws IOException {
+        // Arrange
+        Patient dupont = new Patient(1L, "Dupont", "Jean", LocalDate.of(1980, 1, 1), "M", "12 rue de Paris, Lyon", "0123456789");
+        Patient martin = new Patient(2L, "Martin", "Marie \"Mimi\"", LocalDate.of(1990, 5, 15), "F", null, null);
+        streamPatients(dupont, martin);
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+        // Act
+        long count = newExporter().exportCsv(output);
+
+        // Assert
+        assertEquals(2, count);
+        assertEquals("""
+                id,lastname,firstname,dateofbirth,gender,address,phone
+                1,Dupont,Jean,1980-01-01,M,"12 rue de Paris, Lyon",0123456789
+                2,Martin,"Marie ""Mimi\""",1990-05-15,F,,
+                """, output.toString(StandardCharsets.UTF_8));
+        verify(entityManager).detach(dupont);
+        verify(entityManager).detach(martin);
+        verify(query).setHint(HibernateHints.HINT_FETCH_SIZE, Integer.MIN_VALUE);
+        verify(query).setHint(HibernateHints.HINT_READ_ONLY, true);
+        verify(query).setHint(HibernateHints.HINT_CACHE_MODE, CacheMode.IGNORE);
+    }
+
+
+    @Test
+    void exportNdjson_shouldWriteOnePatientPerLine() throws IOException {
+        // Arrange
+        Patient dupont = new Patient(1L, "Dupont", "Jean", LocalDate.of(1980, 1, 1), "M", null, null);
+        streamPatients(dupont);
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+        // Act
+        long count = newExporter().exportNdjson(output);
+
+        // Assert
+        assertEquals(1, count);
+        String[] lines = output.toString(StandardCharsets.UTF_8).split("\n");
+        assertEquals(1, lines.length);
+        assertTrue(lines[0].contains("\"lastname\":\"Dupont\""));
+        assertTrue(lines[0].contains("\"dateofbirth\":\"1980-01-01\""));
+        verify(entityManager).detach(dupont);
+    }
+
+
+    @Test
+    void csvField_shouldQuoteOnlyWhenNeeded() {
+        // Act & Assert
+        assertEquals("", PatientExporter.csvField(null));
+        assertEquals("Dupont", PatientExporter.csvField("Dupont"));
+        assertEquals("\"Bâtiment B\n3 allée des Lilas\"", PatientExporter.csvField("Bâtiment B\n3 allée des Lilas"));
+    }
+}
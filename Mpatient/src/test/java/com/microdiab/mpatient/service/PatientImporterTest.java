@@ -0,0 +1,223 @@
+package com.microdiab.mpatient.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.microdiab.mpatient.exceptions.PatientDuplicateException;
+import com.microdiab.mpatient.model.Patient;
+import com.microdiab.mpatient.model.PatientImportResult;
+import jakarta.validation.Validation;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataIntegrityViolationException;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class PatientImporterTest {
+
+    @Mock
+    private PatientService patientService;
+
+    private PatientImporter newImporter(int batchSize) {
+        return new PatientImporter(patientService, new ObjectMapper().registerModule(new JavaTimeModule()),
+                Validation.buildDefaultValidatorFactory().getValidator(), batchSize, 100);
+    }
+
+    private static InputStream input(String content) {
+        return new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8));
+    }
+
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void importCsv_shouldSaveQuotedRowsInBatches() throws IOException {
+        // Arrange
+        PatientImporter importer = newImporter(2);
+        String csv = "\uFEFFLastName,firstname,dateofbirth,gender,address,phone\n"
+                + "Dupont,Jean,1980-01-01,M,\"12 rue de Paris, Lyon\",0123456789\n"
+                + "\"O\"\"Neil\",Marie,1990-05-15,F,\"Bâtiment B\n3 allée des Lilas\",\n"
+                + "Martin,Paul,1975-03-20,M,,\n";
+
+        // Act
+        PatientImportResult result = importer.importCsv(input(csv));
+
+        // Assert
+        assertEquals(3, result.getImported());
+        assertEquals(0, result.getRejected());
+        ArgumentCaptor<List<Patient>> batches = ArgumentCaptor.forClass(List.class);
+        verify(patientService, times(2)).savePatients(batches.capture());
+        Patient first = batches.getAllValues().get(0).get(0);
+        assertEquals("12 rue de Paris, Lyon", first.getAddress());
+        assertEquals(LocalDate.of(1980, 1, 1), first.getDateofbirth());
+        Patient second = batches.getAllValues().get(0).get(1);
+        assertEquals("O\"Neil", second.getLastname());
+        assertEquals("Bâtiment B\n3 allée des Lilas", second.getAddress());
+        assertNull(second.getPhone());
+        assertEquals(1, batches.getAllValues().get(1).size());
+    }
+
+
+    @Test
+    void importCsv_shouldRejectInvalidRows() throws IOException {
+        // Arrange
+        PatientImporter importer = newImporter(100);
+        String csv = """
+                lastname,firstname,dateofbirth,gender
+                Dupont,Jean,1980-01-01,M
+                Martin,Marie,15/05/1990,F
+                ,Paul,1975-03-20,M
+                Durand,Luc,1975-03-20
+                """;
+
+        // Act
+        PatientImportResult result = importer.importCsv(input(csv));
+
+        // Assert
+        assertEquals(1, result.getImported());
+        assertEquals(3, result.getRejected());
+        assertEquals("Line 3: invalid dateofbirth '15/05/1990' (expected yyyy-MM-dd)", result.getErrors().get(0));
+        assertTrue(result.getErrors().get(1).startsWith("Line 4: "));
+        assertEquals("Line 5: expected 4 fields but found 3", result.getErrors().get(2));
+        verify(patientService).savePatients(argThat(patients -> patients.size() == 1));
+    }
+
+
+    @Test
+    void importCsv_shouldSaveRowsOneByOne_whenBatchContainsDuplicate() throws IOException {
+        // Arrange
+        PatientImporter importer = newImporter(100);
+        String csv = """
+                lastname,firstname,dateofbirth,gender
+                Dupont,Jean,1980-01-01,M
+                Martin,Marie,1990-05-15,F
+                """;
+        when(patientService.savePatients(anyList())).thenThrow(new PatientDuplicateException("duplicate"));
+        when(patientService.savePatient(any(Patient.class)))
+                .thenAnswer(invocation -> invocation.getArgument(0))
+                .thenThrow(new PatientDuplicateException("duplicate"));
+
+        // Act
+        PatientImportResult result = importer.importCsv(input(csv));
+
+        // Assert
+        assertEquals(1, result.getImported());
+        assertEquals(1, result.getRejected());
+        assertTrue(result.getErrors().get(0).startsWith("Line 3: a patient already exists"));
+        verify(patientService, times(2)).savePatient(any(Patient.class));
+    }
+
+
+    @Test
+    void importCsv_shouldSaveRowsOneByOne_whenBatchIsRefusedByDatabase() throws IOException {
+        // Arrange
+        PatientImporter importer = newImporter(100);
+        String csv = """
+                lastname,firstname,dateofbirth,gender
+                Dupont,Jean,1980-01-01,M
+                Martin,Marie,1990-05-15,F
+                """;
+        when(patientService.savePatients(anyList())).thenThrow(new DataIntegrityViolationException("Data too long"));
+        when(patientService.savePatient(any(Patient.class)))
+                .thenAnswer(invocation -> invocation.getArgument(0))
+                .thenThrow(new DataIntegrityViolationException("Data too long for column 'address'"));
+
+        // Act
+        PatientImportResult result = importer.importCsv(input(csv));
+
+        // Assert
+        assertEquals(1, result.getImported());
+        assertEquals(1, result.getRejected());
+        assertEquals("Line 3: refused by the database (Data too long for column 'address')", result.getErrors().get(0));
+        verify(patientService, times(2)).savePatient(argThat(patient -> patient.getId() == null));
+    }
+
+
+    @Test
+    void importCsv_shouldFail_whenRequiredColumnIsMissing() {
+        // Arrange
+        PatientImporter importer = newImporter(100);
+
+        // Act
+        IllegalArgumentException exception = assertThrows(IllegalArgumentException.class,
+                () -> importer.importCsv(input("lastname,firstname,gender\nDupont,Jean,M\n")));
+
+        // Assert
+        assertEquals("Missing CSV column(s): dateofbirth", exception.getMessage());
+        verifyNoInteractions(patientService);
+    }
+
+
+    @Test
+    void importCsv_shouldSaveRowsReadBeforeUnterminatedQuote() {
+        // Arrange
+        PatientImporter importer = newImporter(100);
+        String csv = "lastname,firstname,dateofbirth,gender\nDupont,Jean,1980-01-01,M\n\"Martin,Marie,1990-05-15,F\n";
+
+        // Act
+        IllegalArgumentException exception = assertThrows(IllegalArgumentException.class,
+                () -> importer.importCsv(input(csv)));
+
+        // Assert
+        assertTrue(exception.getMessage().startsWith("Malformed CSV"));
+        verify(patientService).savePatients(argThat(patients -> patients.size() == 1));
+    }
+
+
+    @Test
+    void importCsv_shouldRejectOversizedRecord_andResumeAtItsSecondLine() throws IOException {
+        // Arrange
+        PatientImporter importer = newImporter(5000);
+        StringBuilder csv = new StringBuilder("lastname,firstname,dateofbirth,gender\n\"Martin,Marie,1990-05-15,F\n");
+        for (int i = 0; i < 3000; i++) {
+            csv.append("Dupont").append(i).append(",Jean,1980-01-01,M\n");
+        }
+
+        // Act
+        PatientImportResult result = importer.importCsv(input(csv.toString()));
+
+        // Assert
+        assertEquals(3000, result.getImported());
+        assertEquals(1, result.getRejected());
+        assertEquals("Line 2: record longer than 65536 characters (unterminated quoted field?)", result.getErrors().get(0));
+        verify(patientService).savePatients(argThat(patients -> patients.size() == 3000
+                && patients.get(0).getLastname().equals("Dupont0")));
+    }
+
+
+    @Test
+    void importNdjson_shouldRejectMalformedLinesOnly() throws IOException {
+        // Arrange
+        PatientImporter importer = newImporter(100);
+        String ndjson = """
+                {"lastname": "Dupont", "firstname": "Jean", "dateofbirth": "1980-01-01", "gender": "M"}
+                {"lastname": "Martin", "firstname":
+
+                42
+                {"lastname": "Durand", "firstname": "Luc", "dateofbirth": "1975-03-20", "gender": "M", "phone": "0123456789"}
+                """;
+
+        // Act
+        PatientImportResult result = importer.importNdjson(input(ndjson));
+
+        // Assert
+        assertEquals(2, result.getImported());
+        assertEquals(2, result.getRejected());
+        assertTrue(result.getErrors().get(0).startsWith("Line 2: invalid patient"));
+        assertEquals("Line 4: not a JSON object", result.getErrors().get(1));
+        verify(patientService).savePatients(argThat(patients -> patients.size() == 2));
+    }
+}
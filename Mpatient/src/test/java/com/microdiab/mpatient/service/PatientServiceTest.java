@@ -2,20 +2,31 @@ package com.microdiab.mpatient.service;
 
 import com.microdiab.mpatient.exceptions.PatientDuplicateException;
 import com.microdiab.mpatient.exceptions.PatientNotFoundException;
+import com.microdiab.mpatient.exceptions.PatientVersionConflictException;
 import com.microdiab.mpatient.model.Patient;
+import com.microdiab.mpatient.model.PatientLookupResult;
 import com.microdiab.mpatient.repository.PatientRepository;
+import jakarta.persistence.EntityManager;
+import org.hibernate.exception.ConstraintViolationException;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.dao.DataIntegrityViolationException;
 
+import java.sql.SQLException;
 import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.argThat;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
@@ -24,6 +35,9 @@ public class PatientServiceTest {
     @Mock
     private PatientRepository patientRepository;
 
+    @Mock
+    private EntityManager entityManager;
+
     @InjectMocks
     private PatientService patientService;
 
@@ -44,50 +58,111 @@ public class PatientServiceTest {
 
     @Test
     void savePatient_shouldSavePatient_whenNoDuplicate() {
-        when(patientRepository.existsByLastnameAndFirstnameAndDateofbirthAndGender(
-                patient.getLastname(),
-                patient.getFirstname(),
-                patient.getDateofbirth(),
-                patient.getGender()))
-                .thenReturn(false);
-        when(patientRepository.save(any(Patient.class))).thenReturn(patient);
+        when(patientRepository.saveAndFlush(any(Patient.class))).thenReturn(patient);
 
         Patient savedPatient = patientService.savePatient(patient);
 
         assertNotNull(savedPatient);
         assertEquals(patient.getLastname(), savedPatient.getLastname());
-        verify(patientRepository, times(1)).save(patient);
+        verify(patientRepository, times(1)).saveAndFlush(patient);
+        verify(patientRepository, never()).existsByLastnameAndFirstnameAndDateofbirthAndGender(any(), any(), any(), any());
+    }
+
+
+    @Test
+    void savePatient_shouldIgnoreIdentifierSentByClient() {
+        when(patientRepository.saveAndFlush(any(Patient.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        Patient savedPatient = patientService.savePatient(patient);
+
+        assertNull(savedPatient.getId());
     }
 
 
     @Test
     void savePatient_shouldThrowException_whenDuplicateExists() {
-        when(patientRepository.existsByLastnameAndFirstnameAndDateofbirthAndGender(
-                patient.getLastname(),
-                patient.getFirstname(),
-                patient.getDateofbirth(),
-                patient.getGender()))
-                .thenReturn(true);
+        DataIntegrityViolationException violation = new DataIntegrityViolationException("Duplicate entry",
+                new ConstraintViolationException("Duplicate entry", new SQLException("Duplicate entry", "23000", 1062),
+                        "patient.UC_PATIENT_UNIQUE"));
+        when(patientRepository.saveAndFlush(patient)).thenThrow(violation);
 
-        assertThrows(PatientDuplicateException.class, () -> {
+        PatientDuplicateException exception = assertThrows(PatientDuplicateException.class, () -> {
             patientService.savePatient(patient);
         });
+        assertSame(violation, exception.getCause());
+    }
+
+
+    @Test
+    void savePatient_shouldRethrow_whenAnotherConstraintIsViolated() {
+        DataIntegrityViolationException violation = new DataIntegrityViolationException("Column cannot be null",
+                new ConstraintViolationException("Column cannot be null", new SQLException("Column cannot be null", "23000", 1048),
+                        null));
+        when(patientRepository.saveAndFlush(patient)).thenThrow(violation);
+
+        assertSame(violation, assertThrows(DataIntegrityViolationException.class, () -> {
+            patientService.savePatient(patient);
+        }));
+    }
+
+
+    @Test
+    void savePatients_shouldFlushAndClearEveryBatch() {
+        ReflectionTestUtils.setField(patientService, "batchSize", 2);
+        List<Patient> patients = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            patients.add(new Patient((long) i, "Dupont" + i, "Jean", LocalDate.of(1990, 1, 1), "M", null, null));
+        }
+
+        List<Patient> savedPatients = patientService.savePatients(patients);
+
+        assertEquals(5, savedPatients.size());
+        assertNull(savedPatients.get(0).getId());
+        verify(entityManager, times(5)).persist(any(Patient.class));
+        verify(patientRepository, times(3)).flush();
+        verify(entityManager, times(3)).clear();
+    }
+
+
+    @Test
+    void findPatientsByIds_shouldQueryByChunksAndReportMissingIds() {
+        List<Long> ids = new ArrayList<>();
+        for (long id = 1; id <= PatientService.LOOKUP_CHUNK_SIZE + 1; id++) {
+            ids.add(id);
+        }
+        ids.add(1L);
+        Patient last = new Patient((long) PatientService.LOOKUP_CHUNK_SIZE + 1, "Martin", "Marie", LocalDate.of(1990, 5, 15), "F", null, null);
+        when(patientRepository.findAllById(anyList()))
+                .thenReturn(List.of(patient))
+                .thenReturn(List.of(last));
+
+        PatientLookupResult result = patientService.findPatientsByIds(ids);
+
+        assertEquals(List.of(patient, last), result.getPatients());
+        assertEquals(PatientService.LOOKUP_CHUNK_SIZE - 1, result.getMissingIds().size());
+        assertEquals(2L, result.getMissingIds().get(0));
+        verify(patientRepository).findAllById(argThat(chunk -> ((List<Long>) chunk).size() == PatientService.LOOKUP_CHUNK_SIZE));
+        verify(patientRepository).findAllById(List.of((long) PatientService.LOOKUP_CHUNK_SIZE + 1));
+    }
+
+
+    @Test
+    void savePatients_shouldThrowException_whenBatchContainsDuplicate() {
+        ReflectionTestUtils.setField(patientService, "batchSize", 50);
+        doThrow(new DataIntegrityViolationException("Duplicate entry",
+                new ConstraintViolationException("Duplicate entry", new SQLException("Duplicate entry", "23000", 1062),
+                        "patient.uc_patient_unique")))
+                .when(patientRepository).flush();
+
+        assertThrows(PatientDuplicateException.class, () -> {
+            patientService.savePatients(List.of(patient));
+        });
     }
 
 
     @Test
     void updatePatient_shouldUpdatePatient_whenPatientExists() {
-        // Existing patient in database
-        Patient existingPatient = new Patient();
-        existingPatient.setId(1L);
-        existingPatient.setLastname("Dupont");
-        existingPatient.setFirstname("Jean");
-        existingPatient.setDateofbirth(LocalDate.of(1990, 1, 1));
-        existingPatient.setGender("M");
-        existingPatient.setAddress("123 Rue de Paris");
-        existingPatient.setPhone("0123456789");
-
-        // Patient with the new data
+        // Patient with the new data, read at version 3
         Patient updatedPatient = new Patient();
         updatedPatient.setLastname("Martin");
         updatedPatient.setFirstname("Pierre");
@@ -95,42 +170,80 @@ public class PatientServiceTest {
         updatedPatient.setGender("M");
         updatedPatient.setAddress("456 Rue de Lyon");
         updatedPatient.setPhone("0987654321");
+        updatedPatient.setVersion(3L);
 
         // Mock of the repository
-        when(patientRepository.findById(1L)).thenReturn(Optional.of(existingPatient));
-        when(patientRepository.save(any(Patient.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        when(patientRepository.updatePatient(1L, updatedPatient)).thenReturn(1);
 
         // Method call
         Patient result = patientService.updatePatient(1L, updatedPatient);
 
         // Verifications
         assertNotNull(result);
+        assertEquals(1L, result.getId());
         assertEquals("Martin", result.getLastname());
         assertEquals("Pierre", result.getFirstname());
         assertEquals("456 Rue de Lyon", result.getAddress());
         assertEquals("0987654321", result.getPhone());
+        assertEquals(4L, result.getVersion());
 
-        // Verify that save is called with the existing (updated) object
-        verify(patientRepository, times(1)).save(existingPatient);
+        // Verify that the patient is neither read nor saved
+        verify(patientRepository, never()).findById(any());
+        verify(patientRepository, never()).save(any());
     }
 
 
+    @Test
+    void updatePatient_shouldThrowException_whenNoVersionIsProvided() {
+        assertThrows(IllegalArgumentException.class, () -> {
+            patientService.updatePatient(1L, patient);
+        });
+
+        verify(patientRepository, never()).updatePatient(any(), any());
+    }
+
 
     @Test
-    void updatePatient_shouldThrowException_whenPatientNotFound() {
-        when(patientRepository.findById(1L)).thenReturn(Optional.empty());
+    void updatePatient_shouldThrowException_whenVersionIsOutdated() {
+        patient.setVersion(2L);
+        when(patientRepository.updatePatient(1L, patient)).thenReturn(0);
+        when(patientRepository.existsById(1L)).thenReturn(true);
 
-        assertThrows(PatientNotFoundException.class, () -> {
+        assertThrows(PatientVersionConflictException.class, () -> {
             patientService.updatePatient(1L, patient);
         });
     }
 
 
     @Test
-    void updatePatient_shouldThrowPatientNotFoundException_whenUpdatePatientIsNull() {
-        when(patientRepository.findById(1L)).thenReturn(Optional.empty());
+    void updatePatient_shouldThrowException_whenIdentityIsTakenByAnotherPatient() {
+        DataIntegrityViolationException violation = new DataIntegrityViolationException("Duplicate entry",
+                new ConstraintViolationException("Duplicate entry", new SQLException("Duplicate entry", "23000", 1062),
+                        "patient.uc_patient_unique"));
+        patient.setVersion(0L);
+        when(patientRepository.updatePatient(1L, patient)).thenThrow(violation);
+
+        assertThrows(PatientDuplicateException.class, () -> {
+            patientService.updatePatient(1L, patient);
+        });
+    }
+
+
+    @Test
+    void updatePatient_shouldThrowException_whenPatientNotFound() {
+        patient.setVersion(0L);
+        when(patientRepository.updatePatient(1L, patient)).thenReturn(0);
+        when(patientRepository.existsById(1L)).thenReturn(false);
 
         assertThrows(PatientNotFoundException.class, () -> {
+            patientService.updatePatient(1L, patient);
+        });
+    }
+
+
+    @Test
+    void updatePatient_shouldThrowException_whenUpdatePatientIsNull() {
+        assertThrows(IllegalArgumentException.class, () -> {
             patientService.updatePatient(1L, null);
         });
     }
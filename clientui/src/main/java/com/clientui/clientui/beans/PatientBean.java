@@ -97,6 +97,12 @@ public class PatientBean {
      */
     private String phone;
 
+    /**
+     * Version of the patient read from the 'mpatient' microservice.
+     * It is sent back with the updates, which are rejected if the patient has been modified since.
+     */
+    private Long version;
+
     /**
      * Default constructor.
      * Initializes an empty {@code PatientBean} object.
@@ -253,6 +259,24 @@ public class PatientBean {
         this.phone = phone;
     }
 
+    /**
+     * Gets the version of the patient.
+     *
+     * @return the version of the patient, used for optimistic locking.
+     */
+    public Long getVersion() {
+        return version;
+    }
+
+    /**
+     * Sets the version of the patient.
+     *
+     * @param version the version of the patient to set.
+     */
+    public void setVersion(Long version) {
+        this.version = version;
+    }
+
     /**
      * Returns a string representation of the {@code PatientBean} object.
      *
@@ -268,6 +292,7 @@ public class PatientBean {
                 ", gender='" + gender + '\'' +
                 ", address='" + address + '\'' +
                 ", phone='" + phone + '\'' +
+                ", version=" + version +
                 '}';
     }
 }
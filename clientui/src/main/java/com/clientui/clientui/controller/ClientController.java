@@ -37,6 +37,9 @@ public class ClientController {
 
     private static final Logger logger = LoggerFactory.getLogger(ClientController.class);
 
+    /** Number of patients displayed per page of the patient list. */
+    static final int PATIENT_PAGE_SIZE = 20;
+
     private final MicroservicesProxy servicesProxy;
     private final TracingHelper tracing;
 
@@ -97,15 +100,17 @@ public class ClientController {
     }
 
     /**
-     * Displays the list of patients.
+     * Displays a page of the list of patients.
      *
      * @param model The model to which attributes are added.
      * @param error An optional error message to display.
+     * @param page  The index of the page to display, from 0.
      * @return The name of the Thymeleaf template for the patient list page.
      */
     @RequestMapping("/patients")
     @NewSpan("clientui-patients-list")
-    public String showPatients(Model model, @RequestParam(required = false) String error) {
+    public String showPatients(Model model, @RequestParam(required = false) String error,
+                               @RequestParam(defaultValue = "0") int page) {
 
         tracing.tag("page", "patients-list");
         tracing.event("Retrieving patient list");
@@ -116,9 +121,12 @@ public class ClientController {
         }
 
         model.addAttribute("currentPage", "patients");
-        List<PatientBean> patients = servicesProxy.retrievePatientList();
+        int currentPatientPage = Math.max(page, 0);
+        List<PatientBean> patients = servicesProxy.retrievePatientList(currentPatientPage, PATIENT_PAGE_SIZE);
         tracing.tag("patient.count", patients.size());
         model.addAttribute("patients", patients);
+        model.addAttribute("page", currentPatientPage);
+        model.addAttribute("hasNextPage", patients.size() == PATIENT_PAGE_SIZE);
 
         return "list";
     }
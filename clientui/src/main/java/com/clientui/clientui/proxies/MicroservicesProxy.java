@@ -22,20 +22,23 @@ import java.util.List;
 public interface MicroservicesProxy {
 
     /**
-     * Retrieves the list of all patients from the 'mpatient' microservice.
+     * Retrieves a page of the list of patients from the 'mpatient' microservice, sorted by ID.
      *
-     * @return A list of PatientBean objects representing all patients.
+     * @param page The index of the page, from 0.
+     * @param size The number of patients per page.
+     * @return A list of PatientBean objects representing the patients of the page.
      */
     @Operation(
-        summary = "Retrieve the list of all patients",
-        description = "Fetches the complete list of patients from the 'mpatient' microservice.",
+        summary = "Retrieve a page of the list of patients",
+        description = "Fetches a page of the list of patients from the 'mpatient' microservice, sorted by ID.",
         responses = {
             @ApiResponse(responseCode = "200", description = "Successfully retrieved the patient list"),
+            @ApiResponse(responseCode = "400", description = "Invalid page or page size"),
             @ApiResponse(responseCode = "500", description = "Internal server error")
         }
     )
     @GetMapping(value = "/mpatient/patients")
-    List<PatientBean> retrievePatientList();
+    List<PatientBean> retrievePatientList(@RequestParam("page") int page, @RequestParam("size") int size);
 
     /**
      * Retrieves a specific patient by their ID from the 'mpatient' microservice.
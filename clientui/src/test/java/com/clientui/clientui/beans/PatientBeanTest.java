@@ -66,6 +66,7 @@ public class PatientBeanTest {
         patient.setGender(gender);
         patient.setAddress(address);
         patient.setPhone(phone);
+        patient.setVersion(2L);
 
         // Assert
         assertThat(patient.getId()).isEqualTo(id);
@@ -75,6 +76,7 @@ public class PatientBeanTest {
         assertThat(patient.getGender()).isEqualTo(gender);
         assertThat(patient.getAddress()).isEqualTo(address);
         assertThat(patient.getPhone()).isEqualTo(phone);
+        assertThat(patient.getVersion()).isEqualTo(2L);
     }
 
     @Test
@@ -114,7 +114,7 @@ public class ClientControllerIntegrationTest {
     @Test
     @WithMockUser(username = "testuser", roles = {"USER"})
     void testShowPatients() throws Exception {
-        when(servicesProxy.retrievePatientList()).thenReturn(testPatients);
+        when(servicesProxy.retrievePatientList(0, ClientController.PATIENT_PAGE_SIZE)).thenReturn(testPatients);
 
         mockMvc.perform(get("/patients")
                         .header("X-Auth-Username", "testuser")
@@ -122,9 +122,11 @@ public class ClientControllerIntegrationTest {
                 .andExpect(status().isOk())
                 .andExpect(view().name("list"))
                 .andExpect(model().attribute("patients", testPatients))
-                .andExpect(model().attribute("patients", hasSize(2)));
+                .andExpect(model().attribute("patients", hasSize(2)))
+                .andExpect(model().attribute("page", 0))
+                .andExpect(model().attribute("hasNextPage", false));
 
-        verify(servicesProxy, times(1)).retrievePatientList();
+        verify(servicesProxy, times(1)).retrievePatientList(0, ClientController.PATIENT_PAGE_SIZE);
     }
 
     @Test
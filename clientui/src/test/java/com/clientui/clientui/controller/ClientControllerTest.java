@@ -19,6 +19,7 @@ import org.springframework.validation.BindingResult;
 import org.springframework.web.servlet.mvc.support.RedirectAttributes;
 
 import java.util.HashMap;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 
@@ -83,22 +84,39 @@ public class ClientControllerTest {
     void showPatients_shouldReturnListView() {
         Model model = mock(Model.class);
 
-        when(servicesProxy.retrievePatientList())
+        when(servicesProxy.retrievePatientList(0, ClientController.PATIENT_PAGE_SIZE))
                 .thenReturn(List.of(new PatientBean()));
 
-        String view = controller.showPatients(model, null);
+        String view = controller.showPatients(model, null, 0);
 
         assertThat(view).isEqualTo("list");
         verify(model).addAttribute("currentPage", "patients");
         verify(model).addAttribute(eq("patients"), any(List.class));
+        verify(model).addAttribute("page", 0);
+        verify(model).addAttribute("hasNextPage", false);
+    }
+
+    @Test
+    void showPatients_withFullPage_shouldOfferNextPage() {
+        Model model = mock(Model.class);
+        List<PatientBean> fullPage = new ArrayList<>();
+        for (int i = 0; i < ClientController.PATIENT_PAGE_SIZE; i++) {
+            fullPage.add(new PatientBean());
+        }
+        when(servicesProxy.retrievePatientList(2, ClientController.PATIENT_PAGE_SIZE)).thenReturn(fullPage);
+
+        controller.showPatients(model, null, 2);
+
+        verify(model).addAttribute("page", 2);
+        verify(model).addAttribute("hasNextPage", true);
     }
 
     @Test
     void showPatients_withError_shouldAddErrorToModel() {
         Model model = mock(Model.class);
-        when(servicesProxy.retrievePatientList()).thenReturn(List.of());
+        when(servicesProxy.retrievePatientList(0, ClientController.PATIENT_PAGE_SIZE)).thenReturn(List.of());
 
-        controller.showPatients(model, "error-msg");
+        controller.showPatients(model, "error-msg", 0);
 
         verify(model).addAttribute("error", "error-msg");
     }
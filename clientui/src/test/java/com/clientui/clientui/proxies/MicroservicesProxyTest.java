@@ -30,15 +30,15 @@ public class MicroservicesProxyTest {
         patient2.setId(2L);
         List<PatientBean> expectedPatients = Arrays.asList(patient1, patient2);
 
-        when(microservicesProxy.retrievePatientList()).thenReturn(expectedPatients);
+        when(microservicesProxy.retrievePatientList(0, 20)).thenReturn(expectedPatients);
 
         // Act
-        List<PatientBean> result = microservicesProxy.retrievePatientList();
+        List<PatientBean> result = microservicesProxy.retrievePatientList(0, 20);
 
         // Assert
         assertThat(result).isNotNull();
         assertThat(result.size()).isEqualTo(2);
-        verify(microservicesProxy, times(1)).retrievePatientList();
+        verify(microservicesProxy, times(1)).retrievePatientList(0, 20);
     }
 
     @Test
@@ -1,5 +1,7 @@
 package com.microdiab.mrisk.bean;
 
+import java.util.Map;
+
 /**
  * The {@code NoteBean} class represents a note associated with a patient in the MicroDiab application.
  * It is used to store and manage patient notes, including the patient's unique identifier, name, and the note content.
@@ -41,6 +43,12 @@ public class NoteBean {
      */
     private String note;
 
+    /**
+     * Number of occurrences of each trigger term in the note, computed by 'mnotes' when the note is written.
+     * Null for notes that have not been annotated yet.
+     */
+    private Map<String, Integer> triggerTermCounts;
+
     /**
      * Default constructor for the {@code NoteBean} class.
      */
@@ -117,6 +125,25 @@ public class NoteBean {
     }
 
 
+    /**
+     * Gets the number of occurrences of each trigger term in the note.
+     *
+     * @return The trigger term counts, or null if the note has not been annotated by 'mnotes'.
+     */
+    public Map<String, Integer> getTriggerTermCounts() {
+        return triggerTermCounts;
+    }
+
+    /**
+     * Sets the number of occurrences of each trigger term in the note.
+     *
+     * @param triggerTermCounts The trigger term counts.
+     */
+    public void setTriggerTermCounts(Map<String, Integer> triggerTermCounts) {
+        this.triggerTermCounts = triggerTermCounts;
+    }
+
+
     /**
      * Returns a string representation of the {@code NoteBean} object.
      *
@@ -31,10 +31,13 @@ public interface MicroservicesProxy {
 
     /**
      * Retrieves all notes associated with a patient by their unique identifier.
+     * The notes are read from a secondary of the mNotes replica set when secondary reads are enabled
+     * there: the assessment tolerates a replication lag bounded by the maximum staleness of mNotes.
+     * Only the trigger term counts of the notes are read, the content of the notes is not transferred.
      *
      * @param patId The unique identifier of the patient.
-     * @return A list of notes associated with the patient.
+     * @return A list of notes associated with the patient, with their trigger term counts only.
      */
-    @GetMapping("mnotes/notes/{patId}")
+    @GetMapping(value = "mnotes/notes/{patId}?fields=triggerTermCounts", headers = "X-Read-Routing=secondary")
     List<NoteBean> getNotesByPatId(@PathVariable Long patId);
 }
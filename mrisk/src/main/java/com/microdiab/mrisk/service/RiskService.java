@@ -11,6 +11,7 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 
@@ -77,9 +78,7 @@ public class RiskService {
         long triggerCount = notes.stream()
                 .flatMap(note ->
                         triggerTerms.stream()
-                                .filter(term ->
-                                        note.getNote().toLowerCase().contains(term.toLowerCase())
-                                )
+                                .filter(term -> containsTriggerTerm(note, term))
                 )
                 // NOTE : If distinct is enabled, then the results requested by the client are not obtained.
                 //.distinct()
@@ -128,4 +127,19 @@ public class RiskService {
         logger.warn("No risk criteria match for patient ID = {}. Calculated risk level = {}.", patId, triggerCount);
         return new RiskLevel("None", patId);
     }
+
+
+    /**
+     * Checks whether a note contains a trigger term, from the trigger term counts computed by mNotes.
+     * The content of the notes is not read: mNotes computes the counts of the notes not annotated yet
+     * when they are read, so a note without counts contains no trigger term.
+     *
+     * @param note The note to check.
+     * @param term The trigger term to look for.
+     * @return {@code true} if the term is present in the note, {@code false} otherwise.
+     */
+    private static boolean containsTriggerTerm(NoteBean note, String term) {
+        Map<String, Integer> triggerTermCounts = note.getTriggerTermCounts();
+        return triggerTermCounts != null && triggerTermCounts.getOrDefault(term, 0) > 0;
+    }
 }
@@ -2,6 +2,8 @@ package com.microdiab.mrisk.bean;
 
 import org.junit.jupiter.api.Test;
 
+import java.util.Map;
+
 import static org.assertj.core.api.Assertions.assertThat;
 
 
@@ -71,4 +73,16 @@ public class NoteBeanTest {
                 .contains("patient='" + patient + "'")
                 .contains("note='" + note + "'");
     }
+
+    @Test
+    void testTriggerTermCounts() {
+        // Arrange
+        NoteBean noteBean = new NoteBean(1L, "Jean Dupont", "Fumeur");
+
+        // Act
+        noteBean.setTriggerTermCounts(Map.of("Fumeur", 1));
+
+        // Assert
+        assertThat(noteBean.getTriggerTermCounts()).containsEntry("Fumeur", 1);
+    }
 }
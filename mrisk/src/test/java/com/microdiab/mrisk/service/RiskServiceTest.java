@@ -16,7 +16,10 @@ import org.mockito.junit.jupiter.MockitoExtension;
 
 import java.time.LocalDate;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import java.util.Optional;
 
 import static org.assertj.core.api.Assertions.assertThat;
@@ -26,6 +29,9 @@ import static org.mockito.Mockito.*;
 @ExtendWith(MockitoExtension.class)
 class RiskServiceTest {
 
+    private static final List<String> TRIGGER_TERMS = List.of("Hémoglobine A1C", "Microalbumine", "Taille", "Poids",
+            "Fumeur", "Fumeuse", "Anormal", "Cholestérol", "Vertiges", "Rechute", "Réaction", "Anticorps");
+
     @Mock
     private MicroservicesProxy microservicesProxy;
 
@@ -693,13 +699,82 @@ class RiskServiceTest {
         }
     }
 
+    // Builds a note as read with its trigger term counts, which mNotes computes from its content
+    // (case-insensitive, non-overlapping occurrences).
     private NoteBean createNote(Long id, String noteContent) {
         NoteBean note = new NoteBean();
         note.setPatId(id);
         note.setNote(noteContent);
+        String text = noteContent.toLowerCase(Locale.ROOT);
+        Map<String, Integer> triggerTermCounts = new LinkedHashMap<>();
+        for (String term : TRIGGER_TERMS) {
+            String normalizedTerm = term.toLowerCase(Locale.ROOT);
+            int count = 0;
+            for (int index = text.indexOf(normalizedTerm); index >= 0;
+                 index = text.indexOf(normalizedTerm, index + normalizedTerm.length())) {
+                count++;
+            }
+            triggerTermCounts.put(term, count);
+        }
+        note.setTriggerTermCounts(triggerTermCounts);
         return note;
     }
 
+    @Nested
+    class PrecomputedTriggerTermCountsTests {
+
+        @Test
+        @DisplayName("Should use trigger term counts precomputed by mNotes instead of the note content")
+        void shouldUsePrecomputedTriggerTermCounts() {
+            // Arrange - the content is ignored when the counts are present
+            NoteBean note = createNote(1L, "Texte sans terme déclencheur");
+            note.setTriggerTermCounts(Map.of("Fumeur", 2, "Cholestérol", 1, "Vertiges", 0));
+
+            when(microservicesProxy.getPatientById(1L)).thenReturn(Optional.of(patientOver30));
+            when(microservicesProxy.getNotesByPatId(1L)).thenReturn(List.of(note));
+
+            // Act
+            RiskLevel result = riskService.calculateRisk(1L);
+
+            // Assert - Fumeur and Cholestérol are present, counted once each
+            assertThat(result.getRiskLevel()).isEqualTo("Borderline");
+        }
+
+        @Test
+        @DisplayName("Should not count terms missing from the precomputed counts")
+        void shouldIgnoreTermsMissingFromCounts() {
+            // Arrange - the content is not scanned for the terms absent from the counts
+            NoteBean note = createNote(1L, "Patient fumeur avec Vertiges");
+            note.setTriggerTermCounts(Map.of("Cholestérol", 0));
+
+            when(microservicesProxy.getPatientById(1L)).thenReturn(Optional.of(patientOver30));
+            when(microservicesProxy.getNotesByPatId(1L)).thenReturn(List.of(note));
+
+            // Act
+            RiskLevel result = riskService.calculateRisk(1L);
+
+            // Assert
+            assertThat(result.getRiskLevel()).isEqualTo("None");
+        }
+
+        @Test
+        @DisplayName("Should count no trigger term for a note read without counts")
+        void shouldIgnoreNotesWithoutCounts() {
+            // Arrange
+            NoteBean note = createNote(1L, "Patient fumeur avec Cholestérol");
+            note.setTriggerTermCounts(null);
+
+            when(microservicesProxy.getPatientById(1L)).thenReturn(Optional.of(patientOver30));
+            when(microservicesProxy.getNotesByPatId(1L)).thenReturn(List.of(note));
+
+            // Act
+            RiskLevel result = riskService.calculateRisk(1L);
+
+            // Assert
+            assertThat(result.getRiskLevel()).isEqualTo("None");
+        }
+    }
+
     @Nested
     class AdditionalCoverageTests {
 